@@ -0,0 +1,375 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGSpatial;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.NonCachingKey;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.light.Light;
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.Control;
+
+/** Loading a CSG scene from its XML definition means blending every shape at startup, 
+ 	which is fine during development, but a shipped game would rather load the finished
+ 	meshes.
+ 	
+ 	CSGBatchCompiler is a headless, command line entry point (no renderer, no Application)
+ 	that:
+ 		-- loads each given .xml asset (CSGGeonode, CSGLinkNode, ..., with any libraries)
+ 		-- regenerates every element, where the assets themselves are processed in 
+ 			parallel via the CSGWorkerPool
+ 		-- 'bakes' the result into plain jME Nodes and Geometries, so that loading it
+ 			involves no CSG processing at all
+ 		-- writes the baked scene as a .j3o via the BinaryExporter
+ 	Every Geometry produced from a CSGGeonode is annotated with UserData that describes its
+ 	place within the CSGMeshManager (see sMeshIndexData and sMaterialData), and the root of
+ 	every baked scene is annotated with its source asset.
+ 	
+ 	Usage:
+ 		CSGBatchCompiler [-assets <dir>]... [-out <dir>] <asset.xml>...
+ 	where the asset names are relative to the asset directories (./Assets by default), 
+ 	and the .j3o files are written under the output directory (./Compiled by default)
+ 	with the same relative path.
+ 	
+ 	NOTE that a physics control defined on a CSG element is applied by applyPhysics() 
+ 		 at run time, so it is not part of the baked scene.
+ */
+public class CSGBatchCompiler
+{
+	/** Version tracking support */
+	public static final String sCSGBatchCompilerRevision="$Rev$";
+	public static final String sCSGBatchCompilerDate="$Date$";
+
+	/** UserData keys applied to the baked elements */
+	public static final String sMeshIndexData = "CSGMeshIndex";
+	public static final String sMaterialData = "CSGMaterial";
+	public static final String sSourceData = "CSGSource";
+	
+	/** Default directories */
+	public static final String sDefaultAssetDir = "./Assets";
+	public static final String sDefaultOutputDir = "./Compiled";
+	
+	
+	/** Command line entry point */
+	public static void main(
+		String[]	pArgs
+	) {
+		// No display of any kind
+		System.setProperty( "java.awt.headless", "true" );
+		
+		List<String> assetDirs = new ArrayList<String>();
+		List<String> assetNames = new ArrayList<String>();
+		String outputDir = sDefaultOutputDir;
+		for( int i = 0; i < pArgs.length; i += 1 ) {
+			String anArg = pArgs[ i ];
+			if ( "-assets".equals( anArg ) && (i + 1 < pArgs.length) ) {
+				assetDirs.add( pArgs[ ++i ] );
+			} else if ( "-out".equals( anArg ) && (i + 1 < pArgs.length) ) {
+				outputDir = pArgs[ ++i ];
+			} else if ( anArg.startsWith( "-" ) ) {
+				assetNames.clear();
+				break;
+			} else {
+				assetNames.add( anArg );
+			}
+		}
+		if ( assetNames.isEmpty() ) {
+			System.err.println( "Usage: CSGBatchCompiler [-assets <dir>]... [-out <dir>] <asset.xml>..." );
+			System.exit( 2 );
+		}
+		if ( assetDirs.isEmpty() ) {
+			assetDirs.add( sDefaultAssetDir );
+		}
+		CSGBatchCompiler aCompiler = new CSGBatchCompiler( assetDirs, new File( outputDir ) );
+		int failures = aCompiler.compile( assetNames );
+		CSGWorkerPool.shutdown();
+		System.exit( (failures == 0) ? 0 : 1 );
+	}
+	
+	
+	/** The headless asset manager */
+	protected AssetManager		mAssetManager;
+	/** Where the output goes */
+	protected File				mOutputDir;
+	
+	
+	/** Constructor based on where the assets come from and where the results go */
+	public CSGBatchCompiler(
+		List<String>	pAssetDirs
+	,	File			pOutputDir
+	) {
+		// The platform configuration supplies the standard loaders, none of which
+		// need a renderer
+		mAssetManager = new DesktopAssetManager( true );
+		for( String aDir : pAssetDirs ) {
+			mAssetManager.registerLocator( aDir, FileLocator.class );
+		}
+        mAssetManager.registerLoader( com.jme3.export.xml.XMLLoader.class, "xml" );
+		mOutputDir = pOutputDir;
+	}
+	
+	/** Compile all the given assets, in parallel
+	 	@return - the count of assets that failed
+	 */
+	public int compile(
+		List<String>	pAssetNames
+	) {
+		List<Callable<Boolean>> taskList = new ArrayList<Callable<Boolean>>( pAssetNames.size() );
+		for( final String anAssetName : pAssetNames ) {
+			taskList.add( new Callable<Boolean>() {
+				public Boolean call() {
+					return( Boolean.valueOf( compile( anAssetName ) ) );
+				}
+			});
+		}
+		int failures = 0;
+		try {
+			// Every task reports its own failure, so nothing is expected here
+			for( Boolean aResult : CSGWorkerPool.invokeAll( taskList, null ) ) {
+				if ( !aResult.booleanValue() ) failures += 1;
+			}
+		} catch( CSGConstructionException ex ) {
+			CSGEnvironment.sLogger.log( Level.SEVERE, "CSGBatchCompiler failed: " + ex, ex );
+			failures = pAssetNames.size();
+		}
+		return( failures );
+	}
+	
+	/** Compile a single asset
+	 	@return - true if the asset was successfully written
+	 */
+	public boolean compile(
+		String		pAssetName
+	) {
+		long startTime = System.nanoTime();
+		try {
+			Object anAsset = mAssetManager.loadAsset( new NonCachingKey( pAssetName ) );
+			if ( !(anAsset instanceof Spatial) ) {
+				CSGEnvironment.sLogger.log( Level.WARNING
+				, "CSGBatchCompiler: " + pAssetName + " is not a Spatial: " + anAsset );
+				return( false );
+			}
+			Spatial aScene = (Spatial)anAsset;
+			
+			// Anything that deferred its regeneration or its scene changes is done now
+			regenerate( aScene );
+			reportErrors( aScene, pAssetName );
+			
+			Spatial bakedScene = bake( aScene, null );
+			bakedScene.setUserData( sSourceData, pAssetName );
+			
+			File aFile = new File( mOutputDir, outputName( pAssetName ) );
+			File aDir = aFile.getParentFile();
+			if ( (aDir != null) && !aDir.isDirectory() && !aDir.mkdirs() ) {
+				throw new IOException( "Cannot create: " + aDir );
+			}
+			BinaryExporter.getInstance().save( bakedScene, aFile );
+			
+			CSGEnvironment.sLogger.log( Level.INFO, "CSGBatchCompiler: " + pAssetName + " -> " + aFile 
+								+ " (" + ((System.nanoTime() - startTime) / 1000000) + "ms)" );
+			return( true );
+		} catch( Exception ex ) {
+			CSGEnvironment.sLogger.log( Level.SEVERE, "CSGBatchCompiler: " + pAssetName + " failed: " + ex, ex );
+			return( false );
+		}
+	}
+	
+	/** Service routine that regenerates any element not already regenerated, and applies
+	 	any deferred scene changes (there is no scene thread to wait for)
+	 */
+	protected void regenerate(
+		Spatial		pSpatial
+	) throws CSGConstructionException {
+		if ( pSpatial instanceof CSGElement ) {
+			CSGElement anElement = (CSGElement)pSpatial;
+			if ( anElement.getShapeRegenerationNS() == 0 ) {
+				anElement.regenerate( true, null );
+			}
+			if ( pSpatial instanceof CSGSpatial ) {
+				((CSGSpatial)pSpatial).applySceneChanges();
+			}
+			if ( !(pSpatial instanceof CSGLinkNode) ) {
+				// Any children are generated, not defined
+				return;
+			}
+		}
+		if ( pSpatial instanceof Node ) {
+			for( Spatial aChild : new ArrayList<Spatial>( ((Node)pSpatial).getChildren() ) ) {
+				regenerate( aChild );
+			}
+		}
+	}
+	/** Service routine that logs every element in error */
+	protected void reportErrors(
+		Spatial		pSpatial
+	,	String		pAssetName
+	) {
+		if ( (pSpatial instanceof CSGElement) && !((CSGElement)pSpatial).isValid() ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGBatchCompiler: " + pAssetName 
+								+ " invalid element: " + ((CSGElement)pSpatial).getError() );
+		}
+		if ( pSpatial instanceof Node ) {
+			for( Spatial aChild : ((Node)pSpatial).getChildren() ) {
+				reportErrors( aChild, pAssetName );
+			}
+		}
+	}
+	
+	/** Service routine that replaces every CSG element with its plain jME equivalent, 
+	 	annotating the generated Geometries as it goes
+	 */
+	protected Spatial bake(
+		Spatial				pSpatial
+	,	Map<Mesh,Integer>	pMeshIndices
+	) {
+		if ( pSpatial instanceof CSGGeometry ) {
+			// Retain the generated mesh, not the shapes
+			CSGGeometry aGeometry = (CSGGeometry)pSpatial;
+			Geometry bakedGeometry = new Geometry( aGeometry.getName(), aGeometry.getMesh() );
+			bakedGeometry.setMaterial( aGeometry.getMaterial() );
+			bakedGeometry.setLodLevel( aGeometry.getLodLevel() );
+			copySpatial( aGeometry, bakedGeometry );
+			annotate( bakedGeometry, pMeshIndices );
+			return( bakedGeometry );
+			
+		} else if ( pSpatial instanceof CSGNode ) {
+			// Retain the generated children, not the shapes
+			if ( pSpatial instanceof CSGGeonode ) {
+				// The children of a geonode are built by its mesh manager
+				pMeshIndices = resolveMeshIndices( ((CSGGeonode)pSpatial).getProductMeshManager() );
+			}
+			Node bakedNode = new Node( pSpatial.getName() );
+			copySpatial( pSpatial, bakedNode );
+			for( Spatial aChild : new ArrayList<Spatial>( ((Node)pSpatial).getChildren() ) ) {
+				bakedNode.attachChild( bake( aChild, pMeshIndices ) );
+			}
+			return( bakedNode );
+			
+		} else if ( pSpatial instanceof Node ) {
+			// Plain node, which may well hold CSG elements
+			Node aNode = (Node)pSpatial;
+			for( Spatial aChild : new ArrayList<Spatial>( aNode.getChildren() ) ) {
+				Spatial bakedChild = bake( aChild, pMeshIndices );
+				if ( bakedChild != aChild ) {
+					int index = aNode.detachChild( aChild );
+					aNode.attachChildAt( bakedChild, index );
+				}
+			}
+			return( aNode );
+			
+		} else if ( pSpatial instanceof Geometry ) {
+			// Already plain
+			annotate( (Geometry)pSpatial, pMeshIndices );
+			return( pSpatial );
+		}
+		return( pSpatial );
+	}
+	/** Service routine that carries over the standard Spatial settings */
+	protected void copySpatial(
+		Spatial		pSource
+	,	Spatial		pTarget
+	) {
+		pTarget.setLocalTransform( pSource.getLocalTransform() );
+		pTarget.setCullHint( pSource.getLocalCullHint() );
+		pTarget.setQueueBucket( pSource.getLocalQueueBucket() );
+		pTarget.setShadowMode( pSource.getLocalShadowMode() );
+		for( String aKey : pSource.getUserDataKeys() ) {
+			pTarget.setUserData( aKey, pSource.getUserData( aKey ) );
+		}
+		for( Light aLight : pSource.getLocalLightList() ) {
+			pTarget.addLight( aLight );
+		}
+		while( pSource.getNumControls() > 0 ) {
+			// Controls belong to a single spatial, so they move over
+			Control aControl = pSource.getControl( 0 );
+			pSource.removeControl( aControl );
+			pTarget.addControl( aControl );
+		}
+	}
+	/** Service routine that records where a generated Geometry came from */
+	protected void annotate(
+		Geometry			pGeometry
+	,	Map<Mesh,Integer>	pMeshIndices
+	) {
+		Integer meshIndex = (pMeshIndices == null) ? null : pMeshIndices.get( pGeometry.getMesh() );
+		if ( meshIndex != null ) {
+			pGeometry.setUserData( sMeshIndexData, meshIndex );
+		}
+		Material aMaterial = pGeometry.getMaterial();
+		if ( aMaterial != null ) {
+			String aName = (aMaterial.getAssetName() != null) ? aMaterial.getAssetName() : aMaterial.getName();
+			if ( aName != null ) {
+				pGeometry.setUserData( sMaterialData, aName );
+			}
+		}
+	}
+	/** Service routine that maps every generated mesh to its index */
+	protected Map<Mesh,Integer> resolveMeshIndices(
+		CSGMeshManager		pMeshManager
+	) {
+		Map<Mesh,Integer> indexMap = new IdentityHashMap<Mesh,Integer>();
+		if ( pMeshManager != null ) {
+			Mesh aMesh = pMeshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex );
+			if ( aMesh != null ) {
+				indexMap.put( aMesh, CSGMeshManager.sMasterMeshIndex );
+			}
+			for( int index = 0; index <= pMeshManager.getMeshCount(); index += 1 ) {
+				Integer meshIndex = new Integer( index );
+				aMesh = pMeshManager.resolveMesh( meshIndex );
+				if ( aMesh != null ) {
+					indexMap.put( aMesh, meshIndex );
+				}
+			}
+		}
+		return( indexMap );
+	}
+	/** Service routine that produces the name of the .j3o for a given asset */
+	protected String outputName(
+		String		pAssetName
+	) {
+		int dotIndex = pAssetName.lastIndexOf( '.' );
+		int slashIndex = pAssetName.lastIndexOf( '/' );
+		return( ((dotIndex > slashIndex) ? pAssetName.substring( 0, dotIndex ) : pAssetName) + ".j3o" );
+	}
+}
@@ -0,0 +1,70 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI.CSGErrorCode;
+
+/** Long running regeneration has always been abortable by interrupting the thread that
+ 	is doing the work, but that requires the caller to know which thread that is, and it
+ 	does not play well with pooled threads.
+ 	
+ 	A CSGCancelToken is an explicit request to abandon the work, which is carried along by
+ 	the CSGEnvironment and checked at the same points where the thread interrupt status 
+ 	is checked (every face split/classified, every partition built).
+ */
+public class CSGCancelToken
+{
+	/** Version tracking support */
+	public static final String sCSGCancelTokenRevision="$Rev$";
+	public static final String sCSGCancelTokenDate="$Date$";
+
+	/** Has cancellation been requested? */
+	protected volatile boolean	mCancelled;
+	
+	
+	/** Null constructor */
+	public CSGCancelToken(
+	) {
+	}
+	
+	/** Request that the associated processing be abandoned */
+	public void cancel() { mCancelled = true; }
+	
+	/** Check if cancellation has been requested */
+	public boolean isCancelled() { return mCancelled; }
+	
+	/** Service routine that throws the standard INTERRUPTED error if cancellation has
+	 	been requested
+	 */
+	public void checkCancelled(
+		String		pWhere
+	) throws CSGConstructionException {
+		if ( mCancelled ) {
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, pWhere + " - cancelled" );
+		}
+	}
+}
@@ -0,0 +1,670 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGOperator;
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGSpatial;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.shape.CSGBox;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+
+/** A single CSGGeonode evaluates all of its shapes as one boolean fold, so for something
+ 	the size of an entire building, with hundreds of cuts, any edit at all recomputes
+ 	everything.
+ 	
+ 	CSGChunkedGeonode partitions its space into a grid of cells (chunks), where:
+ 		-- every UNION/MERGE/DIFFERENCE shape is assigned to the cells its bounds overlap
+ 		-- every INTERSECTION shape applies to every cell (it can remove anything)
+ 		-- each cell is an independent CSGGeonode, whose product is clipped to the cell
+ 			by a final INTERSECTION with a box that fills the cell
+ 		-- a cell is only regenerated when the set of shapes assigned to it changes, and
+ 			all the cells that need it are regenerated in parallel via the CSGWorkerPool
+ 	So the cost of an edit depends upon the cells it touches, not the size of the whole.
+ 	
+ 	Every cell works with its own copy of its shapes (see CSGShape.copyDefinition()), so
+ 	that the cells can blend concurrently.  Any decorations of a shape are only applied
+ 	within the cell that holds the center of its bounds.  A shape whose bounds cannot be
+ 	known without blending (a placeholder proxy, for example) cannot extend the grid:
+ 		-- a DIFFERENCE/INTERSECTION is assigned to every cell
+ 		-- a UNION/MERGE goes into a single catch-all cell, which is never clipped, along
+ 			with every DIFFERENCE/INTERSECTION that follows it
+ 	A cell only takes a DIFFERENCE/INTERSECTION once some UNION/MERGE has been assigned to 
+ 	it, since there is nothing before that to remove from.
+ 	
+ 	NOTE that the catch-all cell overlaps the bounded cells wherever its additions extend
+ 		 into them.  Every DIFFERENCE/INTERSECTION that follows is applied on both sides, so
+ 		 the combined shape is correct, but the interior faces of the overlap remain and
+ 		 coincident surfaces may flicker.
+ 	
+ 	The cells defer their scene changes to this node, which applies them all together
+ 	in applySceneChanges().  The cells never notify the CSGSceneChangeScheduler themselves.
+ 	
+ 	NOTE that the clipping leaves faces where the product crosses a cell boundary.  
+ 		 They lie back to back with the faces of the neighboring cell, and are never seen 
+ 		 from outside the solid.
+ */
+public class CSGChunkedGeonode
+	extends CSGNode
+	implements ConstructiveSolidGeometry, CSGSpatial
+{
+	/** Version tracking support */
+	public static final String sCSGChunkedGeonodeRevision="$Rev$";
+	public static final String sCSGChunkedGeonodeDate="$Date$";
+
+	/** The default size of a cell */
+	public static final Vector3f sDefaultChunkSize = new Vector3f( 10, 10, 10 );
+	/** The key of the catch-all cell, which holds the additions with no known bounds */
+	protected static final String sCatchAllKey = "[*]";
+	
+
+	/** The size of every cell in the grid */
+	protected Vector3f				mChunkSize;
+	/** The list of shapes (each annotated with an action as it is added) */
+	protected List<CSGShape>		mShapes;
+    /** Control flag to force the use of a single material */
+    protected boolean				mForceSingleMaterial;
+	/** Geometry has a variable for LOD level, but Spatial does not */
+	protected int					mLODLevel;
+	/** Control flag to defer scene changes until applySceneChanges() */
+	protected boolean				mDeferSceneChanges;
+	/** The active cells, keyed by their position in the grid */
+	protected Map<String,CSGChunk>	mChunks;
+	/** Flag that the scene has not yet caught up with the active cells */
+	protected boolean				mChunksPending;
+	/** The cells currently being regenerated */
+	protected volatile List<CSGChunk>	mActiveChunks;
+	/** The product reported by the last regeneration */
+	protected CSGShape				mPriorResult;
+	
+	
+	/** Basic null constructor */
+	public CSGChunkedGeonode(
+	) {
+		this( "CSGChunkedGeonode" );
+	}
+	/** Constructor based on a given name */
+	public CSGChunkedGeonode(
+		String	pName
+	) {
+		super( pName );
+		mChunkSize = sDefaultChunkSize.clone();
+		mChunks = new HashMap<String,CSGChunk>();
+	}
+	
+	/** Accessor to the size of a cell, which takes effect on the next regeneration */
+	public Vector3f getChunkSize() { return mChunkSize; }
+	public void setChunkSize( Vector3f pChunkSize ) { mChunkSize = pChunkSize.clone(); }
+	
+	/** Accessor to the number of active cells */
+	public synchronized int getChunkCount() { return mChunks.size(); }
+
+	/** Get status about just what regenerate is doing */
+	@Override
+	public synchronized StringBuilder reportStatus( 
+		StringBuilder 	pBuffer
+	, 	boolean 		pBriefly	
+	) {
+		if ( pBuffer == null ) pBuffer = new StringBuilder( 256 );
+		pBuffer.append( this.getName() );
+		
+		List<CSGChunk> activeChunks = mActiveChunks;
+		if ( mRegenNS < 0 ) {
+			// Work in progress
+			if ( activeChunks != null ) {
+				pBuffer.append( "[" ).append( activeChunks.size() ).append( " chunks]" );
+			}
+		} else if ( pBriefly ) {
+			pBuffer.append( " complete" );
+		} else {
+			pBuffer.append( ": " )
+				   .append( mChunks.size() )
+				   .append( " chunks, " )
+				   .append( mRegenNS / 1000000 )
+				   .append( "ms" );
+		}
+		return( pBuffer );
+	}
+	@Override
+	public int getProgress(
+	) {
+		List<CSGChunk> activeChunks = mActiveChunks;
+		if ( (activeChunks == null) || activeChunks.isEmpty() ) {
+			return( 0 );
+		}
+		int aProgress = 0;
+		for( CSGChunk aChunk : activeChunks ) {
+			aProgress += aChunk.mGeonode.getProgress();
+		}
+		return( aProgress / activeChunks.size() );
+	}
+	
+	/** Access to the single material control */
+	@Override
+	public void forceSingleMaterial( boolean pFlag ) { mForceSingleMaterial = pFlag; }
+	
+    /** Accessor to the LOD level (ala Geometry) */
+    @Override
+    public int getLodLevel() { return mLODLevel; }
+    @Override
+    public void setLodLevel(
+    	int		pLODLevel
+    ) {
+    	mLODLevel = pLODLevel;
+    	super.setLodLevel( pLODLevel );
+    }
+
+    /** Include a shape */
+	@Override
+    public void addShape(
+    	CSGShape	pShape
+    ) {
+    	addShape( pShape, CSGOperator.UNION );
+    }
+	@Override
+    public void subtractShape(
+	    CSGShape	pShape
+	) {
+    	addShape( pShape, CSGOperator.DIFFERENCE );
+    }
+	@Override
+    public void intersectShape(
+	    CSGShape	pShape
+	) {
+    	addShape( pShape, CSGOperator.INTERSECTION );
+    }
+	@Override
+	public void addShape(
+		CSGShape	pShape
+	,	CSGOperator	pOperator
+	) {
+		if ( mShapes == null ) mShapes = new ArrayList<CSGShape>();
+		pShape.setOperator( pOperator );
+		mShapes.add( pShape );
+	}
+	@Override
+	public void removeAllShapes() { mShapes = null; mRegenNS = 0; };
+	@Override
+	public void removeShape(
+		CSGShape	pShape
+	) {
+		if ( mShapes != null ) {
+			mShapes.remove( pShape );
+		}
+	}
+	
+	/** Control when the scene changes are applied */
+	@Override
+	public void deferSceneChanges( boolean pFlag ) { mDeferSceneChanges = pFlag; }
+	@Override
+	public boolean isDeferringSceneChanges() { return mDeferSceneChanges; }
+	
+	/** Regenerate in the background */
+	@Override
+	public Future<CSGRegenerationResult> regenerateAsync(
+		CSGEnvironment		pEnvironment
+	,	CSGCancelToken		pCancelToken
+	) {
+		return( CSGRegenerationResult.submit( this, pEnvironment, pCancelToken ) );
+	}
+	
+	/** Swap the regenerated cells into the scene */
+	@Override
+	public synchronized boolean applySceneChanges(
+	) {
+		if ( !mChunksPending ) {
+			return( false );
+		}
+		// Drop any cell that is no longer active
+		for( Spatial aChild : new ArrayList<Spatial>( this.getChildren() ) ) {
+			if ( (aChild instanceof CSGGeonode) && !isActiveChunk( (CSGGeonode)aChild ) ) {
+				this.detachChild( aChild );
+			}
+		}
+		// Let every cell catch up, and attach any new ones
+		for( CSGChunk aChunk : mChunks.values() ) {
+			aChunk.mGeonode.applySceneChanges();
+			if ( aChunk.mGeonode.getParent() != this ) {
+				this.attachChild( aChunk.mGeonode );
+			}
+		}
+		mChunksPending = false;
+		return( true );
+	}
+	protected boolean isActiveChunk(
+		CSGGeonode		pGeonode
+	) {
+		for( CSGChunk aChunk : mChunks.values() ) {
+			if ( aChunk.mGeonode == pGeonode ) {
+				return( true );
+			}
+		}
+		return( false );
+	}
+	
+	/** Action to generate the cells based on the given shapes, where only the cells
+	 	whose shapes have changed are regenerated
+	 */
+	@Override
+	public CSGShape regenerate(
+		boolean				pOnlyIfNeeded
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		if ( pOnlyIfNeeded && (mRegenNS > 0) ) {
+			// Regeneration already complete
+			return( mPriorResult );
+		}
+		final CSGEnvironment anEnvironment 
+			= CSGEnvironment.resolveEnvironment( (pEnvironment == null) ? mEnvironment : pEnvironment, this );
+		long startTime = System.nanoTime();
+		mRegenNS = -1;
+		try {
+			setError( null );
+			
+			// Sort the shapes into their cells
+			Map<String,CSGChunk> priorChunks;
+			synchronized( this ) {
+				priorChunks = mChunks;
+			}
+			Map<String,CSGChunk> newChunks = assignChunks( anEnvironment );
+			
+			// Only cells whose content changed need any work
+			List<CSGChunk> dirtyChunks = new ArrayList<CSGChunk>();
+			for( CSGChunk aChunk : newChunks.values() ) {
+				CSGChunk priorChunk = priorChunks.get( aChunk.mKey );
+				if ( priorChunk != null ) {
+					aChunk.mGeonode = priorChunk.mGeonode;
+					if ( (aChunk.mFingerprint != 0)
+					&& (priorChunk.mFingerprint == aChunk.mFingerprint) 
+					&& aChunk.mGeonode.isValid() ) {
+						// Nothing to do
+						continue;
+					}
+				} else {
+					aChunk.mGeonode = createChunkNode( aChunk );
+				}
+				loadChunk( aChunk );
+				dirtyChunks.add( aChunk );
+			}
+			// Regenerate in parallel, where every cell defers its scene changes to us
+			List<Callable<CSGShape>> taskList = new ArrayList<Callable<CSGShape>>( dirtyChunks.size() );
+			for( final CSGChunk aChunk : dirtyChunks ) {
+				taskList.add( new Callable<CSGShape>() {
+					public CSGShape call() throws CSGConstructionException {
+						return( aChunk.mGeonode.regenerate( false, anEnvironment ) );
+					}
+				});
+			}
+			mActiveChunks = dirtyChunks;
+			try {
+				CSGWorkerPool.invokeAll( taskList, this );
+			} finally {
+				mActiveChunks = null;
+			}
+			for( CSGChunk aChunk : newChunks.values() ) {
+				if ( !aChunk.mGeonode.isValid() ) {
+					setError( aChunk.mGeonode.getError() );
+				}
+			}
+			// Swap in the new set of cells
+			synchronized( this ) {
+				mChunks = newChunks;
+				mChunksPending = true;
+			}
+			if ( mDeferSceneChanges || anEnvironment.mDeferSceneChanges ) {
+				CSGSceneChangeScheduler.notifyPending( this );
+			} else {
+				applySceneChanges();
+			}
+			if ( anEnvironment.mStructuralDebug ) {
+				CSGEnvironment.sLogger.log( Level.INFO, this.getName() + " regenerated " 
+							+ dirtyChunks.size() + " of " + newChunks.size() + " chunks" );
+			}
+			// There is no single product, so report an empty one that carries any error
+			mPriorResult = new CSGShape( this.getName(), 0 );
+			mPriorResult.setError( getError() );
+			return( mPriorResult );
+		} finally {
+			mRegenNS = System.nanoTime() - startTime;
+		}
+	}
+	
+	/** Service routine that assigns every shape to the cells it applies to */
+	protected Map<String,CSGChunk> assignChunks(
+		CSGEnvironment		pEnvironment
+	) {
+		Map<String,CSGChunk> chunkMap = new HashMap<String,CSGChunk>();
+		if ( (mShapes == null) || mShapes.isEmpty() ) {
+			return( chunkMap );
+		}
+		// Work in the blending sequence
+		List<CSGShape> sortedShapes = mShapes.get(0).prepareShapeList( mShapes, pEnvironment );
+		
+		// The cells are established by the shapes that add something
+		int maxOrder = 0, firstUnbounded = -1;
+		List<BoundingBox> boundList = new ArrayList<BoundingBox>( sortedShapes.size() );
+		for( CSGShape aShape : sortedShapes ) {
+			BoundingBox aBound = CSGOperandOptimizer.resolveBound( aShape );
+			boundList.add( aBound );
+			maxOrder = Math.max( maxOrder, aShape.getOrder() );
+			
+			if ( (aBound == null) && isAddition( aShape ) ) {
+				// Something is added with no known extent, so the catch-all cell takes it
+				if ( firstUnbounded < 0 ) {
+					// NOTE that the catch-all is never clipped, so wherever its additions
+					//		extend into the bounded cells, the two products overlap
+					firstUnbounded = boundList.size() - 1;
+					chunkMap.put( sCatchAllKey, new CSGChunk( sCatchAllKey, 0, 0, 0, maxOrder ) );
+					chunkMap.get( sCatchAllKey ).mCatchAll = true;
+				}
+			} else if ( (aBound != null) && aShape.isValid() ) {
+				switch( aShape.getOperator() ) {
+				case UNION:
+				case MERGE:
+					int[] range = cellRange( aBound );
+					for( int i = range[0]; i <= range[3]; i += 1 ) {
+						for( int j = range[1]; j <= range[4]; j += 1 ) {
+							for( int k = range[2]; k <= range[5]; k += 1 ) {
+								String aKey = "[" + i + "," + j + "," + k + "]";
+								if ( !chunkMap.containsKey( aKey ) ) {
+									chunkMap.put( aKey, new CSGChunk( aKey, i, j, k, maxOrder ) );
+								}
+							}
+						}
+					}
+					break;
+				default:
+					// Only additions create new cells
+					break;
+				}
+			}
+		}
+		// Now assign the shapes to every cell they touch, in order
+		for( CSGChunk aChunk : chunkMap.values() ) {
+			aChunk.mClipOrder = maxOrder + 1;
+			if ( aChunk.mCatchAll ) {
+				// Only the unbounded additions, plus whatever can remove from them
+				for( int index = firstUnbounded, count = sortedShapes.size(); index < count; index += 1 ) {
+					CSGShape aShape = sortedShapes.get( index );
+					BoundingBox aBound = boundList.get( index );
+					if ( aShape.getOperator() == CSGOperator.SKIP ) {
+						continue;
+					}
+					if ( !isAddition( aShape ) || (aBound == null) ) {
+						aChunk.addShape( aShape, aBound == null );
+					}
+				}
+				aChunk.mFingerprint = createChunkFingerprint( aChunk, pEnvironment );
+				continue;
+			}
+			BoundingBox cellBound = cellBound( aChunk );
+			boolean haveAddition = false;
+			for( int index = 0, count = sortedShapes.size(); index < count; index += 1 ) {
+				CSGShape aShape = sortedShapes.get( index );
+				BoundingBox aBound = boundList.get( index );
+				if ( aShape.getOperator() == CSGOperator.SKIP ) {
+					continue;
+				}
+				if ( (aBound == null) && isAddition( aShape ) ) {
+					// Handled by the catch-all cell
+					continue;
+				}
+				if ( !haveAddition && !isAddition( aShape ) ) {
+					// Nothing in this cell yet to remove from (and the geonode would take
+					// a leading INTERSECTION as a place to start)
+					continue;
+				}
+				if ( (aBound == null) 
+				|| (aShape.getOperator() == CSGOperator.INTERSECTION) 
+				|| aBound.intersects( cellBound ) ) {
+					// Decorations are only applied in the cell that holds the center
+					boolean isHome = (aBound == null) || cellBound.contains( aBound.getCenter() );
+					aChunk.addShape( aShape, isHome );
+					haveAddition |= isAddition( aShape );
+				}
+			}
+			aChunk.mFingerprint = createChunkFingerprint( aChunk, pEnvironment );
+		}
+		return( chunkMap );
+	}
+	/** Service routine to check if a shape adds something to the product */
+	protected boolean isAddition(
+		CSGShape		pShape
+	) {
+		switch( pShape.getOperator() ) {
+		case UNION:
+		case MERGE:
+			return( true );
+		default:
+			return( false );
+		}
+	}
+	
+	/** Service routine that determines the range of cells covered by a bound
+	 	@return - minimum x/y/z followed by maximum x/y/z
+	 */
+	protected int[] cellRange(
+		BoundingBox		pBound
+	) {
+		Vector3f minPoint = pBound.getMin( null );
+		Vector3f maxPoint = pBound.getMax( null );
+		return( new int[] { (int)Math.floor( minPoint.x / mChunkSize.x )
+						,	(int)Math.floor( minPoint.y / mChunkSize.y )
+						,	(int)Math.floor( minPoint.z / mChunkSize.z )
+						,	(int)Math.floor( maxPoint.x / mChunkSize.x )
+						,	(int)Math.floor( maxPoint.y / mChunkSize.y )
+						,	(int)Math.floor( maxPoint.z / mChunkSize.z ) } );
+	}
+	/** Service routine that produces the bound of a given cell */
+	protected BoundingBox cellBound(
+		CSGChunk		pChunk
+	) {
+		Vector3f anExtent = mChunkSize.mult( 0.5f );
+		Vector3f aCenter = new Vector3f( (pChunk.mX + 0.5f) * mChunkSize.x
+										, (pChunk.mY + 0.5f) * mChunkSize.y
+										, (pChunk.mZ + 0.5f) * mChunkSize.z );
+		return( new BoundingBox( aCenter, anExtent.x, anExtent.y, anExtent.z ) );
+	}
+	
+	/** Service routine that produces a hash of everything that goes into a given cell */
+	protected long createChunkFingerprint(
+		CSGChunk			pChunk
+	,	CSGEnvironment		pEnvironment
+	) {
+		long aKey = CSGFingerprint.sBasis;
+		aKey = CSGFingerprint.hash( aKey, pEnvironment.getFingerprint() );
+		aKey = CSGFingerprint.hash( aKey, mForceSingleMaterial );
+		aKey = CSGFingerprint.hash( aKey, mMaterial );
+		aKey = CSGFingerprint.hash( aKey, mChunkSize.x );
+		aKey = CSGFingerprint.hash( aKey, mChunkSize.y );
+		aKey = CSGFingerprint.hash( aKey, mChunkSize.z );
+		aKey = CSGFingerprint.hash( aKey, (Object)pChunk.mKey );
+		for( int i = 0, j = pChunk.mShapes.size(); i < j; i += 1 ) {
+			long shapeKey = pChunk.mShapes.get( i ).getFingerprint();
+			if ( shapeKey == 0 ) {
+				// A shape with no known history always forces the cell to regenerate
+				return( 0 );
+			}
+			aKey = CSGFingerprint.hash( aKey, shapeKey );
+			aKey = CSGFingerprint.hash( aKey, pChunk.mHome.get( i ).booleanValue() );
+		}
+		return( aKey );
+	}
+	
+	/** Service routine that creates the geonode behind a new cell */
+	protected CSGGeonode createChunkNode(
+		CSGChunk		pChunk
+	) {
+		CSGGeonode aGeonode = new CSGGeonode( this.getName() + pChunk.mKey );
+		if ( mMaterial != null ) {
+			aGeonode.setMaterial( mMaterial );
+		}
+		aGeonode.forceSingleMaterial( mForceSingleMaterial );
+		aGeonode.setLodLevel( mLODLevel );
+		
+		// The cell always defers, but it is this node that applies the changes
+		aGeonode.deferSceneChanges( true );
+		aGeonode.mNotifyScheduler = false;
+		return( aGeonode );
+	}
+	/** Service routine that loads a cell's geonode with copies of its shapes, plus the
+	 	box that clips the product to the cell
+	 */
+	protected void loadChunk(
+		CSGChunk		pChunk
+	) {
+		CSGGeonode aGeonode = pChunk.mGeonode;
+		aGeonode.removeAllShapes();
+		for( int i = 0, j = pChunk.mShapes.size(); i < j; i += 1 ) {
+			CSGShape aShape = pChunk.mShapes.get( i );
+			aGeonode.addShape( aShape.copyDefinition( pChunk.mHome.get( i ).booleanValue() )
+								, aShape.getOperator() );
+		}
+		if ( pChunk.mCatchAll ) {
+			// Nothing to clip to
+			return;
+		}
+		BoundingBox cellBound = cellBound( pChunk );
+		CSGShape clipShape = new CSGShape( "Clip" + pChunk.mKey
+										, new CSGBox( cellBound.getXExtent()
+													, cellBound.getYExtent()
+													, cellBound.getZExtent() ) );
+		clipShape.setLocalTranslation( cellBound.getCenter() );
+		clipShape.setOrder( pChunk.mClipOrder );
+		aGeonode.addShape( clipShape, CSGOperator.INTERSECTION );
+	}
+
+	/** Support the persistence of this node */
+	@Override
+	public void write(
+		JmeExporter		pExporter
+	) throws IOException {
+		OutputCapsule aCapsule = pExporter.getCapsule( this );
+		super.write( pExporter );
+		
+        aCapsule.write( mForceSingleMaterial, "singleMaterial",  false );
+        aCapsule.write( mChunkSize, "chunkSize", sDefaultChunkSize );
+		aCapsule.writeSavableArrayList( (ArrayList<CSGShape>)mShapes, "shapes", null );
+	}
+	
+	@Override
+	public void read(
+		JmeImporter		pImporter
+	) throws IOException {
+		InputCapsule aCapsule = pImporter.getCapsule( this );
+		super.read( pImporter );
+		
+		// Rebuild the children from scratch based on "shapes"
+		this.children.clear();
+		mShapes = (List<CSGShape>)aCapsule.readSavableArrayList( "shapes", null );
+        mForceSingleMaterial = aCapsule.readBoolean( "singleMaterial",  false );
+        mChunkSize = ((Vector3f)aCapsule.readSavable( "chunkSize", sDefaultChunkSize )).clone();
+
+	    boolean doLater = aCapsule.readBoolean( "deferRegeneration", false );
+	    if ( doLater ) {
+	    	// No regeneration at this time
+	    	this.mRegenNS = 0;
+	    } else {
+	        try {
+	        	regenerate();
+	        } catch( CSGConstructionException ex ) {
+	        	// This error should already be registered with this element
+	        }
+			if ( !this.isValid() ) {
+				CSGEnvironment.sLogger.log( Level.WARNING, "Invalid ChunkedGeonode: " + this );
+			}
+	    }
+	}
+	
+	/////// Implement ConstructiveSolidGeometry
+	@Override
+	public StringBuilder getVersion(
+		StringBuilder	pBuffer
+	) {
+		return( CSGVersion.getVersion( this.getClass()
+										, sCSGChunkedGeonodeRevision
+										, sCSGChunkedGeonodeDate
+										, pBuffer ) );
+	}
+}
+
+/** Helper class that describes a single cell of the grid */
+class CSGChunk
+{
+	/** The key to the cell, based on its position in the grid */
+	protected String			mKey;
+	protected int				mX, mY, mZ;
+	/** The shapes that apply to this cell, in blending order */
+	protected List<CSGShape>	mShapes;
+	/** Is this cell the home of the corresponding shape (which gets its decorations) */
+	protected List<Boolean>		mHome;
+	/** Is this the catch-all cell for additions with no known bounds (which is never clipped) */
+	protected boolean			mCatchAll;
+	/** The order of the clipping box, which must follow every shape */
+	protected int				mClipOrder;
+	/** Hash of everything that goes into the cell */
+	protected long				mFingerprint;
+	/** The geonode that produces the cell */
+	protected CSGGeonode		mGeonode;
+	
+	CSGChunk(
+		String		pKey
+	,	int			pX
+	,	int			pY
+	,	int			pZ
+	,	int			pClipOrder
+	) {
+		mKey = pKey;
+		mX = pX;
+		mY = pY;
+		mZ = pZ;
+		mClipOrder = pClipOrder;
+		mShapes = new ArrayList<CSGShape>();
+		mHome = new ArrayList<Boolean>();
+	}
+	
+	void addShape(
+		CSGShape	pShape
+	,	boolean		pIsHome
+	) {
+		mShapes.add( pShape );
+		mHome.add( Boolean.valueOf( pIsHome ) );
+	}
+}
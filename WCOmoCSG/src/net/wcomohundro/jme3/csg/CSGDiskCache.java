@@ -0,0 +1,418 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+
+/** The blending of a large Geonode can take many seconds, and a typical application does
+ 	the very same blending every time it starts.  CSGDiskCache retains the final meshes of 
+ 	a Geonode in a file, keyed by a fingerprint of the Geonode definition and environment 
+ 	(see CSGShape.getFingerprint()), so that a warm start can skip the blending altogether.
+ 	
+ 	The meshes are saved as they come out of the blend, BEFORE any LOD, tangent, or 
+ 	compaction processing.  That keeps the file independent of those options, and the
+ 	processing is simply applied to the loaded meshes as usual.
+ 	
+ 	The file holds only the raw vertex data.  The Materials, lights, physics, and so on 
+ 	are live objects that come from the shapes themselves, so on a hit the shapes still 
+ 	register their mesh indices with the CSGMeshManager (without any blending).  Every 
+ 	saved mesh carries a description of its registration, which is matched against the 
+ 	fresh registrations.  Any registration that cannot be reproduced from one run to 
+ 	the next (a Material with no asset key, custom lights/physics/rendering) disqualifies 
+ 	the Geonode from the cache.
+ 	
+ 	The file format is a simple big-endian layout (as produced by DataOutputStream):
+ 		int		magic number
+ 		int		format version
+ 		long	key
+ 		int		count of shapes			}
+ 		int		operator sequence		} the cheap summary of the definition (see CSGResultCheck),
+ 		long	count of vertices		} which must match as well as the key
+ 		int		count of custom meshes (the generic mesh 0 is not counted)
+ 		mesh	the master mesh
+ 		{ string registration, mesh } for every index from 0 through the count
+ 	where a 'string' is an int byte count followed by UTF-8 bytes, and a 'mesh' is
+ 		int		vertex count
+ 		float[]	positions (3 per vertex), normals (3 per vertex), texcoords (2 per vertex)
+ 		int		index count
+ 		int[]	indices
+ 	Files are read via a memory map, and any file with a different magic/version/key 
+ 	is treated as a miss and is overwritten by the next store.  Change sFormatVersion
+ 	whenever the blending logic changes the result of a given definition.
+ 	
+ 	Caching is disabled until a directory is assigned.
+ */
+public class CSGDiskCache
+{
+	/** Version tracking support */
+	public static final String sCSGDiskCacheRevision="$Rev$";
+	public static final String sCSGDiskCacheDate="$Date$";
+
+	/** Marks the start of every cache file ('CSGC') */
+	public static final int sMagicNumber = 0x43534743;
+	/** The version of the file content */
+	public static final int sFormatVersion = 2;
+	/** The suffix of every cache file */
+	public static final String sFileSuffix = ".csgcache";
+	
+	/** All strings are saved as UTF-8 */
+	protected static final Charset sCharset = Charset.forName( "UTF-8" );
+	
+	/** Where the files live, where null disables the cache */
+	protected static File		sDirectory;
+	/** Simple statistics */
+	protected static long		sHitCount;
+	protected static long		sMissCount;
+	
+	
+	/** Accessor to the cache directory, where null disables caching altogether */
+	public static synchronized File getDirectory() { return sDirectory; }
+	public static synchronized void setDirectory(
+		File		pDirectory
+	) {
+		if ( (pDirectory != null) && !pDirectory.isDirectory() && !pDirectory.mkdirs() ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGDiskCache cannot use: " + pDirectory );
+			pDirectory = null;
+		}
+		sDirectory = pDirectory;
+	}
+	public static synchronized boolean isActive() { return( sDirectory != null ); }
+	
+	/** Accessors to the statistics */
+	public static synchronized long getHitCount() { return sHitCount; }
+	public static synchronized long getMissCount() { return sMissCount; }
+	
+	/** Build the key for a given definition fingerprint */
+	public static long createKey(
+		long		pDefinitionKey
+	) {
+		long aKey = CSGFingerprint.hash( CSGFingerprint.sBasis, sFormatVersion );
+		aKey = CSGFingerprint.hash( aKey, pDefinitionKey );
+		return( aKey );
+	}
+	
+	/** Load the meshes saved under the given key into the given manager, whose indices
+	 	have already been registered.  
+	 	@return - true if the meshes were loaded, false on any miss (in which case the 
+	 			  manager is left untouched)
+	 */
+	static boolean load(
+		long				pKey
+	,	CSGResultCheck		pCheck
+	,	CSGMeshManager		pMeshManager
+	,	String				pMasterName
+	) {
+		File aFile = resolveFile( pKey );
+		if ( (aFile == null) || !aFile.isFile() ) {
+			recordLoad( false );
+			return( false );
+		}
+		try {
+			ByteBuffer aBuffer = mapFile( aFile );
+			if ( (aBuffer.getInt() != sMagicNumber) 
+			|| (aBuffer.getInt() != sFormatVersion) 
+			|| (aBuffer.getLong() != pKey) ) {
+				// Something stale, which will be replaced by the next store
+				recordLoad( false );
+				return( false );
+			}
+			CSGResultCheck aCheck 
+				= new CSGResultCheck( aBuffer.getInt(), aBuffer.getInt(), aBuffer.getLong() );
+			if ( !aCheck.equals( pCheck ) ) {
+				// Same fingerprint, different definition
+				recordLoad( false );
+				return( false );
+			}
+			// Every saved registration must match up with a live one
+			Map<String,Integer> liveIndices = pMeshManager.getStableSignatures();
+			int meshCount = aBuffer.getInt();
+			if ( (liveIndices == null) || (meshCount > pMeshManager.getMeshCount()) ) {
+				recordLoad( false );
+				return( false );
+			}
+			Mesh masterMesh = readMesh( aBuffer );
+			Map<Integer,Mesh> meshMap = new HashMap<Integer,Mesh>( (meshCount + 1) * 2 );
+			for( int i = 0; i <= meshCount; i += 1 ) {
+				String aSignature = readString( aBuffer );
+				Mesh aMesh = readMesh( aBuffer );
+				Integer anIndex = liveIndices.get( aSignature );
+				if ( (anIndex == null) || meshMap.containsKey( anIndex ) ) {
+					// The registrations have changed
+					recordLoad( false );
+					return( false );
+				}
+				meshMap.put( anIndex, aMesh );
+			}
+			// Everything checks out, so the meshes are good to go
+			pMeshManager.registerMasterMesh( masterMesh, pMasterName );
+			for( Map.Entry<Integer,Mesh> anEntry : meshMap.entrySet() ) {
+				pMeshManager.registerMesh( anEntry.getValue(), anEntry.getKey() );
+			}
+			recordLoad( true );
+			return( true );
+			
+		} catch( IOException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGDiskCache failed to read: " + aFile, ex );
+		} catch( BufferUnderflowException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGDiskCache truncated file: " + aFile );
+		} catch( IllegalArgumentException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGDiskCache corrupt file: " + aFile, ex );
+		}
+		recordLoad( false );
+		return( false );
+	}
+	
+	/** Save the meshes of the given manager under the given key.  Nothing is saved if the 
+	 	registrations could not be reproduced on a later run.
+	 	@return - true if the file was written
+	 */
+	static boolean store(
+		long				pKey
+	,	CSGResultCheck		pCheck
+	,	CSGMeshManager		pMeshManager
+	) {
+		File aFile = resolveFile( pKey );
+		if ( aFile == null ) {
+			return( false );
+		}
+		if ( pMeshManager.getStableSignatures() == null ) {
+			// Not something we can match up later
+			return( false );
+		}
+		int meshCount = pMeshManager.getMeshCount();
+		File tempFile = null;
+		try {
+			// Write to a temporary file and move it into place, so that a concurrent
+			// load never sees a partial file
+			tempFile = File.createTempFile( "csg", ".tmp", aFile.getParentFile() );
+			DataOutputStream aStream 
+				= new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ), 64 * 1024 ) );
+			try {
+				aStream.writeInt( sMagicNumber );
+				aStream.writeInt( sFormatVersion );
+				aStream.writeLong( pKey );
+				aStream.writeInt( pCheck.mShapeCount );
+				aStream.writeInt( pCheck.mOperators );
+				aStream.writeLong( pCheck.mVertexCount );
+				aStream.writeInt( meshCount );
+				writeMesh( aStream, pMeshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex ) );
+				for( int i = 0; i <= meshCount; i += 1 ) {
+					Integer anIndex = new Integer( i );
+					writeString( aStream, pMeshManager.getStableSignature( anIndex ) );
+					writeMesh( aStream, pMeshManager.resolveMesh( anIndex ) );
+				}
+			} finally {
+				aStream.close();
+			}
+			aFile.delete();
+			if ( tempFile.renameTo( aFile ) ) {
+				tempFile = null;
+				return( true );
+			}
+		} catch( IOException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGDiskCache failed to write: " + aFile, ex );
+		} finally {
+			if ( tempFile != null ) {
+				tempFile.delete();
+			}
+		}
+		return( false );
+	}
+	
+	/** Discard every cache file */
+	public static synchronized void clear(
+	) {
+		if ( sDirectory != null ) {
+			File[] fileList = sDirectory.listFiles();
+			if ( fileList != null ) {
+				for( File aFile : fileList ) {
+					if ( aFile.getName().endsWith( sFileSuffix ) ) {
+						aFile.delete();
+					}
+				}
+			}
+		}
+		sHitCount = sMissCount = 0;
+	}
+	
+	/** Service routine to select the file for a given key */
+	protected static File resolveFile(
+		long		pKey
+	) {
+		File aDirectory = getDirectory();
+		if ( aDirectory == null ) {
+			return( null );
+		}
+		String aName = Long.toHexString( pKey );
+		return( new File( aDirectory, "0000000000000000".substring( aName.length() ) + aName + sFileSuffix ) );
+	}
+	
+	/** Service routine to track the statistics */
+	protected static synchronized void recordLoad(
+		boolean		pHit
+	) {
+		if ( pHit ) sHitCount += 1; else sMissCount += 1;
+	}
+	
+	/** Service routine to map the full content of a file */
+	protected static ByteBuffer mapFile(
+		File		pFile
+	) throws IOException {
+		RandomAccessFile aFile = new RandomAccessFile( pFile, "r" );
+		try {
+			// NOTE that the mapping remains valid after the file is closed
+			FileChannel aChannel = aFile.getChannel();
+			return( aChannel.map( FileChannel.MapMode.READ_ONLY, 0, aChannel.size() ) );
+		} finally {
+			aFile.close();
+		}
+	}
+	
+	/** Service routines to write/read a string */
+	protected static void writeString(
+		DataOutputStream	pStream
+	,	String				pString
+	) throws IOException {
+		byte[] someBytes = pString.getBytes( sCharset );
+		pStream.writeInt( someBytes.length );
+		pStream.write( someBytes );
+	}
+	protected static String readString(
+		ByteBuffer			pBuffer
+	) {
+		int byteCount = pBuffer.getInt();
+		if ( (byteCount < 0) || (byteCount > pBuffer.remaining()) ) {
+			throw new IllegalArgumentException( "Invalid string length: " + byteCount );
+		}
+		byte[] someBytes = new byte[ byteCount ];
+		pBuffer.get( someBytes );
+		return( new String( someBytes, sCharset ) );
+	}
+	
+	/** Service routines to write/read a mesh */
+	protected static void writeMesh(
+		DataOutputStream	pStream
+	,	Mesh				pMesh
+	) throws IOException {
+		FloatBuffer positions = (pMesh == null) ? null : pMesh.getFloatBuffer( Type.Position );
+		int vertexCount = (positions == null) ? 0 : positions.limit() / 3;
+		pStream.writeInt( vertexCount );
+		if ( vertexCount > 0 ) {
+			writeFloats( pStream, positions, vertexCount * 3 );
+			writeFloats( pStream, pMesh.getFloatBuffer( Type.Normal ), vertexCount * 3 );
+			writeFloats( pStream, pMesh.getFloatBuffer( Type.TexCoord ), vertexCount * 2 );
+		}
+		IndexBuffer indices = (vertexCount == 0) ? null : pMesh.getIndexBuffer();
+		int indexCount = (indices == null) ? 0 : indices.size();
+		pStream.writeInt( indexCount );
+		for( int i = 0; i < indexCount; i += 1 ) {
+			pStream.writeInt( indices.get( i ) );
+		}
+	}
+	protected static void writeFloats(
+		DataOutputStream	pStream
+	,	FloatBuffer			pBuffer
+	,	int					pCount
+	) throws IOException {
+		// A missing buffer is written as zeros, which keeps the layout fixed
+		int available = (pBuffer == null) ? 0 : Math.min( pCount, pBuffer.limit() );
+		for( int i = 0; i < pCount; i += 1 ) {
+			pStream.writeFloat( (i < available) ? pBuffer.get( i ) : 0.0f );
+		}
+	}
+	protected static Mesh readMesh(
+		ByteBuffer			pBuffer
+	) {
+		Mesh aMesh = new Mesh();
+		int vertexCount = pBuffer.getInt();
+		if ( (vertexCount < 0) || (vertexCount * 32L > pBuffer.remaining()) ) {
+			throw new IllegalArgumentException( "Invalid vertex count: " + vertexCount );
+		}
+		if ( vertexCount > 0 ) {
+			aMesh.setBuffer( Type.Position, 3, readFloats( pBuffer, vertexCount * 3 ) );
+			aMesh.setBuffer( Type.Normal, 3, readFloats( pBuffer, vertexCount * 3 ) );
+			aMesh.setBuffer( Type.TexCoord, 2, readFloats( pBuffer, vertexCount * 2 ) );
+		}
+		int indexCount = pBuffer.getInt();
+		if ( (indexCount < 0) || (indexCount * 4L > pBuffer.remaining()) ) {
+			throw new IllegalArgumentException( "Invalid index count: " + indexCount );
+		}
+		if ( indexCount > 0 ) {
+			// Match the index format chosen by CSGShape.createIndexBuffer()
+			IntBuffer source = pBuffer.asIntBuffer();
+			source.limit( indexCount );
+			if ( indexCount >= (Short.MAX_VALUE * 2) ) {
+				IntBuffer intBuffer = BufferUtils.createIntBuffer( indexCount );
+				intBuffer.put( source );
+				intBuffer.flip();
+				aMesh.setBuffer( Type.Index, 3, intBuffer );
+			} else {
+				ShortBuffer shortBuffer = BufferUtils.createShortBuffer( indexCount );
+				while( source.hasRemaining() ) {
+					shortBuffer.put( (short)source.get() );
+				}
+				shortBuffer.flip();
+				aMesh.setBuffer( Type.Index, 3, shortBuffer );
+			}
+			pBuffer.position( pBuffer.position() + indexCount * 4 );
+		}
+		aMesh.updateBound();
+		aMesh.updateCounts();
+		return( aMesh );
+	}
+	protected static FloatBuffer readFloats(
+		ByteBuffer			pBuffer
+	,	int					pCount
+	) {
+		// Bulk copy straight out of the mapped region
+		FloatBuffer source = pBuffer.asFloatBuffer();
+		source.limit( pCount );
+		FloatBuffer aBuffer = BufferUtils.createFloatBuffer( pCount );
+		aBuffer.put( source );
+		aBuffer.flip();
+		pBuffer.position( pBuffer.position() + pCount * 4 );
+		return( aBuffer );
+	}
+}
@@ -82,13 +82,22 @@ public class CSGEnvironment<ShapeProcessorT>
 	
 	/** Logger available to any CSG services that desire it */
     public static final Logger sLogger = Logger.getLogger( ConstructiveSolidGeometry.class.getName() );
+    
+    /** Operand level of detail that selects the coarsest level a mesh provides */
+    public static final int sCoarsestLOD = -1;
 
 	/** Standard configuration 
 	 	NOTE
 	 		we do NOT declare this global as 'final' so that the default can be dynamically
-	 		modified at run time
+	 		modified at run time.  resetEnvironment() installs a private snapshot of what it
+	 		is given, so later changes to the caller's instance cannot leak into a regeneration
+	 		running on some other thread.  (Every regeneration works with its own clone, bound 
+	 		to the element being regenerated.)  resolveEnvironment() with no arguments hands 
+	 		out the standard itself, so that it can be tuned in place.  Such a change is seen 
+	 		by every regeneration that starts afterward, but not by one already running.  Use 
+	 		resetEnvironment() to install a different standard all at once.
 	 */
-	protected static CSGEnvironment sStandardEnvironment = null;
+	protected static volatile CSGEnvironment sStandardEnvironment = null;
 	public static CSGEnvironment resolveEnvironment(
 	) {
 		return( resolveEnvironment( null, null ) );
@@ -97,19 +106,14 @@ public class CSGEnvironment<ShapeProcessorT>
 		CSGEnvironment	pEnvironment
 	,	CSGElement		pForSpatial
 	) {
-		if ( pEnvironment != null ) {
-			// Use environment provided
-			if ( sStandardEnvironment == null ) {
-				// First time initialization of the standard
-				sStandardEnvironment = pEnvironment.clone( null );
-			}
-		} else if ( sStandardEnvironment == null ) {
+		CSGEnvironment aStandard = sStandardEnvironment;
+		if ( aStandard == null ) {
 			// First time initialization of the standard
-			pEnvironment = new net.wcomohundro.jme3.csg.iob.CSGEnvironmentIOB();
-			sStandardEnvironment = pEnvironment;
-		} else {
+			aStandard = initializeStandard( pEnvironment );
+		}
+		if ( pEnvironment == null ) {
 			// Use the standard
-			pEnvironment = sStandardEnvironment;
+			pEnvironment = aStandard;
 		}
 		if ( pForSpatial != null ) {
 			if ( !pForSpatial.equals( pEnvironment.mShape ) ) {
@@ -122,7 +126,19 @@ public class CSGEnvironment<ShapeProcessorT>
 	public static void resetEnvironment(
 		CSGEnvironment	pEnvironment
 	) {
-		sStandardEnvironment = pEnvironment;
+		sStandardEnvironment = (pEnvironment == null) ? null : pEnvironment.clone( null );
+	}
+	/** Service routine to establish the standard exactly once, no matter how many threads 
+	 	ask for it at the same time
+	 */
+	protected static synchronized CSGEnvironment initializeStandard(
+		CSGEnvironment	pEnvironment
+	) {
+		if ( sStandardEnvironment == null ) {
+			sStandardEnvironment = (pEnvironment == null)
+				? new net.wcomohundro.jme3.csg.iob.CSGEnvironmentIOB() : pEnvironment.clone( null );
+		}
+		return( sStandardEnvironment );
 	}
 	
 	/** Clone a copy with a given spatial */
@@ -479,6 +495,16 @@ public class CSGEnvironment<ShapeProcessorT>
 	public boolean 		mDoublePrecision;
 	/** Control flag to apply 'shape' transform directly to mesh before blending */
 	public boolean		mPreTransform;
+	/** Control flag to prepare the operands of a group (including nested groups) in parallel */
+	public boolean		mParallelShapes;
+	/** Control flag to rework the sequence of operands for a cheaper blend */
+	public boolean		mOptimizeOperands;
+	/** Control flag to build a repeated group definition once, and place further copies by
+	 	transforming that product (see CSGResultCache.lookupDefinition()) */
+	public boolean		mMemoizeShapes;
+	/** Level of detail of the operand meshes to blend with: 0 for full detail, or
+	 	sCoarsestLOD for whatever is coarsest (see CSGRegenerationResult.submitTwoPhase()) */
+	public int			mOperandLOD;
 	
 	/** EPSILON - near to zero */
 	public double		mEpsilonNearZeroDbl;
@@ -499,6 +525,12 @@ public class CSGEnvironment<ShapeProcessorT>
 	/** Type of 'shape processor' to operate with */
 	public Class		mShapeClass;
 	
+	/** Explicit cancellation of the active processing (NOT persisted) */
+	public CSGCancelToken	mCancelToken;
+	/** Hold the product for applySceneChanges(), no matter what the spatial itself says 
+	 	(see CSGRegenerationResult.submit()) (NOT persisted) */
+	public boolean			mDeferSceneChanges;
+	
 	
 	/** Constructor based on the 'standards' */
 	protected CSGEnvironment(
@@ -543,6 +575,65 @@ public class CSGEnvironment<ShapeProcessorT>
 		mPreTransform = pPreTransform;
 	}
 	
+	/** Produce a hash of every setting that influences the result of a blend 
+	 	(see CSGFingerprint)
+	 */
+	public long getFingerprint(
+	) {
+		long aHash = CSGFingerprint.sBasis;
+		aHash = CSGFingerprint.hash( aHash, (Object)((mShapeClass == null) ? null : mShapeClass.getName()) );
+		aHash = CSGFingerprint.hash( aHash, mRationalizeValues );
+		aHash = CSGFingerprint.hash( aHash, mDoublePrecision );
+		aHash = CSGFingerprint.hash( aHash, mPreTransform );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonNearZeroDbl );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonNearZeroFlt );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonOnPlaneDbl );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonOnPlaneFlt );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonBetweenPointsDbl );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonBetweenPointsFlt );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonMaxPointPositionFlt );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonMaxPointTextureFlt );
+		aHash = CSGFingerprint.hash( aHash, mEpsilonMagnitudeRange );
+		aHash = CSGFingerprint.hash( aHash, mOperandLOD );
+		return( aHash );
+	}
+	
+	/** Select the level of detail to use when building the operand from the given mesh,
+	 	where 0 is the full detail of its standard index buffer
+	 */
+	public int resolveOperandLOD(
+		Mesh		pMesh
+	) {
+		int levelCount = pMesh.getNumLodLevels();
+		if ( (mOperandLOD == 0) || (levelCount <= 1) ) {
+			// Full detail is all there is
+			return( 0 );
+		}
+		if ( (mOperandLOD < 0) || (mOperandLOD >= levelCount) ) {
+			// The last level is the coarsest
+			return( levelCount - 1 );
+		}
+		return( mOperandLOD );
+	}
+	/** Is this environment blending with anything less than full detail */
+	public boolean isPreview(
+	) {
+		return( mOperandLOD != 0 );
+	}
+	
+	/** Check if the active processing should be abandoned, either due to an explicit
+	 	cancellation or an interrupt of the active thread.
+	 	NOTE use of .interrupted() (which clears the interrupted status) versus
+	 		 currentThread.isInterrupted()  (which leaves the interrupted status alone)
+	 */
+	public boolean isCancelled(
+	) {
+		if ( Thread.interrupted() ) {
+			return( true );
+		}
+		return( (mCancelToken != null) && mCancelToken.isCancelled() );
+	}
+	
 	/** Log a message */
 	public void log(
 		Level		pLogLevel
@@ -587,6 +678,10 @@ public class CSGEnvironment<ShapeProcessorT>
 		aCapsule.write( mRationalizeValues, "rationalizeValues", false );
 		aCapsule.write( mPreTransform, "preTransform", true );
 		aCapsule.write( mStructuralDebug, "structuralDebug", false );
+		aCapsule.write( mParallelShapes, "parallelShapes", false );
+		aCapsule.write( mOptimizeOperands, "optimizeOperands", false );
+		aCapsule.write( mMemoizeShapes, "memoizeShapes", false );
+		aCapsule.write( mOperandLOD, "operandLOD", 0 );
 	}
 	
 	@Override
@@ -598,6 +693,10 @@ public class CSGEnvironment<ShapeProcessorT>
 		mRationalizeValues = aCapsule.readBoolean( "rationalizeValues", false );
 		mPreTransform = aCapsule.readBoolean( "preTransform", true );
 		mStructuralDebug = aCapsule.readBoolean( "structuralDebug", DEBUG );
+		mParallelShapes = aCapsule.readBoolean( "parallelShapes", false );
+		mOptimizeOperands = aCapsule.readBoolean( "optimizeOperands", false );
+		mMemoizeShapes = aCapsule.readBoolean( "memoizeShapes", false );
+		mOperandLOD = aCapsule.readInt( "operandLOD", 0 );
 	}
 
 	/////// Implement ConstructiveSolidGeometry
@@ -0,0 +1,307 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.bullet.control.PhysicsControl;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.light.DirectionalLight;
+import com.jme3.light.Light;
+import com.jme3.light.PointLight;
+import com.jme3.light.SpotLight;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.texture.Texture;
+
+/** Service routines that build up a 64 bit FNV-1a style hash of the things that contribute
+ 	to a CSG result.  A fingerprint is used to decide if a prior result can be reused rather
+ 	than redoing the boolean operations.  
+ 	
+ 	A fingerprint is not a guarantee.  It is expected to change whenever the content changes,
+ 	but two different contents may produce the same fingerprint.  With 64 bits, I am willing 
+ 	to accept those odds.
+ */
+public class CSGFingerprint
+{
+	/** Version tracking support */
+	public static final String sCSGFingerprintRevision="$Rev$";
+	public static final String sCSGFingerprintDate="$Date$";
+
+	/** The standard starting point */
+	public static final long sBasis = 0xcbf29ce484222325L;
+	/** The standard multiplier */
+	public static final long sPrime = 0x100000001b3L;
+	
+	
+	/** Blend a simple value into the hash */
+	public static long hash(
+		long		pHash
+	,	long		pValue
+	) {
+		return( (pHash ^ pValue) * sPrime );
+	}
+	public static long hash(
+		long		pHash
+	,	float		pValue
+	) {
+		return( hash( pHash, Float.floatToIntBits( pValue ) ) );
+	}
+	public static long hash(
+		long		pHash
+	,	double		pValue
+	) {
+		return( hash( pHash, Double.doubleToLongBits( pValue ) ) );
+	}
+	public static long hash(
+		long		pHash
+	,	boolean		pValue
+	) {
+		return( hash( pHash, (pValue) ? 1L : 2L ) );
+	}
+	/** Blend a String/Enum/etc into the hash, based on its .hashCode() 
+	 	(or its name for an Enum, whose .hashCode() changes from run to run)
+	 */
+	public static long hash(
+		long		pHash
+	,	Object		pValue
+	) {
+		if ( pValue == null ) {
+			return( hash( pHash, 0L ) );
+		} else if ( pValue instanceof Enum ) {
+			return( hash( pHash, ((Enum)pValue).name().hashCode() ) );
+		} else {
+			return( hash( pHash, pValue.hashCode() ) );
+		}
+	}
+	/** Blend an object into the hash, based on its identity */
+	public static long hashIdentity(
+		long		pHash
+	,	Object		pValue
+	) {
+		return( hash( pHash, (pValue == null) ? 0L : System.identityHashCode( pValue ) ) );
+	}
+	
+	/** Blend a texture coordinate/scale into the hash */
+	public static long hash(
+		long		pHash
+	,	Vector2f	pVector
+	) {
+		if ( pVector == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		return( hash( hash( pHash, pVector.x ), pVector.y ) );
+	}
+	
+	/** Blend a Transform into the hash */
+	public static long hash(
+		long		pHash
+	,	Transform	pTransform
+	) {
+		if ( pTransform == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		Vector3f aVector = pTransform.getTranslation();
+		pHash = hash( hash( hash( pHash, aVector.x ), aVector.y ), aVector.z );
+		Quaternion aRotation = pTransform.getRotation();
+		pHash = hash( hash( hash( hash( pHash, aRotation.getX() ), aRotation.getY() ), aRotation.getZ() ), aRotation.getW() );
+		aVector = pTransform.getScale();
+		pHash = hash( hash( hash( pHash, aVector.x ), aVector.y ), aVector.z );
+		return( pHash );
+	}
+	
+	/** Blend a Material into the hash.  A Material is known by its definition, its asset
+	 	name (if any) and the value of every parameter, so that an equivalent Material 
+	 	matches no matter where it came from, and two keyless Materials only match when
+	 	they really are the same.
+	 */
+	public static long hash(
+		long		pHash
+	,	Material	pMaterial
+	) {
+		if ( pMaterial == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		if ( pMaterial.getMaterialDef() != null ) {
+			pHash = hash( pHash, (Object)pMaterial.getMaterialDef().getAssetName() );
+		}
+		pHash = hash( pHash, (Object)((pMaterial.getKey() == null) ? null : pMaterial.getKey().getName()) );
+		pHash = hash( pHash, pMaterial.isTransparent() );
+		pHash = hash( pHash, pMaterial.isReceivesShadows() );
+		pHash = hash( pHash, pMaterial.getAdditionalRenderState().contentHashCode() );
+		
+		// Parameter order is a matter of history, so go by name
+		List<MatParam> aParamList = new ArrayList<MatParam>( pMaterial.getParams() );
+		Collections.sort( aParamList, new Comparator<MatParam>() {
+			public int compare( MatParam pOne, MatParam pTwo ) {
+				return( pOne.getName().compareTo( pTwo.getName() ) );
+			}
+		});
+		for( MatParam aParam : aParamList ) {
+			pHash = hash( pHash, (Object)aParam.getName() );
+			pHash = hash( pHash, aParam.getVarType() );
+			Object aValue = aParam.getValue();
+			if ( aValue instanceof Texture ) {
+				// A Texture is known by its asset and how it is sampled
+				Texture aTexture = (Texture)aValue;
+				if ( aTexture.getKey() != null ) {
+					pHash = hash( pHash, (Object)aTexture.getKey().getName() );
+				} else {
+					pHash = hashIdentity( pHash, aTexture.getImage() );
+				}
+				pHash = hash( pHash, aTexture.getMinFilter() );
+				pHash = hash( pHash, aTexture.getMagFilter() );
+				pHash = hash( pHash, aTexture.getWrap( Texture.WrapAxis.S ) );
+				pHash = hash( pHash, aTexture.getWrap( Texture.WrapAxis.T ) );
+			} else {
+				// Numbers, vectors, colors and matrices all hash by value
+				pHash = hash( pHash, aValue );
+			}
+		}
+		return( pHash );
+	}
+	
+	/** Blend a Light into the hash, based on its settings */
+	public static long hash(
+		long		pHash
+	,	Light		pLight
+	) {
+		if ( pLight == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		pHash = hash( pHash, (Object)pLight.getClass().getName() );
+		pHash = hash( pHash, (Object)pLight.getName() );
+		pHash = hash( pHash, (Object)pLight.getColor() );
+		pHash = hash( pHash, pLight.isEnabled() );
+		if ( pLight instanceof PointLight ) {
+			PointLight aLight = (PointLight)pLight;
+			pHash = hash( pHash, (Object)aLight.getPosition() );
+			pHash = hash( pHash, aLight.getRadius() );
+		} else if ( pLight instanceof SpotLight ) {
+			SpotLight aLight = (SpotLight)pLight;
+			pHash = hash( pHash, (Object)aLight.getPosition() );
+			pHash = hash( pHash, (Object)aLight.getDirection() );
+			pHash = hash( pHash, aLight.getSpotRange() );
+			pHash = hash( pHash, aLight.getSpotInnerAngle() );
+			pHash = hash( pHash, aLight.getSpotOuterAngle() );
+		} else if ( pLight instanceof DirectionalLight ) {
+			pHash = hash( pHash, (Object)((DirectionalLight)pLight).getDirection() );
+		}
+		return( pHash );
+	}
+	
+	/** Blend Physics into the hash, based on its settings */
+	public static long hash(
+		long			pHash
+	,	PhysicsControl	pPhysics
+	) {
+		if ( pPhysics == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		pHash = hash( pHash, (Object)pPhysics.getClass().getName() );
+		if ( pPhysics instanceof PhysicsCollisionObject ) {
+			PhysicsCollisionObject anObject = (PhysicsCollisionObject)pPhysics;
+			pHash = hash( pHash, anObject.getCollisionGroup() );
+			pHash = hash( pHash, anObject.getCollideWithGroups() );
+			if ( anObject.getCollisionShape() != null ) {
+				pHash = hash( pHash, (Object)anObject.getCollisionShape().getClass().getName() );
+				pHash = hash( pHash, (Object)anObject.getCollisionShape().getScale() );
+			}
+		}
+		if ( pPhysics instanceof PhysicsRigidBody ) {
+			PhysicsRigidBody aBody = (PhysicsRigidBody)pPhysics;
+			pHash = hash( pHash, aBody.getMass() );
+			pHash = hash( pHash, aBody.getFriction() );
+			pHash = hash( pHash, aBody.getRestitution() );
+			pHash = hash( pHash, aBody.isKinematic() );
+		}
+		return( pHash );
+	}
+	
+	/** Blend the geometric content of a Mesh into the hash */
+	public static long hash(
+		long		pHash
+	,	Mesh		pMesh
+	) {
+		if ( pMesh == null ) {
+			return( hash( pHash, 0L ) );
+		}
+		pHash = hash( pHash, pMesh.getBuffer( Type.Position ) );
+		pHash = hash( pHash, pMesh.getBuffer( Type.Normal ) );
+		pHash = hash( pHash, pMesh.getBuffer( Type.TexCoord ) );
+		pHash = hash( pHash, pMesh.getBuffer( Type.Index ) );
+		return( pHash );
+	}
+	/** Blend the content of a buffer into the hash */
+	public static long hash(
+		long			pHash
+	,	VertexBuffer	pBuffer
+	) {
+		if ( pBuffer == null ) {
+			return( pHash * sPrime );
+		}
+		Buffer aBuffer = pBuffer.getData();
+		int limit = aBuffer.limit();
+		pHash = hash( pHash, limit );
+		if ( aBuffer instanceof FloatBuffer ) {
+			FloatBuffer floatBuffer = (FloatBuffer)aBuffer;
+			for( int i = 0; i < limit; i += 1 ) {
+				pHash = (pHash ^ Float.floatToIntBits( floatBuffer.get( i ) )) * sPrime;
+			}
+		} else if ( aBuffer instanceof ShortBuffer ) {
+			ShortBuffer shortBuffer = (ShortBuffer)aBuffer;
+			for( int i = 0; i < limit; i += 1 ) {
+				pHash = (pHash ^ shortBuffer.get( i )) * sPrime;
+			}
+		} else if ( aBuffer instanceof IntBuffer ) {
+			IntBuffer intBuffer = (IntBuffer)aBuffer;
+			for( int i = 0; i < limit; i += 1 ) {
+				pHash = (pHash ^ intBuffer.get( i )) * sPrime;
+			}
+		} else if ( aBuffer instanceof ByteBuffer ) {
+			ByteBuffer byteBuffer = (ByteBuffer)aBuffer;
+			for( int i = 0; i < limit; i += 1 ) {
+				pHash = (pHash ^ byteBuffer.get( i )) * sPrime;
+			}
+		}
+		return( pHash );
+	}
+}
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.HashMap;
 import java.util.Queue;
 import java.util.logging.Level;
@@ -387,6 +388,17 @@ public class CSGGeometry
 	@Override
 	public void deferSceneChanges( boolean pFlag ) { mDeferSceneChanges = pFlag; }
 	@Override
+	public boolean isDeferringSceneChanges() { return mDeferSceneChanges; }
+	
+	/** Regenerate in the background */
+	@Override
+	public Future<CSGRegenerationResult> regenerateAsync(
+		CSGEnvironment		pEnvironment
+	,	CSGCancelToken		pCancelToken
+	) {
+		return( CSGRegenerationResult.submit( this, pEnvironment, pCancelToken ) );
+	}
+	@Override
 	public synchronized boolean applySceneChanges(
 	) {
 		if ( mMeshManager != null ) {
@@ -512,9 +524,12 @@ public class CSGGeometry
 
 					// Return the final shape
 					setError( mActiveProduct.getError() );
-					if ( mDeferSceneChanges ) synchronized( this ) {
-						// Update the scene later
-						mMeshManager = meshManager;
+					if ( mDeferSceneChanges || pEnvironment.mDeferSceneChanges ) {
+						synchronized( this ) {
+							// Update the scene later
+							mMeshManager = meshManager;
+						}
+						CSGSceneChangeScheduler.notifyPending( this );
 					} else {
 						// Update the scene NOW
 						applySceneChanges( meshManager );
@@ -35,7 +35,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Queue;
 import java.util.logging.Level;
 
@@ -75,7 +78,6 @@ import com.jme3.scene.control.Control;
 import com.jme3.scene.control.LightControl;
 import com.jme3.texture.Texture;
 import com.jme3.util.SafeArrayList;
-import com.jme3.util.TangentBinormalGenerator;
 import com.jme3.util.TempVars;
 
 /**  Constructive Solid Geometry (CSG)
@@ -116,11 +118,45 @@ public class CSGGeonode
 	/** Management of the generated meshes */
 	protected CSGMeshManager	mMeshManager;
 	protected boolean			mDeferSceneChanges;
+	/** Control flag to notify the CSGSceneChangeScheduler of deferred changes, which is cleared
+	 	when some owning element (like CSGChunkedGeonode) applies the changes itself */
+	protected boolean			mNotifyScheduler = true;
+	/** The master geometry produced by a deferred regeneration, waiting for applySceneChanges() */
+	protected CSGGeometry		mPendingMaster;
 	protected CSGShape			mPriorResult;
-	/** Active tracking of the shape being worked on for status processing */
-	protected CSGShape 			mActiveProduct;
+	/** The manager of the meshes behind the prior result, retained for carveShape() */
+	protected CSGMeshManager	mProductMeshManager;
+	/** A state restored by restoreState(), waiting for applySceneChanges() */
+	protected CSGProductState	mPendingState;
+	/** The state last captured (or restored), along with the product it stands for, so 
+	 	that an unchanged product is not copied into yet another state */
+	protected CSGProductState	mCapturedState;
+	protected CSGShape			mCapturedProduct;
+	/** The sliced regeneration currently underway (if any), which owns the product
+	 	being worked on */
+	protected CSGSlicedRegeneration	mActiveRegeneration;
 	/** TangetBinormal generation control flag */
 	protected boolean			mGenerateTangentBinormal;
+	/** Tangent generation is retained across regenerations so prior results can be reused */
+	protected CSGTangentGenerator	mTangentGenerator;
+	/** The LOD generation values applied to the final product */
+	protected float[]			mLODFactors;
+	/** How Materials are shared by the generated Geometries */
+	protected CSGMeshManager.MaterialSharing	mMaterialSharing;
+	/** Control flag to blend sub-meshes that differ only in their physics */
+	protected boolean			mMergePhysicsMeshes;
+	/** Control flags for compact vertex formats in the generated sub-meshes */
+	protected boolean			mCompactVertices;
+	protected boolean			mCompactPositions;
+	/** Control flag to retain the product of every step for incremental regeneration */
+	protected boolean			mIncrementalRegeneration;
+	protected List<CSGRegenerationStep>	mRegenerationSteps;
+	/** Control flag to save/load the final meshes via the CSGDiskCache */
+	protected boolean			mDiskCaching;
+	/** Control flag to regenerate within a CSGProcessPool worker */
+	protected boolean			mRemoteRegeneration;
+	/** Control flag to blend locally when a worker cannot handle this geonode */
+	protected boolean			mRemoteFallback;
 
 	
 	/** Basic null constructor */
@@ -149,6 +185,9 @@ public class CSGGeonode
     	// I am going to assume that any clone will still be regenerated
     	// and the MasterGeometry will be rebuilt
     	//aCopy.mMasterGeometry = null;
+    	
+    	// The copy builds up its own incremental steps
+    	aCopy.mRegenerationSteps = null;
     	return( aCopy );
     }
 
@@ -166,9 +205,10 @@ public class CSGGeonode
 		// Where are we in the process?
 		if ( mRegenNS < 0 ) {
 			// Work in progress
-			if ( mActiveProduct != null ) {
+			CSGShape aProduct = getActiveProduct();
+			if ( aProduct != null ) {
 				pBuffer.append( "[" );
-				mActiveProduct.reportStatus( pBuffer, pBriefly );
+				aProduct.reportStatus( pBuffer, pBriefly );
 				pBuffer.append( "]" );
 			}
 		} else {
@@ -186,12 +226,29 @@ public class CSGGeonode
 	@Override
 	public synchronized int getProgress(
 	) {
-		return( (mActiveProduct == null) ? 0 : mActiveProduct.getProgress() );
+		CSGShape aProduct = getActiveProduct();
+		return( (aProduct == null) ? 0 : aProduct.getProgress() );
+	}
+	/** Service routine to find the product being worked on (if any) */
+	protected synchronized CSGShape getActiveProduct(
+	) {
+		return( (mActiveRegeneration == null) ? null : mActiveRegeneration.mActiveProduct );
+	}
+	/** Fraction complete and predicted time remaining of the regeneration in progress 
+	 	(null if none)
+	 */
+	public CSGProgressEstimate getProgressEstimate(
+	) {
+		CSGSlicedRegeneration aRegeneration = getActiveRegeneration();
+		return( (aRegeneration == null) ? null : aRegeneration.getEstimate() );
 	}
 
 	/** Access to the MasterGeometry that defines the overall shape */
 	public CSGGeometry getMasterGeometry() { return mMasterGeometry; }
 	
+	/** Access to the manager of the meshes behind the current product (null if none) */
+	public CSGMeshManager getProductMeshManager() { return mProductMeshManager; }
+	
 	/** Access to the single material control */
 	@Override
 	public void forceSingleMaterial( boolean pFlag ) { mForceSingleMaterial = pFlag; }
@@ -199,6 +256,83 @@ public class CSGGeonode
 	/** Accessor to the TangentBinormal generation flag */
 	public boolean getGenerateTangentBinormal() { return mGenerateTangentBinormal; }
 	public void setGenerateTangentBinormal( boolean pFlag ) { mGenerateTangentBinormal = pFlag; }
+	
+	/** Accessor to the generator of the tangents, which is retained across regenerations */
+	public synchronized CSGTangentGenerator getTangentGenerator(
+	) {
+		if ( mTangentGenerator == null ) {
+			mTangentGenerator = new CSGTangentGenerator();
+		}
+		return( mTangentGenerator );
+	}
+	
+	/** Accessor to the LOD factors, which take effect on the next regeneration */
+	public float[] getLODFactors() { return mLODFactors; }
+	public void setLODFactors( float[] pLODFactors ) { mLODFactors = pLODFactors; }
+	
+	/** Accessor to the Material sharing controls, which take effect on the next regeneration */
+	public CSGMeshManager.MaterialSharing getMaterialSharing() { return mMaterialSharing; }
+	public void setMaterialSharing(
+		CSGMeshManager.MaterialSharing	pSharing
+	,	boolean							pMergePhysicsMeshes
+	) {
+		mMaterialSharing = pSharing;
+		mMergePhysicsMeshes = pMergePhysicsMeshes;
+	}
+	
+	/** Accessor to the compact vertex controls, which take effect on the next regeneration.
+	 	NOTE that quantized positions are only suitable for meshes that are never picked or
+	 		 otherwise examined on the CPU side.  A quantized mesh carries an explicit bound,
+	 		 cannot use updateBound(), collision shapes, LOD or tangent generation (see
+	 		 CSGMeshCompactor for the complete list).
+	 */
+	public boolean getCompactVertices() { return mCompactVertices; }
+	public void setCompactVertices(
+		boolean		pCompactVertices
+	,	boolean		pCompactPositions
+	) {
+		mCompactVertices = pCompactVertices;
+		mCompactPositions = pCompactPositions;
+	}
+	
+	/** Accessor to the incremental regeneration control.  When active, the product of every 
+	 	blending step is retained, and regeneration resumes from the first shape that has
+	 	changed.  This trades memory for speed when editing a long list of shapes.
+	 */
+	public boolean getIncrementalRegeneration() { return mIncrementalRegeneration; }
+	public void setIncrementalRegeneration(
+		boolean		pFlag
+	) {
+		mIncrementalRegeneration = pFlag;
+		if ( !pFlag ) {
+			// Release whatever has been retained
+			mRegenerationSteps = null;
+		}
+	}
+	
+	/** Accessor to the disk caching control.  When active (and the CSGDiskCache has been
+	 	assigned a directory), the final meshes are saved to disk, and a later regeneration 
+	 	of the same definition loads them rather than blending.  NOTE that the product
+	 	returned by regenerate() after such a load is an empty shape, since no blending 
+	 	took place.
+	 */
+	public boolean getDiskCaching() { return mDiskCaching; }
+	public void setDiskCaching( boolean pFlag ) { mDiskCaching = pFlag; }
+	
+	/** Accessor to the remote regeneration control.  When active (and the CSGProcessPool 
+	 	has been configured), the blending and mesh processing is done by a separate worker
+	 	process, which shields this process from a runaway blend.  NOTE that, as with the
+	 	disk cache, the product returned by regenerate() is then an empty shape.
+	 */
+	public boolean getRemoteRegeneration() { return mRemoteRegeneration; }
+	public void setRemoteRegeneration( boolean pFlag ) { mRemoteRegeneration = pFlag; }
+	
+	/** Accessor to the remote fallback control.  A geonode whose mesh registrations cannot
+	 	be matched up with what a worker produces (see CSGProcessPool) fails to regenerate,
+	 	unless this fallback is active, in which case it is blended locally instead.
+	 */
+	public boolean getRemoteFallback() { return mRemoteFallback; }
+	public void setRemoteFallback( boolean pFlag ) { mRemoteFallback = pFlag; }
 
     /** If physics is active for the shape, connect it all up now */
     @Override
@@ -279,20 +413,63 @@ public class CSGGeonode
     	int		pLODLevel
     ) {
     	mLODLevel = pLODLevel;
+    	applyLodLevel();
+    }
+    /** Service routine that pushes the active LOD level down into the generated geometries.
+     	Not every mesh will have the same number of levels (small meshes are not simplified
+     	at all), so the level is limited to what any given mesh actually supports.
+     */
+    protected void applyLodLevel(
+    ) {
+    	this.depthFirstTraversal( new SceneGraphVisitor() {
+    		public void visit(
+    			Spatial		pSpatial
+    		) {
+    			if ( pSpatial instanceof Geometry ) {
+    				Geometry aGeometry = (Geometry)pSpatial;
+    				int levelCount = (aGeometry.getMesh() == null) ? 0 : aGeometry.getMesh().getNumLodLevels();
+    				if ( levelCount > 0 ) {
+    					aGeometry.setLodLevel( Math.min( mLODLevel, levelCount - 1 ) );
+    				}
+    			}
+    		}
+    	});
     }
 
 	/** Control when the scene changes are applied */
 	@Override
 	public void deferSceneChanges( boolean pFlag ) { mDeferSceneChanges = pFlag; }
 	@Override
+	public boolean isDeferringSceneChanges() { return mDeferSceneChanges; }
+	
+	/** Regenerate in the background */
+	@Override
+	public Future<CSGRegenerationResult> regenerateAsync(
+		CSGEnvironment		pEnvironment
+	,	CSGCancelToken		pCancelToken
+	) {
+		return( CSGRegenerationResult.submit( this, pEnvironment, pCancelToken ) );
+	}
+	@Override
 	public synchronized boolean applySceneChanges(
 	) {
-		if ( mMeshManager != null ) {
+		if ( mPendingState != null ) {
+			// Swap in a restored state
+			applyState( mPendingState );
+			mPendingState = null;
+			return( true );
+		} else if ( mMeshManager != null ) {
+			// Swap in the new master, which means the prior result has been rendering
+			// right up until now
+			if ( mPendingMaster != null ) {
+				mMasterGeometry = mPendingMaster;
+			}
 			// Apply the previously generated changes
 			applySceneChanges( mMeshManager );
 			
 			// Any deferred changes are complete now
 			mMeshManager = null;
+			mPendingMaster = null;
 			return( true );
 		} else {
 			return( false );
@@ -313,17 +490,21 @@ public class CSGGeonode
 			for( Spatial aSpatial : pMeshManager.getSpatials( this.getName(), mLightControl ) ) {
 				this.attachChild( aSpatial );
 			}
+			if ( mGenerateTangentBinormal ) {
+				// The decorations (and any merged meshes) are not held by the manager, 
+				// so they were not covered as part of the regeneration
+				getTangentGenerator().generateOthers( this, pMeshManager );
+			}
 			// NOTE that we only attach the independent child meshes, not the master itself
 			//	This means we could have positioning issues if the CSGGeonode moves and we 
 			//	then use mMasterGeometry for other processing, like collision detection
 		}
-		if ( this.isValid() ) {
-	        // TangentBinormalGenerator directive
-	        if ( mGenerateTangentBinormal ) {
-	        	// The Generator understands working the children of a Node
-	        	TangentBinormalGenerator.generate( this );
-	        }
+		if ( (mLODFactors != null) && (mLODLevel > 0) ) {
+			// Retain the level already in force
+			applyLodLevel();
 		}
+		// NOTE that any TangentBinormal generation has already been done as part of
+		//		the regeneration, so there is nothing more to do on the scene thread
 	}
 	
 	/** Accept the given mesh as the master, mimics .setMesh() from Geometry */
@@ -331,15 +512,20 @@ public class CSGGeonode
 		Mesh		pMesh
 	) {
 		// The master geometry holds the given mesh
-		mMasterGeometry = new CSGGeometry( this.getName(), pMesh );
+		CSGGeometry aMaster = new CSGGeometry( this.getName(), pMesh );
 		
 		// Nodes do not really have a material, so let the master geometry commandeer it
-		mMasterGeometry.setMaterial( mMaterial );
+		aMaster.setMaterial( mMaterial );
 
 		// Attach the master into the scene at the appropriate time
 		if ( mDeferSceneChanges ) {
-			mMeshManager = new CSGMeshManager( this, mForceSingleMaterial );
+			synchronized( this ) {
+				mPendingMaster = aMaster;
+				mMeshManager = new CSGMeshManager( this, mForceSingleMaterial );
+			}
+			notifySceneChanges();
 		} else {
+			mMasterGeometry = aMaster;
 			this.attachChild( mMasterGeometry );
 		}
 	}
@@ -353,134 +539,671 @@ public class CSGGeonode
 		if ( pOnlyIfNeeded && (mRegenNS > 0) ) {
 			// Regeneration already complete
 			return( mPriorResult );
-		} else {
-			// Force regeneration from scratch
-			mRegenNS = 0;
-			mPriorResult = null;
 		}
+		// Run through every step without a break
+		CSGSlicedRegeneration aRegeneration = beginRegeneration( pEnvironment );
+		while( !aRegeneration.advance( Long.MAX_VALUE ) ) {
+			// Waiting on a CSGProcessPool worker
+			aRegeneration.awaitWorker( CSGProcessPool.sWatchdogInterval );
+		}
+		return( aRegeneration.getProduct() );
+	}
+	
+	/** Start a regeneration that is worked through in slices, where each call to advance()
+	 	does no more than fits within its time budget.  This lets an application drive the
+	 	regeneration from its update loop without a visible hitch in the frame rate.
+	 	Starting a new regeneration abandons any earlier one that is still in progress.
+	 */
+	public CSGSlicedRegeneration beginRegeneration(
+		CSGEnvironment		pEnvironment
+	) {
+		// Force regeneration from scratch
+		mRegenNS = 0;
+		mPriorResult = null;
 		pEnvironment = CSGEnvironment.resolveEnvironment( (pEnvironment == null) ? mEnvironment : pEnvironment, this );
-		if ( (mShapes != null) && !mShapes.isEmpty() ) {
-			// Time the construction operation
-			mRegenNS = -1;
-			long startTimer = System.nanoTime();
+		
+		CSGSlicedRegeneration aRegeneration = new CSGSlicedRegeneration( this, pEnvironment );
+		synchronized( this ) {
+			mActiveRegeneration = aRegeneration;
+		}
+		return( aRegeneration );
+	}
+	/** Accessor to the regeneration in progress (if any) */
+	public synchronized CSGSlicedRegeneration getActiveRegeneration() { return mActiveRegeneration; }
+	
+	/** Regeneration step: the given regeneration is no longer active */
+	protected synchronized void endRegeneration(
+		CSGSlicedRegeneration	pRegeneration
+	) {
+		if ( mActiveRegeneration == pRegeneration ) {
+			mActiveRegeneration = null;
+		}
+	}
+	
+	/** Regeneration step: ready the shapes for blending 
+	 	@return - false if there is nothing to blend
+	 */
+	protected boolean startRegeneration(
+		CSGSlicedRegeneration	pRegeneration
+	,	CSGTempVars				pTempVars
+	) throws CSGConstructionException {
+		if ( (mShapes == null) || mShapes.isEmpty() ) {
+			// Nothing interesting
+			setError( null );
+			return( false );
+		}
+		CSGEnvironment anEnvironment = pRegeneration.mEnvironment;
+		
+		// Prepare for custom materials
+		CSGMeshManager meshManager = new CSGMeshManager( this, mForceSingleMaterial );
+		meshManager.setMaterialSharing( mMaterialSharing, mMergePhysicsMeshes );
+
+		// Sort the shapes as needed by their handler
+		List<CSGShape> sortedShapes = mShapes.get(0).prepareShapeList( mShapes, anEnvironment );
+		if ( anEnvironment.mOptimizeOperands ) {
+			// Rework the sequence for a cheaper blend
+			sortedShapes = CSGOperandOptimizer.optimize( sortedShapes, anEnvironment );
+		}
+		
+		// How much of the prior work still applies?
+		// NOTE that a preview (coarse operands) neither uses nor disturbs the steps and
+		//		disk images retained for full detail
+		long[] stepKeys = null;
+		int resumeIndex = 0;
+		if ( anEnvironment.isPreview() ) {
+			// Nothing retained applies
+		} else if ( mIncrementalRegeneration ) {
+			stepKeys = createStepKeys( sortedShapes, anEnvironment );
+			resumeIndex = matchRegenerationSteps( stepKeys );
+		} else {
+			mRegenerationSteps = null;
+		}
+		// Are the final meshes kept on disk?
+		long diskKey = 0;
+		CSGResultCheck diskCheck = null;
+		if ( mDiskCaching && CSGDiskCache.isActive() && !anEnvironment.isPreview() ) {
+			long[] definitionKeys = (stepKeys == null) ? createStepKeys( sortedShapes, anEnvironment ) : stepKeys;
+			diskKey = CSGDiskCache.createKey( definitionKeys[ definitionKeys.length - 1 ] );
+			diskCheck = CSGResultCheck.forShapes( sortedShapes );
+		}
+		// Operate on each shape in turn, blending it into the common
+		pRegeneration.mActiveProduct = null;
+		CSGMeshManager diskManager = (diskKey == 0) 
+			? null : loadFromDisk( diskKey, diskCheck, sortedShapes, meshManager, pTempVars, anEnvironment );
+		if ( (diskManager == null) 
+		&& mRemoteRegeneration 
+		&& CSGProcessPool.isActive() 
+		&& !anEnvironment.isPreview() ) {
+			// Let a worker process do the heavy lifting, which is checked on by later steps
+			submitRemotely( pRegeneration, sortedShapes, meshManager, pTempVars, anEnvironment );
+		}
+		if ( diskManager != null ) {
+			// The meshes are already in hand, so there is nothing to blend, but we
+			// still need a product to report
+			meshManager = diskManager;
+			pRegeneration.mActiveProduct = new CSGShape( this.getName(), 0 );
+			resumeIndex = sortedShapes.size();
+		} else if ( resumeIndex > 0 ) {
+			// Pick up where the last matching step left off.  The product carries
+			// the mesh indices of its manager, so we must continue with a copy of it.
+			// Blending alters its receiver, so the retained product is copied as well.
+			CSGRegenerationStep priorStep = mRegenerationSteps.get( resumeIndex - 1 );
+			pRegeneration.mActiveProduct = (priorStep.mProduct == null) 
+				? null : priorStep.mProduct.copyProduct( anEnvironment );
+			meshManager = priorStep.mMeshManager.snapshot();
+			meshManager.setMaterialSharing( mMaterialSharing, mMergePhysicsMeshes );
+		}
+		pRegeneration.mMeshManager = meshManager;
+		pRegeneration.mShapes = sortedShapes;
+		pRegeneration.mStepKeys = stepKeys;
+		pRegeneration.mResumeIndex = resumeIndex;
+		pRegeneration.mDiskKey = diskKey;
+		pRegeneration.mDiskCheck = diskCheck;
+		pRegeneration.mFromDisk = (diskManager != null);
+		pRegeneration.mFromWorker = false;
+		return( true );
+	}
+	
+	/** Regeneration step: check on the CSGProcessPool worker started by startRegeneration()
+	 	@return - true if the worker is done, and its meshes (if it could produce them)
+	 			  are in place
+	 */
+	protected boolean pollRemotely(
+		CSGSlicedRegeneration	pRegeneration
+	) throws CSGConstructionException {
+		// NOTE that an interrupt of this thread cancels the job
+		Boolean isRegistered = CSGProcessPool.poll( pRegeneration.mRemoteJob, 0, this );
+		if ( isRegistered == null ) {
+			// Still working
+			return( false );
+		}
+		CSGMeshManager workerManager = pRegeneration.mWorkerManager;
+		pRegeneration.mRemoteJob = null;
+		pRegeneration.mWorkerManager = null;
+		if ( isRegistered.booleanValue() ) {
+			// The worker has already produced the final meshes, so there is nothing to
+			// blend, but we still need a product to report
+			pRegeneration.mMeshManager = workerManager;
+			pRegeneration.mActiveProduct = new CSGShape( this.getName(), 0 );
+			pRegeneration.mResumeIndex = pRegeneration.mShapes.size();
+			pRegeneration.mFromWorker = true;
+		} else if ( mRemoteFallback ) {
+			// Carry on with the local blend that startRegeneration() readied
+			CSGEnvironment.sLogger.log( Level.INFO, "CSGProcessPool meshes do not match, blending locally: " + this.getName() );
+		} else {
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGGeonode.regenerate - worker meshes do not match the local registrations"
+												, this );
+		}
+		return( true );
+	}
+	
+	/** Regeneration step: blend the given shape into the active product */
+	protected void blendShape(
+		CSGSlicedRegeneration	pRegeneration
+	,	int						pIndex
+	,	CSGTempVars				pTempVars
+	) throws CSGConstructionException {
+		CSGShape aShape = pRegeneration.mShapes.get( pIndex );
+		if ( pIndex < pRegeneration.mResumeIndex ) {
+			// Already blended into the product of a prior step
+			if ( !aShape.isValid() ) {
+				this.setError( aShape.getError() );
+			}
+			return;
+		}
+		CSGEnvironment anEnvironment = pRegeneration.mEnvironment;
+		CSGMeshManager meshManager = pRegeneration.mMeshManager;
+		if ( anEnvironment.isCancelled() ) {
+			// Abandon the work, leaving the prior result in place
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, "CSGGeonode.regenerate - cancelled"
+												, this );
+		}
+		if ( !aShape.isValid() ) {
+			// We cannot use invalid shapes
+			this.setError( aShape.getError() );
+			recordRegenerationStep( pRegeneration, pIndex );
+			return;
+		}
+		aShape.setParentElement( this );
+
+		// When the generated LOD levels drive the output detail, the primitives must start
+		// at full detail, otherwise the level in force would be applied twice
+		int sourceLevel = (mLODFactors != null) ? 0 : getLodLevel();
+		
+		// Apply the operator to the product of this regeneration
+		CSGShape aProduct = pRegeneration.mActiveProduct;
+		switch( aShape.getOperator() ) {
+		case UNION:
+			if ( aProduct == null ) {
+				// A place to start
+				aProduct = aShape.clone( meshManager, sourceLevel, pTempVars, anEnvironment );
+			} else {
+				// Blend together
+				aProduct = aProduct.union( aShape.refresh(), meshManager, pTempVars, anEnvironment );
+			}
+			break;
 			
-			// Prepare for custom materials
-			CSGMeshManager meshManager = new CSGMeshManager( this, mForceSingleMaterial );
+		case DIFFERENCE:
+			if ( aProduct == null ) {
+				// NO PLACE TO START
+			} else {
+				// Blend together
+				aProduct = aProduct.difference( aShape.refresh(), meshManager, pTempVars, anEnvironment );
+			}
+			break;
+			
+		case INTERSECTION:
+			if ( aProduct == null ) {
+				// A place to start
+				aProduct = aShape.clone( meshManager, sourceLevel, pTempVars, anEnvironment );
+			} else {
+				// Blend together
+				aProduct = aProduct.intersection( aShape.refresh(), meshManager, pTempVars, anEnvironment );
+			}
+			break;
+			
+		case SKIP:
+			// This shape is not taking part
+			break;
 
-			// Sort the shapes as needed by their handler
-			List<CSGShape> sortedShapes = mShapes.get(0).prepareShapeList( mShapes, pEnvironment );
+		case MERGE:
+			if ( aProduct == null ) {
+				// A place to start
+				aProduct = aShape.clone( meshManager, sourceLevel, pTempVars, anEnvironment );
+			} else {
+				// Treat multiple meshes as a single mesh
+				aProduct = aProduct.merge( aShape.refresh(), meshManager, pTempVars, anEnvironment );
+			}
+			break;
+		}
+		pRegeneration.mActiveProduct = aProduct;
+		recordRegenerationStep( pRegeneration, pIndex );
+	}
+	
+	/** Regeneration step: build up the mesh(es) from the blended product
+	 	@return - false if nothing was produced
+	 */
+	protected boolean produceMeshes(
+		CSGSlicedRegeneration	pRegeneration
+	,	CSGTempVars				pTempVars
+	) throws CSGConstructionException {
+		if ( pRegeneration.mActiveProduct == null ) {
+			// Nothing produced
+			setError( null );
+			return( false );
+		}
+		// NOTE that the current master is left alone, so that it continues to
+		//		display until the new product is swapped in
+		if ( !pRegeneration.mFromDisk && !pRegeneration.mFromWorker ) {
+			// Transform the blended product into children
+			// The meshManager will retain the set of generated meshes and can provide
+			// any given mesh based on its index.
+			pRegeneration.mActiveProduct.toMesh( pRegeneration.mMeshManager, true, pTempVars, pRegeneration.mEnvironment );
 			
-			// Save on churn by leveraging temps
-			CSGTempVars tempVars = CSGTempVars.get();
+			if ( (pRegeneration.mDiskKey != 0) && pRegeneration.mActiveProduct.isValid() ) {
+				// Save the raw meshes, before any of the processing below
+				CSGDiskCache.store( pRegeneration.mDiskKey, pRegeneration.mDiskCheck, pRegeneration.mMeshManager );
+			}
+		}
+		return( true );
+	}
+	
+	/** Regeneration step: post processing of the generated meshes */
+	protected void processMeshes(
+		CSGSlicedRegeneration	pRegeneration
+	) throws CSGConstructionException {
+		CSGMeshManager meshManager = pRegeneration.mMeshManager;
+		if ( pRegeneration.mFromWorker ) {
+			// The worker has done all of this already
+			return;
+		}
+		if ( (mLODFactors != null) && !pRegeneration.mEnvironment.isPreview() ) {
+			// The blended product has no inherent structure to drive the LOD, so
+			// simplify the final meshes (a preview is coarse enough already)
+			CSGLODGenerator lodGenerator = new CSGLODGenerator( mLODFactors, pRegeneration.mEnvironment );
+			lodGenerator.applyLevels( meshManager );
+		}
+		if ( mGenerateTangentBinormal && pRegeneration.mActiveProduct.isValid() ) {
+			// Produce the tangents now, rather than stalling the scene thread
+			// in applySceneChanges()
+			getTangentGenerator().generate( meshManager, this );
+		}
+		if ( mCompactVertices ) {
+			// Squeeze down the final meshes (which must follow any processing
+			// that expects float buffers)
+			meshManager.compactMeshes( mCompactPositions );
+		}
+	}
+	
+	/** Regeneration step: swap the product into the scene (now or deferred) */
+	protected CSGShape applyRegeneration(
+		CSGSlicedRegeneration	pRegeneration
+	) {
+		CSGMeshManager meshManager = pRegeneration.mMeshManager;
+		
+		// Use the master mesh to describe the overall geometry
+		CSGGeometry aMaster
+			= new CSGGeometry( this.getName(), meshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex ) );
+		if ( mMaterial != null ) {
+			aMaster.setMaterial( mMaterial.clone() );
+		}
+		Transform masterDecode = meshManager.resolveDecodeTransform( CSGMeshManager.sMasterMeshIndex );
+		if ( masterDecode != null ) {
+			// A singleton master with quantized positions
+			aMaster.setLocalTransform( masterDecode );
+		}
+		// Publish the product, unless a later regeneration has taken over
+		boolean isDeferred = mDeferSceneChanges || pRegeneration.mEnvironment.mDeferSceneChanges;
+		CSGShape aProduct = pRegeneration.mActiveProduct;
+		synchronized( this ) {
+			if ( mActiveRegeneration != pRegeneration ) {
+				// Superseded, so this product is never seen
+				return( null );
+			}
+			setError( aProduct.getError() );
+			mPendingState = null;
+			if ( isDeferred ) {
+				// Update the scene later, swapping master and children together
+				mPendingMaster = aMaster;
+				mMeshManager = meshManager;
+			} else {
+				// Update the scene NOW
+				mMasterGeometry = aMaster;
+				applySceneChanges( meshManager );
+			}
+			mPriorResult = aProduct;
+			mProductMeshManager = meshManager;
+		}
+		if ( isDeferred ) {
+			notifySceneChanges();
+		}
+		return( aProduct );
+	}
+	
+	/** Subtract the given cutter from the current product, reworking only the portion of
+	 	the product near the cutter and rebuilding only the meshes it touches (see 
+	 	CSGShape.carve()).  This is meant for destructible geometry, where small shapes are
+	 	cut from a large product again and again.  Once the carve succeeds, the cutter is
+	 	also retained as a DIFFERENCE shape, so that a later full regeneration produces the 
+	 	same result (a failed carve leaves both the definition and the product alone).
+	 	NOTE that the rebuilt meshes do not get any generated LOD levels
+	 */
+	public CSGShape carveShape(
+		CSGShape			pCutter
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		if ( getActiveRegeneration() != null ) {
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGGeonode.carveShape - regeneration in progress"
+												, this );
+		}
+		if ( (mPriorResult == null) 
+		|| (mProductMeshManager == null) 
+		|| !mPriorResult.isValid() 
+		|| !mPriorResult.hasBlendedStructure() ) {
+			// Nothing to carve from (which includes the stand-in product of meshes loaded
+			// from disk or built by a worker process), so do it the hard way
+			subtractShape( pCutter );
 			try {
-				// Operate on each shape in turn, blending it into the common
-				mActiveProduct = null;
-				for( CSGShape aShape : sortedShapes ) {
-					if ( !aShape.isValid() ) {
-						// We cannot use invalid shapes
-						this.setError( aShape.getError() );
-						continue;
-					}
-					aShape.setParentElement( this );
-
-					// Apply the operator
-					switch( aShape.getOperator() ) {
-					case UNION:
-						if ( mActiveProduct == null ) {
-							// A place to start
-							mActiveProduct = aShape.clone( meshManager, getLodLevel(), tempVars, pEnvironment );
-						} else {
-							// Blend together
-							mActiveProduct = mActiveProduct.union( aShape.refresh(), meshManager, tempVars, pEnvironment );
-						}
-						break;
-						
-					case DIFFERENCE:
-						if ( mActiveProduct == null ) {
-							// NO PLACE TO START
-						} else {
-							// Blend together
-							mActiveProduct = mActiveProduct.difference( aShape.refresh(), meshManager, tempVars, pEnvironment );
-						}
-						break;
-						
-					case INTERSECTION:
-						if ( mActiveProduct == null ) {
-							// A place to start
-							mActiveProduct = aShape.clone( meshManager, getLodLevel(), tempVars, pEnvironment );
-						} else {
-							// Blend together
-							mActiveProduct = mActiveProduct.intersection( aShape.refresh(), meshManager, tempVars, pEnvironment );
-						}
-						break;
-						
-					case SKIP:
-						// This shape is not taking part
-						break;
-
-					case MERGE:
-						if ( mActiveProduct == null ) {
-							// A place to start
-							mActiveProduct = aShape.clone( meshManager, getLodLevel(), tempVars, pEnvironment );
-						} else {
-							// Treat multiple meshes as a single mesh
-							mActiveProduct = mActiveProduct.merge( aShape.refresh(), meshManager, tempVars, pEnvironment );
-						}
-						break;
-					}
-				}
-				// Build up the mesh(es)
-				mMasterGeometry = null;
-				if ( mActiveProduct != null ) {
-					// Transform the blended product into children
-					// The meshManager will retain the set of generated meshes and can provide
-					// any given mesh based on its index.
-					mActiveProduct.toMesh( meshManager, true, tempVars, pEnvironment );
-
-					// Use the master mesh to describe the overall geometry
-					mMasterGeometry 
-						= new CSGGeometry( this.getName(), meshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex ) );
-					if ( mMaterial != null ) {
-						mMasterGeometry.setMaterial( mMaterial.clone() );
-					}
-					// Return the product
-					setError( mActiveProduct.getError() );
-					if ( mDeferSceneChanges ) synchronized( this ) {
-						// Update the scene later
-						mMeshManager = meshManager;
-					} else {
-						// Update the scene NOW
-						applySceneChanges( meshManager );
-					}
-					mPriorResult = mActiveProduct;
-					mActiveProduct = null;
-					return( mPriorResult );
-				} else {
-					// Nothing produced
-					setError( null );
-				}
+				return( regenerate( false, pEnvironment ) );
 			} catch( CSGConstructionException ex ) {
-				// Record the problem and toss it again
-				setError( ex );
+				// Keep the definition in line with the product
+				removeShape( pCutter );
 				throw ex;
-			} catch( Exception ex ) {
-				CSGConstructionException csgEx 
-					= new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
-													, "Unexpected regeneration failure"
-													, this
-													, ex );
-				setError( csgEx );
-				throw csgEx;
-			} finally {
-				tempVars.release();
-				mRegenNS = System.nanoTime() - startTimer;
 			}
+		}
+		CSGEnvironment anEnvironment 
+			= CSGEnvironment.resolveEnvironment( (pEnvironment == null) ? mEnvironment : pEnvironment, this );
+		long startTime = System.nanoTime();
+		
+		// The carve is a (very short) regeneration in its own right, which any later
+		// regeneration supersedes
+		CSGSlicedRegeneration aRegeneration = new CSGSlicedRegeneration( this, anEnvironment );
+		synchronized( this ) {
+			mActiveRegeneration = aRegeneration;
+		}
+		CSGTempVars tempVars = CSGTempVars.get();
+		try {
+			// Continue with a copy of the manager, so the current meshes are left alone
+			CSGMeshManager priorManager = mProductMeshManager;
+			CSGMeshManager meshManager = priorManager.snapshot();
+			meshManager.setMaterialSharing( mMaterialSharing, mMergePhysicsMeshes );
+			
+			pCutter.setParentElement( this );
+			Set<Integer> changedMeshes = new HashSet<Integer>();
+			CSGShape aProduct = mPriorResult.carve( pCutter, changedMeshes, meshManager, tempVars, anEnvironment );
+			
+			// Any index first assigned by the cutter needs its mesh as well
+			for( int index = priorManager.getMeshCount() + 1; index <= meshManager.getMeshCount(); index += 1 ) {
+				changedMeshes.add( new Integer( index ) );
+			}
+			// Reuse what did not change and rebuild the rest
+			meshManager.adoptMeshes( priorManager, changedMeshes );
+			aProduct.updateMeshes( meshManager, changedMeshes, tempVars, anEnvironment );
+			
+			if ( mGenerateTangentBinormal && aProduct.isValid() ) {
+				// Meshes that already have tangents are skipped
+				getTangentGenerator().generate( meshManager, this );
+			}
+			if ( mCompactVertices ) {
+				meshManager.compactMeshes( mCompactPositions, changedMeshes );
+			}
+			aRegeneration.mMeshManager = meshManager;
+			aRegeneration.mActiveProduct = aProduct;
+			if ( applyRegeneration( aRegeneration ) == null ) {
+				throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+													, "CSGGeonode.carveShape - superseded by a regeneration"
+													, this );
+			}
+			// Only now that the product includes the cut does the definition
+			subtractShape( pCutter );
+
+			// The incremental steps know nothing of the carve, so they resume from the
+			// last step they recorded and blend the cutter in full
+			mRegenNS = System.nanoTime() - startTime;
+			return( aProduct );
+		} finally {
+			endRegeneration( aRegeneration );
+			tempVars.release();
+		}
+	}
+	
+	/** Capture the current product as an immutable state that can later be restored
+	 	(see CSGProductState and CSGProductHistory)
+	 	@return - the state, or null if there is no product to capture
+	 */
+	public CSGProductState captureState(
+	) {
+		return( captureState( null ) );
+	}
+	/** Capture the current product as an immutable state, which shares every mesh that has
+	 	not changed since the given prior state.  If the product has not changed since the
+	 	last capture (or restore), then that same state is returned.
+	 */
+	public synchronized CSGProductState captureState(
+		CSGProductState		pPrior
+	) {
+		if ( mPendingState != null ) {
+			// A restored state is the current state, even if not yet displayed
+			return( mPendingState );
+		}
+		if ( (mPriorResult == null) || (mProductMeshManager == null) ) {
+			// Nothing to capture
+			return( null );
+		}
+		if ( (mCapturedState != null) && (mCapturedProduct == mPriorResult) ) {
+			// Nothing has changed
+			return( mCapturedState );
+		}
+		// The product may still be waiting on applySceneChanges()
+		boolean isPending = (mMeshManager != null);
+		mCapturedState = new CSGProductState( mShapes
+											, mPriorResult
+											, mProductMeshManager
+											, isPending ? mPendingMaster : mMasterGeometry
+											, mInError
+											, mRegenNS
+											, pPrior
+											, CSGEnvironment.resolveEnvironment( mEnvironment, this ) );
+		mCapturedProduct = mPriorResult;
+		return( mCapturedState );
+	}
+	/** Restore a state captured earlier, which involves no blending and no mesh building.
+	 	The shapes of the state become the shapes of this geonode, and the scene changes 
+	 	are deferred (or not) just like regenerate().
+	 */
+	public void restoreState(
+		CSGProductState		pState
+	) throws CSGConstructionException {
+		if ( getActiveRegeneration() != null ) {
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGGeonode.restoreState - regeneration in progress"
+												, this );
+		}
+		synchronized( this ) {
+			mShapes = new ArrayList<CSGShape>( pState.mShapes );
+			
+			// Carving alters the product, so we continue with a copy of the state's own
+			mPriorResult = (pState.mProduct == null) 
+				? null : pState.mProduct.copyProduct( CSGEnvironment.resolveEnvironment( mEnvironment, this ) );
+			mCapturedState = pState;
+			mCapturedProduct = mPriorResult;
+			mProductMeshManager = pState.mMeshManager;
+			mInError = pState.mError;
+			mRegenNS = pState.mRegenNS;
+			
+			// Any regeneration still waiting for the scene is superseded
+			mMeshManager = null;
+			mPendingMaster = null;
+			if ( mDeferSceneChanges ) {
+				mPendingState = pState;
+			} else {
+				applyState( pState );
+			}
+		}
+		if ( mDeferSceneChanges ) {
+			notifySceneChanges();
+		}
+	}
+	/** Service routine that lets the scheduler know about pending scene changes */
+	protected void notifySceneChanges(
+	) {
+		if ( mNotifyScheduler ) {
+			CSGSceneChangeScheduler.notifyPending( this );
+		}
+	}
+	/** Service routine that puts a given state into the scene, where the state itself is 
+	 	never attached (the scene gets a copy of its master and fresh children that wrap 
+	 	its meshes) so nothing done to the scene can alter the state
+	 */
+	protected void applyState(
+		CSGProductState		pState
+	) {
+		mMasterGeometry = (pState.mMasterGeometry == null) ? null : pState.mMasterGeometry.clone( false );
+		applySceneChanges( pState.mMeshManager );
+	}
+	
+	/** Service routine that attempts to load the final meshes from the CSGDiskCache.
+	 	The shapes register their mesh indices (without blending) with a copy of the given 
+	 	manager, which is returned if the load succeeds, otherwise null.
+	 */
+	protected CSGMeshManager loadFromDisk(
+		long				pDiskKey
+	,	CSGResultCheck		pDiskCheck
+	,	List<CSGShape>		pShapes
+	,	CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) {
+		CSGMeshManager aManager = pMeshManager.snapshot();
+		aManager.setMaterialSharing( mMaterialSharing, mMergePhysicsMeshes );
+		for( CSGShape aShape : pShapes ) {
+			if ( aShape.isValid() ) {
+				aShape.setParentElement( this );
+				aShape.replayMeshIndices( aManager, pTempVars, pEnvironment );
+			}
+		}
+		return( CSGDiskCache.load( pDiskKey, pDiskCheck, aManager, this.getName() ) ? aManager : null );
+	}
+	
+	/** Service routine that starts a regeneration via a CSGProcessPool worker.  As with the 
+	 	disk cache, the shapes register their mesh indices (without blending) with a copy of 
+	 	the given manager, which receives the meshes as the job completes (see pollRemotely()).
+	 	A geonode whose registrations are something the worker cannot reproduce fails, unless
+	 	the remote fallback is active (in which case no job is started).
+	 */
+	protected void submitRemotely(
+		CSGSlicedRegeneration	pRegeneration
+	,	List<CSGShape>			pShapes
+	,	CSGMeshManager			pMeshManager
+	,	CSGTempVars				pTempVars
+	,	CSGEnvironment			pEnvironment
+	) throws CSGConstructionException {
+		CSGMeshManager aManager = pMeshManager.snapshot();
+		aManager.setMaterialSharing( mMaterialSharing, mMergePhysicsMeshes );
+		for( CSGShape aShape : pShapes ) {
+			if ( aShape.isValid() ) {
+				aShape.setParentElement( this );
+				aShape.replayMeshIndices( aManager, pTempVars, pEnvironment );
+			}
+		}
+		Future<Boolean> aJob = CSGProcessPool.submit( this, aManager, pEnvironment );
+		if ( aJob != null ) {
+			pRegeneration.mRemoteJob = aJob;
+			pRegeneration.mWorkerManager = aManager;
+		} else if ( mRemoteFallback ) {
+			// Blend locally instead
+			CSGEnvironment.sLogger.log( Level.INFO, "CSGProcessPool cannot handle, blending locally: " + this.getName() );
 		} else {
-			// Nothing interesting
-			setError( null );
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGGeonode.regenerate - a worker cannot reproduce the mesh registrations"
+												, this );
+		}
+	}
+	/** Service routine that produces a bare geonode with the same definition as this one,
+	 	but none of its generated state.  It can be exported while this geonode remains
+	 	live in the scene (write() briefly drops the children), and it regenerates with the
+	 	given environment.  Every shape is copied as well (see CSGShape.copyDefinition()), 
+	 	so that nothing live is touched as the copy is exported.
+	 */
+	protected CSGGeonode copyDefinition(
+		CSGEnvironment		pEnvironment
+	) {
+		CSGGeonode aCopy = new CSGGeonode( this.getName() );
+		if ( mShapes != null ) {
+			aCopy.mShapes = new ArrayList<CSGShape>( mShapes.size() );
+			for( CSGShape aShape : mShapes ) {
+				aCopy.mShapes.add( aShape.copyDefinition( true ) );
+			}
+		}
+		aCopy.mMaterial = mMaterial;
+		aCopy.mEnvironment = pEnvironment;
+		aCopy.mFaceProperties = mFaceProperties;
+		aCopy.mForceSingleMaterial = mForceSingleMaterial;
+		aCopy.mGenerateTangentBinormal = mGenerateTangentBinormal;
+		aCopy.mLODFactors = mLODFactors;
+		aCopy.mMaterialSharing = mMaterialSharing;
+		aCopy.mMergePhysicsMeshes = mMergePhysicsMeshes;
+		aCopy.mCompactVertices = mCompactVertices;
+		aCopy.mCompactPositions = mCompactPositions;
+		return( aCopy );
+	}
+	
+	/** Service routine that builds the key for every blending step, where each key
+	 	accounts for the given shape and every shape before it
+	 */
+	protected long[] createStepKeys(
+		List<CSGShape>		pShapes
+	,	CSGEnvironment		pEnvironment
+	) {
+		// Everything rests on the environment in use and the generic material
+		long aKey = CSGFingerprint.sBasis;
+		aKey = CSGFingerprint.hash( aKey, pEnvironment.getFingerprint() );
+		aKey = CSGFingerprint.hash( aKey, mForceSingleMaterial );
+		aKey = CSGFingerprint.hash( aKey, mMaterial );
+		
+		long[] stepKeys = new long[ pShapes.size() ];
+		for( int i = 0; i < stepKeys.length; i += 1 ) {
+			aKey = CSGFingerprint.hash( aKey, pShapes.get( i ).getFingerprint() );
+			stepKeys[ i ] = aKey;
+		}
+		return( stepKeys );
+	}
+	/** Service routine that decides how many of the prior steps still apply */
+	protected int matchRegenerationSteps(
+		long[]		pStepKeys
+	) {
+		int matchCount = 0;
+		if ( mRegenerationSteps == null ) {
+			mRegenerationSteps = new ArrayList<CSGRegenerationStep>( pStepKeys.length );
+		} else {
+			int limit = Math.min( pStepKeys.length, mRegenerationSteps.size() );
+			while( (matchCount < limit) && (mRegenerationSteps.get( matchCount ).mKey == pStepKeys[ matchCount ]) ) {
+				matchCount += 1;
+			}
+			// Nothing beyond the first change applies any longer
+			mRegenerationSteps.subList( matchCount, mRegenerationSteps.size() ).clear();
+		}
+		return( matchCount );
+	}
+	/** Service routine that retains the product of a given step */
+	protected void recordRegenerationStep(
+		CSGSlicedRegeneration	pRegeneration
+	,	int						pIndex
+	) {
+		if ( pRegeneration.mStepKeys != null ) {
+			// The next step blends into the active product, which alters it in place,
+			// so the step keeps its own copy
+			CSGShape aProduct = pRegeneration.mActiveProduct;
+			if ( aProduct != null ) {
+				aProduct = aProduct.copyProduct( pRegeneration.mEnvironment );
+			}
+			mRegenerationSteps.add( new CSGRegenerationStep( pRegeneration.mStepKeys[ pIndex ]
+															, aProduct
+															, pRegeneration.mMeshManager.snapshot() ) );
 		}
-		// Fall out to here only if nothing was generated
-		return( null );
 	}
 	
 	/** The bounds are set by the master - this mimics the processing of a Geometry */
@@ -541,6 +1264,24 @@ public class CSGGeonode
 
         // Override on handling multiple materials
         aCapsule.write( mForceSingleMaterial, "singleMaterial",  false );
+        
+        // Tangent and level of detail generation
+        aCapsule.write( mGenerateTangentBinormal, "generateTangentBinormal", false );
+        aCapsule.write( mLODFactors, "lodFactors", null );
+        
+        // Material sharing
+        aCapsule.write( mMaterialSharing, "materialSharing", CSGMeshManager.MaterialSharing.NONE );
+        aCapsule.write( mMergePhysicsMeshes, "mergePhysicsMeshes", false );
+        
+        // Compact vertex formats
+        aCapsule.write( mCompactVertices, "compactVertices", false );
+        aCapsule.write( mCompactPositions, "compactPositions", false );
+        
+        // Incremental regeneration
+        aCapsule.write( mIncrementalRegeneration, "incrementalRegeneration", false );
+        aCapsule.write( mDiskCaching, "diskCache", false );
+        aCapsule.write( mRemoteRegeneration, "remoteRegeneration", false );
+        aCapsule.write( mRemoteFallback, "remoteFallback", false );
 
 		// Save the shapes
 		// NOTE a deficiency in the OutputCapsule API which should operate on a List,
@@ -576,6 +1317,29 @@ public class CSGGeonode
 		}
 		// Are we generating the tangents?
 	    mGenerateTangentBinormal = aCapsule.readBoolean( "generateTangentBinormal", false );
+	    
+	    // Are we generating Levels of Detail?
+	    mLODFactors = aCapsule.readFloatArray( "lodFactors", null );
+	    
+	    // How are the Materials shared?
+	    mMaterialSharing = aCapsule.readEnum( "materialSharing"
+	    									, CSGMeshManager.MaterialSharing.class
+	    									, CSGMeshManager.MaterialSharing.NONE );
+	    mMergePhysicsMeshes = aCapsule.readBoolean( "mergePhysicsMeshes", false );
+	    
+	    // Are the final meshes compacted?
+	    mCompactVertices = aCapsule.readBoolean( "compactVertices", false );
+	    mCompactPositions = aCapsule.readBoolean( "compactPositions", false );
+	    
+	    // Are the intermediate products retained?
+	    mIncrementalRegeneration = aCapsule.readBoolean( "incrementalRegeneration", false );
+	    
+	    // Are the final meshes kept on disk?
+	    mDiskCaching = aCapsule.readBoolean( "diskCache", false );
+	    
+	    // Is the blending done by a worker process?
+	    mRemoteRegeneration = aCapsule.readBoolean( "remoteRegeneration", false );
+	    mRemoteFallback = aCapsule.readBoolean( "remoteFallback", false );
 
 		// Rebuild based on the shapes just loaded, which sets the mValid status
 	    boolean doLater = aCapsule.readBoolean( "deferRegeneration", false );
@@ -608,3 +1372,24 @@ public class CSGGeonode
 
 
 }
+
+/** Helper class that retains the product of a single blending step */
+class CSGRegenerationStep
+{
+	/** The key that accounts for this step and every step before it */
+	protected long				mKey;
+	/** The product of the step */
+	protected CSGShape			mProduct;
+	/** The registrations active when the product was built */
+	protected CSGMeshManager	mMeshManager;
+	
+	CSGRegenerationStep(
+		long				pKey
+	,	CSGShape			pProduct
+	,	CSGMeshManager		pMeshManager
+	) {
+		mKey = pKey;
+		mProduct = pProduct;
+		mMeshManager = pMeshManager;
+	}
+}
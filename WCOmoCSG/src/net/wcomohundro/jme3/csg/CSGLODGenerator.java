@@ -0,0 +1,630 @@
+/** Copyright (c) 2003-2014 jMonkeyEngine
+	Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+
+/** The primitive shapes can produce their own Levels of Detail, since they know their own
+ 	structure and simply skip slices/radials.  The blended product of a CSGGeonode has no
+ 	such structure, so the only option is to simplify the final Mesh after the fact.
+
+ 	CSGLODGenerator applies a quadric error metric edge collapse (ala Garland/Heckbert) to
+ 	each Mesh produced by the CSGMeshManager, generating one index buffer per LOD factor.
+ 	Every level shares the original vertex buffers, so switching levels is just a matter
+ 	of selecting a different index buffer (which is exactly what Geometry.setLodLevel does)
+
+ 	The CSG meshes do NOT share vertices between polygons, so the first order of business
+ 	is to weld together those vertices that match on position/normal/texture.  Vertices
+ 	that share a position but NOT a normal or texture coordinate represent a sharp edge or
+ 	a texture seam, and they are locked in place.  Likewise, any vertex on an open edge is
+ 	locked.  Since every Material produces its own Mesh, the border between two materials
+ 	is an open edge of both meshes, so material borders are preserved as well.
+
+ 	The LOD factors follow the same convention as CSGMesh.lodFactors, a value in the range
+ 	0.0 - 1.0 that is the fraction of triangles to retain.
+ */
+public class CSGLODGenerator
+{
+	/** Version tracking support */
+	public static final String sCSGLODGeneratorRevision="$Rev$";
+	public static final String sCSGLODGeneratorDate="$Date$";
+
+	/** Meshes smaller than this are not worth simplifying */
+	protected static final int sMinimumTriangleCount = 16;
+	/** Welding works from quantized values, and too fine a tolerance overflows the quantization */
+	protected static final float sMinimumWeldTolerance = 1.0e-4f;
+
+
+	/** The LOD factors to apply, in the range 0.0 - 1.0 */
+	protected float[]		mLODFactors;
+	/** Tolerance used when welding vertices together */
+	protected float			mWeldTolerance;
+
+	/** Working data for the mesh being simplified */
+	protected int			mVertexCount;
+	protected float[]		mPositions;
+	/** Representative (original buffer) vertex index for every welded vertex */
+	protected int[]			mRepresentative;
+	/** Welded vertex indices, 3 per triangle, where -1 marks a collapsed triangle */
+	protected int[]			mTriangles;
+	protected int			mLiveTriangles;
+	/** Welded vertex that a given welded vertex has collapsed into (or itself) */
+	protected int[]			mCollapsedInto;
+	protected boolean[]		mLocked;
+	/** Bumped every time a vertex changes, so that stale collapse candidates can be detected */
+	protected int[]			mStamp;
+	/** Symmetric 4x4 quadric per welded vertex, 10 distinct values each */
+	protected double[]		mQuadrics;
+	/** Triangles that touch a given welded vertex */
+	protected List<Integer>[]	mVertexTriangles;
+	/** Pending collapse candidates, cheapest first */
+	protected PriorityQueue<CSGLODCollapse>	mCandidates;
+
+
+	/** Constructor based on the desired factors */
+	public CSGLODGenerator(
+		float[]			pLODFactors
+	,	CSGEnvironment	pEnvironment
+	) {
+		// Process the factors from largest to smallest so that each level simply continues
+		// where the prior level stopped
+		mLODFactors = pLODFactors.clone();
+		Arrays.sort( mLODFactors );
+		for( int i = 0, j = mLODFactors.length -1; i < j; i += 1, j -= 1 ) {
+			float aFactor = mLODFactors[i];
+			mLODFactors[i] = mLODFactors[j];
+			mLODFactors[j] = aFactor;
+		}
+		mWeldTolerance = (pEnvironment == null)
+			? sMinimumWeldTolerance : Math.max( pEnvironment.mEpsilonBetweenPointsFlt, sMinimumWeldTolerance );
+	}
+
+	/** Apply the LOD levels to every mesh produced by the given manager */
+	public void applyLevels(
+		CSGMeshManager	pMeshManager
+	) {
+		if ( pMeshManager.getMeshCount() == 0 ) {
+			// The master is the only mesh that will actually be displayed
+			applyLevels( pMeshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex ) );
+			return;
+		}
+		// Every custom mesh is simplified on its own, which keeps the material borders intact
+		for( int index = 0; index <= pMeshManager.getMeshCount(); index += 1 ) {
+			applyLevels( pMeshManager.resolveMesh( new Integer( index ) ) );
+		}
+	}
+
+	/** Apply the LOD levels to a single mesh, returning the number of levels produced
+	 	(including the original full detail level 0)
+	 */
+	public int applyLevels(
+		Mesh			pMesh
+	) {
+		if ( (pMesh == null) || (pMesh.getTriangleCount() < sMinimumTriangleCount) ) {
+			// Nothing worth simplifying
+			return( 0 );
+		}
+		VertexBuffer idxBuffer = pMesh.getBuffer( Type.Index );
+		if ( (idxBuffer == null) || (pMesh.getBuffer( Type.Position ).getFormat() != Format.Float) ) {
+			// Not a mesh we understand (quantized positions included)
+			return( 0 );
+		}
+		// Weld the vertices and prime the quadrics
+		int triangleCount = prepare( pMesh );
+		
+		// Welding may already have dropped degenerate triangles, so any reduction is 
+		// measured against what is live
+		int priorCount = mLiveTriangles;
+		mCandidates = new PriorityQueue<CSGLODCollapse>( Math.max( 11, mLiveTriangles * 3 ) );
+		for( int i = 0, j = mTriangles.length; i < j; i += 3 ) {
+			if ( mTriangles[i] >= 0 ) {
+				for( int k = 0; k < 3; k += 1 ) {
+					int aVertex = mTriangles[ i + k ];
+					int bVertex = mTriangles[ i + ((k + 1) % 3) ];
+					addCandidate( aVertex, bVertex );
+					addCandidate( bVertex, aVertex );
+				}
+			}
+		}
+		// Level zero is always the full detail buffer
+		List<VertexBuffer> levels = new ArrayList<VertexBuffer>( mLODFactors.length + 1 );
+		levels.add( idxBuffer );
+
+		for( float aFactor : mLODFactors ) {
+			int targetCount = (int)(triangleCount * Math.max( 0.0f, Math.min( 1.0f, aFactor ) ));
+			collapseTo( targetCount );
+			if ( mLiveTriangles >= priorCount ) {
+				// No further reduction is possible, so no point in another level
+				break;
+			}
+			priorCount = mLiveTriangles;
+			levels.add( createLevel( idxBuffer.getFormat() ) );
+		}
+		if ( levels.size() > 1 ) {
+			pMesh.setLodLevels( levels.toArray( new VertexBuffer[ levels.size() ] ) );
+		}
+		// Release the working data
+		mPositions = null;
+		mRepresentative = null;
+		mTriangles = null;
+		mCollapsedInto = null;
+		mLocked = null;
+		mStamp = null;
+		mQuadrics = null;
+		mVertexTriangles = null;
+		mCandidates = null;
+
+		return( levels.size() );
+	}
+
+	/** Weld the vertices of the given mesh and build the working structures, returning
+	 	the number of triangles in the original mesh
+	 */
+	protected int prepare(
+		Mesh			pMesh
+	) {
+		FloatBuffer positions = pMesh.getFloatBuffer( Type.Position );
+		FloatBuffer normals = pMesh.getFloatBuffer( Type.Normal );
+		FloatBuffer texCoords = pMesh.getFloatBuffer( Type.TexCoord );
+		IndexBuffer indices = pMesh.getIndicesAsList();
+		int vertexCount = pMesh.getVertexCount();
+
+		// Weld on the exact attributes, but track positional matches to spot seams
+		Map<CSGLODVertexKey,Integer> weldMap = new HashMap<CSGLODVertexKey,Integer>( vertexCount );
+		Map<CSGLODVertexKey,Integer> positionMap = new HashMap<CSGLODVertexKey,Integer>( vertexCount );
+		int[] weldIndex = new int[ vertexCount ];
+		List<Integer> representatives = new ArrayList<Integer>( vertexCount );
+		List<Boolean> seams = new ArrayList<Boolean>( vertexCount );
+		for( int i = 0; i < vertexCount; i += 1 ) {
+			CSGLODVertexKey positionKey = new CSGLODVertexKey( mWeldTolerance );
+			positionKey.add( positions, i, 3 );
+			CSGLODVertexKey fullKey = new CSGLODVertexKey( positionKey );
+			if ( normals != null ) fullKey.add( normals, i, 3 );
+			if ( texCoords != null ) fullKey.add( texCoords, i, 2 );
+
+			Integer aWeld = weldMap.get( fullKey );
+			if ( aWeld == null ) {
+				// A new distinct vertex
+				aWeld = new Integer( representatives.size() );
+				weldMap.put( fullKey, aWeld );
+				representatives.add( new Integer( i ) );
+				seams.add( Boolean.FALSE );
+
+				Integer priorWeld = positionMap.get( positionKey );
+				if ( priorWeld == null ) {
+					positionMap.put( positionKey, aWeld );
+				} else {
+					// Same point, different normal/texture: a sharp edge or texture seam
+					seams.set( priorWeld.intValue(), Boolean.TRUE );
+					seams.set( aWeld.intValue(), Boolean.TRUE );
+				}
+			}
+			weldIndex[i] = aWeld.intValue();
+		}
+		mVertexCount = representatives.size();
+		mRepresentative = new int[ mVertexCount ];
+		mPositions = new float[ mVertexCount * 3 ];
+		mLocked = new boolean[ mVertexCount ];
+		mStamp = new int[ mVertexCount ];
+		mCollapsedInto = new int[ mVertexCount ];
+		mQuadrics = new double[ mVertexCount * 10 ];
+		mVertexTriangles = new List[ mVertexCount ];
+		for( int i = 0; i < mVertexCount; i += 1 ) {
+			int original = representatives.get( i ).intValue();
+			mRepresentative[i] = original;
+			mPositions[ i * 3 ] = positions.get( original * 3 );
+			mPositions[ i * 3 + 1 ] = positions.get( original * 3 + 1 );
+			mPositions[ i * 3 + 2 ] = positions.get( original * 3 + 2 );
+			mLocked[i] = seams.get( i ).booleanValue();
+			mCollapsedInto[i] = i;
+			mVertexTriangles[i] = new ArrayList<Integer>( 6 );
+		}
+		// Build the welded triangles, dropping anything degenerate
+		int triangleCount = indices.size() / 3;
+		mTriangles = new int[ triangleCount * 3 ];
+		mLiveTriangles = 0;
+		Map<Long,Integer> edgeCounts = new HashMap<Long,Integer>( triangleCount * 3 );
+		for( int i = 0; i < triangleCount; i += 1 ) {
+			int v0 = weldIndex[ indices.get( i * 3 ) ];
+			int v1 = weldIndex[ indices.get( i * 3 + 1 ) ];
+			int v2 = weldIndex[ indices.get( i * 3 + 2 ) ];
+			if ( (v0 == v1) || (v1 == v2) || (v2 == v0) ) {
+				mTriangles[ i * 3 ] = -1;
+				continue;
+			}
+			mTriangles[ i * 3 ] = v0;
+			mTriangles[ i * 3 + 1 ] = v1;
+			mTriangles[ i * 3 + 2 ] = v2;
+			mLiveTriangles += 1;
+
+			Integer triangleRef = new Integer( i );
+			mVertexTriangles[ v0 ].add( triangleRef );
+			mVertexTriangles[ v1 ].add( triangleRef );
+			mVertexTriangles[ v2 ].add( triangleRef );
+
+			countEdge( edgeCounts, v0, v1 );
+			countEdge( edgeCounts, v1, v2 );
+			countEdge( edgeCounts, v2, v0 );
+
+			addPlaneQuadric( v0, v1, v2 );
+		}
+		// Any edge that is not shared by exactly two triangles is a border (or something
+		// non-manifold), and its vertices must stay put
+		for( Map.Entry<Long,Integer> anEntry : edgeCounts.entrySet() ) {
+			if ( anEntry.getValue().intValue() != 2 ) {
+				long edgeKey = anEntry.getKey().longValue();
+				mLocked[ (int)(edgeKey >>> 32) ] = true;
+				mLocked[ (int)(edgeKey & 0xFFFFFFFFL) ] = true;
+			}
+		}
+		return( triangleCount );
+	}
+
+	/** Collapse the cheapest edges until we reach the target triangle count, or until
+	 	nothing more can be collapsed
+	 */
+	protected void collapseTo(
+		int		pTargetCount
+	) {
+		while( (mLiveTriangles > pTargetCount) && !mCandidates.isEmpty() ) {
+			CSGLODCollapse aCollapse = mCandidates.poll();
+			int fromVertex = aCollapse.mFrom;
+			int toVertex = aCollapse.mTo;
+			if ( (mStamp[ fromVertex ] != aCollapse.mFromStamp)
+			|| (mStamp[ toVertex ] != aCollapse.mToStamp) ) {
+				// Something has changed since this candidate was computed
+				if ( (mCollapsedInto[ fromVertex ] == fromVertex)
+				&& (mCollapsedInto[ toVertex ] == toVertex)
+				&& shareEdge( fromVertex, toVertex ) ) {
+					// Still a viable edge, so try it again at its current cost
+					addCandidate( fromVertex, toVertex );
+				}
+				continue;
+			}
+			if ( flipsTriangle( fromVertex, toVertex ) ) {
+				// Collapsing would fold the surface over on itself
+				continue;
+			}
+			collapse( fromVertex, toVertex );
+		}
+	}
+
+	/** Move the given vertex onto its target */
+	protected void collapse(
+		int		pFrom
+	,	int		pTo
+	) {
+		for( Integer triangleRef : mVertexTriangles[ pFrom ] ) {
+			int base = triangleRef.intValue() * 3;
+			if ( mTriangles[ base ] < 0 ) {
+				// Already gone
+				continue;
+			}
+			if ( (mTriangles[ base ] == pTo)
+			|| (mTriangles[ base + 1 ] == pTo)
+			|| (mTriangles[ base + 2 ] == pTo) ) {
+				// This triangle spans the collapsed edge and simply disappears
+				mTriangles[ base ] = -1;
+				mLiveTriangles -= 1;
+			} else {
+				// This triangle now references the target
+				for( int k = 0; k < 3; k += 1 ) {
+					if ( mTriangles[ base + k ] == pFrom ) mTriangles[ base + k ] = pTo;
+				}
+				mVertexTriangles[ pTo ].add( triangleRef );
+			}
+		}
+		mVertexTriangles[ pFrom ].clear();
+		mCollapsedInto[ pFrom ] = pTo;
+		mStamp[ pFrom ] += 1;
+		mStamp[ pTo ] += 1;
+
+		// The target inherits the error of what it absorbed
+		for( int i = 0; i < 10; i += 1 ) {
+			mQuadrics[ pTo * 10 + i ] += mQuadrics[ pFrom * 10 + i ];
+		}
+		// Tidy up the target's triangle list and reconsider its edges
+		List<Integer> liveList = new ArrayList<Integer>( mVertexTriangles[ pTo ].size() );
+		HashSet<Integer> liveSet = new HashSet<Integer>( mVertexTriangles[ pTo ].size() * 2 );
+		for( Integer triangleRef : mVertexTriangles[ pTo ] ) {
+			int base = triangleRef.intValue() * 3;
+			if ( (mTriangles[ base ] >= 0) && liveSet.add( triangleRef ) ) {
+				liveList.add( triangleRef );
+				for( int k = 0; k < 3; k += 1 ) {
+					int aVertex = mTriangles[ base + k ];
+					if ( aVertex != pTo ) {
+						addCandidate( aVertex, pTo );
+						addCandidate( pTo, aVertex );
+					}
+				}
+			}
+		}
+		mVertexTriangles[ pTo ] = liveList;
+	}
+
+	/** Check if moving the given vertex would flip the orientation of any triangle */
+	protected boolean flipsTriangle(
+		int		pFrom
+	,	int		pTo
+	) {
+		float[] before = new float[3];
+		float[] after = new float[3];
+		for( Integer triangleRef : mVertexTriangles[ pFrom ] ) {
+			int base = triangleRef.intValue() * 3;
+			int v0 = mTriangles[ base ], v1 = mTriangles[ base + 1 ], v2 = mTriangles[ base + 2 ];
+			if ( (v0 < 0) || (v0 == pTo) || (v1 == pTo) || (v2 == pTo) ) {
+				// Gone or going away
+				continue;
+			}
+			triangleNormal( v0, v1, v2, before );
+			triangleNormal( (v0 == pFrom) ? pTo : v0
+							, (v1 == pFrom) ? pTo : v1
+							, (v2 == pFrom) ? pTo : v2
+							, after );
+			float dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+			if ( dot <= 0.0f ) {
+				return( true );
+			}
+		}
+		return( false );
+	}
+
+	/** Check if two vertices are still connected */
+	protected boolean shareEdge(
+		int		pFrom
+	,	int		pTo
+	) {
+		for( Integer triangleRef : mVertexTriangles[ pFrom ] ) {
+			int base = triangleRef.intValue() * 3;
+			if ( (mTriangles[ base ] >= 0)
+			&& ((mTriangles[ base ] == pTo) || (mTriangles[ base + 1 ] == pTo) || (mTriangles[ base + 2 ] == pTo)) ) {
+				return( true );
+			}
+		}
+		return( false );
+	}
+
+	/** Include a possible collapse of the first vertex onto the second */
+	protected void addCandidate(
+		int		pFrom
+	,	int		pTo
+	) {
+		if ( mLocked[ pFrom ] ) {
+			// Locked vertices never move, although others can move onto them
+			return;
+		}
+		// The error is the combined quadric evaluated at the target position
+		double x = mPositions[ pTo * 3 ], y = mPositions[ pTo * 3 + 1 ], z = mPositions[ pTo * 3 + 2 ];
+		int qFrom = pFrom * 10, qTo = pTo * 10;
+		double[] q = mQuadrics;
+		double a = q[qFrom] + q[qTo], b = q[qFrom+1] + q[qTo+1], c = q[qFrom+2] + q[qTo+2]
+			, d = q[qFrom+3] + q[qTo+3], e = q[qFrom+4] + q[qTo+4], f = q[qFrom+5] + q[qTo+5]
+			, g = q[qFrom+6] + q[qTo+6], h = q[qFrom+7] + q[qTo+7], i = q[qFrom+8] + q[qTo+8]
+			, j = q[qFrom+9] + q[qTo+9];
+		double cost = a*x*x + 2*b*x*y + 2*c*x*z + 2*d*x
+					+ e*y*y + 2*f*y*z + 2*g*y
+					+ h*z*z + 2*i*z
+					+ j;
+		mCandidates.add( new CSGLODCollapse( pFrom, mStamp[ pFrom ], pTo, mStamp[ pTo ], cost ) );
+	}
+
+	/** Accumulate the plane of the given triangle into its vertices, weighted by area */
+	protected void addPlaneQuadric(
+		int		pV0
+	,	int		pV1
+	,	int		pV2
+	) {
+		float[] aNormal = new float[3];
+		double area = triangleNormal( pV0, pV1, pV2, aNormal );
+		if ( area <= 0.0 ) {
+			return;
+		}
+		double nx = aNormal[0], ny = aNormal[1], nz = aNormal[2];
+		double d = -(nx * mPositions[ pV0 * 3 ] + ny * mPositions[ pV0 * 3 + 1 ] + nz * mPositions[ pV0 * 3 + 2 ]);
+		double[] plane = new double[] {
+			nx*nx, nx*ny, nx*nz, nx*d, ny*ny, ny*nz, ny*d, nz*nz, nz*d, d*d
+		};
+		int[] corners = new int[] { pV0, pV1, pV2 };
+		for( int aVertex : corners ) {
+			for( int k = 0; k < 10; k += 1 ) {
+				mQuadrics[ aVertex * 10 + k ] += plane[k] * area;
+			}
+		}
+	}
+
+	/** Compute the unit normal of the given triangle, returning its area */
+	protected double triangleNormal(
+		int		pV0
+	,	int		pV1
+	,	int		pV2
+	,	float[]	pNormal
+	) {
+		float[] p = mPositions;
+		float ux = p[pV1*3] - p[pV0*3], uy = p[pV1*3+1] - p[pV0*3+1], uz = p[pV1*3+2] - p[pV0*3+2];
+		float vx = p[pV2*3] - p[pV0*3], vy = p[pV2*3+1] - p[pV0*3+1], vz = p[pV2*3+2] - p[pV0*3+2];
+		float nx = uy * vz - uz * vy;
+		float ny = uz * vx - ux * vz;
+		float nz = ux * vy - uy * vx;
+		double length = Math.sqrt( nx * nx + ny * ny + nz * nz );
+		if ( length > 0.0 ) {
+			pNormal[0] = (float)(nx / length);
+			pNormal[1] = (float)(ny / length);
+			pNormal[2] = (float)(nz / length);
+		} else {
+			pNormal[0] = pNormal[1] = pNormal[2] = 0.0f;
+		}
+		return( length / 2.0 );
+	}
+
+	/** Produce the index buffer for the current set of live triangles */
+	protected VertexBuffer createLevel(
+		Format			pFormat
+	) {
+		Buffer aBuffer;
+		if ( pFormat == Format.UnsignedInt ) {
+			aBuffer = BufferUtils.createIntBuffer( mLiveTriangles * 3 );
+		} else {
+			aBuffer = BufferUtils.createShortBuffer( mLiveTriangles * 3 );
+		}
+		IndexBuffer anIndexBuffer = IndexBuffer.wrapIndexBuffer( aBuffer );
+		int ptr = 0;
+		for( int i = 0, j = mTriangles.length; i < j; i += 3 ) {
+			if ( mTriangles[i] >= 0 ) {
+				// Map back to the original vertex buffers
+				anIndexBuffer.put( ptr++, mRepresentative[ mTriangles[i] ] );
+				anIndexBuffer.put( ptr++, mRepresentative[ mTriangles[i + 1] ] );
+				anIndexBuffer.put( ptr++, mRepresentative[ mTriangles[i + 2] ] );
+			}
+		}
+		VertexBuffer aLevel = new VertexBuffer( Type.Index );
+		aLevel.setupData( Usage.Static, 3, pFormat, aBuffer );
+		return( aLevel );
+	}
+
+	/** Service routine to tally the use of an edge, independent of its direction */
+	protected static void countEdge(
+		Map<Long,Integer>	pEdgeCounts
+	,	int					pV0
+	,	int					pV1
+	) {
+		long edgeKey = (pV0 < pV1)
+			? (((long)pV0) << 32) | pV1
+			: (((long)pV1) << 32) | pV0;
+		Long aKey = new Long( edgeKey );
+		Integer aCount = pEdgeCounts.get( aKey );
+		pEdgeCounts.put( aKey, new Integer( (aCount == null) ? 1 : aCount.intValue() + 1 ) );
+	}
+}
+
+/** Helper class that represents a possible edge collapse */
+class CSGLODCollapse
+	implements Comparable<CSGLODCollapse>
+{
+	/** The vertex that moves */
+	protected int		mFrom;
+	protected int		mFromStamp;
+	/** The vertex it moves onto */
+	protected int		mTo;
+	protected int		mToStamp;
+	/** The error introduced by the move */
+	protected double	mCost;
+
+	CSGLODCollapse(
+		int		pFrom
+	,	int		pFromStamp
+	,	int		pTo
+	,	int		pToStamp
+	,	double	pCost
+	) {
+		mFrom = pFrom;
+		mFromStamp = pFromStamp;
+		mTo = pTo;
+		mToStamp = pToStamp;
+		mCost = pCost;
+	}
+
+	@Override
+	public int compareTo(
+		CSGLODCollapse	pOther
+	) {
+		return( Double.compare( this.mCost, pOther.mCost ) );
+	}
+}
+
+/** Helper class that provides a hashable key from quantized vertex attributes */
+class CSGLODVertexKey
+{
+	/** Quantization step */
+	protected float		mTolerance;
+	/** Quantized values */
+	protected int[]		mValues;
+	protected int		mCount;
+	protected int		mHash;
+
+	CSGLODVertexKey(
+		float			pTolerance
+	) {
+		mTolerance = pTolerance;
+		mValues = new int[ 8 ];
+	}
+	CSGLODVertexKey(
+		CSGLODVertexKey	pOther
+	) {
+		mTolerance = pOther.mTolerance;
+		mValues = pOther.mValues.clone();
+		mCount = pOther.mCount;
+		mHash = pOther.mHash;
+	}
+
+	/** Include the given elements from the buffer */
+	void add(
+		FloatBuffer		pBuffer
+	,	int				pVertexIndex
+	,	int				pComponents
+	) {
+		for( int i = 0; i < pComponents; i += 1 ) {
+			int aValue = Math.round( pBuffer.get( pVertexIndex * pComponents + i ) / mTolerance );
+			mValues[ mCount++ ] = aValue;
+			mHash = 31 * mHash + aValue;
+		}
+	}
+
+	@Override
+	public int hashCode() { return mHash; }
+
+	@Override
+	public boolean equals(
+		Object		pOther
+	) {
+		if ( pOther instanceof CSGLODVertexKey ) {
+			CSGLODVertexKey otherKey = (CSGLODVertexKey)pOther;
+			if ( (otherKey.mHash != mHash) || (otherKey.mCount != mCount) ) {
+				return( false );
+			}
+			for( int i = 0; i < mCount; i += 1 ) {
+				if ( otherKey.mValues[i] != mValues[i] ) return( false );
+			}
+			return( true );
+		}
+		return( false );
+	}
+}
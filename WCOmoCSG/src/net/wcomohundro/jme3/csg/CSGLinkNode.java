@@ -27,6 +27,8 @@ package net.wcomohundro.jme3.csg;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 
 import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
@@ -67,6 +69,13 @@ import com.jme3.scene.control.Control;
  		
  	This node also can act as a collection of independent CSGSpatials, triggering a single
  	regeneration of all CSG elements within itself.
+ 	
+ 	Since the CSGSpatials within a LinkNode are independent of each other, they can be
+ 	regenerated in parallel via 'parallelRegeneration'.  The scene changes of every such 
+ 	element are deferred while the work is in progress, and then applied in child order
+ 	on the calling thread once everything is complete.  Since a CSGSpatial typically 
+ 	regenerates itself as it is loaded, this is really only of interest when the children
+ 	are defined with deferRegeneration='true'.
  */
 public class CSGLinkNode 
 	extends CSGNode
@@ -78,6 +87,10 @@ public class CSGLinkNode
 	
 	/** Which element is being reconstructed */
 	protected CSGElement	mActiveElement;
+	/** Which elements are being reconstructed in parallel */
+	protected List<CSGElement>	mActiveElements;
+	/** Control flag for parallel regeneration of the independent elements */
+	protected boolean		mParallelRegeneration;
 	
 	
 	/** Null constructor */
@@ -96,7 +109,12 @@ public class CSGLinkNode
 		// Where are we in the process?
 		if ( mRegenNS < 0 ) {
 			// Work in progress
-			if ( mActiveElement != null ) {
+			if ( mActiveElements != null ) {
+				for( CSGElement anElement : mActiveElements ) {
+					anElement.reportStatus( pBuffer, pBriefly );
+					pBuffer.append( " " );
+				}
+			} else if ( mActiveElement != null ) {
 				mActiveElement.reportStatus( pBuffer, pBriefly );
 			}
 		} else {
@@ -114,8 +132,19 @@ public class CSGLinkNode
 	@Override
 	public synchronized int getProgress(
 	) {
+		if ( mActiveElements != null ) {
+			int aProgress = 0;
+			for( CSGElement anElement : mActiveElements ) {
+				aProgress += anElement.getProgress();
+			}
+			return( aProgress );
+		}
 		return( (mActiveElement == null) ? 0 : mActiveElement.getProgress() );
 	}
+	
+	/** Accessor to the parallel regeneration control flag */
+	public boolean getParallelRegeneration() { return mParallelRegeneration; }
+	public void setParallelRegeneration( boolean pFlag ) { mParallelRegeneration = pFlag; }
 
     /** If physics is active for any subelement, connect it all up now */
     @Override
@@ -149,6 +178,10 @@ public class CSGLinkNode
 		CSGShape lastValidShape = null;
 		mInError = null;
 		
+		if ( mParallelRegeneration ) {
+			// Let the independent elements run together
+			return( regenerateParallel( pOnlyIfNeeded, pEnvironment ) );
+		}
 		List<Spatial> aChildList =  this.getChildren();
 		for( int i = 0, j = aChildList.size(); i < j; i += 1 ) {
 			Spatial aSpatial = aChildList.get( i );
@@ -176,6 +209,135 @@ public class CSGLinkNode
 		return( lastValidShape );
 	}
 	
+	/** Regenerate all the CSGSpatial children in parallel */
+	protected CSGShape regenerateParallel(
+		final boolean		pOnlyIfNeeded
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		long totalNS = 0;
+		CSGShape lastValidShape = null;
+		
+		// Resolve the elements on this thread, since placeholder resolution alters
+		// the child list
+		List<Spatial> aChildList =  this.getChildren();
+		int childCount = aChildList.size();
+		final CSGElement[] elements = new CSGElement[ childCount ];
+		final CSGShape[] products = new CSGShape[ childCount ];
+		final CSGConstructionException[] errors = new CSGConstructionException[ childCount ];
+		boolean[] applyScene = new boolean[ childCount ];
+		
+		// Every task is idle(0) -> running(1) -> finished(2), or goes straight from idle 
+		// to finished if it never gets the chance to run
+		final AtomicIntegerArray taskStates = new AtomicIntegerArray( childCount );
+		
+		List<Callable<CSGShape>> taskList = new ArrayList<Callable<CSGShape>>( childCount );
+		List<CSGElement> activeList = new ArrayList<CSGElement>( childCount );
+		for( int i = 0; i < childCount; i += 1 ) {
+			Spatial aSpatial = resolveSpatial( aChildList.get( i ), i, true );
+			if ( aSpatial instanceof CSGElement ) {
+				elements[i] = (CSGElement)aSpatial;
+			}
+		}
+		for( int i = 0; i < childCount; i += 1 ) {
+			if ( elements[i] instanceof CSGSpatial ) {
+				// The scene must NOT be touched from multiple threads, so every task defers
+				// its changes via its own copy of the environment.  The spatial itself is
+				// left alone, and if the caller is already deferring for its own reasons,
+				// then the changes remain pending for the caller.
+				CSGSpatial aSpatial = (CSGSpatial)elements[i];
+				applyScene[i] = !aSpatial.isDeferringSceneChanges();
+
+				final int index = i;
+				final CSGEnvironment taskEnvironment = pEnvironment.clone( elements[i] );
+				taskEnvironment.mDeferSceneChanges = true;
+				activeList.add( elements[i] );
+				taskList.add( new Callable<CSGShape>() {
+					public CSGShape call() {
+						if ( !taskStates.compareAndSet( index, 0, 1 ) ) {
+							// Abandoned before it ever started
+							return( null );
+						}
+						try {
+							products[ index ] = elements[ index ].regenerate( pOnlyIfNeeded, taskEnvironment );
+						} catch( CSGConstructionException ex ) {
+							errors[ index ] = ex;
+						} finally {
+							synchronized( taskStates ) {
+								taskStates.set( index, 2 );
+								taskStates.notifyAll();
+							}
+						}
+						return( products[ index ] );
+					}
+				});
+			} else if ( elements[i] != null ) {
+				// Other elements (like a nested LinkNode) manipulate the scene as they go,
+				// so they run here and now (but may well run their own children in parallel)
+				try {
+					mActiveElement = elements[i];
+					products[i] = elements[i].regenerate( pOnlyIfNeeded, pEnvironment );
+				} catch( CSGConstructionException ex ) {
+					errors[i] = ex;
+				}
+				mActiveElement = null;
+			}
+		}
+		try {
+			synchronized( this ) {
+				mActiveElements = activeList;
+			}
+			CSGWorkerPool.invokeAll( taskList, this );
+		} finally {
+			// After an interrupt or failure, invokeAll() has only cancelled the other tasks,
+			// and a cancelled task may well still be running.  So claim every task that has
+			// not started, and wait out those that have, before the scene is touched.
+			boolean wasInterrupted = false;
+			synchronized( taskStates ) {
+				for( int i = 0; i < childCount; i += 1 ) {
+					if ( taskStates.compareAndSet( i, 0, 2 ) ) {
+						continue;
+					}
+					while( taskStates.get( i ) != 2 ) try {
+						taskStates.wait();
+					} catch( InterruptedException ex ) {
+						wasInterrupted = true;
+					}
+				}
+			}
+			if ( wasInterrupted ) {
+				// Let the caller see the interrupt
+				Thread.currentThread().interrupt();
+			}
+			synchronized( this ) {
+				mActiveElements = null;
+			}
+			// Apply the results in a predictable order
+			for( int i = 0; i < childCount; i += 1 ) {
+				if ( applyScene[i] ) {
+					((CSGSpatial)elements[i]).applySceneChanges();
+				}
+			}
+		}
+		for( int i = 0; i < childCount; i += 1 ) {
+			if ( elements[i] == null ) {
+				continue;
+			}
+			totalNS += elements[i].getShapeRegenerationNS();
+			if ( errors[i] != null ) {
+				// Record the error and continue on
+				setError( errors[i] );
+			} else if ( elements[i].isValid() ) {
+				// Remember the last valid shape
+				lastValidShape = products[i];
+			} else {
+				// If any child shape is invalid, then this shape is invalid
+				setError( elements[i].getError() );
+			}
+		}
+		mRegenNS = totalNS;
+		return( lastValidShape );
+	}
+	
 	/** Service routine to resolve any placeholder in the child list */
 	protected Spatial resolveSpatial(
 		Spatial		pSpatial
@@ -205,6 +367,9 @@ public class CSGLinkNode
 		// Let the super do its thing
 		super.read( pImporter );
 		
+		// Are the independent elements regenerated in parallel?
+		mParallelRegeneration = aCapsule.readBoolean( "parallelRegeneration", false );
+		
 		// Individual CSGSpatials may regenerate as part of read(), so now scan the list
 		// looking for any oddness.
 		mInError = null;
@@ -0,0 +1,212 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.FastMath;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+
+/** The CSG processing produces every Mesh with full 32 bit float positions, normals,
+ 	texture coordinates, and tangents.  For a large, static level that is a lot of video
+ 	memory for precision no one will ever see.
+
+ 	CSGMeshCompactor rewrites the buffers of a finished Mesh in a more compact form:
+ 		Normal		- normalized signed bytes (4 bytes rather than 12)
+ 		Tangent		- normalized signed bytes, including the handedness in w (4 rather than 16)
+ 		TexCoord	- half floats (4 bytes rather than 8)
+ 		Position	- OPTIONALLY normalized signed shorts (6 bytes rather than 12), relative
+ 					  to the bounds of the mesh
+
+ 	The standard jME shaders take normalized attributes as they come, so no shader changes
+ 	are needed.  I would have preferred 10:10:10:2 or octahedral normals, but jME has no
+ 	vertex Format for the packed variant and the stock shaders know nothing of octahedral
+ 	decoding, so signed bytes are the closest fit.
+
+ 	Quantized positions come back from the GPU in the range -1.0 to 1.0, so the Geometry
+ 	that displays the Mesh must apply the 'decode' Transform produced here (translate to
+ 	the center, scale by the extent).  Anything that reads positions on the CPU side (Bullet
+ 	collision shapes, picking, GeometryBatchFactory, updateBound) expects floats, so position
+ 	quantization is only suitable for purely visual meshes.
+
+ 	All of this must happen AFTER any LOD or TangentBinormal generation, which also expect
+ 	floats.  CSGLODGenerator and CSGTangentGenerator simply skip a mesh whose positions are
+ 	no longer floats.  Since Mesh.updateBound() cannot read the quantized buffer, the 
+ 	bound is set explicitly here, and must never be recomputed from the mesh.  The 
+ 	operations NOT supported on a mesh with quantized positions are:
+ 		-- Mesh.updateBound() / Geometry.updateModelBound()
+ 		-- picking and collision (including Bullet collision shapes)
+ 		-- LOD and tangent generation
+ 		-- GeometryBatchFactory merging
+ */
+public class CSGMeshCompactor
+{
+	/** Version tracking support */
+	public static final String sCSGMeshCompactorRevision="$Rev$";
+	public static final String sCSGMeshCompactorDate="$Date$";
+
+
+	/** Compact the normals/tangents/texture of the given Mesh, and optionally its positions.
+	 	If the positions are quantized, the decode Transform is returned, otherwise null.
+	 */
+	public static Transform compact(
+		Mesh		pMesh
+	,	boolean		pQuantizePositions
+	) {
+		compactDirections( pMesh, Type.Normal, 3 );
+		compactDirections( pMesh, Type.Tangent, 4 );
+		compactTexCoords( pMesh, Type.TexCoord );
+
+		if ( pQuantizePositions ) {
+			return( quantizePositions( pMesh ) );
+		} else {
+			return( null );
+		}
+	}
+
+	/** Service routine to pack unit length vectors into normalized bytes */
+	protected static void compactDirections(
+		Mesh		pMesh
+	,	Type		pType
+	,	int			pComponents
+	) {
+		VertexBuffer aBuffer = pMesh.getBuffer( pType );
+		if ( (aBuffer == null) || (aBuffer.getFormat() != Format.Float) ) {
+			// Nothing there, or already compacted
+			return;
+		}
+		FloatBuffer floatBuffer = (FloatBuffer)aBuffer.getDataReadOnly();
+		int elementCount = floatBuffer.limit() / pComponents;
+
+		// Pad 3 component values to 4 bytes to keep the attributes aligned
+		int packedComponents = (pComponents == 3) ? 4 : pComponents;
+		ByteBuffer byteBuffer = BufferUtils.createByteBuffer( elementCount * packedComponents );
+		for( int i = 0; i < elementCount; i += 1 ) {
+			for( int j = 0; j < packedComponents; j += 1 ) {
+				float aValue = (j < pComponents) ? floatBuffer.get( i * pComponents + j ) : 0.0f;
+				byteBuffer.put( (byte)Math.round( FastMath.clamp( aValue, -1.0f, 1.0f ) * 127.0f ) );
+			}
+		}
+		byteBuffer.flip();
+
+		VertexBuffer packedBuffer = new VertexBuffer( pType );
+		packedBuffer.setupData( Usage.Static, packedComponents, Format.Byte, byteBuffer );
+		packedBuffer.setNormalized( true );
+		pMesh.clearBuffer( pType );
+		pMesh.setBuffer( packedBuffer );
+	}
+
+	/** Service routine to pack texture coordinates into half floats */
+	protected static void compactTexCoords(
+		Mesh		pMesh
+	,	Type		pType
+	) {
+		VertexBuffer aBuffer = pMesh.getBuffer( pType );
+		if ( (aBuffer == null) || (aBuffer.getFormat() != Format.Float) ) {
+			// Nothing there, or already compacted
+			return;
+		}
+		int components = aBuffer.getNumComponents();
+		FloatBuffer floatBuffer = (FloatBuffer)aBuffer.getDataReadOnly();
+		int valueCount = floatBuffer.limit();
+
+		ByteBuffer byteBuffer = BufferUtils.createByteBuffer( valueCount * 2 );
+		for( int i = 0; i < valueCount; i += 1 ) {
+			byteBuffer.putShort( FastMath.convertFloatToHalf( floatBuffer.get( i ) ) );
+		}
+		byteBuffer.flip();
+
+		VertexBuffer packedBuffer = new VertexBuffer( pType );
+		packedBuffer.setupData( Usage.Static, components, Format.Half, byteBuffer );
+		pMesh.clearBuffer( pType );
+		pMesh.setBuffer( packedBuffer );
+	}
+
+	/** Service routine to quantize the positions relative to the mesh bounds */
+	protected static Transform quantizePositions(
+		Mesh		pMesh
+	) {
+		VertexBuffer aBuffer = pMesh.getBuffer( Type.Position );
+		if ( (aBuffer == null) || (aBuffer.getFormat() != Format.Float) ) {
+			// Nothing there, or already compacted
+			return( null );
+		}
+		// The current bounds define the quantization range
+		pMesh.updateBound();
+		BoundingBox aBound = (BoundingBox)pMesh.getBound();
+		Vector3f aCenter = aBound.getCenter().clone();
+		Vector3f anExtent = aBound.getExtent( null );
+
+		// Guard against flat meshes
+		if ( anExtent.x <= 0.0f ) anExtent.x = 1.0f;
+		if ( anExtent.y <= 0.0f ) anExtent.y = 1.0f;
+		if ( anExtent.z <= 0.0f ) anExtent.z = 1.0f;
+
+		FloatBuffer floatBuffer = (FloatBuffer)aBuffer.getDataReadOnly();
+		int vertexCount = floatBuffer.limit() / 3;
+		ShortBuffer shortBuffer = BufferUtils.createShortBuffer( vertexCount * 3 );
+		for( int i = 0; i < vertexCount; i += 1 ) {
+			shortBuffer.put( quantize( floatBuffer.get( i * 3 ), aCenter.x, anExtent.x ) );
+			shortBuffer.put( quantize( floatBuffer.get( i * 3 + 1 ), aCenter.y, anExtent.y ) );
+			shortBuffer.put( quantize( floatBuffer.get( i * 3 + 2 ), aCenter.z, anExtent.z ) );
+		}
+		shortBuffer.flip();
+
+		VertexBuffer packedBuffer = new VertexBuffer( Type.Position );
+		packedBuffer.setupData( Usage.Static, 3, Format.Short, shortBuffer );
+		packedBuffer.setNormalized( true );
+		pMesh.clearBuffer( Type.Position );
+		pMesh.setBuffer( packedBuffer );
+
+		// The bound is now in the normalized space, and can no longer be computed from
+		// the buffer, so set it explicitly
+		pMesh.setBound( new BoundingBox( new Vector3f(), 1.0f, 1.0f, 1.0f ) );
+
+		// Positions are decoded by scaling to the extent and moving to the center
+		Transform decodeTransform = new Transform();
+		decodeTransform.setTranslation( aCenter );
+		decodeTransform.setScale( anExtent );
+		return( decodeTransform );
+	}
+	protected static short quantize(
+		float		pValue
+	,	float		pCenter
+	,	float		pExtent
+	) {
+		float normalized = FastMath.clamp( (pValue - pCenter) / pExtent, -1.0f, 1.0f );
+		return( (short)Math.round( normalized * Short.MAX_VALUE ) );
+	}
+
+}
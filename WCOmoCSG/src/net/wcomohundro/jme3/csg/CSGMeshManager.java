@@ -25,17 +25,30 @@
 **/
 package net.wcomohundro.jme3.csg;
 
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.WeakHashMap;
 
 import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
 import net.wcomohundro.jme3.csg.shape.CSGFaceProperties;
 
 import com.jme3.asset.AssetKey;
 import com.jme3.bullet.control.PhysicsControl;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
 import com.jme3.light.Light;
 import com.jme3.light.LightList;
 import com.jme3.material.Material;
@@ -44,10 +57,15 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import com.jme3.scene.Spatial.CullHint;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.scene.control.AbstractControl;
 import com.jme3.scene.control.Control;
 import com.jme3.scene.control.LightControl;
 
+import jme3tools.optimize.GeometryBatchFactory;
+
 /** In order to provide for mapping various materials to the surfaces created by the
  	CSG blending process, it is necessary to produce independent Meshes for those
  	differing materials.
@@ -83,6 +101,21 @@ public class CSGMeshManager
 	
 	/** The predefined 'generic' mesh that applies to the master Material */
 	public static final Integer sGenericMeshIndex = new Integer( 0 );
+	
+	/** Sharing of Materials across the generated Geometries:
+	 		NONE -	every Geometry gets its own clone of its Material (the original behavior)
+	 		NODE -	one clone per distinct Material within a given CSGGeonode
+	 		SCENE -	one clone per distinct Material across every CSGGeonode
+	 	A 'distinct' Material is one with a distinct AssetKey, or a distinct instance if the
+	 	Material was not loaded from an asset.  Sharing cuts down on Material state changes
+	 	and plays nicely with the jME Material sorting, but it does mean that altering the
+	 	Material of one generated Geometry alters them all.
+	 */
+	public enum MaterialSharing {
+		NONE, NODE, SCENE
+	}
+	/** Materials shared across the scene */
+	protected static Map<Object,WeakReference<Material>> sSceneMaterials = new WeakHashMap<Object,WeakReference<Material>>();
 
 	/** Overloaded mapping of:
 	 		Material AssetKey := CSGMeshInfo
@@ -94,10 +127,17 @@ public class CSGMeshManager
 	protected int						mMeshCount;
 	/** Stack of active 'generic' indexes (to handle nested groups of shapes) */
 	protected Stack<CSGMeshInfo>		mGenericIndexStack;
+	/** Stacks of active 'generic' indexes for any other thread working on the same blend */
+	protected ThreadLocal<Stack<CSGMeshInfo>>	mThreadIndexStack;
 	/** Control flag to force a single material */
 	protected boolean					mForceSingleMaterial;
 	/** Mapping to resolve 'shared' lights */
 	protected Map<String,List<Control>>	mLightingMap;
+	/** How Materials are shared across the generated Geometries */
+	protected MaterialSharing			mMaterialSharing;
+	protected Map<Object,Material>		mSharedMaterials;
+	/** Control flag to blend meshes that differ only in their physics */
+	protected boolean					mMergePhysicsMeshes;
 	
 	
 	/** Constructor based on a given 'generic' material */
@@ -108,9 +148,12 @@ public class CSGMeshManager
 		mForceSingleMaterial = pForceSingleMaterial;
 		mMeshMap = new HashMap( 7 );
 		mLightingMap = new HashMap( 7 );
+		mMaterialSharing = MaterialSharing.NONE;
+		mSharedMaterials = new HashMap<Object,Material>( 7 );
 		
 		CSGMeshInfo genericInfo = new CSGMeshInfo( sGenericMeshIndex, pCSGElement );
 		mGenericIndexStack = new Stack();
+		mThreadIndexStack = new ThreadLocal<Stack<CSGMeshInfo>>();
 		mGenericIndexStack.push( genericInfo );
 		mMeshMap.put( sGenericMeshIndex, genericInfo );
 		
@@ -130,21 +173,357 @@ public class CSGMeshManager
 		}
 	}
 	
+	/** Produce a copy of the current registrations, WITHOUT any generated meshes.
+	 	A blended product carries the mesh indices assigned by the manager that was active
+	 	when it was built, so any further blending of that product must continue with
+	 	an equivalent manager.
+	 */
+	public synchronized CSGMeshManager snapshot(
+	) {
+		CSGMeshManager aCopy = new CSGMeshManager( this );
+		
+		// The same info may be registered under several keys, so retain that sharing
+		Map<CSGMeshInfo,CSGMeshInfo> infoMap = new IdentityHashMap<CSGMeshInfo,CSGMeshInfo>();
+		for( Map.Entry<Object,CSGMeshInfo> anEntry : mMeshMap.entrySet() ) {
+			if ( sMasterMeshIndex.equals( anEntry.getKey() ) ) {
+				// The master only exists after the meshes are produced
+				continue;
+			}
+			aCopy.mMeshMap.put( anEntry.getKey(), anEntry.getValue().snapshot( infoMap ) );
+		}
+		for( CSGMeshInfo anInfo : activeIndexStack() ) {
+			aCopy.mGenericIndexStack.push( anInfo.snapshot( infoMap ) );
+		}
+		return( aCopy );
+	}
+	/** Pick up the generated meshes (and their decode transforms) of another manager,
+	 	typically the source of an earlier snapshot(), for every index except those given.
+	 	This lets a partial rebuild reuse the meshes it did not change.
+	 */
+	public synchronized void adoptMeshes(
+		CSGMeshManager	pSource
+	,	Set<Integer>	pExceptIndices
+	) {
+		int limit = Math.min( mMeshCount, pSource.mMeshCount );
+		for( int i = 0; i <= limit; i += 1 ) {
+			Integer anIndex = new Integer( i );
+			if ( pExceptIndices.contains( anIndex ) ) {
+				continue;
+			}
+			CSGMeshInfo sourceInfo = pSource.mMeshMap.get( anIndex );
+			CSGMeshInfo meshInfo = mMeshMap.get( anIndex );
+			if ( (sourceInfo != null) && (meshInfo != null) && (meshInfo.mMesh == null) ) {
+				meshInfo.mMesh = sourceInfo.mMesh;
+				meshInfo.mDecodeTransform = sourceInfo.mDecodeTransform;
+			}
+		}
+	}
+	/** Produce a copy of the current registrations AND generated meshes (including the
+	 	master), where any mesh whose content matches the mesh under the same index of a 
+	 	prior copy is taken from that prior copy instead.  This lets a series of retained 
+	 	copies (see CSGProductState) share every mesh that did not change between them.
+	 */
+	public synchronized CSGMeshManager retainedCopy(
+		CSGMeshManager	pPrior
+	) {
+		CSGMeshManager aCopy = snapshot();
+		if ( pPrior != null ) {
+			Set<Integer> changedIndices = new HashSet<Integer>();
+			for( int i = 0; i <= mMeshCount; i += 1 ) {
+				Integer anIndex = new Integer( i );
+				if ( !sameMesh( mMeshMap.get( anIndex ), pPrior.mMeshMap.get( anIndex ) ) ) {
+					changedIndices.add( anIndex );
+				}
+			}
+			aCopy.adoptMeshes( pPrior, changedIndices );
+		}
+		// Whatever did not match comes from here
+		aCopy.adoptMeshes( this, Collections.<Integer>emptySet() );
+		
+		// The master is never part of a snapshot
+		CSGMeshInfo masterInfo = mMeshMap.get( sMasterMeshIndex );
+		if ( masterInfo != null ) {
+			CSGMeshInfo meshSource = masterInfo;
+			if ( (pPrior != null) && sameMesh( masterInfo, pPrior.mMeshMap.get( sMasterMeshIndex ) ) ) {
+				meshSource = pPrior.mMeshMap.get( sMasterMeshIndex );
+			}
+			CSGMeshInfo copyInfo = new CSGMeshInfo( sMasterMeshIndex
+													, masterInfo.mName
+													, meshSource.mMesh
+													, masterInfo.mMaterial );
+			copyInfo.mDecodeTransform = meshSource.mDecodeTransform;
+			aCopy.mMeshMap.put( sMasterMeshIndex, copyInfo );
+		}
+		return( aCopy );
+	}
+	/** Estimate the memory held by the buffers of every generated mesh, where any buffer 
+	 	already in the given set is not counted again (and every buffer counted is added)
+	 */
+	public synchronized long estimateMemory(
+		Set<Object>		pCounted
+	) {
+		long aSize = 0;
+		CSGMeshInfo masterInfo = mMeshMap.get( sMasterMeshIndex );
+		if ( masterInfo != null ) {
+			aSize += estimateMemory( masterInfo.mMesh, pCounted );
+		}
+		for( int i = 0; i <= mMeshCount; i += 1 ) {
+			CSGMeshInfo meshInfo = mMeshMap.get( new Integer( i ) );
+			if ( meshInfo != null ) {
+				aSize += estimateMemory( meshInfo.mMesh, pCounted );
+			}
+		}
+		return( aSize );
+	}
+	
+	/** Service routine to check if two infos hold interchangeable meshes */
+	protected static boolean sameMesh(
+		CSGMeshInfo		pInfo
+	,	CSGMeshInfo		pOther
+	) {
+		if ( (pInfo == null) || (pOther == null) || (pInfo.mMesh == null) ) {
+			return( false );
+		}
+		if ( (pInfo.mDecodeTransform == null) 
+			? (pOther.mDecodeTransform != null) 
+			: !pInfo.mDecodeTransform.equals( pOther.mDecodeTransform ) ) {
+			return( false );
+		}
+		return( sameContent( pInfo.mMesh, pOther.mMesh ) );
+	}
+	/** Service routine to compare the content of two meshes, including their LOD levels */
+	protected static boolean sameContent(
+		Mesh		pMesh
+	,	Mesh		pOther
+	) {
+		if ( pMesh == pOther ) {
+			return( true );
+		}
+		if ( (pMesh == null) || (pOther == null)
+		|| (pMesh.getMode() != pOther.getMode())
+		|| (pMesh.getBufferList().size() != pOther.getBufferList().size())
+		|| (pMesh.getNumLodLevels() != pOther.getNumLodLevels()) ) {
+			return( false );
+		}
+		for( VertexBuffer aBuffer : pMesh.getBufferList() ) {
+			if ( !sameContent( aBuffer, pOther.getBuffer( aBuffer.getBufferType() ) ) ) {
+				return( false );
+			}
+		}
+		for( int i = 0, j = pMesh.getNumLodLevels(); i < j; i += 1 ) {
+			if ( !sameContent( pMesh.getLodLevel( i ), pOther.getLodLevel( i ) ) ) {
+				return( false );
+			}
+		}
+		return( true );
+	}
+	protected static boolean sameContent(
+		VertexBuffer	pBuffer
+	,	VertexBuffer	pOther
+	) {
+		if ( pBuffer == pOther ) {
+			return( true );
+		}
+		if ( (pOther == null)
+		|| (pBuffer.getFormat() != pOther.getFormat())
+		|| (pBuffer.getNumComponents() != pOther.getNumComponents())
+		|| (pBuffer.isNormalized() != pOther.isNormalized()) ) {
+			return( false );
+		}
+		Buffer aData = wholeBuffer( pBuffer.getData() );
+		Buffer otherData = wholeBuffer( pOther.getData() );
+		return( (aData == null) ? (otherData == null) : aData.equals( otherData ) );
+	}
+	/** Service routine that views the full content of a buffer, without disturbing the
+	 	position of the buffer itself (which the renderer may be using)
+	 */
+	protected static Buffer wholeBuffer(
+		Buffer		pData
+	) {
+		Buffer aView;
+		if ( pData instanceof FloatBuffer ) {
+			aView = ((FloatBuffer)pData).duplicate();
+		} else if ( pData instanceof ShortBuffer ) {
+			aView = ((ShortBuffer)pData).duplicate();
+		} else if ( pData instanceof IntBuffer ) {
+			aView = ((IntBuffer)pData).duplicate();
+		} else if ( pData instanceof ByteBuffer ) {
+			aView = ((ByteBuffer)pData).duplicate();
+		} else {
+			// Nothing we know how to view
+			return( pData );
+		}
+		aView.rewind();
+		return( aView );
+	}
+	/** Service routine that estimates the memory held by the buffers of a mesh */
+	protected static long estimateMemory(
+		Mesh			pMesh
+	,	Set<Object>		pCounted
+	) {
+		long aSize = 0;
+		if ( pMesh != null ) {
+			for( VertexBuffer aBuffer : pMesh.getBufferList() ) {
+				aSize += estimateMemory( aBuffer, pCounted );
+			}
+			for( int i = 0, j = pMesh.getNumLodLevels(); i < j; i += 1 ) {
+				aSize += estimateMemory( pMesh.getLodLevel( i ), pCounted );
+			}
+		}
+		return( aSize );
+	}
+	protected static long estimateMemory(
+		VertexBuffer	pBuffer
+	,	Set<Object>		pCounted
+	) {
+		Buffer aData = pBuffer.getData();
+		if ( (aData == null) || !pCounted.add( aData ) ) {
+			// Nothing more to count
+			return( 0 );
+		}
+		return( (long)aData.capacity() * pBuffer.getFormat().getComponentSize() );
+	}
+	/** Produce a description of every mesh index registered so far.  Two managers with
+	 	the same signature will assign the same indices to the same shapes.
+	 */
+	public synchronized String getRegistrationSignature(
+	) {
+		StringBuilder aBuffer = new StringBuilder( 64 * (mMeshCount + 1) );
+		for( int i = 0; i <= mMeshCount; i += 1 ) {
+			CSGMeshInfo meshInfo = mMeshMap.get( new Integer( i ) );
+			aBuffer.append( i ).append( '|' ).append( meshInfo.mName );
+			if ( meshInfo.mMaterial != null ) {
+				aBuffer.append( '|' ).append( (meshInfo.mMaterial.getKey() == null)
+											? "Material-" + System.identityHashCode( meshInfo.mMaterial )
+											: meshInfo.mMaterial.getKey().getName() );
+			}
+			aBuffer.append( '|' ).append( meshInfo.mLightListKey )
+					.append( '|' ).append( meshInfo.mPhysicsKey )
+					.append( '|' ).append( meshInfo.mRenderKey )
+					.append( '|' ).append( (meshInfo.mDecorations == null) ? 0 : meshInfo.mDecorations.size() )
+					.append( ';' );
+		}
+		return( aBuffer.toString() );
+	}
+	/** Produce a description of a given mesh index that does not depend on any particular
+	 	instance, so that it can be matched up with the same registration on a later run.
+	 	Null is returned for an index whose registration cannot be reproduced (a Material
+	 	with no asset key, or custom lights/physics/rendering).
+	 */
+	public synchronized String getStableSignature(
+		Integer		pMeshIndex
+	) {
+		CSGMeshInfo meshInfo = mMeshMap.get( pMeshIndex );
+		if ( (meshInfo == null)
+		|| (meshInfo.mLightListKey != null)
+		|| (meshInfo.mPhysicsKey != null)
+		|| (meshInfo.mRenderKey != null) ) {
+			return( null );
+		}
+		String materialName = "";
+		if ( meshInfo.mMaterial != null ) {
+			if ( meshInfo.mMaterial.getKey() == null ) {
+				return( null );
+			}
+			materialName = meshInfo.mMaterial.getKey().getName();
+		}
+		return( meshInfo.mName + "|" + materialName 
+				+ "|" + ((meshInfo.mDecorations == null) ? 0 : meshInfo.mDecorations.size()) );
+	}
+	/** Produce the stable signature of every index, where null is returned if any index
+	 	has no such signature or two indices share the same one
+	 */
+	public Map<String,Integer> getStableSignatures(
+	) {
+		Map<String,Integer> signatureMap = new HashMap<String,Integer>( (mMeshCount + 1) * 2 );
+		for( int i = 0; i <= mMeshCount; i += 1 ) {
+			Integer anIndex = new Integer( i );
+			String aSignature = getStableSignature( anIndex );
+			if ( (aSignature == null) || (signatureMap.put( aSignature, anIndex ) != null) ) {
+				return( null );
+			}
+		}
+		return( signatureMap );
+	}
+	
+	/** Internal constructor that copies the simple settings of another manager */
+	protected CSGMeshManager(
+		CSGMeshManager	pOther
+	) {
+		mForceSingleMaterial = pOther.mForceSingleMaterial;
+		mMeshCount = pOther.mMeshCount;
+		mMeshMap = new HashMap<Object,CSGMeshInfo>( pOther.mMeshMap.size() * 2 );
+		mLightingMap = new HashMap<String,List<Control>>( pOther.mLightingMap );
+		mGenericIndexStack = new Stack<CSGMeshInfo>();
+		mThreadIndexStack = new ThreadLocal<Stack<CSGMeshInfo>>();
+		mMaterialSharing = pOther.mMaterialSharing;
+		mSharedMaterials = new HashMap<Object,Material>( 7 );
+		mMergePhysicsMeshes = pOther.mMergePhysicsMeshes;
+	}
+	
 	/** Adjustments to the active generic index */
 	public void pushGenericIndex(
 		Material	pGenericMaterial
 	,	CSGShape	pShape
 	) {
-		CSGMeshInfo meshInfo = resolveMeshInfo( null, pGenericMaterial, null, pShape );
-		if ( meshInfo.mMaterial == null ) {
-			// No specific override, still using the generic in force
-			meshInfo.mMaterial = this.resolveMaterial( sGenericMeshIndex );
+		CSGMeshInfo meshInfo;
+		synchronized( this ) {
+			meshInfo = resolveMeshInfo( null, pGenericMaterial, null, pShape );
+			if ( meshInfo.mMaterial == null ) {
+				// No specific override, still using the generic in force
+				meshInfo.mMaterial = this.resolveMaterial( sGenericMeshIndex );
+			}
 		}
-		mGenericIndexStack.push( meshInfo  );
+		activeIndexStack().push( meshInfo  );
 	}
 	public void popGenericIndex(
 	) {
-		mGenericIndexStack.pop();
+		activeIndexStack().pop();
+	}
+	
+	/** Multiple threads may well be preparing the operands of a single blend, where every
+	 	thread tracks its own nesting of generic indices.  A thread picks up the generic 
+	 	index in force in its parent via fork/adopt:
+	 		forkGenericIndex() captures the state of the calling (parent) thread
+	 		adoptGenericIndex() installs that state in the calling (worker) thread, returning 
+	 			the state it replaces, which must be restored via adoptGenericIndex() when 
+	 			the work is complete
+	 	Registrations themselves are synchronized, but NOTE that the mesh indices are then 
+	 	assigned in whatever order the threads happen to run, unless they have already been
+	 	registered on the parent thread (see CSGShape.prepareOperands()).
+	 */
+	protected Stack<CSGMeshInfo> forkGenericIndex(
+	) {
+		Stack<CSGMeshInfo> aState = new Stack<CSGMeshInfo>();
+		aState.addAll( activeIndexStack() );
+		return( aState );
+	}
+	protected Stack<CSGMeshInfo> adoptGenericIndex(
+		Stack<CSGMeshInfo>	pState
+	) {
+		Stack<CSGMeshInfo> priorState = mThreadIndexStack.get();
+		if ( pState == null ) {
+			mThreadIndexStack.remove();
+		} else {
+			// Every thread works on its own copy
+			Stack<CSGMeshInfo> aState = new Stack<CSGMeshInfo>();
+			aState.addAll( pState );
+			mThreadIndexStack.set( aState );
+		}
+		return( priorState );
+	}
+	/** Service routine to select the generic index stack of the calling thread */
+	protected Stack<CSGMeshInfo> activeIndexStack(
+	) {
+		Stack<CSGMeshInfo> aStack = mThreadIndexStack.get();
+		return( (aStack == null) ? mGenericIndexStack : aStack );
+	}
+	
+	/** Accessor to the generic index in force for the calling thread */
+	public Integer getGenericIndex(
+	) {
+		Stack<CSGMeshInfo> aStack = activeIndexStack();
+		return( (aStack.isEmpty()) ? sGenericMeshIndex : aStack.peek().mIndex );
 	}
 	
 	/** Get the count of distinct Meshes that have been defined (in addition to the generic) */
@@ -156,8 +535,10 @@ public class CSGMeshManager
 	,	Control		pLightControl
 	) {
 		Map<String,CSGNode> nodeMap = new HashMap();
+		Map<String,List<Geometry>> mergeMap = (mMergePhysicsMeshes) ? new HashMap<String,List<Geometry>>() : null;
+		Map<String,CSGMeshInfo> mergeInfoMap = (mMergePhysicsMeshes) ? new HashMap<String,CSGMeshInfo>() : null;
 		
-		List<Spatial> aList = new ArrayList( mMeshCount + 1 );
+		List<Spatial> aList = new ArrayList<Spatial>( mMeshCount + 1 );
 		for( int i = 0; i <= mMeshCount; i += 1 ) {
 			Geometry aSpatial;
 			CSGMeshInfo meshInfo = mMeshMap.get( new Integer( i ) );
@@ -167,90 +548,296 @@ public class CSGMeshManager
 				// Build a Geometry that covers the given mesh with the desired Material,
 				// applying local lights/physics as needed
 				aSpatial = new Geometry( meshInfo.resolveName( pCoreName + i ), meshInfo.mMesh );
-				aSpatial.updateModelBound();			// I am not 100% sure this is needed
+				if ( meshInfo.mDecodeTransform != null ) {
+					// Quantized positions must be scaled back into place (and the bound
+					// cannot be recomputed from the quantized buffer)
+					aSpatial.setLocalTransform( meshInfo.mDecodeTransform );
+				} else {
+					aSpatial.updateModelBound();			// I am not 100% sure this is needed
+				}
 				
 				if ( meshInfo.mMaterial != null ) {
-					aSpatial.setMaterial( meshInfo.mMaterial.clone() );
+					aSpatial.setMaterial( resolveSharedMaterial( meshInfo.mMaterial ) );
 				}
-				StringBuilder shapeKey = new StringBuilder( 128 );
-				if ( meshInfo.mUniqueMesh ) {
-					// Custom mesh name
-					shapeKey.append( meshInfo.mName );
+				String shapeKey = createShapeKey( meshInfo, true );
+				if ( (shapeKey.length() == 0) && (meshInfo.mDecorations != null) ) {
+					// We need a parent Node to hold the decorations
+					shapeKey = CSGShape.assignInstanceKey( "Decorations" );
 				}
-				if ( meshInfo.mLightListKey != null ) {
-					// Custom lights have been defined.  
-					shapeKey.append( meshInfo.mLightListKey );
+				attachSpatial( aSpatial, shapeKey, meshInfo, true, pCoreName + i + "Node", nodeMap, aList );
+				
+				if ( (mergeMap != null) 
+				&& (meshInfo.mPhysicsKey != null) 
+				&& (meshInfo.mMaterial != null)
+				&& (meshInfo.mDecorations == null) ) {
+					// Look for other meshes that differ only by their physics, where the
+					// Material is matched by its source (just like resolveSharedMaterial()),
+					// since every Geometry gets its own copy with MaterialSharing.NONE
+					Material aMaterial = meshInfo.mMaterial;
+					String mergeKey = createShapeKey( meshInfo, false ) + "-" 
+						+ ((aMaterial.getKey() == null) 
+							? "@" + System.identityHashCode( aMaterial ) 
+							: aMaterial.getKey().getName());
+					List<Geometry> mergeList = mergeMap.get( mergeKey );
+					if ( mergeList == null ) {
+						mergeList = new ArrayList<Geometry>( 4 );
+						mergeMap.put( mergeKey, mergeList );
+						mergeInfoMap.put( mergeKey, meshInfo );
+					}
+					mergeList.add( aSpatial );
 				}
-				if ( meshInfo.mPhysicsKey != null ) {
-					// Custom physics have been defined
-					shapeKey.append( meshInfo.mPhysicsKey );
+			}
+		}
+		if ( mergeMap != null ) {
+			// Blend the visible portion of meshes that differ only by physics
+			for( Map.Entry<String,List<Geometry>> anEntry : mergeMap.entrySet() ) {
+				List<Geometry> mergeList = anEntry.getValue();
+				if ( mergeList.size() < 2 ) {
+					// Nothing to merge
+					continue;
 				}
-				if ( meshInfo.mRenderKey != null ) {
-					// Custom rendering has been defined
-					shapeKey.append( meshInfo.mRenderKey );
+				// Generated LOD levels must carry over, which requires that every mesh
+				// has the same number of levels
+				int lodCount = mergeList.get( 0 ).getMesh().getNumLodLevels();
+				boolean lodMatch = true;
+				for( Geometry aGeometry : mergeList ) {
+					lodMatch &= (aGeometry.getMesh().getNumLodLevels() == lodCount);
 				}
-				if ( (shapeKey.length() == 0) && (meshInfo.mDecorations != null) ) {
-					// We need a parent Node to hold the decorations
-					shapeKey.append( CSGShape.assignInstanceKey( "Decorations" ) );
+				if ( !lodMatch ) {
+					// Better to draw them separately than to lose the LOD
+					continue;
 				}
-				if ( shapeKey.length() > 0 ) {
-					// In anticipation of multiple meshes sharing the same set of lights
-					// and/or physics, attach it all to a Node
-					String stringKey = shapeKey.toString();
-					CSGNode aNode = nodeMap.get( stringKey );
-					if ( aNode == null ) {
-						// This shape's Node has not yet been created
-						aNode = meshInfo.mRenderNode;
-						if ( aNode == null ) {
-							aNode = new CSGNode( meshInfo.resolveName( pCoreName + i + "Node" ) );
-						}
-						aList.add( aNode );
-						nodeMap.put( stringKey, aNode );
-						
-						// Include the lights at this new node level
-						// Remember that the meshInfo.mLightControls was set based on the lights
-						// associated with the shape/mesh that caused the creation of this
-						// particular info entry.
-						if ( meshInfo.mLightControls != null ) {
-							// Attach every light to the node, and register its control
-							for( Control aLightControl : meshInfo.mLightControls ) {
+				CSGMeshInfo meshInfo = mergeInfoMap.get( anEntry.getKey() );
+				Mesh mergedMesh = new Mesh();
+				GeometryBatchFactory.mergeGeometries( mergeList, mergedMesh );
+				if ( lodCount > 0 ) {
+					GeometryBatchFactory.makeLods( mergeList, mergedMesh );
+				}
+				Geometry aSpatial = new Geometry( meshInfo.resolveName( pCoreName + "Merged" + meshInfo.mIndex ), mergedMesh );
+				aSpatial.setMaterial( mergeList.get( 0 ).getMaterial() );
+				aSpatial.updateModelBound();
+				
+				// The individual meshes remain in place, since they define the collision
+				// shapes for their physics, but they are never rendered.  So they are
+				// replaced by a mesh with just the positions/indices that physics needs
+				// (shared, not copied), and the render only data goes with the original.
+				// Picking ignores the cull hint, so they are moved below a node that
+				// takes no part in collisions.
+				for( Geometry aGeometry : mergeList ) {
+					aGeometry.setMesh( createPhysicsMesh( aGeometry.getMesh() ) );
+					aGeometry.setCullHint( CullHint.Always );
+					
+					Node aParent = aGeometry.getParent();
+					if ( (aParent != null) && !(aParent instanceof CSGPhysicsOnlyNode) ) {
+						Node physicsNode = new CSGPhysicsOnlyNode( aGeometry.getName() + "Physics" );
+						aParent.attachChild( physicsNode );
+						physicsNode.attachChild( aGeometry );
+					}
+				}
+				String shapeKey = createShapeKey( meshInfo, false );
+				attachSpatial( aSpatial, shapeKey, meshInfo, false, pCoreName + "Merged" + meshInfo.mIndex + "Node", nodeMap, aList );
+			}
+		}
+		return( aList );
+	}
+	
+	/** Service routine that produces a mesh with only what a collision shape needs,
+	 	sharing the buffers of the given mesh
+	 */
+	protected Mesh createPhysicsMesh(
+		Mesh		pMesh
+	) {
+		Mesh aMesh = new Mesh();
+		aMesh.setMode( pMesh.getMode() );
+		aMesh.setBuffer( pMesh.getBuffer( Type.Position ) );
+		if ( pMesh.getBuffer( Type.Index ) != null ) {
+			aMesh.setBuffer( pMesh.getBuffer( Type.Index ) );
+		}
+		aMesh.setBound( pMesh.getBound().clone() );
+		aMesh.updateCounts();
+		return( aMesh );
+	}
+	
+	/** Rewrite the generated meshes with compact vertex formats (see CSGMeshCompactor) 
+	 	Only the displayed meshes are compacted, which means the master mesh is only 
+	 	compacted when it is the only mesh (otherwise it is the basis for bounds and
+	 	collision processing).  Likewise, any mesh with custom physics is left alone 
+	 	since it will be the source of a collision shape.
+	 */
+	public void compactMeshes(
+		boolean		pQuantizePositions
+	) {
+		compactMeshes( pQuantizePositions, null );
+	}
+	/** Compact just the given meshes (or all if null).  A singleton master is always
+	 	included, since it is rebuilt by every pass.
+	 */
+	public void compactMeshes(
+		boolean			pQuantizePositions
+	,	Set<Integer>	pMeshIndices
+	) {
+		if ( mMeshCount == 0 ) {
+			// The master is the only mesh that will actually be displayed
+			compactMesh( mMeshMap.get( sMasterMeshIndex ), pQuantizePositions );
+			return;
+		}
+		for( int i = 0; i <= mMeshCount; i += 1 ) {
+			Integer anIndex = new Integer( i );
+			if ( (pMeshIndices != null) && !pMeshIndices.contains( anIndex ) ) {
+				continue;
+			}
+			compactMesh( mMeshMap.get( anIndex ), pQuantizePositions );
+		}
+	}
+	protected void compactMesh(
+		CSGMeshInfo		pMeshInfo
+	,	boolean			pQuantizePositions
+	) {
+		if ( (pMeshInfo != null)
+		&& (pMeshInfo.mMesh != null) 
+		&& (pMeshInfo.mMesh.getTriangleCount() > 0) 
+		&& (pMeshInfo.mPhysicsKey == null) ) {
+			Transform decodeTransform = CSGMeshCompactor.compact( pMeshInfo.mMesh, pQuantizePositions );
+			if ( decodeTransform != null ) {
+				// NOTE that a mesh already quantized returns null, and keeps its transform
+				pMeshInfo.mDecodeTransform = decodeTransform;
+			}
+		}
+	}
+	
+	/** Control how Materials are shared by the Spatials produced */
+	public MaterialSharing getMaterialSharing() { return mMaterialSharing; }
+	public void setMaterialSharing(
+		MaterialSharing		pSharing
+	,	boolean				pMergePhysicsMeshes
+	) {
+		mMaterialSharing = (pSharing == null) ? MaterialSharing.NONE : pSharing;
+		mMergePhysicsMeshes = pMergePhysicsMeshes;
+	}
+	
+	/** Service routine to select the Material instance to apply to a generated Geometry */
+	protected Material resolveSharedMaterial(
+		Material		pMaterial
+	) {
+		Object aKey = (pMaterial.getKey() == null) ? pMaterial : pMaterial.getKey();
+		Material aMaterial;
+		switch( mMaterialSharing ) {
+		case NODE:
+			// One copy per distinct material within this manager
+			aMaterial = mSharedMaterials.get( aKey );
+			if ( aMaterial == null ) {
+				aMaterial = pMaterial.clone();
+				mSharedMaterials.put( aKey, aMaterial );
+			}
+			return( aMaterial );
+			
+		case SCENE:
+			// One copy per distinct material across everyone
+			synchronized( sSceneMaterials ) {
+				WeakReference<Material> aReference = sSceneMaterials.get( aKey );
+				aMaterial = (aReference == null) ? null : aReference.get();
+				if ( aMaterial == null ) {
+					aMaterial = pMaterial.clone();
+					sSceneMaterials.put( aKey, new WeakReference<Material>( aMaterial ) );
+				}
+			}
+			return( aMaterial );
+			
+		default:
+			// Every Geometry gets its own copy
+			return( pMaterial.clone() );
+		}
+	}
+	
+	/** Service routine that builds the key which decides the Node a given mesh belongs to */
+	protected String createShapeKey(
+		CSGMeshInfo		pMeshInfo
+	,	boolean			pIncludePhysics
+	) {
+		StringBuilder shapeKey = new StringBuilder( 128 );
+		if ( pMeshInfo.mUniqueMesh ) {
+			// Custom mesh name
+			shapeKey.append( pMeshInfo.mName );
+		}
+		if ( pMeshInfo.mLightListKey != null ) {
+			// Custom lights have been defined.  
+			shapeKey.append( pMeshInfo.mLightListKey );
+		}
+		if ( pIncludePhysics && (pMeshInfo.mPhysicsKey != null) ) {
+			// Custom physics have been defined
+			shapeKey.append( pMeshInfo.mPhysicsKey );
+		}
+		if ( pMeshInfo.mRenderKey != null ) {
+			// Custom rendering has been defined
+			shapeKey.append( pMeshInfo.mRenderKey );
+		}
+		return( shapeKey.toString() );
+	}
+	
+	/** Service routine that places a Geometry into the proper spot in the list of Spatials */
+	protected void attachSpatial(
+		Geometry				pSpatial
+	,	String					pShapeKey
+	,	CSGMeshInfo				pMeshInfo
+	,	boolean					pWithPhysics
+	,	String					pNodeName
+	,	Map<String,CSGNode>		pNodeMap
+	,	List<Spatial>			pList
+	) {
+		if ( pShapeKey.length() > 0 ) {
+			// In anticipation of multiple meshes sharing the same set of lights
+			// and/or physics, attach it all to a Node
+			CSGNode aNode = pNodeMap.get( pShapeKey );
+			if ( aNode == null ) {
+				// This shape's Node has not yet been created
+				aNode = pMeshInfo.mRenderNode;
+				if ( aNode == null ) {
+					aNode = new CSGNode( pMeshInfo.resolveName( pNodeName ) );
+				}
+				pList.add( aNode );
+				pNodeMap.put( pShapeKey, aNode );
+				
+				// Include the lights at this new node level
+				// Remember that the meshInfo.mLightControls was set based on the lights
+				// associated with the shape/mesh that caused the creation of this
+				// particular info entry.
+				if ( pMeshInfo.mLightControls != null ) {
+					// Attach every light to the node, and register its control
+					for( Control aLightControl : pMeshInfo.mLightControls ) {
+						aNode.addLight( CSGLightControl.resolveLight( aLightControl ) );
+						aNode.addControl( aLightControl );
+					}
+				}
+				if ( pMeshInfo.mSharedLights != null ) {
+					// Share in the shared lights 
+					// (NOT copies, and not controlled - that is the province of the original)
+					for( String aLightReference : pMeshInfo.mSharedLights ) {
+						List<Control> sharedControls = this.mLightingMap.get( aLightReference );
+						if ( sharedControls != null ) {
+							for( Control aLightControl : sharedControls ) {
 								aNode.addLight( CSGLightControl.resolveLight( aLightControl ) );
-								aNode.addControl( aLightControl );
-							}
-						}
-						if ( meshInfo.mSharedLights != null ) {
-							// Share in the shared lights 
-							// (NOT copies, and not controlled - that is the province of the original)
-							for( String aLightReference : meshInfo.mSharedLights ) {
-								List<Control> sharedControls = this.mLightingMap.get( aLightReference );
-								if ( sharedControls != null ) {
-									for( Control aLightControl : sharedControls ) {
-										aNode.addLight( CSGLightControl.resolveLight( aLightControl ) );
-									}
-								}
-							}
-						}
-						if ( meshInfo.mPhysics != null ) {
-							// Remember the active physics that was registered with this mesh
-							aNode.setPhysics( meshInfo.mPhysics );
-						}
-						if ( meshInfo.mDecorations != null ) {
-							// All decorations applied to this mesh are included within the Node
-							for( Spatial aDecoration : meshInfo.mDecorations ) {
-								aNode.attachChild( aDecoration );
 							}
 						}
 					}
-					// Attach the mesh/material to the node with the lights/physics
-					aNode.attachChild( aSpatial );
-					
-				} else {
-					// No lights/physics, just add the Geometry as is
-					aList.add( aSpatial );
+				}
+				if ( pWithPhysics && (pMeshInfo.mPhysics != null) ) {
+					// Remember the active physics that was registered with this mesh
+					aNode.setPhysics( pMeshInfo.mPhysics );
+				}
+				if ( pMeshInfo.mDecorations != null ) {
+					// All decorations applied to this mesh are included within the Node
+					for( Spatial aDecoration : pMeshInfo.mDecorations ) {
+						aNode.attachChild( aDecoration );
+					}
 				}
 			}
+			// Attach the mesh/material to the node with the lights/physics
+			aNode.attachChild( pSpatial );
+			
+		} else {
+			// No lights/physics, just add the Geometry as is
+			pList.add( pSpatial );
 		}
-		return( aList );
 	}
 	
 	/** Define a material for subsequent use, returning its associated Mesh index */
@@ -274,7 +861,7 @@ public class CSGMeshManager
 	}
 	
 	/** Register the Master mesh */
-	public void registerMasterMesh(
+	public synchronized void registerMasterMesh(
 		Mesh		pMesh
 	,	String		pName
 	) {
@@ -285,7 +872,7 @@ public class CSGMeshManager
 	}
 	
 	/** Register a Mesh under a given index */
-	public void registerMesh(
+	public synchronized void registerMesh(
 		Mesh		pMesh
 	,	Integer		pMeshIndex
 	) {
@@ -297,9 +884,18 @@ public class CSGMeshManager
 		}
 		meshInfo.mMesh = pMesh;
 	}
+	/** Register a Mesh whose positions are quantized, along with its decode transform */
+	public synchronized void registerMesh(
+		Mesh		pMesh
+	,	Integer		pMeshIndex
+	,	Transform	pDecodeTransform
+	) {
+		registerMesh( pMesh, pMeshIndex );
+		mMeshMap.get( pMeshIndex ).mDecodeTransform = pDecodeTransform;
+	}
 	
 	/** Return the material used for a given index */
-	public Material resolveMaterial(
+	public synchronized Material resolveMaterial(
 		Integer		pMeshIndex
 	) {
 		if ( mForceSingleMaterial ) {
@@ -311,12 +907,20 @@ public class CSGMeshManager
 	}
 	
 	/** Return the mesh used for a given index */
-	public Mesh resolveMesh(
+	public synchronized Mesh resolveMesh(
 		Integer		pMeshIndex
 	) {
 		Mesh aMesh = mMeshMap.get( pMeshIndex ).mMesh;
 		return( aMesh );
 	}
+	/** Return the transform that decodes the quantized positions of a given index 
+	 	(null if the positions are not quantized) 
+	 */
+	public synchronized Transform resolveDecodeTransform(
+		Integer		pMeshIndex
+	) {
+		return( mMeshMap.get( pMeshIndex ).mDecodeTransform );
+	}
 	
 	/** Service routine that constructs the appropriate lookup key to select
 	 	Mesh information based on the active material, lighting, and physics
@@ -378,7 +982,7 @@ public class CSGMeshManager
 								, pProperties.getPhysics()
 								, pShape ) );
 	}
-	protected CSGMeshInfo resolveMeshInfo(
+	protected synchronized CSGMeshInfo resolveMeshInfo(
 		String			pMeshName
 	,	Material		pMaterial
 	,	PhysicsControl	pPhysics
@@ -389,7 +993,7 @@ public class CSGMeshManager
 		
 		// NOTE that pMeshName will only be non-null if a custom name was defined
 		//		via face properties
-		CSGMeshInfo genericInfo = mGenericIndexStack.peek();
+		CSGMeshInfo genericInfo = activeIndexStack().peek();
 
 		// Which lights apply?
 		String aLightListKey;
@@ -456,7 +1060,7 @@ public class CSGMeshManager
 				// At this point, we must have a Material, so use the 
 				// generic as needed
 				if ( pMaterial == null ) {
-					pMaterial = mGenericIndexStack.peek().mMaterial;
+					pMaterial = activeIndexStack().peek().mMaterial;
 				}
 				useInfo = new CSGMeshInfo( meshIndex
 											, (pMeshName == null) ? pShape.getName() : pMeshName
@@ -542,6 +1146,8 @@ class CSGMeshInfo
 	protected String			mRenderKey;
 	/** The generated mesh */
 	protected Mesh				mMesh;
+	/** The transform that restores quantized positions (if any) */
+	protected Transform			mDecodeTransform;
 	
 	/** Standard constructor for a 'generic' definition */
 	CSGMeshInfo(
@@ -611,6 +1217,24 @@ class CSGMeshInfo
 		this.mMaterial = pMaterial;
 	}
 
+	/** Copy this info, WITHOUT its generated mesh, reusing any copy already made */
+	CSGMeshInfo snapshot(
+		Map<CSGMeshInfo,CSGMeshInfo>	pCopies
+	) {
+		CSGMeshInfo aCopy = pCopies.get( this );
+		if ( aCopy == null ) {
+			aCopy = new CSGMeshInfo( mIndex, mName, mUniqueMesh, mMaterial
+									, mLightControls, mSharedLights, mLightListKey
+									, mPhysics, mPhysicsKey
+									, mRenderNode, mRenderKey );
+			if ( mDecorations != null ) {
+				aCopy.mDecorations = new ArrayList<Spatial>( mDecorations );
+			}
+			pCopies.put( this, aCopy );
+		}
+		return( aCopy );
+	}
+
 	/** Resolve the name to use with any entity generated to handle this mesh */
 	public String resolveName(
 		String		pDefault
@@ -635,4 +1259,27 @@ class CSGMeshInfo
 	) {
 		return( "CSGMeshInfo[" + mIndex + "] " + ((mName == null) ? "" : mName ) );
 	}
+}
+
+/** Helper class that holds a Geometry which only defines a collision shape for physics
+ 	(see CSGMeshManager.getSpatials()), and which must never be picked
+ */
+class CSGPhysicsOnlyNode
+	extends Node
+{
+	CSGPhysicsOnlyNode(
+		String		pName
+	) {
+		super( pName );
+		this.setCullHint( CullHint.Always );
+	}
+	
+	/** Nothing within takes part in a collision check (like a ray pick) */
+	@Override
+	public int collideWith(
+		Collidable			pOther
+	,	CollisionResults	pResults
+	) {
+		return( 0 );
+	}
 }
\ No newline at end of file
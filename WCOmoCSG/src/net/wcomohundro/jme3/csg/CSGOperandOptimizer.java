@@ -0,0 +1,371 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGOperator;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+
+/** The shapes of a group are blended in the order given, but the cost of a blend depends
+ 	heavily on that order.  CSGOperandOptimizer rewrites a (sorted) list of shapes into a 
+ 	cheaper sequence with the same result, based on the bounds and face counts of the 
+ 	operands:
+ 		-- A - B - C  is the same as  A - (B + C), and if B and C do not overlap, then 
+ 			B + C is a simple MERGE of their faces.  So a run of subtrahends is gathered 
+ 			into batches of non-overlapping shapes, and the product is blended once per 
+ 			batch, rather than once per shape.
+ 		-- A subtrahend that cannot touch the product has no effect and is dropped.
+ 		-- Unions are commutative, so a run of unions is taken smallest first, and
+ 			non-overlapping operands are batched just like subtrahends.
+ 		-- A union operand that cannot touch the product (or any other operand of the
+ 			run) is simply MERGED into the product.
+ 	The bounds used are axis aligned boxes in the frame of the group, and the product
+ 	bound is tracked as the sum of everything added to it (always a superset of the
+ 	true product).  Any shape whose bound cannot be determined up front (a proxy, or a
+ 	surface other than the mesh itself) is left exactly where it is, and the tracking
+ 	of the product bound is abandoned if it would grow by an unknown amount.
+ 	
+ 	Batches are represented by CSGOperandBatch, a group shape whose members are all 
+ 	merged together.
+ */
+public class CSGOperandOptimizer
+{
+	/** Version tracking support */
+	public static final String sCSGOperandOptimizerRevision="$Rev$";
+	public static final String sCSGOperandOptimizerDate="$Date$";
+
+
+	/** Rewrite the given list of shapes for a cheaper blend with the same result */
+	public static List<CSGShape> optimize(
+		List<CSGShape>		pShapes
+	,	CSGEnvironment		pEnvironment
+	) {
+		int count = pShapes.size();
+		if ( count < 2 ) {
+			// Nothing to rearrange
+			return( pShapes );
+		}
+		List<CSGShape> optimized = new ArrayList<CSGShape>( count );
+		BoundingBox productBound = null;
+		boolean haveProduct = false;
+		
+		int index = 0;
+		while( index < count ) {
+			CSGShape aShape = pShapes.get( index );
+			CSGOperator anOperator = aShape.getOperator();
+			if ( !aShape.isValid() 
+			|| (anOperator == CSGOperator.SKIP) 
+			|| (!haveProduct && (anOperator == CSGOperator.DIFFERENCE)) ) {
+				// Not taking part, but left in place (so that any error is reported)
+				optimized.add( aShape );
+				index += 1;
+				continue;
+			}
+			BoundingBox aBound = resolveBound( aShape );
+			if ( !haveProduct ) {
+				// A place to start
+				haveProduct = true;
+				productBound = aBound;
+				optimized.add( aShape );
+				index += 1;
+				continue;
+			}
+			if ( (aBound == null) 
+			|| ((anOperator != CSGOperator.UNION) && (anOperator != CSGOperator.DIFFERENCE)) ) {
+				// Taken as is
+				optimized.add( aShape );
+				if ( anOperator != CSGOperator.INTERSECTION ) {
+					// An intersection can only shrink the product, everything else adds to it
+					productBound = mergeBounds( productBound, aBound );
+				}
+				index += 1;
+				continue;
+			}
+			// Gather the run of shapes with the same operator and known bounds
+			List<CSGShape> runShapes = new ArrayList<CSGShape>();
+			List<BoundingBox> runBounds = new ArrayList<BoundingBox>();
+			while( index < count ) {
+				aShape = pShapes.get( index );
+				if ( !aShape.isValid() 
+				|| (aShape.getOperator() != anOperator) 
+				|| ((aBound = resolveBound( aShape )) == null) ) {
+					break;
+				}
+				runShapes.add( aShape );
+				runBounds.add( aBound );
+				index += 1;
+			}
+			if ( anOperator == CSGOperator.DIFFERENCE ) {
+				// Only those that touch the product matter
+				List<Integer> touching = new ArrayList<Integer>( runShapes.size() );
+				for( int i = 0, j = runShapes.size(); i < j; i += 1 ) {
+					if ( (productBound == null) || productBound.intersects( runBounds.get( i ) ) ) {
+						touching.add( new Integer( i ) );
+					}
+				}
+				emitBatches( touching, runShapes, runBounds, CSGOperator.DIFFERENCE, optimized );
+			} else {
+				// Smallest first
+				List<Integer> touching = sortByFaceCount( runShapes );
+				
+				// Anything clear of the product and every other operand is simply merged
+				List<Integer> separate = new ArrayList<Integer>( touching.size() );
+				if ( productBound != null ) {
+					for( int i = 0; i < touching.size(); ) {
+						Integer anIndex = touching.get( i );
+						if ( productBound.intersects( runBounds.get( anIndex.intValue() ) ) ) {
+							i += 1;
+						} else {
+							separate.add( touching.remove( i ) );
+						}
+					}
+					boolean changed;
+					do {
+						changed = false;
+						for( Integer anIndex : separate ) {
+							BoundingBox thisBound = runBounds.get( anIndex.intValue() );
+							if ( overlapsAny( thisBound, touching, runBounds, anIndex ) 
+							|| overlapsAny( thisBound, separate, runBounds, anIndex ) ) {
+								// Must be blended after all
+								separate.remove( anIndex );
+								touching.add( anIndex );
+								changed = true;
+								break;
+							}
+						}
+					} while( changed );
+					Collections.sort( touching );
+					Collections.sort( separate );
+				}
+				emitBatches( touching, runShapes, runBounds, CSGOperator.UNION, optimized );
+				if ( !separate.isEmpty() ) {
+					optimized.add( new CSGOperandBatch( selectShapes( separate, runShapes ), CSGOperator.MERGE ) );
+				}
+				for( BoundingBox runBound : runBounds ) {
+					productBound = mergeBounds( productBound, runBound );
+				}
+			}
+		}
+		return( optimized );
+	}
+	
+	/** Service routine that gathers non-overlapping shapes into batches, preserving the 
+	 	given sequence as much as possible
+	 */
+	protected static void emitBatches(
+		List<Integer>		pSelected
+	,	List<CSGShape>		pShapes
+	,	List<BoundingBox>	pBounds
+	,	CSGOperator			pOperator
+	,	List<CSGShape>		pResult
+	) {
+		List<List<Integer>> batchList = new ArrayList<List<Integer>>();
+		for( Integer anIndex : pSelected ) {
+			BoundingBox aBound = pBounds.get( anIndex.intValue() );
+			List<Integer> useBatch = null;
+			for( List<Integer> aBatch : batchList ) {
+				if ( !overlapsAny( aBound, aBatch, pBounds, null ) ) {
+					useBatch = aBatch;
+					break;
+				}
+			}
+			if ( useBatch == null ) {
+				useBatch = new ArrayList<Integer>();
+				batchList.add( useBatch );
+			}
+			useBatch.add( anIndex );
+		}
+		for( List<Integer> aBatch : batchList ) {
+			if ( aBatch.size() == 1 ) {
+				// Nothing to batch
+				pResult.add( pShapes.get( aBatch.get( 0 ).intValue() ) );
+			} else {
+				pResult.add( new CSGOperandBatch( selectShapes( aBatch, pShapes ), pOperator ) );
+			}
+		}
+	}
+	
+	/** Service routine to check a bound against the bounds of the selected shapes */
+	protected static boolean overlapsAny(
+		BoundingBox			pBound
+	,	List<Integer>		pSelected
+	,	List<BoundingBox>	pBounds
+	,	Integer				pIgnore
+	) {
+		for( Integer anIndex : pSelected ) {
+			if ( !anIndex.equals( pIgnore ) && pBound.intersects( pBounds.get( anIndex.intValue() ) ) ) {
+				return( true );
+			}
+		}
+		return( false );
+	}
+	
+	/** Service routine to select shapes by their index */
+	protected static List<CSGShape> selectShapes(
+		List<Integer>		pSelected
+	,	List<CSGShape>		pShapes
+	) {
+		List<CSGShape> aList = new ArrayList<CSGShape>( pSelected.size() );
+		for( Integer anIndex : pSelected ) {
+			aList.add( pShapes.get( anIndex.intValue() ) );
+		}
+		return( aList );
+	}
+	
+	/** Service routine that produces the indices of the given shapes, smallest first */
+	protected static List<Integer> sortByFaceCount(
+		List<CSGShape>		pShapes
+	) {
+		final int[] faceCounts = new int[ pShapes.size() ];
+		List<Integer> indexList = new ArrayList<Integer>( faceCounts.length );
+		for( int i = 0; i < faceCounts.length; i += 1 ) {
+			faceCounts[ i ] = resolveFaceCount( pShapes.get( i ) );
+			indexList.add( new Integer( i ) );
+		}
+		// NOTE that the sort is stable, so equal counts retain their original order
+		Collections.sort( indexList, new Comparator<Integer>() {
+			@Override
+			public int compare( Integer pA, Integer pB ) {
+				return( faceCounts[ pA.intValue() ] - faceCounts[ pB.intValue() ] );
+			}
+		});
+		return( indexList );
+	}
+	
+	/** Service routine that determines the bound of a shape within the frame of its group,
+	 	or null if that cannot be known without blending
+	 */
+	protected static BoundingBox resolveBound(
+		CSGShape		pShape
+	) {
+		BoundingBox aBound = null;
+		if ( pShape.mProxy != null ) {
+			// Unknown until resolved
+			return( null );
+		} else if ( pShape.mSubShapes != null ) {
+			// Everything added by the subshapes
+			for( CSGShape aShape : pShape.mSubShapes ) {
+				if ( !aShape.isValid() ) {
+					continue;
+				}
+				switch( aShape.getOperator() ) {
+				case UNION:
+				case INTERSECTION:
+				case MERGE:
+					BoundingBox subBound = resolveBound( aShape );
+					if ( subBound == null ) {
+						return( null );
+					}
+					aBound = mergeBounds( (aBound == null) ? subBound : aBound, subBound );
+					break;
+				default:
+					// Subtraction only shrinks the result
+					break;
+				}
+			}
+		} else if ( pShape.getShapeSurface() == CSGShape.CSGShapeSurface.USE_MESH ) {
+			// The full extent of the mesh
+			Mesh aMesh = pShape.getMesh();
+			FloatBuffer positions = (aMesh == null) ? null : aMesh.getFloatBuffer( Type.Position );
+			if ( positions != null ) {
+				aBound = new BoundingBox();
+				aBound.computeFromPoints( positions );
+			}
+		}
+		if ( aBound != null ) {
+			// Into the frame of the group
+			aBound = (BoundingBox)aBound.transform( pShape.getLocalTransform(), null );
+		}
+		return( aBound );
+	}
+	
+	/** Service routine that determines the face count of a shape */
+	protected static int resolveFaceCount(
+		CSGShape		pShape
+	) {
+		if ( pShape.mSubShapes != null ) {
+			int faceCount = 0;
+			for( CSGShape aShape : pShape.mSubShapes ) {
+				faceCount += resolveFaceCount( aShape );
+			}
+			return( faceCount );
+		}
+		Mesh aMesh = pShape.getMesh();
+		return( (aMesh == null) ? 0 : aMesh.getTriangleCount() );
+	}
+	
+	/** Service routine to combine bounds, where null means unknown */
+	protected static BoundingBox mergeBounds(
+		BoundingBox		pBoundA
+	,	BoundingBox		pBoundB
+	) {
+		if ( (pBoundA == null) || (pBoundB == null) ) {
+			return( null );
+		}
+		return( (BoundingBox)pBoundA.merge( pBoundB ) );
+	}
+}
+
+/** Helper class that gathers a set of non-overlapping operands, which are simply merged 
+ 	together, and the result used as a single operand
+ */
+class CSGOperandBatch
+	extends CSGShape
+{
+	/** Constructor based on the members of the batch */
+	CSGOperandBatch(
+		List<CSGShape>		pMembers
+	,	CSGOperator			pOperator
+	) {
+		super( (String)null, pMembers );
+		setOperator( pOperator );
+		setOrder( pMembers.get( 0 ).getOrder() );
+	}
+	
+	/** Every member is merged together */
+	@Override
+	protected CSGOperator blendOperator(
+		CSGShape		pShape
+	) {
+		return( CSGOperator.MERGE );
+	}
+	
+	/** The members have already been arranged */
+	@Override
+	protected List<CSGShape> optimizeShapeList(
+		List<CSGShape>		pShapes
+	,	CSGEnvironment		pEnvironment
+	) {
+		return( pShapes );
+	}
+}
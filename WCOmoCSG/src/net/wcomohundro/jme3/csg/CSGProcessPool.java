@@ -0,0 +1,783 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI.CSGErrorCode;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+
+/** A pathological set of shapes can drive an IOB or BSP blend to consume an enormous 
+ 	amount of memory, or to run for minutes.  Inside the game process, that can take down
+ 	the whole JVM, or stall every other regeneration through garbage collection.
+ 	
+ 	CSGProcessPool is an optional pool of local worker processes (see CSGProcessWorker) 
+ 	that a CSGGeonode can farm its regeneration out to (see setRemoteRegeneration()), where:
+ 		-- every worker is a separate JVM with its own heap, limited by -Xmx
+ 		-- every job is limited in time, and a worker that runs over (or whose job is
+ 			cancelled) is simply killed and replaced by a fresh one on demand
+ 		-- a worker that runs out of memory exits, and is likewise replaced
+ 		-- jobs run in parallel, one per worker, so a misbehaving job holds up no one else
+ 	A worker failure is reported as a construction failure of the geonode, without any
+ 	attempt to blend locally, since that is exactly what the pool is protecting against.
+ 	
+ 	A job runs in the background (see submit()), and the caller checks on it via poll(),
+ 	so that a sliced regeneration never blocks while the worker is busy.  The watchdog
+ 	enforces the time limit and the cancel token of the environment, while an interrupt
+ 	of the thread that polls the job cancels it directly.
+ 	
+ 	The geonode definition goes to the worker via the BinaryExporter.  The worker blends 
+ 	and processes the meshes (LOD, tangents, compaction) just as the geonode would, and 
+ 	sends them back via a compact binary protocol over its stdin/stdout pipes.  As with the 
+ 	CSGDiskCache, the shapes register their mesh indices locally (without any blending) 
+ 	and the meshes are matched to those indices by their stable signatures.  So a geonode 
+ 	whose registrations could not be reproduced by the worker (a Material with no asset 
+ 	key, custom lights/physics/rendering) fails to regenerate, unless it explicitly allows
+ 	a local blend instead (see CSGGeonode.setRemoteFallback()).
+ 	
+ 	Every message is big-endian (as produced by DataOutputStream):
+ 		request:	int magic, int version, int byte count, byte[] exported geonode
+ 		response:	int status, then either a utf message (failed), or
+ 					int count of custom meshes, mesh master, { utf signature, mesh }...
+ 	where a 'mesh' is
+ 		int		mode ordinal (-1 for no mesh at all)
+ 		int		buffer count, then { int type ordinal, buffer } for each buffer
+ 		int		LOD level count, then { buffer } for each level
+ 		boolean	quantized positions, followed by the decode translation/scale if so
+ 	and a 'buffer' is
+ 		int format ordinal, int components, boolean normalized, int data kind, 
+ 		int element count, elements (float/int/short/byte per the data kind)
+ 	
+ 	The pool is inactive until configure() is called.
+ */
+public class CSGProcessPool
+{
+	/** Version tracking support */
+	public static final String sCSGProcessPoolRevision="$Rev$";
+	public static final String sCSGProcessPoolDate="$Date$";
+
+	/** Marks the start of every request ('CSGP') */
+	public static final int sMagicNumber = 0x43534750;
+	/** The version of the protocol */
+	public static final int sProtocolVersion = 1;
+	/** Response status */
+	public static final int sStatusOK = 0;
+	public static final int sStatusFailed = 1;
+	/** How often (ms) the watchdog checks on an active job */
+	public static final long sWatchdogInterval = 100;
+	
+	/** The kinds of buffer data */
+	protected static final int sFloatData = 0;
+	protected static final int sIntData = 1;
+	protected static final int sShortData = 2;
+	protected static final int sByteData = 3;
+	
+	/** How many workers may run (where 0 disables the pool) */
+	protected static int						sProcessLimit;
+	/** The maximum heap of each worker (-Xmx syntax, null for the JVM default) */
+	protected static String						sMaxHeap;
+	/** The time limit (ms) of a single job (0 for no limit) */
+	protected static long						sTimeLimitMS;
+	/** Where the workers find their assets */
+	protected static List<String>				sAssetDirs;
+	/** The workers ready for a job */
+	protected static LinkedList<CSGWorkerProcess>	sIdleProcesses = new LinkedList<CSGWorkerProcess>();
+	/** How many workers are currently running */
+	protected static int						sProcessCount;
+	/** Enforcement of the limits */
+	protected static Timer						sWatchdog;
+	/** The threads that wait on the workers */
+	protected static ExecutorService			sJobExecutor;
+	
+	
+	/** Activate the pool 
+	 	@param pProcessLimit - how many workers may run at once
+	 	@param pMaxHeap - the -Xmx heap limit of each worker (like "512m"), or null
+	 	@param pTimeLimitMS - how long a single job may run, or 0 for no limit
+	 	@param pAssetDirs - where the workers locate the assets (Materials, Textures, ...)
+	 */
+	public static synchronized void configure(
+		int				pProcessLimit
+	,	String			pMaxHeap
+	,	long			pTimeLimitMS
+	,	List<String>	pAssetDirs
+	) {
+		sProcessLimit = Math.max( 0, pProcessLimit );
+		sMaxHeap = pMaxHeap;
+		sTimeLimitMS = pTimeLimitMS;
+		sAssetDirs = (pAssetDirs == null) ? new ArrayList<String>() : new ArrayList<String>( pAssetDirs );
+		
+		// Idle workers carry the old settings, so let them go
+		discardIdleProcesses();
+	}
+	public static synchronized boolean isActive() { return( sProcessLimit > 0 ); }
+	
+	/** Deactivate the pool, stopping every idle worker (active workers stop as their 
+	 	jobs complete)
+	 */
+	public static synchronized void shutdown(
+	) {
+		sProcessLimit = 0;
+		discardIdleProcesses();
+		if ( sWatchdog != null ) {
+			sWatchdog.cancel();
+			sWatchdog = null;
+		}
+	}
+	
+	/** Regenerate the given geonode within a worker, registering the meshes it produces
+	 	with the given manager (whose indices have already been registered by the shapes).
+	 	This blocks until the job is done, where an interrupt of the calling thread cancels
+	 	the job.
+	 	@return - true if the meshes were registered, false if the geonode cannot be 
+	 			  handled by a worker (in which case the manager is left untouched)
+	 */
+	public static boolean regenerate(
+		CSGGeonode			pGeonode
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		Future<Boolean> aJob = submit( pGeonode, pMeshManager, pEnvironment );
+		if ( aJob == null ) {
+			return( false );
+		}
+		Boolean isRegistered;
+		while( (isRegistered = poll( aJob, sWatchdogInterval, pGeonode )) == null ) {
+			// Keep waiting
+		}
+		return( isRegistered.booleanValue() );
+	}
+	/** Start regenerating the given geonode within a worker, in the background.  The job 
+	 	registers the meshes it produces with the given manager (whose indices have already 
+	 	been registered by the shapes), and is checked on via poll().  Cancelling the job
+	 	stops the worker.
+	 	@return - the job, whose result is true if the meshes were registered, false if 
+	 			  they do not match up with the registrations (in which case the manager is
+	 			  left untouched).  null if the geonode cannot be handled by a worker at all.
+	 */
+	public static Future<Boolean> submit(
+		CSGGeonode			pGeonode
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) {
+		Map<String,Integer> liveIndices = pMeshManager.getStableSignatures();
+		if ( liveIndices == null ) {
+			// Nothing the worker produces could be matched up
+			return( null );
+		}
+		byte[] aRequest;
+		try {
+			ByteArrayOutputStream aStream = new ByteArrayOutputStream( 64 * 1024 );
+			BinaryExporter.getInstance().save( pGeonode.copyDefinition( pEnvironment ), aStream );
+			aRequest = aStream.toByteArray();
+		} catch( IOException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "CSGProcessPool cannot export: " + pGeonode.getName(), ex );
+			return( null );
+		}
+		final CSGRemoteJob aJob 
+			= new CSGRemoteJob( pGeonode
+								, pMeshManager
+								, liveIndices
+								, aRequest
+								, (pEnvironment == null) ? null : pEnvironment.mCancelToken );
+		FutureTask<Boolean> aTask = new FutureTask<Boolean>( aJob ) {
+			@Override
+			public boolean cancel(
+				boolean		pMayInterrupt
+			) {
+				boolean isCancelled = super.cancel( pMayInterrupt );
+				if ( isCancelled ) {
+					// Reading from the worker cannot be interrupted, so the worker must go
+					aJob.cancel();
+				}
+				return( isCancelled );
+			}
+		};
+		getJobExecutor().execute( aTask );
+		return( aTask );
+	}
+	/** Check on a job started by submit(), waiting up to the given time (ms) for it to 
+	 	finish.  An interrupt of the calling thread cancels the job.
+	 	@return - the result of the job, or null if it is still running
+	 */
+	public static Boolean poll(
+		Future<Boolean>		pJob
+	,	long				pWaitMS
+	,	CSGGeonode			pGeonode
+	) throws CSGConstructionException {
+		try {
+			return( pJob.get( pWaitMS, TimeUnit.MILLISECONDS ) );
+		} catch( TimeoutException ex ) {
+			// Still running
+			return( null );
+		} catch( InterruptedException ex ) {
+			pJob.cancel( true );
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, "CSGProcessPool - interrupted"
+												, pGeonode );
+		} catch( CancellationException ex ) {
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, "CSGProcessPool - cancelled"
+												, pGeonode );
+		} catch( ExecutionException ex ) {
+			if ( ex.getCause() instanceof CSGConstructionException ) {
+				throw (CSGConstructionException)ex.getCause();
+			}
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGProcessPool job failed"
+												, pGeonode
+												, ex.getCause() );
+		}
+	}
+	/** Service routine that runs a single job, within the thread provided by the job executor */
+	protected static boolean perform(
+		CSGRemoteJob		pJob
+	) throws CSGConstructionException {
+		CSGGeonode aGeonode = pJob.mGeonode;
+		CSGWorkerProcess aProcess = acquire( aGeonode );
+		pJob.mProcess = aProcess;
+		if ( pJob.mCancelled ) {
+			// Cancelled while we waited on the worker
+			release( aProcess, false );
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, "CSGProcessPool - cancelled"
+												, aGeonode );
+		}
+		// NOTE that the watchdog enforces the time limit and the cancel token, while an
+		//		interrupt of the thread that polls the job cancels it directly
+		TimerTask aWatchdog = aProcess.watch( sTimeLimitMS, pJob.mCancelToken );
+		boolean isReusable = false;
+		try {
+			aProcess.mOutput.writeInt( sMagicNumber );
+			aProcess.mOutput.writeInt( sProtocolVersion );
+			aProcess.mOutput.writeInt( pJob.mRequest.length );
+			aProcess.mOutput.write( pJob.mRequest );
+			aProcess.mOutput.flush();
+			
+			int aStatus = aProcess.mInput.readInt();
+			if ( aStatus != sStatusOK ) {
+				String aMessage = aProcess.mInput.readUTF();
+				isReusable = true;
+				throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+													, "CSGProcessPool worker failed: " + aMessage
+													, aGeonode );
+			}
+			boolean isMatch 
+				= readMeshes( aProcess.mInput, pJob.mLiveIndices, pJob.mMeshManager, aGeonode.getName() );
+			isReusable = true;
+			return( isMatch );
+			
+		} catch( IOException ex ) {
+			// The worker is gone, either killed by the watchdog or out of memory
+			if ( aProcess.mCancelled || pJob.mCancelled ) {
+				throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+													, "CSGProcessPool - cancelled"
+													, aGeonode );
+			}
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, aProcess.mTimedOut
+													? "CSGProcessPool time limit exceeded: " + sTimeLimitMS + "ms"
+													: "CSGProcessPool worker lost"
+												, aGeonode
+												, ex );
+		} finally {
+			aWatchdog.cancel();
+			release( aProcess, isReusable && !aProcess.mTimedOut && !aProcess.mCancelled && !pJob.mCancelled );
+		}
+	}
+	
+	/** Service routine that obtains a worker, waiting if every allowed worker is busy */
+	protected static CSGWorkerProcess acquire(
+		CSGGeonode		pGeonode
+	) throws CSGConstructionException {
+		synchronized( CSGProcessPool.class ) {
+			while( true ) {
+				if ( sProcessLimit <= 0 ) {
+					throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+														, "CSGProcessPool is not active"
+														, pGeonode );
+				}
+				if ( !sIdleProcesses.isEmpty() ) {
+					return( sIdleProcesses.removeFirst() );
+				}
+				if ( sProcessCount < sProcessLimit ) {
+					// We start a new one (outside the lock)
+					sProcessCount += 1;
+					break;
+				}
+				try {
+					CSGProcessPool.class.wait();
+				} catch( InterruptedException ex ) {
+					throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+														, "CSGProcessPool interrupted"
+														, pGeonode );
+				}
+			}
+		}
+		try {
+			return( spawn() );
+		} catch( IOException ex ) {
+			release( null, false );
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGProcessPool cannot start a worker"
+												, pGeonode
+												, ex );
+		}
+	}
+	/** Service routine that returns a worker to the pool (or discards it) */
+	protected static synchronized void release(
+		CSGWorkerProcess	pProcess
+	,	boolean				pReusable
+	) {
+		if ( pReusable && (sProcessLimit > 0) ) {
+			sIdleProcesses.addLast( pProcess );
+		} else {
+			if ( pProcess != null ) {
+				pProcess.destroy();
+			}
+			sProcessCount -= 1;
+		}
+		CSGProcessPool.class.notifyAll();
+	}
+	/** Service routine that stops every idle worker */
+	protected static synchronized void discardIdleProcesses(
+	) {
+		while( !sIdleProcesses.isEmpty() ) {
+			sIdleProcesses.removeFirst().destroy();
+			sProcessCount -= 1;
+		}
+		CSGProcessPool.class.notifyAll();
+	}
+	/** Service routine that starts a new worker */
+	protected static CSGWorkerProcess spawn(
+	) throws IOException {
+		List<String> aCommand = new ArrayList<String>();
+		String maxHeap;
+		List<String> assetDirs;
+		synchronized( CSGProcessPool.class ) {
+			maxHeap = sMaxHeap;
+			assetDirs = sAssetDirs;
+		}
+		aCommand.add( System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java" );
+		if ( maxHeap != null ) {
+			aCommand.add( "-Xmx" + maxHeap );
+		}
+		aCommand.add( "-Djava.awt.headless=true" );
+		aCommand.add( "-cp" );
+		aCommand.add( System.getProperty( "java.class.path" ) );
+		aCommand.add( CSGProcessWorker.class.getName() );
+		for( String aDir : assetDirs ) {
+			aCommand.add( "-assets" );
+			aCommand.add( aDir );
+		}
+		ProcessBuilder aBuilder = new ProcessBuilder( aCommand );
+		aBuilder.redirectError( ProcessBuilder.Redirect.INHERIT );
+		return( new CSGWorkerProcess( aBuilder.start() ) );
+	}
+	/** Service routine that provides the shared watchdog timer */
+	protected static synchronized Timer getWatchdog(
+	) {
+		if ( sWatchdog == null ) {
+			sWatchdog = new Timer( "CSGProcessWatchdog", true );
+		}
+		return( sWatchdog );
+	}
+	
+	/** Service routine that provides the threads that wait on the workers */
+	protected static synchronized ExecutorService getJobExecutor(
+	) {
+		if ( sJobExecutor == null ) {
+			sJobExecutor = Executors.newCachedThreadPool( new CSGWorkerThreadFactory() );
+		}
+		return( sJobExecutor );
+	}
+	
+	/** Service routine to write all the meshes of a given manager */
+	protected static void writeMeshes(
+		DataOutputStream	pStream
+	,	CSGMeshManager		pMeshManager
+	) throws IOException {
+		int meshCount = pMeshManager.getMeshCount();
+		pStream.writeInt( meshCount );
+		writeMesh( pStream
+				, pMeshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex )
+				, pMeshManager.resolveDecodeTransform( CSGMeshManager.sMasterMeshIndex ) );
+		for( int i = 0; i <= meshCount; i += 1 ) {
+			Integer anIndex = new Integer( i );
+			String aSignature = pMeshManager.getStableSignature( anIndex );
+			pStream.writeUTF( (aSignature == null) ? "" : aSignature );
+			writeMesh( pStream, pMeshManager.resolveMesh( anIndex ), pMeshManager.resolveDecodeTransform( anIndex ) );
+		}
+	}
+	/** Service routine to read the meshes written by writeMeshes() and register them with
+	 	the given manager.  The full response is always consumed, so that the stream is
+	 	ready for the next job.
+	 	@return - true if the meshes were registered, false if they do not match up with 
+	 			  the live registrations (in which case the manager is left untouched)
+	 */
+	protected static boolean readMeshes(
+		DataInputStream			pStream
+	,	Map<String,Integer>		pLiveIndices
+	,	CSGMeshManager			pMeshManager
+	,	String					pMasterName
+	) throws IOException {
+		int meshCount = pStream.readInt();
+		if ( meshCount < 0 ) {
+			throw new IOException( "Invalid mesh count: " + meshCount );
+		}
+		Transform[] aDecode = new Transform[ 1 ];
+		Mesh masterMesh = readMesh( pStream, aDecode );
+		
+		boolean isMatch = (meshCount <= pMeshManager.getMeshCount());
+		Map<Integer,Mesh> meshMap = new HashMap<Integer,Mesh>( (meshCount + 1) * 2 );
+		Map<Integer,Transform> decodeMap = new HashMap<Integer,Transform>();
+		for( int i = 0; i <= meshCount; i += 1 ) {
+			String aSignature = pStream.readUTF();
+			aDecode[ 0 ] = null;
+			Mesh aMesh = readMesh( pStream, aDecode );
+			Integer anIndex = pLiveIndices.get( aSignature );
+			if ( (anIndex == null) || meshMap.containsKey( anIndex ) ) {
+				// The registrations differ, but keep reading to stay in step
+				isMatch = false;
+			} else {
+				meshMap.put( anIndex, aMesh );
+				if ( aDecode[ 0 ] != null ) {
+					decodeMap.put( anIndex, aDecode[ 0 ] );
+				}
+			}
+		}
+		if ( isMatch ) {
+			pMeshManager.registerMasterMesh( masterMesh, pMasterName );
+			for( Map.Entry<Integer,Mesh> anEntry : meshMap.entrySet() ) {
+				if ( anEntry.getValue() != null ) {
+					pMeshManager.registerMesh( anEntry.getValue()
+												, anEntry.getKey()
+												, decodeMap.get( anEntry.getKey() ) );
+				}
+			}
+		}
+		return( isMatch );
+	}
+	
+	/** Service routines to write/read a mesh */
+	protected static void writeMesh(
+		DataOutputStream	pStream
+	,	Mesh				pMesh
+	,	Transform			pDecodeTransform
+	) throws IOException {
+		if ( pMesh == null ) {
+			pStream.writeInt( -1 );
+			return;
+		}
+		pStream.writeInt( pMesh.getMode().ordinal() );
+		
+		List<VertexBuffer> bufferList = new ArrayList<VertexBuffer>();
+		for( VertexBuffer aBuffer : pMesh.getBufferList() ) {
+			if ( aBuffer.getData() != null ) {
+				bufferList.add( aBuffer );
+			}
+		}
+		pStream.writeInt( bufferList.size() );
+		for( VertexBuffer aBuffer : bufferList ) {
+			pStream.writeInt( aBuffer.getBufferType().ordinal() );
+			writeBuffer( pStream, aBuffer );
+		}
+		int lodCount = pMesh.getNumLodLevels();
+		pStream.writeInt( lodCount );
+		for( int i = 0; i < lodCount; i += 1 ) {
+			writeBuffer( pStream, pMesh.getLodLevel( i ) );
+		}
+		pStream.writeBoolean( pDecodeTransform != null );
+		if ( pDecodeTransform != null ) {
+			Vector3f aTranslation = pDecodeTransform.getTranslation();
+			Vector3f aScale = pDecodeTransform.getScale();
+			pStream.writeFloat( aTranslation.x );
+			pStream.writeFloat( aTranslation.y );
+			pStream.writeFloat( aTranslation.z );
+			pStream.writeFloat( aScale.x );
+			pStream.writeFloat( aScale.y );
+			pStream.writeFloat( aScale.z );
+		}
+	}
+	protected static Mesh readMesh(
+		DataInputStream		pStream
+	,	Transform[]			pDecodeTransform
+	) throws IOException {
+		int aMode = pStream.readInt();
+		if ( aMode < 0 ) {
+			return( null );
+		}
+		Mesh aMesh = new Mesh();
+		aMesh.setMode( Mesh.Mode.values()[ aMode ] );
+		
+		int bufferCount = pStream.readInt();
+		for( int i = 0; i < bufferCount; i += 1 ) {
+			Type aType = Type.values()[ pStream.readInt() ];
+			aMesh.setBuffer( readBuffer( pStream, aType ) );
+		}
+		int lodCount = pStream.readInt();
+		if ( lodCount > 0 ) {
+			VertexBuffer[] lodLevels = new VertexBuffer[ lodCount ];
+			for( int i = 0; i < lodCount; i += 1 ) {
+				lodLevels[ i ] = readBuffer( pStream, Type.Index );
+			}
+			aMesh.setLodLevels( lodLevels );
+		}
+		if ( pStream.readBoolean() ) {
+			Transform aTransform = new Transform();
+			aTransform.setTranslation( pStream.readFloat(), pStream.readFloat(), pStream.readFloat() );
+			aTransform.setScale( pStream.readFloat(), pStream.readFloat(), pStream.readFloat() );
+			pDecodeTransform[ 0 ] = aTransform;
+			
+			// Like CSGMeshCompactor, the bound is in the normalized space
+			aMesh.setBound( new BoundingBox( new Vector3f(), 1.0f, 1.0f, 1.0f ) );
+		} else {
+			aMesh.updateBound();
+		}
+		aMesh.updateCounts();
+		return( aMesh );
+	}
+	
+	/** Service routines to write/read the data of a single buffer */
+	protected static void writeBuffer(
+		DataOutputStream	pStream
+	,	VertexBuffer		pBuffer
+	) throws IOException {
+		pStream.writeInt( pBuffer.getFormat().ordinal() );
+		pStream.writeInt( pBuffer.getNumComponents() );
+		pStream.writeBoolean( pBuffer.isNormalized() );
+		
+		Buffer aData = pBuffer.getDataReadOnly();
+		int aCount = aData.limit();
+		if ( aData instanceof FloatBuffer ) {
+			pStream.writeInt( sFloatData );
+			pStream.writeInt( aCount );
+			for( int i = 0; i < aCount; i += 1 ) pStream.writeFloat( ((FloatBuffer)aData).get( i ) );
+		} else if ( aData instanceof IntBuffer ) {
+			pStream.writeInt( sIntData );
+			pStream.writeInt( aCount );
+			for( int i = 0; i < aCount; i += 1 ) pStream.writeInt( ((IntBuffer)aData).get( i ) );
+		} else if ( aData instanceof ShortBuffer ) {
+			pStream.writeInt( sShortData );
+			pStream.writeInt( aCount );
+			for( int i = 0; i < aCount; i += 1 ) pStream.writeShort( ((ShortBuffer)aData).get( i ) );
+		} else if ( aData instanceof ByteBuffer ) {
+			pStream.writeInt( sByteData );
+			pStream.writeInt( aCount );
+			for( int i = 0; i < aCount; i += 1 ) pStream.writeByte( ((ByteBuffer)aData).get( i ) );
+		} else {
+			throw new IOException( "Unsupported buffer: " + aData );
+		}
+	}
+	protected static VertexBuffer readBuffer(
+		DataInputStream		pStream
+	,	Type				pType
+	) throws IOException {
+		Format aFormat = Format.values()[ pStream.readInt() ];
+		int components = pStream.readInt();
+		boolean isNormalized = pStream.readBoolean();
+		int aKind = pStream.readInt();
+		int aCount = pStream.readInt();
+		if ( aCount < 0 ) {
+			throw new IOException( "Invalid element count: " + aCount );
+		}
+		Buffer aData;
+		switch( aKind ) {
+		case sFloatData:
+			FloatBuffer floatBuffer = BufferUtils.createFloatBuffer( aCount );
+			for( int i = 0; i < aCount; i += 1 ) floatBuffer.put( pStream.readFloat() );
+			aData = floatBuffer;
+			break;
+		case sIntData:
+			IntBuffer intBuffer = BufferUtils.createIntBuffer( aCount );
+			for( int i = 0; i < aCount; i += 1 ) intBuffer.put( pStream.readInt() );
+			aData = intBuffer;
+			break;
+		case sShortData:
+			ShortBuffer shortBuffer = BufferUtils.createShortBuffer( aCount );
+			for( int i = 0; i < aCount; i += 1 ) shortBuffer.put( pStream.readShort() );
+			aData = shortBuffer;
+			break;
+		case sByteData:
+			ByteBuffer byteBuffer = BufferUtils.createByteBuffer( aCount );
+			for( int i = 0; i < aCount; i += 1 ) byteBuffer.put( pStream.readByte() );
+			aData = byteBuffer;
+			break;
+		default:
+			throw new IOException( "Invalid data kind: " + aKind );
+		}
+		aData.flip();
+		
+		VertexBuffer aBuffer = new VertexBuffer( pType );
+		aBuffer.setupData( Usage.Static, components, aFormat, aData );
+		aBuffer.setNormalized( isNormalized );
+		return( aBuffer );
+	}
+}
+
+/** Helper class that tracks a single worker process */
+class CSGWorkerProcess
+{
+	/** The process itself */
+	protected Process				mProcess;
+	/** The pipes to/from the worker */
+	protected DataOutputStream		mOutput;
+	protected DataInputStream		mInput;
+	/** Why the process was killed (if it was) */
+	protected volatile boolean		mTimedOut;
+	protected volatile boolean		mCancelled;
+	
+	CSGWorkerProcess(
+		Process		pProcess
+	) {
+		mProcess = pProcess;
+		mOutput = new DataOutputStream( new BufferedOutputStream( pProcess.getOutputStream(), 64 * 1024 ) );
+		mInput = new DataInputStream( new BufferedInputStream( pProcess.getInputStream(), 64 * 1024 ) );
+	}
+	
+	/** Start watching over a job, killing the process if it runs too long or is cancelled 
+	 	via the given token.
+	 	NOTE that this runs on the watchdog thread, so it cannot check for an interrupt of 
+	 		 the thread that waits on the job (see CSGProcessPool.poll())
+	 */
+	TimerTask watch(
+		final long				pTimeLimitMS
+	,	final CSGCancelToken	pCancelToken
+	) {
+		final long startTime = System.currentTimeMillis();
+		TimerTask aTask = new TimerTask() {
+			public void run() {
+				if ( (pTimeLimitMS > 0) && (System.currentTimeMillis() - startTime > pTimeLimitMS) ) {
+					mTimedOut = true;
+				} else if ( (pCancelToken != null) && pCancelToken.isCancelled() ) {
+					mCancelled = true;
+				} else {
+					// Keep watching
+					return;
+				}
+				this.cancel();
+				destroy();
+			}
+		};
+		CSGProcessPool.getWatchdog().schedule( aTask
+											, CSGProcessPool.sWatchdogInterval
+											, CSGProcessPool.sWatchdogInterval );
+		return( aTask );
+	}
+	
+	/** Stop the process */
+	void destroy(
+	) {
+		mProcess.destroy();
+	}
+}
+
+/** Helper class that describes a single job for a worker (see CSGProcessPool.submit()) */
+class CSGRemoteJob
+	implements Callable<Boolean>
+{
+	/** The geonode being regenerated, and the manager that receives its meshes */
+	protected CSGGeonode				mGeonode;
+	protected CSGMeshManager			mMeshManager;
+	/** The live mesh indices, by their stable signatures */
+	protected Map<String,Integer>		mLiveIndices;
+	/** The exported definition of the geonode */
+	protected byte[]					mRequest;
+	/** The token that cancels the job (if any) */
+	protected CSGCancelToken			mCancelToken;
+	/** The worker running the job (null until one is acquired) */
+	protected volatile CSGWorkerProcess	mProcess;
+	protected volatile boolean			mCancelled;
+	
+	CSGRemoteJob(
+		CSGGeonode				pGeonode
+	,	CSGMeshManager			pMeshManager
+	,	Map<String,Integer>		pLiveIndices
+	,	byte[]					pRequest
+	,	CSGCancelToken			pCancelToken
+	) {
+		mGeonode = pGeonode;
+		mMeshManager = pMeshManager;
+		mLiveIndices = pLiveIndices;
+		mRequest = pRequest;
+		mCancelToken = pCancelToken;
+	}
+	
+	@Override
+	public Boolean call(
+	) throws CSGConstructionException {
+		return( Boolean.valueOf( CSGProcessPool.perform( this ) ) );
+	}
+	
+	/** Stop the job, along with any worker running it */
+	void cancel(
+	) {
+		mCancelled = true;
+		CSGWorkerProcess aProcess = mProcess;
+		if ( aProcess != null ) {
+			aProcess.mCancelled = true;
+			aProcess.destroy();
+		}
+	}
+}
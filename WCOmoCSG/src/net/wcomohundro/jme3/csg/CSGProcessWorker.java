@@ -0,0 +1,152 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryImporter;
+
+/** CSGProcessWorker is the entry point of a worker process started by the CSGProcessPool.
+ 	It reads requests from stdin, regenerates the given CSGGeonode, and writes the 
+ 	resulting meshes to stdout (see CSGProcessPool for the protocol).  Since stdout carries
+ 	the protocol, anything else that would be printed goes to stderr instead.
+ 	
+ 	Running out of memory ends the process (the heap may well be in no state to carry 
+ 	on), and the pool starts a fresh worker for the next job.  The process also ends 
+ 	when its stdin is closed.
+ 	
+ 	Usage:
+ 		CSGProcessWorker [-assets <dir>]...
+ */
+public class CSGProcessWorker
+{
+	/** Version tracking support */
+	public static final String sCSGProcessWorkerRevision="$Rev$";
+	public static final String sCSGProcessWorkerDate="$Date$";
+	
+	/** Exit status when out of memory */
+	public static final int sOutOfMemoryExit = 3;
+	
+	
+	/** Process entry point */
+	public static void main(
+		String[]	pArgs
+	) {
+		System.setProperty( "java.awt.headless", "true" );
+		
+		// The protocol owns stdout
+		DataOutputStream anOutput 
+			= new DataOutputStream( new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ), 64 * 1024 ) );
+		System.setOut( System.err );
+		DataInputStream anInput = new DataInputStream( new BufferedInputStream( System.in, 64 * 1024 ) );
+		
+		AssetManager aManager = new DesktopAssetManager( true );
+		for( int i = 0; i < pArgs.length; i += 1 ) {
+			if ( "-assets".equals( pArgs[ i ] ) && (i + 1 < pArgs.length) ) {
+				aManager.registerLocator( pArgs[ ++i ], FileLocator.class );
+			}
+		}
+        aManager.registerLoader( com.jme3.export.xml.XMLLoader.class, "xml" );
+        
+        int exitStatus = 0;
+		try {
+			while( true ) {
+				int aMagic;
+				try {
+					aMagic = anInput.readInt();
+				} catch( EOFException ex ) {
+					// The pool is done with us
+					break;
+				}
+				if ( (aMagic != CSGProcessPool.sMagicNumber) 
+				|| (anInput.readInt() != CSGProcessPool.sProtocolVersion) ) {
+					CSGEnvironment.sLogger.log( Level.SEVERE, "CSGProcessWorker: invalid request" );
+					exitStatus = 1;
+					break;
+				}
+				byte[] aRequest = new byte[ anInput.readInt() ];
+				anInput.readFully( aRequest );
+				
+				processRequest( aRequest, aManager, anOutput );
+				anOutput.flush();
+			}
+		} catch( OutOfMemoryError ex ) {
+			exitStatus = sOutOfMemoryExit;
+		} catch( IOException ex ) {
+			CSGEnvironment.sLogger.log( Level.SEVERE, "CSGProcessWorker failed: " + ex, ex );
+			exitStatus = 1;
+		}
+		System.exit( exitStatus );
+	}
+	
+	/** Service routine that handles a single request */
+	protected static void processRequest(
+		byte[]				pRequest
+	,	AssetManager		pAssetManager
+	,	DataOutputStream	pOutput
+	) throws IOException {
+		String aFailure = null;
+		CSGMeshManager aMeshManager = null;
+		try {
+			BinaryImporter anImporter = BinaryImporter.getInstance();
+			anImporter.setAssetManager( pAssetManager );
+			
+			// Loading the geonode regenerates it
+			Savable anItem = anImporter.load( pRequest );
+			if ( !(anItem instanceof CSGGeonode) ) {
+				aFailure = "Not a CSGGeonode: " + anItem;
+			} else {
+				CSGGeonode aGeonode = (CSGGeonode)anItem;
+				aMeshManager = aGeonode.getProductMeshManager();
+				if ( !aGeonode.isValid() ) {
+					aFailure = String.valueOf( aGeonode.getError() );
+				} else if ( aMeshManager == null ) {
+					aFailure = "Nothing produced";
+				}
+			}
+		} catch( Exception ex ) {
+			aFailure = ex.toString();
+		}
+		if ( aFailure != null ) {
+			pOutput.writeInt( CSGProcessPool.sStatusFailed );
+			pOutput.writeUTF( aFailure );
+		} else {
+			pOutput.writeInt( CSGProcessPool.sStatusOK );
+			CSGProcessPool.writeMeshes( pOutput, aMeshManager );
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+
+/** CSGProductHistory is a simple undo/redo timeline of CSGProductStates for a single 
+ 	CSGGeonode.  The application calls record() after every edit that it wants to be
+ 	able to undo (typically after regenerate() or carveShape()), and undo()/redo() then 
+ 	restore the geonode to an earlier/later state.  
+ 	
+ 	Switching between states involves no blending and no mesh building, just fresh
+ 	children for the geonode that wrap the retained meshes (see CSGProductState for what 
+ 	is shared between successive states).  Recording a new state after an undo discards the redo states 
+ 	beyond it, and only the most recent 'limit' states are retained.  The oldest states
+ 	are also dropped when the estimated memory of their mesh buffers (where a buffer shared
+ 	by several states is counted once) exceeds 'memoryLimit'.  The latest state is always
+ 	retained, no matter its size.
+ */
+public class CSGProductHistory
+{
+	/** Version tracking support */
+	public static final String sCSGProductHistoryRevision="$Rev$";
+	public static final String sCSGProductHistoryDate="$Date$";
+	
+	/** The default number of states retained */
+	public static final int sDefaultLimit = 100;
+	/** The default memory (in bytes) of the retained mesh buffers */
+	public static final long sDefaultMemoryLimit = 256L * 1024 * 1024;
+	
+
+	/** The geonode whose states are retained */
+	protected CSGGeonode				mGeonode;
+	/** The states, oldest first */
+	protected List<CSGProductState>		mStates;
+	/** The position of the current state within the list (-1 if none) */
+	protected int						mCurrent;
+	/** The maximum number of states retained */
+	protected int						mLimit;
+	/** The maximum memory (in bytes) of the mesh buffers retained */
+	protected long						mMemoryLimit;
+	
+	
+	/** Constructor based on a given geonode */
+	public CSGProductHistory(
+		CSGGeonode		pGeonode
+	) {
+		this( pGeonode, sDefaultLimit, sDefaultMemoryLimit );
+	}
+	public CSGProductHistory(
+		CSGGeonode		pGeonode
+	,	int				pLimit
+	) {
+		this( pGeonode, pLimit, sDefaultMemoryLimit );
+	}
+	public CSGProductHistory(
+		CSGGeonode		pGeonode
+	,	int				pLimit
+	,	long			pMemoryLimit
+	) {
+		mGeonode = pGeonode;
+		mLimit = Math.max( 1, pLimit );
+		mMemoryLimit = pMemoryLimit;
+		mStates = new ArrayList<CSGProductState>();
+		mCurrent = -1;
+	}
+	
+	/** Capture the current product of the geonode as the latest state
+	 	@return - true if a state was recorded, false if there is no product to record
+	 */
+	public synchronized boolean record(
+	) {
+		// Share whatever has not changed since the current state
+		CSGProductState aState = mGeonode.captureState( getCurrentState() );
+		if ( aState == null ) {
+			// Nothing to record
+			return( false );
+		}
+		if ( (mCurrent >= 0) && (mStates.get( mCurrent ) == aState) ) {
+			// Nothing has changed since the last record
+			return( false );
+		}
+		// Anything beyond the current state can no longer be redone
+		mStates.subList( mCurrent + 1, mStates.size() ).clear();
+		mStates.add( aState );
+		if ( mStates.size() > mLimit ) {
+			// Drop the oldest
+			mStates.subList( 0, mStates.size() - mLimit ).clear();
+		}
+		while( (mStates.size() > 1) && (getMemoryEstimate() > mMemoryLimit) ) {
+			// Drop the oldest until the rest fits
+			mStates.remove( 0 );
+		}
+		mCurrent = mStates.size() - 1;
+		return( true );
+	}
+	
+	/** Check for something to undo/redo */
+	public synchronized boolean canUndo() { return( mCurrent > 0 ); }
+	public synchronized boolean canRedo() { return( mCurrent < mStates.size() - 1 ); }
+	
+	/** Restore the geonode to the state recorded before the current one 
+	 	@return - the restored state, or null if there is nothing to undo
+	 */
+	public synchronized CSGProductState undo(
+	) throws CSGConstructionException {
+		return( canUndo() ? restore( mCurrent - 1 ) : null );
+	}
+	/** Restore the geonode to the state recorded after the current one 
+	 	@return - the restored state, or null if there is nothing to redo
+	 */
+	public synchronized CSGProductState redo(
+	) throws CSGConstructionException {
+		return( canRedo() ? restore( mCurrent + 1 ) : null );
+	}
+	
+	/** Accessor to the current state (null if none) */
+	public synchronized CSGProductState getCurrentState(
+	) {
+		return( (mCurrent < 0) ? null : mStates.get( mCurrent ) );
+	}
+	/** Accessor to the number of states retained */
+	public synchronized int getStateCount() { return mStates.size(); }
+	
+	/** Estimate the memory (in bytes) of the mesh buffers retained by all the states, 
+	 	where a buffer shared by several states is counted once
+	 */
+	public synchronized long getMemoryEstimate(
+	) {
+		Set<Object> countedBuffers = Collections.newSetFromMap( new IdentityHashMap<Object,Boolean>() );
+		long aSize = 0;
+		for( CSGProductState aState : mStates ) {
+			aSize += aState.estimateMemory( countedBuffers );
+		}
+		return( aSize );
+	}
+	
+	/** Forget every state */
+	public synchronized void clear(
+	) {
+		mStates.clear();
+		mCurrent = -1;
+	}
+	
+	/** Service routine that restores a given state */
+	protected CSGProductState restore(
+		int		pIndex
+	) throws CSGConstructionException {
+		CSGProductState aState = mStates.get( pIndex );
+		mGeonode.restoreState( aState );
+		mCurrent = pIndex;
+		return( aState );
+	}
+}
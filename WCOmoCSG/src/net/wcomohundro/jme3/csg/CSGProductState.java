@@ -0,0 +1,140 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI;
+
+import com.jme3.scene.Mesh;
+
+/** An editor built on CSG needs undo, but the blended product of a CSGGeonode is replaced
+ 	by every regeneration, and the only way back is to regenerate the prior definition.
+ 	
+ 	CSGProductState is an immutable capture of everything a CSGGeonode needs to display 
+ 	and continue from a given product (see CSGGeonode.captureState()/restoreState()):
+ 		-- the list of shapes that defined the product
+ 		-- its own copy of the blended product
+ 		-- its own copy of the manager of the meshes built from the product
+ 		-- its own copy of the master geometry
+ 	The state never hands any of its own spatials to the scene.  Restoring a state attaches 
+ 	a fresh copy of the master and fresh children that wrap the retained meshes, so switching 
+ 	back to it involves no blending and no mesh building.  Nothing the geonode does with 
+ 	the restored product alters the state.
+ 	
+ 	A state is cheap to retain since so much of it is shared with its neighbors:
+ 		-- the shapes themselves are shared, only the list is copied
+ 		-- every mesh whose content matches the mesh under the same index of the prior
+ 			state is taken from that prior state (see CSGMeshManager.retainedCopy()), 
+ 			even across a full regeneration
+ 	CSGProductHistory bounds the retained states by the memory of their (unshared) mesh
+ 	buffers as well as by their count.
+ 	
+ 	NOTE that the shapes are shared, so a shape must be replaced (rather than altered in 
+ 		 place) for an earlier state to hold on to the earlier definition.
+ */
+public class CSGProductState
+{
+	/** Version tracking support */
+	public static final String sCSGProductStateRevision="$Rev$";
+	public static final String sCSGProductStateDate="$Date$";
+	
+	
+	/** The shapes that defined the product */
+	protected final List<CSGShape>		mShapes;
+	/** The retained copy of the blended product */
+	protected final CSGShape			mProduct;
+	/** The retained copy of the manager of the meshes built from the product */
+	protected final CSGMeshManager		mMeshManager;
+	/** The retained copy of the master geometry */
+	protected final CSGGeometry			mMasterGeometry;
+	/** Any error associated with the product */
+	protected final CSGExceptionI		mError;
+	/** How long it took to produce the product */
+	protected final long				mRegenNS;
+	
+	
+	/** Constructor based on the current product of a geonode */
+	protected CSGProductState(
+		List<CSGShape>		pShapes
+	,	CSGShape			pProduct
+	,	CSGMeshManager		pMeshManager
+	,	CSGGeometry			pMasterGeometry
+	,	CSGExceptionI		pError
+	,	long				pRegenNS
+	,	CSGProductState		pPrior
+	,	CSGEnvironment		pEnvironment
+	) {
+		mShapes = (pShapes == null) 
+			? Collections.<CSGShape>emptyList() 
+			: Collections.unmodifiableList( new ArrayList<CSGShape>( pShapes ) );
+		// Our own copy of the product, since blending (or carving) alters the original
+		mProduct = (pProduct == null) ? null : pProduct.copyProduct( pEnvironment );
+		
+		// Our own copy of the meshes, sharing whatever has not changed since the prior state
+		mMeshManager = pMeshManager.retainedCopy( (pPrior == null) ? null : pPrior.mMeshManager );
+		
+		// Our own copy of the master, which displays the retained master mesh
+		if ( pMasterGeometry == null ) {
+			mMasterGeometry = null;
+		} else {
+			mMasterGeometry = pMasterGeometry.clone( false );
+			Mesh masterMesh = mMeshManager.resolveMesh( CSGMeshManager.sMasterMeshIndex );
+			if ( (masterMesh != null) && (masterMesh != mMasterGeometry.getMesh()) ) {
+				mMasterGeometry.setMesh( masterMesh );
+			}
+		}
+		mError = pError;
+		mRegenNS = pRegenNS;
+	}
+	
+	/** Accessor to the shapes that defined the product */
+	public List<CSGShape> getShapes() { return mShapes; }
+	
+	/** Accessor to the product, which is the state's own (so blend a copyProduct() of it) */
+	public CSGShape getProduct() { return mProduct; }
+	
+	/** Accessor to the master geometry */
+	public CSGGeometry getMasterGeometry() { return mMasterGeometry; }
+	
+	/** Accessor to the error status */
+	public boolean isValid() { return( mError == null ); }
+	public CSGExceptionI getError() { return mError; }
+	
+	/** Accessor to the time it took to produce the product */
+	public long getRegenerationNS() { return mRegenNS; }
+	
+	/** Estimate the memory held by the mesh buffers of this state, where any buffer already
+	 	in the given set (shared with another state) is not counted again
+	 */
+	public long estimateMemory(
+		Set<Object>		pCounted
+	) {
+		return( mMeshManager.estimateMemory( pCounted ) );
+	}
+}
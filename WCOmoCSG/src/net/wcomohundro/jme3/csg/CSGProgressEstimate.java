@@ -0,0 +1,98 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+/** A point in time view of how far along a regeneration is, and how much longer it is 
+ 	likely to take.
+ 	
+ 	The work of a regeneration is modeled in units of faces: blending a shape costs roughly
+ 	the faces of the shape plus the faces of the product built up so far, and producing and
+ 	processing the final meshes costs roughly the faces of the finished product.  Once some
+ 	work has completed, its measured rate predicts the time still needed.  This is a guide
+ 	for deciding whether to wait, show a preview, or cancel; the actual cost of a boolean 
+ 	depends far more on how the shapes overlap than on their face counts.
+ */
+public class CSGProgressEstimate
+{
+	/** Version tracking support */
+	public static final String sCSGProgressEstimateRevision="$Rev$";
+	public static final String sCSGProgressEstimateDate="$Date$";
+
+	/** Work units completed */
+	protected long		mWorkDone;
+	/** Work units expected overall */
+	protected long		mWorkTotal;
+	/** Count of shapes not yet blended */
+	protected int		mPendingShapes;
+	/** Time spent so far */
+	protected long		mElapsedNS;
+	/** Predicted time still needed (negative if not yet known) */
+	protected long		mRemainingNS;
+	
+	
+	/** Constructor based on the given values */
+	public CSGProgressEstimate(
+		long		pWorkDone
+	,	long		pWorkTotal
+	,	int			pPendingShapes
+	,	long		pElapsedNS
+	,	long		pRemainingNS
+	) {
+		mWorkDone = pWorkDone;
+		mWorkTotal = pWorkTotal;
+		mPendingShapes = pPendingShapes;
+		mElapsedNS = pElapsedNS;
+		mRemainingNS = pRemainingNS;
+	}
+	
+	/** Accessors */
+	public long getWorkDone() { return mWorkDone; }
+	public long getWorkTotal() { return mWorkTotal; }
+	public int getPendingShapes() { return mPendingShapes; }
+	public long getElapsedNS() { return mElapsedNS; }
+	public long getRemainingNS() { return mRemainingNS; }
+	public boolean isRemainingKnown() { return( mRemainingNS >= 0 ); }
+	
+	/** Fraction complete (0.0 - 1.0) */
+	public float getFraction(
+	) {
+		if ( mWorkTotal <= 0 ) {
+			return( 0.0f );
+		}
+		return( Math.min( 1.0f, (float)mWorkDone / (float)mWorkTotal ) );
+	}
+	
+	/** OVERRIDE for debug report */
+	@Override
+	public String toString(
+	) {
+		StringBuilder aBuffer = new StringBuilder( 64 );
+		aBuffer.append( Math.round( getFraction() * 100.0f ) ).append( "%" );
+		if ( isRemainingKnown() ) {
+			aBuffer.append( ", about " ).append( mRemainingNS / 1000000 ).append( "ms remaining" );
+		}
+		return( aBuffer.toString() );
+	}
+}
@@ -0,0 +1,302 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGSpatial;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Camera.FrustumIntersect;
+import com.jme3.scene.Spatial;
+
+/** Loading a level regenerates its elements in document order, so the area right in front
+ 	of the camera may well be the last to appear.  
+ 	
+ 	CSGRegenerationQueue is an AppState that holds the elements awaiting regeneration and
+ 	starts them in order of interest: elements within the view frustum come first, then
+ 	the rest, nearest the camera first within each group.  The order is reworked every frame,
+ 	so it follows the camera as it moves.  Only a limited number of regenerations run at 
+ 	any one time (by default, one per worker thread), so that a late arrival near the camera
+ 	does not wait behind everything already queued.
+ 	
+ 	CSGSpatials are regenerated in the background via regenerateAsync().  Their scene changes
+ 	are applied by an attached CSGSceneChangeScheduler if there is one, otherwise by this
+ 	queue as each completes.  Any other CSGElement (a CSGLinkNode for example) manipulates 
+ 	the scene as it goes, so it is regenerated on the update thread, at most one per frame.
+ */
+public class CSGRegenerationQueue
+	extends AbstractAppState
+{
+	/** Version tracking support */
+	public static final String sCSGRegenerationQueueRevision="$Rev$";
+	public static final String sCSGRegenerationQueueDate="$Date$";
+
+	/** Elements waiting to start */
+	protected List<CSGElement>				mPending;
+	/** Regenerations underway */
+	protected Map<CSGSpatial,Future<CSGRegenerationResult>>	mActive;
+	/** How many regenerations may run at once */
+	protected int							mMaxActive;
+	/** The environment to apply (null for the standard) */
+	protected CSGEnvironment				mEnvironment;
+	/** The camera that drives the priorities (if null, the Application camera is used) */
+	protected Camera						mCamera;
+	/** Count of regenerations completed, and how many of those failed */
+	protected int							mCompletedCount;
+	protected int							mFailedCount;
+	
+	
+	/** Null constructor */
+	public CSGRegenerationQueue(
+	) {
+		this( CSGWorkerPool.getPoolSize(), null );
+	}
+	/** Constructor based on the concurrency and environment */
+	public CSGRegenerationQueue(
+		int				pMaxActive
+	,	CSGEnvironment	pEnvironment
+	) {
+		mMaxActive = Math.max( 1, pMaxActive );
+		mEnvironment = pEnvironment;
+		mPending = new ArrayList<CSGElement>();
+		mActive = new LinkedHashMap<CSGSpatial,Future<CSGRegenerationResult>>();
+	}
+	
+	/** Accessors */
+	public int getMaxActive() { return mMaxActive; }
+	public void setMaxActive( int pMaxActive ) { mMaxActive = Math.max( 1, pMaxActive ); }
+	public Camera getCamera() { return mCamera; }
+	public void setCamera( Camera pCamera ) { mCamera = pCamera; }
+	public int getCompletedCount() { return mCompletedCount; }
+	public int getFailedCount() { return mFailedCount; }
+	public synchronized int getPendingCount() { return mPending.size(); }
+	public synchronized int getActiveCount() { return mActive.size(); }
+	public synchronized boolean isIdle() { return( mPending.isEmpty() && mActive.isEmpty() ); }
+	
+	/** Queue the given element for regeneration.  This can be called from any thread.
+	 	An element already waiting is not queued twice.
+	 */
+	public synchronized void enqueue(
+		CSGElement		pElement
+	) {
+		if ( !mPending.contains( pElement ) ) {
+			mPending.add( pElement );
+		}
+	}
+	/** Drop an element that has not yet started
+	 	@return - true if it was still waiting
+	 */
+	public synchronized boolean dequeue(
+		CSGElement		pElement
+	) {
+		return( mPending.remove( pElement ) );
+	}
+	
+	/** Activation */
+	@Override
+	public void initialize(
+		AppStateManager		pStateManager
+	,	Application			pApplication
+	) {
+		super.initialize( pStateManager, pApplication );
+		if ( mCamera == null ) {
+			mCamera = pApplication.getCamera();
+		}
+	}
+	@Override
+	public void cleanup(
+	) {
+		super.cleanup();
+		
+		// Abandon whatever is underway
+		synchronized( this ) {
+			for( Future<CSGRegenerationResult> aFuture : mActive.values() ) {
+				aFuture.cancel( false );
+			}
+			mActive.clear();
+		}
+	}
+	
+	/** Collect what has finished and start what fits */
+	@Override
+	public void update(
+		float		pTPF
+	) {
+		// Completions first, which frees up room for more
+		List<Map.Entry<CSGSpatial,Future<CSGRegenerationResult>>> completed 
+			= new ArrayList<Map.Entry<CSGSpatial,Future<CSGRegenerationResult>>>();
+		synchronized( this ) {
+			for( Iterator<Map.Entry<CSGSpatial,Future<CSGRegenerationResult>>> anIterator = mActive.entrySet().iterator()
+			; anIterator.hasNext(); ) {
+				Map.Entry<CSGSpatial,Future<CSGRegenerationResult>> anEntry = anIterator.next();
+				if ( anEntry.getValue().isDone() ) {
+					completed.add( anEntry );
+					anIterator.remove();
+				}
+			}
+		}
+		for( Map.Entry<CSGSpatial,Future<CSGRegenerationResult>> anEntry : completed ) {
+			CSGSpatial aSpatial = anEntry.getKey();
+			mCompletedCount += 1;
+			checkResult( aSpatial, anEntry.getValue() );
+			if ( CSGSceneChangeScheduler.getActiveScheduler() == null ) {
+				// No one else is going to swap in the result
+				aSpatial.applySceneChanges();
+			}
+		}
+		// Start the most interesting elements
+		List<CSGElement> readyList = selectReady();
+		boolean ranInline = false;
+		for( CSGElement anElement : readyList ) {
+			if ( anElement instanceof CSGSpatial ) {
+				CSGSpatial aSpatial = (CSGSpatial)anElement;
+				Future<CSGRegenerationResult> aFuture = aSpatial.regenerateAsync( mEnvironment, null );
+				synchronized( this ) {
+					mActive.put( aSpatial, aFuture );
+				}
+			} else if ( !ranInline ) {
+				// Scene manipulation must occur on this thread
+				ranInline = true;
+				try {
+					anElement.regenerate( false, mEnvironment );
+				} catch( CSGConstructionException ex ) {
+					mFailedCount += 1;
+					CSGEnvironment.sLogger.log( Level.WARNING, "Regeneration failed: " + ex );
+				}
+				mCompletedCount += 1;
+			} else {
+				// Only one per frame
+				enqueue( anElement );
+			}
+		}
+	}
+	
+	/** Service routine that looks at the outcome of a finished regeneration, so that no
+	 	failure goes unnoticed
+	 */
+	protected void checkResult(
+		CSGSpatial						pSpatial
+	,	Future<CSGRegenerationResult>	pFuture
+	) {
+		try {
+			CSGRegenerationResult aResult = pFuture.get();
+			if ( !aResult.isCancelled() && !aResult.isValid() ) {
+				mFailedCount += 1;
+				CSGEnvironment.sLogger.log( Level.WARNING
+					, "Regeneration failed: " + pSpatial.asSpatial().getName() + " - " + aResult.getError() );
+			}
+		} catch( CancellationException ex ) {
+			// Abandoned on purpose
+		} catch( ExecutionException ex ) {
+			mFailedCount += 1;
+			CSGEnvironment.sLogger.log( Level.SEVERE
+				, "Regeneration failed: " + pSpatial.asSpatial().getName(), ex.getCause() );
+		} catch( InterruptedException ex ) {
+			// Cannot happen on a Future that is done, but keep the flag
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/** Service routine that orders the pending elements and selects as many as can start */
+	protected List<CSGElement> selectReady(
+	) {
+		List<CSGElement> readyList;
+		synchronized( this ) {
+			int available = mMaxActive - mActive.size();
+			if ( mPending.isEmpty() || (available <= 0) ) {
+				return( Collections.<CSGElement>emptyList() );
+			}
+			if ( (mCamera != null) && (mPending.size() > 1) ) {
+				prioritize( mPending );
+			}
+			readyList = new ArrayList<CSGElement>( mPending.subList( 0, Math.min( available, mPending.size() ) ) );
+			mPending.subList( 0, readyList.size() ).clear();
+		}
+		return( readyList );
+	}
+	
+	/** Service routine to order the given list: visible before not, nearer before farther */
+	protected void prioritize(
+		List<CSGElement>	pElements
+	) {
+		final int count = pElements.size();
+		final boolean[] visible = new boolean[ count ];
+		final float[] distances = new float[ count ];
+		
+		// Camera.contains() relies on (and alters) the plane state
+		int planeState = mCamera.getPlaneState();
+		for( int i = 0; i < count; i += 1 ) {
+			Spatial aSpatial = pElements.get( i ).asSpatial();
+			BoundingVolume aBound = aSpatial.getWorldBound();
+			if ( aBound == null ) {
+				// Not yet generated, so all we know is where it sits
+				aBound = new BoundingSphere( 0.0f, aSpatial.getWorldTranslation() );
+			}
+			mCamera.setPlaneState( 0 );
+			visible[ i ] = (mCamera.contains( aBound ) != FrustumIntersect.Outside);
+			distances[ i ] = aBound.distanceTo( mCamera.getLocation() );
+		}
+		mCamera.setPlaneState( planeState );
+		
+		List<Integer> indexList = new ArrayList<Integer>( count );
+		for( int i = 0; i < count; i += 1 ) {
+			indexList.add( new Integer( i ) );
+		}
+		Collections.sort( indexList, new Comparator<Integer>() {
+			public int compare( Integer pA, Integer pB ) {
+				int a = pA.intValue(), b = pB.intValue();
+				if ( visible[ a ] != visible[ b ] ) {
+					// Anything visible sorts ahead of everything that is not
+					return( (visible[ a ]) ? -1 : 1 );
+				}
+				return( Float.compare( distances[ a ], distances[ b ] ) );
+			}
+		});
+		List<CSGElement> sortedList = new ArrayList<CSGElement>( count );
+		for( Integer anIndex : indexList ) {
+			sortedList.add( pElements.get( anIndex.intValue() ) );
+		}
+		pElements.clear();
+		pElements.addAll( sortedList );
+	}
+}
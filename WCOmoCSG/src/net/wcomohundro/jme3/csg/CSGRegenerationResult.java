@@ -0,0 +1,167 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.CSGShape.CSGShapeStatistics;
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGSpatial;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI;
+
+/** The outcome of an asynchronous regeneration (see CSGSpatial.regenerateAsync()),
+ 	which carries the product along with the statistics gathered in producing it.
+ 	
+ 	Asynchronous regeneration is always 'double buffered': the scene changes are deferred
+ 	so that the prior result continues to be displayed until applySceneChanges() is
+ 	called from the jME update thread, which swaps in the new result in one step.
+ */
+public class CSGRegenerationResult
+{
+	/** Version tracking support */
+	public static final String sCSGRegenerationResultRevision="$Rev$";
+	public static final String sCSGRegenerationResultDate="$Date$";
+
+	/** Start the regeneration of the given spatial on the worker pool.  The returned 
+	 	Future supports .cancel(), which triggers the given token (and interrupts the
+	 	thread if so requested).
+	 */
+	public static Future<CSGRegenerationResult> submit(
+		CSGSpatial			pSpatial
+	,	CSGEnvironment		pEnvironment
+	,	CSGCancelToken		pCancelToken
+	) {
+		final CSGSpatial aSpatial = pSpatial;
+		final CSGCancelToken aToken = (pCancelToken == null) ? new CSGCancelToken() : pCancelToken;
+		
+		// The token and the deferral ride along with a private copy of the environment,
+		// rather than altering the spatial that the update thread is looking at
+		final CSGEnvironment anEnvironment 
+			= CSGEnvironment.resolveEnvironment( pEnvironment, pSpatial ).clone( pSpatial );
+		anEnvironment.mCancelToken = aToken;
+		anEnvironment.mDeferSceneChanges = true;
+		
+		CSGRegenerationFuture aFuture = new CSGRegenerationFuture( aToken, new Callable<CSGRegenerationResult>() {
+			public CSGRegenerationResult call() {
+				CSGRegenerationResult aResult = new CSGRegenerationResult();
+				try {
+					aResult.mProduct = aSpatial.regenerate( false, anEnvironment );
+				} catch( CSGConstructionException ex ) {
+					aResult.mError = ex;
+				}
+				aResult.mCancelled = aToken.isCancelled();
+				aResult.mRegenerationNS = aSpatial.getShapeRegenerationNS();
+				if ( aResult.mProduct != null ) {
+					aResult.mStatistics = aResult.mProduct.getStatistics();
+				}
+				if ( aResult.mError == null ) {
+					aResult.mError = aSpatial.getError();
+				}
+				return( aResult );
+			}
+		});
+		CSGWorkerPool.getExecutor().execute( aFuture );
+		return( aFuture );
+	}
+	
+	/** Regenerate the given spatial in two phases:
+	 		1)	right now, on the calling thread, blending the coarsest level of detail of
+	 			every operand mesh, which is published under the spatial's own deferral rules
+	 			(so immediately when called from the jME update thread without deferral)
+	 		2)	in the background (see submit()), blending at full detail, where the result
+	 			replaces the preview when applySceneChanges() is called
+	 	Operand meshes with no LOD levels contribute their full detail to the preview.
+	 	Any failure of the preview is simply logged, since the full regeneration follows.
+	 */
+	public static Future<CSGRegenerationResult> submitTwoPhase(
+		CSGSpatial			pSpatial
+	,	CSGEnvironment		pEnvironment
+	,	CSGCancelToken		pCancelToken
+	) {
+		CSGEnvironment previewEnvironment 
+			= CSGEnvironment.resolveEnvironment( pEnvironment, pSpatial ).clone( pSpatial );
+		previewEnvironment.mOperandLOD = CSGEnvironment.sCoarsestLOD;
+		previewEnvironment.mCancelToken = pCancelToken;
+		try {
+			pSpatial.regenerate( false, previewEnvironment );
+		} catch( CSGConstructionException ex ) {
+			CSGEnvironment.sLogger.log( Level.WARNING, "Preview regeneration failed: " + ex );
+		}
+		// Full detail follows in the background
+		return( submit( pSpatial, pEnvironment, pCancelToken ) );
+	}
+	
+	
+	/** The product of the regeneration */
+	protected CSGShape				mProduct;
+	/** Statistics about its construction */
+	protected CSGShapeStatistics	mStatistics;
+	/** How long it took */
+	protected long					mRegenerationNS;
+	/** Any problem encountered */
+	protected CSGExceptionI			mError;
+	/** Was the regeneration cancelled */
+	protected boolean				mCancelled;
+	
+	
+	/** Accessors */
+	public CSGShape getProduct() { return mProduct; }
+	public CSGShapeStatistics getStatistics() { return mStatistics; }
+	public long getRegenerationNS() { return mRegenerationNS; }
+	public CSGExceptionI getError() { return mError; }
+	public boolean isValid() { return( mError == null ); }
+	public boolean isCancelled() { return mCancelled; }
+
+}
+
+/** Helper class that ties Future.cancel() to the cancellation token */
+class CSGRegenerationFuture
+	extends FutureTask<CSGRegenerationResult>
+{
+	/** The associated token */
+	protected CSGCancelToken	mCancelToken;
+	
+	CSGRegenerationFuture(
+		CSGCancelToken						pCancelToken
+	,	Callable<CSGRegenerationResult>		pTask
+	) {
+		super( pTask );
+		mCancelToken = pCancelToken;
+	}
+	
+	/** Accessor to the token */
+	public CSGCancelToken getCancelToken() { return mCancelToken; }
+	
+	@Override
+	public boolean cancel(
+		boolean		pMayInterruptIfRunning
+	) {
+		mCancelToken.cancel();
+		return( super.cancel( pMayInterruptIfRunning ) );
+	}
+}
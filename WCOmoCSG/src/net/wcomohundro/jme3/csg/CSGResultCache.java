@@ -0,0 +1,520 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGOperator;
+import net.wcomohundro.jme3.csg.CSGShape.CSGShapeProcessor;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+
+/** Many scenes rebuild the very same blends over and over: reloading a scene, reusing a
+ 	library item, regenerating a Geonode with a single altered shape.  CSGResultCache 
+ 	retains the products of prior blends, keyed by the operation and the fingerprints of
+ 	its operands and environment (see CSGShape.getFingerprint()).  The least recently used
+ 	products are dropped once a memory limit is reached.  The cache is opt-in: nothing is
+ 	retained until setMemoryLimit() is given a non-zero limit.
+ 	
+ 	Three points worth noting:
+ 	1)	Every product carries the mesh indices assigned by the CSGMeshManager that was 
+ 		active when it was built.  A prior product can only be reused if the active 
+ 		manager has assigned exactly the same indices, which is confirmed by comparing 
+ 		the manager registrations (after the operands have registered themselves, just
+ 		as they would in the blend).
+ 	2)	Blending a product again alters the status of its faces, and a product may well
+ 		be used by several threads at once.  So the cache retains its own private copy
+ 		of a product, and hands out a fresh copy on every hit.
+ 	3)	A fingerprint is only a 64 bit hash.  So every key also carries a cheap summary of
+ 		what went into the blend (count of shapes, sequence of operators, count of vertices,
+ 		see CSGResultCheck), which must match as well before a prior product is used.
+ 		
+ 	The cache also retains the products of whole group shapes, keyed by their definition 
+ 	WITHOUT their placement (see CSGShape.getDefinitionFingerprint()).  A scene that repeats
+ 	the same group many times, differing only by a rigid transform, then builds the group 
+ 	once and places every further copy by transforming the retained product.
+ */
+public class CSGResultCache
+{
+	/** Version tracking support */
+	public static final String sCSGResultCacheRevision="$Rev$";
+	public static final String sCSGResultCacheDate="$Date$";
+
+	/** The default memory limit (in bytes), where zero leaves the cache disabled */
+	public static final long sDefaultMemoryLimit = 0;
+	
+	/** The retained products, in least recently used order */
+	protected static Map<CSGResultKey,CSGResultEntry>	sEntries 
+		= new LinkedHashMap<CSGResultKey,CSGResultEntry>( 64, 0.75f, true );
+	/** The memory limit, where zero disables the cache */
+	protected static long		sMemoryLimit = sDefaultMemoryLimit;
+	/** The memory currently in use */
+	protected static long		sMemoryUsed;
+	/** Simple statistics */
+	protected static long		sHitCount;
+	protected static long		sMissCount;
+	
+	
+	/** Accessor to the memory limit, where zero disables caching altogether */
+	public static synchronized long getMemoryLimit() { return sMemoryLimit; }
+	public static synchronized void setMemoryLimit(
+		long		pMemoryLimit
+	) {
+		sMemoryLimit = Math.max( 0, pMemoryLimit );
+		trim();
+	}
+	/** Accessors to the statistics */
+	public static synchronized long getMemoryUsed() { return sMemoryUsed; }
+	public static synchronized long getHitCount() { return sHitCount; }
+	public static synchronized long getMissCount() { return sMissCount; }
+	
+	/** Drop everything */
+	public static synchronized void clear(
+	) {
+		sEntries.clear();
+		sMemoryUsed = 0;
+	}
+	
+	/** Build the key for the given blend, or null if the blend cannot be cached */
+	public static CSGResultKey createKey(
+		CSGOperator			pOperator
+	,	CSGShape			pShape
+	,	CSGShape			pOtherShape
+	,	CSGEnvironment		pEnvironment
+	) {
+		if ( getMemoryLimit() == 0 ) {
+			// Caching is disabled
+			return( null );
+		}
+		long thisFingerprint = pShape.getFingerprint();
+		long otherFingerprint = pOtherShape.getFingerprint();
+		if ( (thisFingerprint == 0) || (otherFingerprint == 0) ) {
+			// Something of unknown history is involved
+			return( null );
+		}
+		CSGResultKey aKey 
+			= new CSGResultKey( pOperator, thisFingerprint, otherFingerprint, pEnvironment.getFingerprint() );
+		aKey.mCheck = CSGResultCheck.forShape( pShape ).combine( pOperator, CSGResultCheck.forShape( pOtherShape ) );
+		return( aKey );
+	}
+	
+	/** Look for a prior product that applies to the given blend */
+	public static CSGShape lookup(
+		CSGResultKey		pKey
+	,	CSGShape			pShape
+	,	CSGShape			pOtherShape
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) {
+		CSGResultEntry anEntry = retrieve( pKey );
+		if ( anEntry == null ) {
+			return( null );
+		}
+		// Let the operands register themselves, just as they would in the blend itself,
+		// and confirm we end up with the same mesh indices as the prior product
+		pShape.registerMeshIndices( pMeshManager );
+		pOtherShape.registerMeshIndices( pMeshManager );
+		if ( !anEntry.mRegistrations.equals( pMeshManager.getRegistrationSignature() ) ) {
+			synchronized( CSGResultCache.class ) {
+				sMissCount += 1;
+			}
+			return( null );
+		}
+		synchronized( CSGResultCache.class ) {
+			sHitCount += 1;
+		}
+		// Hand out a copy, since the blending of it will alter its content
+		CSGShapeProcessor aHandler 
+			= anEntry.mProduct.copyProduct( pShape.getHandler( pEnvironment, null ), pEnvironment );
+		CSGShape aProduct = new CSGShape( aHandler
+										, pShape.getName()
+										, pShape.getOrder()
+										, pShape.getError()
+										, pOtherShape.getError() );
+		aProduct.mFingerprint = pKey.getFingerprint();
+		aProduct.mResultCheck = pKey.mCheck;
+		return( aProduct );
+	}
+	
+	/** Build the key for the product of a group shape, independent of where the group
+	 	is placed, or null if the group cannot be cached
+	 */
+	public static CSGResultKey createDefinitionKey(
+		CSGShape			pShape
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) {
+		if ( getMemoryLimit() == 0 ) {
+			// Caching is disabled
+			return( null );
+		}
+		long aFingerprint = pShape.getDefinitionFingerprint();
+		if ( aFingerprint == 0 ) {
+			return( null );
+		}
+		// A null operator marks a definition, where the generic mesh index in force is part 
+		// of the key, since any face with no material of its own falls back to it
+		CSGResultKey aKey = new CSGResultKey( null
+											, aFingerprint
+											, pMeshManager.getGenericIndex().longValue()
+											, pEnvironment.getFingerprint() );
+		aKey.mCheck = CSGResultCheck.forShape( pShape );
+		return( aKey );
+	}
+	
+	/** Is the given transform one that the product of a group can simply follow?  
+	 	(a rotation, translation and UNIFORM scale, where null means identity)
+	 */
+	public static boolean isRigid(
+		Transform		pTransform
+	) {
+		if ( pTransform == null ) {
+			return( true );
+		}
+		Vector3f aScale = pTransform.getScale();
+		return( (FastMath.abs( aScale.x - aScale.y ) <= FastMath.FLT_EPSILON * FastMath.abs( aScale.x ))
+			&&  (FastMath.abs( aScale.x - aScale.z ) <= FastMath.FLT_EPSILON * FastMath.abs( aScale.x ))
+			&&  (aScale.x != 0.0f) );
+	}
+	
+	/** Look for the product of the same group definition, built under a different transform,
+	 	and place a copy of it under the given transform.
+	 	The shape registers its mesh indices just as a full regeneration would, and the 
+	 	product is only used if those registrations agree with the ones it was built with.
+	 */
+	public static CSGShape lookupDefinition(
+		CSGResultKey		pKey
+	,	CSGShape			pShape
+	,	Transform			pTransform
+	,	CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) {
+		CSGResultEntry anEntry = retrieve( pKey );
+		if ( anEntry == null ) {
+			return( null );
+		}
+		// Registrations are only ever appended, so everything that was registered when the
+		// product was built must still be in place.  Anything new that this shape adds must 
+		// fall within that same span, otherwise it resolved to something the product knows 
+		// nothing about.
+		int priorCount = pMeshManager.getMeshCount();
+		pShape.replayMeshIndices( pMeshManager, pTempVars, pEnvironment );
+		int currentCount = pMeshManager.getMeshCount();
+		if ( !pMeshManager.getRegistrationSignature().startsWith( anEntry.mRegistrations )
+		|| ((currentCount > priorCount) && (currentCount > anEntry.mMeshCount)) ) {
+			synchronized( CSGResultCache.class ) {
+				sMissCount += 1;
+			}
+			return( null );
+		}
+		synchronized( CSGResultCache.class ) {
+			sHitCount += 1;
+		}
+		CSGShapeProcessor aHandler 
+			= anEntry.mProduct.copyProduct( pShape.getHandler( pEnvironment, null ), pEnvironment );
+		
+		// Move the copy from where the original was built to where this one belongs
+		Transform fromTransform = (anEntry.mTransform == null) ? Transform.IDENTITY : anEntry.mTransform;
+		Transform toTransform = (pTransform == null) ? Transform.IDENTITY : pTransform;
+		if ( !fromTransform.equals( toTransform ) ) {
+			Transform aPlacement = fromTransform.invert().combineWithParent( toTransform );
+			aHandler.applyTransform( aPlacement, pTempVars, pEnvironment );
+		}
+		return( new CSGShape( aHandler, pShape.getName(), pShape.getOrder(), pShape.getError(), null ) );
+	}
+	
+	/** Retain the product of a group shape, as built under the given transform */
+	public static void storeDefinition(
+		CSGResultKey		pKey
+	,	CSGShape			pProduct
+	,	Transform			pTransform
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) {
+		if ( !pProduct.isValid() ) {
+			// Do not propagate problems
+			return;
+		}
+		CSGShapeProcessor aHandler = pProduct.getHandler( pEnvironment, null );
+		CSGResultEntry anEntry = new CSGResultEntry( aHandler.copyProduct( null, pEnvironment )
+													, pMeshManager.getRegistrationSignature()
+													, aHandler.estimateMemory() );
+		anEntry.mTransform = (pTransform == null) ? null : pTransform.clone();
+		anEntry.mMeshCount = pMeshManager.getMeshCount();
+		retain( pKey, anEntry );
+	}
+	
+	/** Retain the product of the given blend */
+	public static void store(
+		CSGResultKey		pKey
+	,	CSGShape			pProduct
+	,	CSGMeshManager		pMeshManager
+	,	CSGEnvironment		pEnvironment
+	) {
+		if ( !pProduct.isValid() ) {
+			// Do not propagate problems
+			return;
+		}
+		// Retain a private copy, independent of whatever happens to the original
+		CSGShapeProcessor aHandler = pProduct.getHandler( pEnvironment, null );
+		CSGResultEntry anEntry = new CSGResultEntry( aHandler.copyProduct( null, pEnvironment )
+													, pMeshManager.getRegistrationSignature()
+													, aHandler.estimateMemory() );
+		retain( pKey, anEntry );
+	}
+	
+	/** Service routine to find the entry for a key, which also confirms that the entry 
+	 	was built from the same structure, or null on a miss
+	 */
+	protected static synchronized CSGResultEntry retrieve(
+		CSGResultKey		pKey
+	) {
+		CSGResultEntry anEntry = sEntries.get( pKey );
+		if ( (anEntry == null) || !anEntry.mCheck.equals( pKey.mCheck ) ) {
+			// NOTE that a fingerprint collision leaves the prior entry in place, and the
+			//		store that follows this blend simply replaces it
+			sMissCount += 1;
+			return( null );
+		}
+		return( anEntry );
+	}
+	
+	/** Service routine to add an entry, within the memory limit */
+	protected static void retain(
+		CSGResultKey		pKey
+	,	CSGResultEntry		pEntry
+	) {
+		pEntry.mCheck = pKey.mCheck;
+		synchronized( CSGResultCache.class ) {
+			if ( pEntry.mMemory > sMemoryLimit / 4 ) {
+				// Not worth flushing most everything else
+				return;
+			}
+			CSGResultEntry priorEntry = sEntries.put( pKey, pEntry );
+			if ( priorEntry != null ) {
+				sMemoryUsed -= priorEntry.mMemory;
+			}
+			sMemoryUsed += pEntry.mMemory;
+			trim();
+		}
+	}
+	
+	/** Service routine that drops the least recently used entries until under the limit */
+	protected static synchronized void trim(
+	) {
+		Iterator<CSGResultEntry> anIterator = sEntries.values().iterator();
+		while( (sMemoryUsed > sMemoryLimit) && anIterator.hasNext() ) {
+			sMemoryUsed -= anIterator.next().mMemory;
+			anIterator.remove();
+		}
+	}
+}
+
+/** Helper class that identifies a given blend */
+class CSGResultKey
+{
+	/** The operation */
+	protected CSGOperator	mOperator;
+	/** The fingerprints of the operands */
+	protected long			mShape;
+	protected long			mOtherShape;
+	/** The fingerprint of the environment */
+	protected long			mEnvironment;
+	/** The cheap summary of the blend, which is NOT part of the key's identity */
+	protected CSGResultCheck	mCheck;
+	
+	CSGResultKey(
+		CSGOperator		pOperator
+	,	long			pShape
+	,	long			pOtherShape
+	,	long			pEnvironment
+	) {
+		mOperator = pOperator;
+		mShape = pShape;
+		mOtherShape = pOtherShape;
+		mEnvironment = pEnvironment;
+	}
+	
+	/** The fingerprint of the product this key produces */
+	public long getFingerprint(
+	) {
+		long aHash = CSGFingerprint.hash( CSGFingerprint.sBasis, mOperator );
+		aHash = CSGFingerprint.hash( aHash, mShape );
+		aHash = CSGFingerprint.hash( aHash, mOtherShape );
+		aHash = CSGFingerprint.hash( aHash, mEnvironment );
+		return( aHash );
+	}
+	
+	@Override
+	public int hashCode(
+	) {
+		long aHash = getFingerprint();
+		return( (int)(aHash ^ (aHash >>> 32)) );
+	}
+	@Override
+	public boolean equals(
+		Object		pOther
+	) {
+		if ( pOther instanceof CSGResultKey ) {
+			CSGResultKey otherKey = (CSGResultKey)pOther;
+			return( (mOperator == otherKey.mOperator)
+					&& (mShape == otherKey.mShape)
+					&& (mOtherShape == otherKey.mOtherShape)
+					&& (mEnvironment == otherKey.mEnvironment) );
+		}
+		return( false );
+	}
+}
+
+/** Helper class that retains a given product */
+class CSGResultEntry
+{
+	/** The private copy of the product */
+	protected CSGShapeProcessor		mProduct;
+	/** The mesh manager registrations that the product relies on */
+	protected String				mRegistrations;
+	/** Its estimated size */
+	protected long					mMemory;
+	/** The summary of the blend that produced it */
+	protected CSGResultCheck		mCheck;
+	/** For a group definition, the transform it was built under and the count of mesh
+	 	indices registered at the time */
+	protected Transform				mTransform;
+	protected int					mMeshCount;
+	
+	CSGResultEntry(
+		CSGShapeProcessor	pProduct
+	,	String				pRegistrations
+	,	long				pMemory
+	) {
+		mProduct = pProduct;
+		mRegistrations = pRegistrations;
+		mMemory = pMemory;
+	}
+}
+
+/** Helper class that summarizes what went into a product: how many shapes, in what
+ 	sequence of operators, with how many vertices.  It is a cheap check that backs up
+ 	a fingerprint match (see CSGResultCache and CSGDiskCache).
+ */
+class CSGResultCheck
+{
+	/** Summary of the given shape */
+	static CSGResultCheck forShape(
+		CSGShape		pShape
+	) {
+		if ( pShape.mResultCheck != null ) {
+			// A blended product knows how it was built
+			return( pShape.mResultCheck );
+		}
+		CSGResultCheck aCheck = new CSGResultCheck();
+		aCheck.mShapeCount = 1;
+		aCheck.mOperators = operatorCode( pShape.getOperator() );
+		// NOTE that Geometry.getVertexCount() looks at the raw mesh, without producing
+		//		any surface the way getMesh() would
+		aCheck.mVertexCount = pShape.getVertexCount();
+		if ( pShape.mSubShapes != null ) {
+			for( CSGShape aShape : pShape.mSubShapes ) {
+				aCheck = aCheck.combine( aShape.getOperator(), forShape( aShape ) );
+			}
+		}
+		return( aCheck );
+	}
+	/** Summary of the given list of shapes, blended in sequence */
+	static CSGResultCheck forShapes(
+		List<CSGShape>	pShapes
+	) {
+		CSGResultCheck aCheck = new CSGResultCheck();
+		for( CSGShape aShape : pShapes ) {
+			aCheck = aCheck.combine( aShape.getOperator(), forShape( aShape ) );
+		}
+		return( aCheck );
+	}
+	/** Service routine to fold an operator into the sequence */
+	static int operatorCode(
+		CSGOperator		pOperator
+	) {
+		return( (pOperator == null) ? 0 : pOperator.ordinal() + 1 );
+	}
+	
+	/** How many shapes */
+	protected int		mShapeCount;
+	/** The sequence of operators (and their nesting), folded into an int */
+	protected int		mOperators;
+	/** How many vertices in all the operand meshes */
+	protected long		mVertexCount;
+	
+	CSGResultCheck(
+	) {
+	}
+	CSGResultCheck(
+		int			pShapeCount
+	,	int			pOperators
+	,	long		pVertexCount
+	) {
+		mShapeCount = pShapeCount;
+		mOperators = pOperators;
+		mVertexCount = pVertexCount;
+	}
+	
+	/** Summary of this blended with another */
+	CSGResultCheck combine(
+		CSGOperator		pOperator
+	,	CSGResultCheck	pOther
+	) {
+		return( new CSGResultCheck( mShapeCount + pOther.mShapeCount
+									, ((mOperators * 7 + operatorCode( pOperator )) * 31) + pOther.mOperators
+									, mVertexCount + pOther.mVertexCount ) );
+	}
+	
+	@Override
+	public int hashCode(
+	) {
+		return( mShapeCount ^ mOperators ^ (int)mVertexCount );
+	}
+	@Override
+	public boolean equals(
+		Object		pOther
+	) {
+		if ( pOther instanceof CSGResultCheck ) {
+			CSGResultCheck otherCheck = (CSGResultCheck)pOther;
+			return( (mShapeCount == otherCheck.mShapeCount)
+					&& (mOperators == otherCheck.mOperators)
+					&& (mVertexCount == otherCheck.mVertexCount) );
+		}
+		return( false );
+	}
+	@Override
+	public String toString(
+	) {
+		return( mShapeCount + "/" + mOperators + "/" + mVertexCount );
+	}
+}
@@ -0,0 +1,230 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGSpatial;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Spatial;
+
+/** With deferred scene changes, every regenerated element expects a later call to
+ 	applySceneChanges() on the jME update thread, which attaches/detaches the generated 
+ 	Geometries and rebuilds any physics.  When a large level finishes loading, all of those
+ 	calls land in the same frame and the display freezes.
+ 	
+ 	CSGSceneChangeScheduler is an AppState that queues the elements with pending changes and 
+ 	applies them across frames, within a per-frame budget (milliseconds).  The elements 
+ 	nearest the camera go first.  A single element is always applied in one go, so at least 
+ 	one element is processed every frame, even if it alone exceeds the budget.
+ 	
+ 	While a scheduler is attached, any CSGGeometry/CSGGeonode that completes a deferred 
+ 	regeneration queues itself automatically.  Elements can also be queued explicitly via 
+ 	schedule().  Calling applySceneChanges() directly remains safe; the scheduler simply 
+ 	finds nothing to do for that element.
+ */
+public class CSGSceneChangeScheduler
+	extends AbstractAppState
+{
+	/** Version tracking support */
+	public static final String sCSGSceneChangeSchedulerRevision="$Rev$";
+	public static final String sCSGSceneChangeSchedulerDate="$Date$";
+
+	/** The scheduler currently attached (if any) */
+	protected static volatile CSGSceneChangeScheduler sActiveScheduler;
+	
+	/** Queue the given element with the active scheduler (if any)
+	 	@return - true if a scheduler accepted it
+	 */
+	public static boolean notifyPending(
+		CSGSpatial		pSpatial
+	) {
+		CSGSceneChangeScheduler aScheduler = sActiveScheduler;
+		if ( aScheduler != null ) {
+			aScheduler.schedule( pSpatial );
+			return( true );
+		}
+		return( false );
+	}
+	/** Accessor to the active scheduler */
+	public static CSGSceneChangeScheduler getActiveScheduler() { return sActiveScheduler; }
+
+	
+	/** Elements with pending changes, in arrival order */
+	protected Set<CSGSpatial>	mPending;
+	/** Per frame budget */
+	protected float				mBudgetMS;
+	/** The camera that defines 'nearest' (if null, the Application camera is used) */
+	protected Camera			mCamera;
+	/** Count of elements applied since attached */
+	protected int				mAppliedCount;
+	
+	
+	/** Null constructor with a default budget */
+	public CSGSceneChangeScheduler(
+	) {
+		this( 4.0f );
+	}
+	/** Constructor based on a given budget */
+	public CSGSceneChangeScheduler(
+		float		pBudgetMS
+	) {
+		mBudgetMS = pBudgetMS;
+		mPending = new LinkedHashSet<CSGSpatial>();
+	}
+	
+	/** Accessors */
+	public float getBudgetMS() { return mBudgetMS; }
+	public void setBudgetMS( float pBudgetMS ) { mBudgetMS = pBudgetMS; }
+	public Camera getCamera() { return mCamera; }
+	public void setCamera( Camera pCamera ) { mCamera = pCamera; }
+	public int getAppliedCount() { return mAppliedCount; }
+	public synchronized int getPendingCount() { return mPending.size(); }
+	
+	/** Queue the given element, whose changes will be applied on some later frame.
+	 	This can be called from any thread.
+	 */
+	public synchronized void schedule(
+		CSGSpatial		pSpatial
+	) {
+		mPending.add( pSpatial );
+	}
+	
+	/** Activation */
+	@Override
+	public void initialize(
+		AppStateManager		pStateManager
+	,	Application			pApplication
+	) {
+		super.initialize( pStateManager, pApplication );
+		if ( mCamera == null ) {
+			mCamera = pApplication.getCamera();
+		}
+	}
+	@Override
+	public void stateAttached(
+		AppStateManager		pStateManager
+	) {
+		sActiveScheduler = this;
+	}
+	@Override
+	public void stateDetached(
+		AppStateManager		pStateManager
+	) {
+		if ( sActiveScheduler == this ) {
+			sActiveScheduler = null;
+		}
+	}
+	@Override
+	public void cleanup(
+	) {
+		super.cleanup();
+		
+		// Anything still pending is applied now, rather than lost
+		for( CSGSpatial aSpatial : drainPending() ) {
+			aSpatial.applySceneChanges();
+		}
+	}
+	
+	/** Apply what fits within the budget */
+	@Override
+	public void update(
+		float		pTPF
+	) {
+		List<CSGSpatial> workList = drainPending();
+		if ( workList.isEmpty() ) {
+			return;
+		}
+		if ( (mCamera != null) && (workList.size() > 1) ) {
+			// Nearest first
+			final Vector3f cameraLocation = mCamera.getLocation();
+			final float[] distances = new float[ workList.size() ];
+			List<Integer> indexList = new ArrayList<Integer>( distances.length );
+			for( int i = 0; i < distances.length; i += 1 ) {
+				distances[ i ] = locate( workList.get( i ) ).distanceSquared( cameraLocation );
+				indexList.add( new Integer( i ) );
+			}
+			Collections.sort( indexList, new Comparator<Integer>() {
+				public int compare( Integer pA, Integer pB ) {
+					return( Float.compare( distances[ pA.intValue() ], distances[ pB.intValue() ] ) );
+				}
+			});
+			List<CSGSpatial> sortedList = new ArrayList<CSGSpatial>( distances.length );
+			for( Integer anIndex : indexList ) {
+				sortedList.add( workList.get( anIndex.intValue() ) );
+			}
+			workList = sortedList;
+		}
+		long budgetNS = (long)(mBudgetMS * 1000000.0f);
+		long startTimer = System.nanoTime();
+		int index = 0;
+		for( int count = workList.size(); index < count; index += 1 ) {
+			if ( (index > 0) && ((System.nanoTime() - startTimer) >= budgetNS) ) {
+				// Out of time for this frame
+				break;
+			}
+			if ( workList.get( index ).applySceneChanges() ) {
+				mAppliedCount += 1;
+			}
+		}
+		if ( index < workList.size() ) synchronized( this ) {
+			// Whatever is left goes back on the queue, ahead of any new arrivals
+			Set<CSGSpatial> remaining = new LinkedHashSet<CSGSpatial>( workList.subList( index, workList.size() ) );
+			remaining.addAll( mPending );
+			mPending = remaining;
+		}
+	}
+	
+	/** Service routine that takes everything off the queue */
+	protected synchronized List<CSGSpatial> drainPending(
+	) {
+		if ( mPending.isEmpty() ) {
+			return( Collections.<CSGSpatial>emptyList() );
+		}
+		List<CSGSpatial> aList = new ArrayList<CSGSpatial>( mPending );
+		mPending.clear();
+		return( aList );
+	}
+	
+	/** Service routine that finds where an element sits in the world */
+	protected Vector3f locate(
+		CSGSpatial		pSpatial
+	) {
+		Spatial aSpatial = pSpatial.asSpatial();
+		BoundingVolume aBound = aSpatial.getWorldBound();
+		return( (aBound == null) ? aSpatial.getWorldTranslation() : aBound.getCenter() );
+	}
+}
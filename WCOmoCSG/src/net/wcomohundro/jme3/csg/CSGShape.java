@@ -42,8 +42,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
 import net.wcomohundro.jme3.csg.bsp.CSGPartition;
@@ -202,6 +206,25 @@ public class CSGShape
 		public CSGShapeProcessor clone(
 			CSGShape		pForShape
 		);
+		/** Make an independent copy of a blended product, which can be blended again
+		 	without disturbing the original.  The copy reports into the statistics of
+		 	the given handler (if any).
+		 */
+		public CSGShapeProcessor copyProduct(
+			CSGShapeProcessor	pStatisticsSource
+		,	CSGEnvironment		pEnvironment
+		);
+		/** Rough estimate of the memory (in bytes) held by a blended product */
+		public long estimateMemory(
+		);
+		/** Convert the underlying mesh into whatever structure the blend operates on, 
+		 	so that it can be done in advance (and in parallel) of the blend itself
+		 */
+		public void prepareOperand(
+			CSGMeshManager		pMeshManager
+		,	CSGTempVars			pTempVars
+		,	CSGEnvironmentT		pEnvironment
+		);
 		
 		/** Ready a list of shapes for processing */
 		public List<CSGShape> prepareShapeList(
@@ -241,6 +264,18 @@ public class CSGShape
 		,	CSGEnvironmentT		pEnvironment
 		) throws CSGConstructionException;
 		
+		/** Subtract a shape from this blended product, reworking as little of the product
+		 	as possible.  The index of every mesh whose faces may have changed is added
+		 	to the given set.
+		 */
+		public CSGShape carve(
+			CSGShape			pOtherShape
+		,	Set<Integer>		pChangedMeshes
+		,	CSGMeshManager		pMeshManager
+		,	CSGTempVars			pTempVars
+		,	CSGEnvironmentT		pEnvironment
+		) throws CSGConstructionException;
+		
 		/** Produce the mesh(es) that corresponds to this shape
 		 	The zeroth mesh in the list is the total, composite mesh.
 		 	Every other mesh (if present) applies solely to a specific Material.
@@ -251,6 +286,15 @@ public class CSGShape
 		,	CSGTempVars			pTempVars
 		,	CSGEnvironmentT		pEnvironment
 		);
+		/** Produce the composite mesh, plus the meshes for just the given indices,
+		 	leaving every other mesh already registered with the manager alone
+		 */
+		public void updateMeshes(
+			CSGMeshManager		pMeshManager
+		,	Set<Integer>		pMeshIndices
+		,	CSGTempVars			pTempVars
+		,	CSGEnvironmentT		pEnvironment
+		);
 		
 		/** Get status about just what regenerate is doing */
 		public StringBuilder reportStatus( 
@@ -263,11 +307,11 @@ public class CSGShape
 	}	
 	
 	/** Service routine to assigning unique identifiers */
-	protected static int sInstanceCounter;
-	public static synchronized String assignInstanceKey(
+	protected static final AtomicInteger sInstanceCounter = new AtomicInteger();
+	public static String assignInstanceKey(
 		String		pSeed
 	) {
-		return( pSeed +  ++sInstanceCounter );
+		return( pSeed + sInstanceCounter.incrementAndGet() );
 	}
 	
 	/** Service to create a vector buffer for a given List */
@@ -381,6 +425,12 @@ public class CSGShape
 	protected CSGPlaceholderSpatial		mProxy;
 	/** Debug support */
 	protected List<Savable>				mDebug;
+	/** Resolved mesh indices, by face mask, for the MeshManager currently in use */
+	protected CSGMeshIndexTable			mMeshIndexTable;
+	/** The fingerprint of a blended product (which has no mesh/subshapes to examine) */
+	protected long						mFingerprint;
+	/** The summary of how a blended product was built (see CSGResultCheck) */
+	protected CSGResultCheck			mResultCheck;
 
 	
 	/** Generic constructor */
@@ -546,6 +596,14 @@ public class CSGShape
 	) {
 		return( (this.mesh == null) && (this.mSubShapes == null) );
 	}
+	/** Does this blended product actually carry the structure of the blend?  A product 
+	 	that stands in for meshes loaded from elsewhere (CSGDiskCache, CSGProcessPool) has
+	 	nothing that could be blended again.
+	 */
+	public boolean hasBlendedStructure(
+	) {
+		return( isBooleanBlend() && (this.mHandler != null) );
+	}
 		
 	/** Get status about just what regenerate is doing */
 	@Override
@@ -561,7 +619,13 @@ public class CSGShape
 	@Override
 	public int getProgress(
 	) {
-		return( (this.mHandler == null) ? 0 : this.mHandler.getStaticstics().getProgress() );
+		CSGShapeStatistics aStatistics = (this.mHandler == null) ? null : this.mHandler.getStaticstics();
+		return( (aStatistics == null) ? 0 : aStatistics.getProgress() );
+	}
+	/** Accessor to the statistics gathered by the underlying handler (if any) */
+	public CSGShapeStatistics getStatistics(
+	) {
+		return( (this.mHandler == null) ? null : this.mHandler.getStaticstics() );
 	}
 
 	/** Ensure this shape is ready to be blended --
@@ -574,6 +638,20 @@ public class CSGShape
 		return( this );
 	}
 	
+	/** Make an independent copy of a blended product, which can be blended again 
+	 	without disturbing this one (blending alters the receiver in place)
+	 */
+	public CSGShape copyProduct(
+		CSGEnvironment		pEnvironment
+	) {
+		CSGShapeProcessor aHandler 
+			= this.getHandler( pEnvironment, null ).copyProduct( null, pEnvironment );
+		CSGShape aCopy = new CSGShape( aHandler, this.getName(), this.getOrder(), this.getError(), null );
+		aCopy.mFingerprint = this.mFingerprint;
+		aCopy.mResultCheck = this.mResultCheck;
+		return( aCopy );
+	}
+	
 	/** Make a copy of this shape */
 	@Override
 	public CSGShape clone(
@@ -612,6 +690,7 @@ public class CSGShape
 			aClone = new CSGShape( this.getName(), this.mOrder );
 		}
 		aClone.mShapeKey = CSGShape.assignInstanceKey( aClone.name );
+		aClone.mMeshIndexTable = null;
 		aClone.setOperator( this.mOperator );
 		aClone.setShapeSurface( this.mSurface );
 //		aClone.setLodLevel( pLODLevel );
@@ -631,6 +710,33 @@ public class CSGShape
 		return( aClone );
 	}
 	
+	/** Produce an independent copy of this shape definition, including a copy of every 
+	 	subshape, that can be blended concurrently with the original.  The mesh is shared,
+	 	but nothing that is built up during a blend is.
+	 */
+	public CSGShape copyDefinition(
+		boolean		pWithDecorations
+	) {
+		CSGShape aCopy = (CSGShape)super.clone( false );
+		aCopy.mShapeKey = null;
+		aCopy.mHandler = null;
+		aCopy.mParentElement = null;
+		aCopy.mMeshIndexTable = null;
+		aCopy.mPriorResult = null;
+		aCopy.mRegenNS = 0;
+		if ( !pWithDecorations ) {
+			aCopy.mDecorations = null;
+		}
+		if ( mSubShapes != null ) {
+			List<CSGShape> subShapes = new ArrayList<CSGShape>( mSubShapes.size() );
+			for( CSGShape aShape : mSubShapes ) {
+				subShapes.add( aShape.copyDefinition( pWithDecorations ) );
+			}
+			aCopy.mSubShapes = subShapes;
+		}
+		return( aCopy );
+	}
+	
 	/** Unique keystring identifying this element */
 	@Override
 	public String getInstanceKey(
@@ -641,6 +747,89 @@ public class CSGShape
 		return mShapeKey; 
 	}
 	
+	/** Produce a hash of everything that contributes to the blended result of this shape, 
+	 	so that a change can be detected without redoing the blend 
+	 	(see CSGFingerprint for the fine print)
+	 */
+	public long getFingerprint(
+	) {
+		if ( mFingerprint != 0 ) {
+			// Explicitly assigned to a blended product
+			return( mFingerprint );
+		} else if ( isBooleanBlend() ) {
+			// A blended product with no known history
+			return( 0 );
+		}
+		return( computeFingerprint( true ) );
+	}
+	/** Produce a hash of everything that contributes to the blended result of this shape
+	 	EXCEPT where it is placed (its own local transform), so that copies of the same 
+	 	definition can be recognized
+	 */
+	public long getDefinitionFingerprint(
+	) {
+		if ( (mFingerprint != 0) || isBooleanBlend() ) {
+			// A blended product is not a definition
+			return( 0 );
+		}
+		return( computeFingerprint( false ) );
+	}
+	protected long computeFingerprint(
+		boolean		pWithPlacement
+	) {
+		long aHash = CSGFingerprint.sBasis;
+		aHash = CSGFingerprint.hash( aHash, this.name );
+		aHash = CSGFingerprint.hash( aHash, mOperator );
+		aHash = CSGFingerprint.hash( aHash, mOrder );
+		aHash = CSGFingerprint.hash( aHash, mSurface );
+		if ( pWithPlacement ) {
+			aHash = CSGFingerprint.hash( aHash, this.localTransform );
+		}
+		aHash = CSGFingerprint.hash( aHash, this.getLodLevel() );
+		aHash = CSGFingerprint.hash( aHash, this.material );
+		aHash = CSGFingerprint.hashIdentity( aHash, mProxy );
+		aHash = CSGFingerprint.hash( aHash, mPhysics );
+		if ( mRenderNode != null ) {
+			// Custom rendering is known by its kind and material
+			aHash = CSGFingerprint.hash( aHash, (Object)mRenderNode.getClass().getName() );
+			aHash = CSGFingerprint.hash( aHash, (Object)mRenderNode.getName() );
+			aHash = CSGFingerprint.hash( aHash, mRenderNode.getMaterial() );
+		} else {
+			aHash = CSGFingerprint.hash( aHash, 0L );
+		}
+		aHash = CSGFingerprint.hash( aHash, hasDecorations() );
+		
+		// Lights are known by their settings
+		aHash = CSGFingerprint.hash( aHash, this.getLocalLightList().size() );
+		for( Light aLight : this.getLocalLightList() ) {
+			aHash = CSGFingerprint.hash( aHash, aLight );
+		}
+		if ( mFaceProperties != null ) {
+			for( CSGFaceProperties aProperty : mFaceProperties ) {
+				aHash = CSGFingerprint.hash( aHash, aProperty.getFaceMask() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getName() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getMaterial() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getTextureScale() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getTextureOrigin() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getTextureSpan() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getTextureTerminus() );
+				aHash = CSGFingerprint.hash( aHash, aProperty.getPhysics() );
+			}
+		}
+		if ( this.mesh != null ) {
+			// The content of the mesh itself, which accounts for all the parameters
+			// that went into generating the mesh
+			aHash = CSGFingerprint.hash( aHash, this.mesh );
+		}
+		if ( mSubShapes != null ) {
+			// The content of every subshape
+			for( CSGShape aShape : mSubShapes ) {
+				aHash = CSGFingerprint.hash( aHash, aShape.getFingerprint() );
+			}
+		}
+		return( aHash );
+	}
+	
 	/** The shape knows if it is 'valid' or not */
 	@Override
 	public boolean isValid() { return( mInError == null ); }
@@ -710,10 +899,36 @@ public class CSGShape
 		return( getHandler( pEnvironment, null ).prepareShapeList( pShapeList, pEnvironment ) );
 	}
 		
-	/** Accessor to the mesh that applies to the given surface */
+	/** Accessor to the mesh that applies to the given surface 
+	 	This is called for every triangle converted from the underlying mesh, and every
+	 	resolution involves building string keys and probing the MeshManager's map. But
+	 	all the surfaces that share a face mask resolve identically, so the resolved 
+	 	index is remembered by mask for the given MeshManager.
+	 */
 	public Integer getMeshIndex(
 		CSGMeshManager		pMeshManager
 	,	int					pFaceIndex
+	) {
+		CSGMeshIndexTable aTable = mMeshIndexTable;
+		if ( (aTable == null) || (aTable.mMeshManager != pMeshManager) ) {
+			// Indices are only meaningful to the MeshManager that produced them
+			mMeshIndexTable = aTable = new CSGMeshIndexTable( pMeshManager );
+		}
+		int faceMask = (this.mesh instanceof CSGMesh) ? ((CSGMesh)this.mesh).getFaceMask( pFaceIndex ) : 0;
+		if ( (faceMask < 0) || (faceMask >= aTable.mIndices.length) ) {
+			// Not a mask we can track
+			return( resolveMeshIndex( pMeshManager, pFaceIndex ) );
+		}
+		Integer anIndex = aTable.mIndices[ faceMask ];
+		if ( anIndex == null ) {
+			// First time for this mask
+			aTable.mIndices[ faceMask ] = anIndex = resolveMeshIndex( pMeshManager, pFaceIndex );
+		}
+		return( anIndex );
+	}
+	protected Integer resolveMeshIndex(
+		CSGMeshManager		pMeshManager
+	,	int					pFaceIndex
 	) {
 		if ( this.mesh instanceof CSGMesh ) {
 			// CSGMesh based primitives may support per-face materials in their own right
@@ -836,7 +1051,7 @@ public class CSGShape
 	) throws CSGConstructionException {
 		CSGShape useShape = this; //this.prepareShape( pMeshManager, pTempVars, pEnvironment );
 		CSGShape useOther = pOtherShape.prepareShape( pMeshManager, pTempVars, pEnvironment );
-		return( useShape.getHandler( pEnvironment, null ).union( useOther, pMeshManager, pTempVars, pEnvironment ) );
+		return( useShape.blendShapes( CSGOperator.UNION, useOther, pMeshManager, pTempVars, pEnvironment ) );
 	}
 	
 	/** Subtract a shape from this one */
@@ -848,7 +1063,7 @@ public class CSGShape
 	) throws CSGConstructionException {
 		CSGShape useShape = this; //this.prepareShape( pMeshManager, pTempVars, pEnvironment );
 		CSGShape useOther = pOtherShape.prepareShape( pMeshManager, pTempVars, pEnvironment );
-		return( useShape.getHandler( pEnvironment, null ).difference( useOther, pMeshManager, pTempVars, pEnvironment ) );
+		return( useShape.blendShapes( CSGOperator.DIFFERENCE, useOther, pMeshManager, pTempVars, pEnvironment ) );
 	}
 
 	/** Find the intersection with another shape */
@@ -860,7 +1075,7 @@ public class CSGShape
 	) throws CSGConstructionException {
 		CSGShape useShape = this; // this.prepareShape( pMeshManager, pTempVars, pEnvironment );
 		CSGShape useOther = pOtherShape.prepareShape( pMeshManager, pTempVars, pEnvironment );
-		return( useShape.getHandler( pEnvironment, null ).intersection( useOther, pMeshManager, pTempVars, pEnvironment ) );
+		return( useShape.blendShapes( CSGOperator.INTERSECTION, useOther, pMeshManager, pTempVars, pEnvironment ) );
 	}
 
 	/** Find the merge with another shape */
@@ -872,7 +1087,110 @@ public class CSGShape
 	) throws CSGConstructionException {
 		CSGShape useShape = this; // this.prepareShape( pMeshManager, pTempVars, pEnvironment );
 		CSGShape useOther = pOtherShape.prepareShape( pMeshManager, pTempVars, pEnvironment );
-		return( useShape.getHandler( pEnvironment, null ).merge( useOther, pMeshManager, pTempVars, pEnvironment ) );
+		return( useShape.blendShapes( CSGOperator.MERGE, useOther, pMeshManager, pTempVars, pEnvironment ) );
+	}
+
+	/** Service routine that blends a (prepared) shape into this one, leveraging any 
+	 	prior result held by the CSGResultCache
+	 */
+	protected CSGShape blendShapes(
+		CSGOperator			pOperator
+	,	CSGShape			pOtherShape
+	,	CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		CSGShapeProcessor aHandler = this.getHandler( pEnvironment, null );
+		
+		// Look for a prior result
+		CSGResultKey aKey = CSGResultCache.createKey( pOperator, this, pOtherShape, pEnvironment );
+		if ( aKey != null ) {
+			CSGShape aProduct = CSGResultCache.lookup( aKey, this, pOtherShape, pMeshManager, pEnvironment );
+			if ( aProduct != null ) {
+				return( aProduct );
+			}
+		}
+		// Do the work
+		CSGShape aProduct;
+		switch( pOperator ) {
+		case UNION:
+			aProduct = aHandler.union( pOtherShape, pMeshManager, pTempVars, pEnvironment );
+			break;
+		case DIFFERENCE:
+			aProduct = aHandler.difference( pOtherShape, pMeshManager, pTempVars, pEnvironment );
+			break;
+		case INTERSECTION:
+			aProduct = aHandler.intersection( pOtherShape, pMeshManager, pTempVars, pEnvironment );
+			break;
+		case MERGE:
+			aProduct = aHandler.merge( pOtherShape, pMeshManager, pTempVars, pEnvironment );
+			break;
+		default:
+			throw new IllegalArgumentException( "Blend not supported: " + pOperator );
+		}
+		if ( aKey != null ) {
+			// The product is known by how it was produced
+			aProduct.mFingerprint = aKey.getFingerprint();
+			aProduct.mResultCheck = aKey.mCheck;
+			CSGResultCache.store( aKey, aProduct, pMeshManager, pEnvironment );
+		}
+		return( aProduct );
+	}
+	
+	/** Register every mesh index this shape would assign to its faces while being blended,
+	 	which is needed when a blend is skipped in favor of a prior result.
+	 */
+	protected void registerMeshIndices(
+		CSGMeshManager		pMeshManager
+	) {
+		if ( isBooleanBlend() || (mSubShapes != null) ) {
+			// A blended product already carries its indices
+			return;
+		}
+		Mesh aMesh = this.getMesh();
+		int faceCount = (aMesh == null) ? 0 : aMesh.getTriangleCount();
+		for( int i = 0; i < faceCount; i += 1 ) {
+			getMeshIndex( pMeshManager, i );
+		}
+	}
+	
+	/** Register every mesh index this shape (and its subshapes) would contribute to a blend, 
+	 	WITHOUT doing the blend itself.  This is used when the blended meshes come from 
+	 	somewhere else (see CSGDiskCache) and only the registrations are needed.
+	 */
+	protected void replayMeshIndices(
+		CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) {
+		if ( !isValid() || (mOperator == CSGOperator.SKIP) ) {
+			// Not taking part in the blend
+			return;
+		}
+		// Register the standard Material, just as clone() would
+		pMeshManager.resolveMeshIndex( null, this.getMaterial(), null, this );
+		if ( mProxy != null ) {
+			setSpatial( mProxy, null );
+		}
+		if ( mSubShapes == null ) {
+			// Ready the lights/decorations/mesh, then account for every face
+			prepareShape( pMeshManager, pTempVars, pEnvironment );
+			if ( this.mesh instanceof CSGMesh ) {
+				((CSGMesh)this.mesh).registerFaceProperties( pMeshManager, this );
+			}
+			registerMeshIndices( pMeshManager );
+		} else {
+			// Just as regenerateShape() would
+			pMeshManager.pushGenericIndex( this.getMaterial(), this );
+			try {
+				for( CSGShape aShape : prepareShapeList( mSubShapes, pEnvironment ) ) {
+					aShape.setParentElement( this );
+					aShape.replayMeshIndices( pMeshManager, pTempVars, pEnvironment );
+				}
+			} finally {
+				pMeshManager.popGenericIndex();
+			}
+		}
 	}
 
 	/** Produce the mesh(es) that corresponds to this shape
@@ -890,6 +1208,34 @@ public class CSGShape
 		CSGShape useShape = this.prepareShape( pMeshManager, pTempVars, pEnvironment );
 		useShape.getHandler( pEnvironment, null ).toMesh( pMeshManager, pProduceSubelements, pTempVars, pEnvironment  );
 	}
+	
+	/** Subtract the given cutter from this blended product, where only the portion of the
+	 	product near the cutter is reworked (see CSGGeonode.carveShape()).  The index of every 
+	 	mesh that may have changed is added to the given set, so that updateMeshes() can
+	 	rebuild just those.
+	 */
+	public CSGShape carve(
+		CSGShape			pCutter
+	,	Set<Integer>		pChangedMeshes
+	,	CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) throws CSGConstructionException {
+		CSGShape useCutter = pCutter.prepareShape( pMeshManager, pTempVars, pEnvironment );
+		return( this.getHandler( pEnvironment, null )
+					.carve( useCutter, pChangedMeshes, pMeshManager, pTempVars, pEnvironment ) );
+	}
+	/** Rebuild the composite mesh plus the meshes of the given indices, leaving every
+	 	other mesh within the manager (and its buffers) untouched
+	 */
+	public void updateMeshes(
+		CSGMeshManager		pMeshManager
+	,	Set<Integer>		pMeshIndices
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironment		pEnvironment
+	) {
+		this.getHandler( pEnvironment, null ).updateMeshes( pMeshManager, pMeshIndices, pTempVars, pEnvironment );
+	}
 		
 	/** Mediate access to the mesh representing this shape */
 	@Override
@@ -1129,6 +1475,85 @@ public class CSGShape
 			return( regenerateShape( mSubShapes, pMeshManager, pTempVars, pEnvironment ) );
 		}
 	}
+	/** Service routine to select the operator that blends a given subshape into this group */
+	protected CSGOperator blendOperator(
+		CSGShape		pShape
+	) {
+		return( pShape.getOperator() );
+	}
+	/** Service routine to rework the sequence of subshapes (see CSGOperandOptimizer) */
+	protected List<CSGShape> optimizeShapeList(
+		List<CSGShape>		pShapes
+	,	CSGEnvironment		pEnvironment
+	) {
+		return( CSGOperandOptimizer.optimize( pShapes, pEnvironment ) );
+	}
+	
+	/** Service routine that readies every operand of a group in parallel, exactly as the
+	 	sequential processing of regenerateShape() would (clone the starting shape, prepare
+	 	every other, converting its mesh as needed).  Any shape not taking part in the 
+	 	blend has no operand.
+	 	The workers would assign mesh indices in whatever order they happen to run, so the
+	 	indices of every operand are registered in blend order on this thread beforehand.
+	 */
+	protected CSGShape[] prepareOperands(
+		List<CSGShape>				pShapes
+	,	final CSGMeshManager		pMeshManager
+	,	final CSGEnvironment		pEnvironment
+	) {
+		final CSGShape[] operands = new CSGShape[ pShapes.size() ];
+		final CSGShapeProcessor baseHandler = this.getHandler( pEnvironment, null );
+		final Stack<CSGMeshInfo> genericState = pMeshManager.forkGenericIndex();
+		final int lodLevel = this.getLodLevel();
+		
+		List<Callable<CSGShape>> taskList = new ArrayList<Callable<CSGShape>>( operands.length );
+		boolean haveProduct = false;
+		CSGTempVars registerVars = CSGTempVars.get();
+		try {
+			for( int i = 0; i < operands.length; i += 1 ) {
+				final CSGShape aShape = pShapes.get( i );
+				if ( !aShape.isValid() 
+				|| (blendOperator( aShape ) == CSGOperator.SKIP)
+				|| (!haveProduct && (blendOperator( aShape ) == CSGOperator.DIFFERENCE)) ) {
+					// Not taking part
+					continue;
+				}
+				aShape.setParentElement( this );
+				
+				// Fix the mesh indices in the same sequence as a sequential blend
+				aShape.replayMeshIndices( pMeshManager, registerVars, pEnvironment );
+				
+				final int index = i;
+				final boolean isStart = !haveProduct;
+				haveProduct = true;
+				taskList.add( new Callable<CSGShape>() {
+					public CSGShape call() {
+						Stack<CSGMeshInfo> priorState = pMeshManager.adoptGenericIndex( genericState );
+						CSGTempVars tempVars = CSGTempVars.get();
+						try {
+							if ( isStart ) {
+								// A place to start
+								operands[ index ] = aShape.clone( pMeshManager, lodLevel, tempVars, pEnvironment );
+							} else {
+								// Something to blend in
+								CSGShape useShape = aShape.refresh().prepareShape( pMeshManager, tempVars, pEnvironment );
+								useShape.getHandler( pEnvironment, baseHandler ).prepareOperand( pMeshManager, tempVars, pEnvironment );
+								operands[ index ] = useShape;
+							}
+							return( operands[ index ] );
+						} finally {
+							tempVars.release();
+							pMeshManager.adoptGenericIndex( priorState );
+						}
+					}
+				});
+			}
+		} finally {
+			registerVars.release();
+		}
+		CSGWorkerPool.invokeAll( taskList, this );
+		return( operands );
+	}
 	protected CSGShape regenerateShape(
 		List<CSGShape>		pShapes
 	,	CSGMeshManager		pMeshManager
@@ -1137,15 +1562,44 @@ public class CSGShape
 	) {
 		long startTimeNS = System.nanoTime();
 		
+		// Has the same definition already been built somewhere else?
+		Transform shapeTransform = this.getCSGTransform( pEnvironment );
+		CSGResultKey definitionKey = null;
+		if ( pEnvironment.mMemoizeShapes && CSGResultCache.isRigid( shapeTransform ) ) {
+			definitionKey = CSGResultCache.createDefinitionKey( this, pMeshManager, pEnvironment );
+			if ( definitionKey != null ) {
+				CSGShape aProduct = CSGResultCache.lookupDefinition( definitionKey
+																	, this
+																	, shapeTransform
+																	, pMeshManager
+																	, pTempVars
+																	, pEnvironment );
+				if ( aProduct != null ) {
+					// Simply placed where this copy belongs
+					mRegenNS = System.nanoTime() - startTimeNS;
+					return( completeProduct( aProduct, pEnvironment ) );
+				}
+			}
+		}
 		// Sort the shapes as needed by their handler
 		List<CSGShape> sortedShapes = prepareShapeList( pShapes, pEnvironment );
-		
+		if ( pEnvironment.mOptimizeOperands ) {
+			// Rework the sequence for a cheaper blend
+			sortedShapes = optimizeShapeList( sortedShapes, pEnvironment );
+		}
 		// Use this Material as the generic one for all the sub shapes
 		pMeshManager.pushGenericIndex( this.getMaterial(), this );
 		try {
+			CSGShape[] operands = null;
+			if ( pEnvironment.mParallelShapes && (sortedShapes.size() > 1) ) {
+				// Ready every operand (including nested groups) in parallel, which leaves
+				// only the blending itself for the loop below
+				operands = prepareOperands( sortedShapes, pMeshManager, pEnvironment );
+			}
 			// Operate on each shape in turn, blending it into the common
 			CSGShape aProduct = null;
-			for( CSGShape aShape : sortedShapes ) {
+			for( int index = 0, count = sortedShapes.size(); index < count; index += 1 ) {
+				CSGShape aShape = sortedShapes.get( index );
 				if ( !aShape.isValid() ) {
 					// We cannot use invalid shapes
 					this.setError( aShape.getError() );
@@ -1153,8 +1607,15 @@ public class CSGShape
 				}
 				aShape.setParentElement( this );
 				
+				if ( (operands != null) && (operands[ index ] != null) ) {
+					// Already prepared, so either start with it or blend it in
+					aProduct = (aProduct == null) 
+								? operands[ index ]
+								: aProduct.blendShapes( blendOperator( aShape ), operands[ index ], pMeshManager, pTempVars, pEnvironment );
+					continue;
+				}
 				// Apply the operator
-				switch( aShape.getOperator() ) {
+				switch( blendOperator( aShape ) ) {
 				case UNION:
 					if ( aProduct == null ) {
 						// A place to start
@@ -1199,37 +1660,50 @@ public class CSGShape
 					break;
 				}
 			}
-			// The final product if what is used as the result of the group
-			if ( this.getName() != null ) {
-				// Apply the explicit name of 'this' shape to the resultant blend
-				aProduct.setName( this.getName() );
-			}
-			if ( this.getLocalLightList().size() > 0 ) {
-				// Local lights on this shape must be applied to the end product
-				// This can be done by duplicating the light controls from this shape
-				aProduct.mLightControls = CSGLightControl.configureLightControls( null
-																					, null
-																					, getLocalLightList()
-																					, true
-																					, getLocalTransform() );
-			}
-			if ( this.mRenderNode != null ) {
-				aProduct.mRenderNode = this.mRenderNode;
-			}
 			// Is there a per shape transform to apply?
-			Transform shapeTransform = this.getCSGTransform( pEnvironment );
 			if ( !pEnvironment.mPreTransform && (shapeTransform != null) ) {
 				// If we did NOT apply the transform directly to the mesh, we must
 				// apply the shape transform now.
 				aProduct.getHandler( pEnvironment, null ).applyTransform( shapeTransform, pTempVars, pEnvironment );
 			}
-			return( aProduct );
+			if ( (definitionKey != null) && (aProduct != null) ) {
+				// Keep it for any other copy of this definition
+				CSGResultCache.storeDefinition( definitionKey, aProduct, shapeTransform, pMeshManager, pEnvironment );
+			}
+			return( completeProduct( aProduct, pEnvironment ) );
 			
 		} finally {
 			pMeshManager.popGenericIndex();
 			mRegenNS = System.nanoTime() - startTimeNS;
 		}
 	}
+	/** Service routine that finishes off the product of a group */
+	protected CSGShape completeProduct(
+		CSGShape			pProduct
+	,	CSGEnvironment		pEnvironment
+	) {
+		// The final product if what is used as the result of the group
+		if ( this.getName() != null ) {
+			// Apply the explicit name of 'this' shape to the resultant blend
+			pProduct.setName( this.getName() );
+		}
+		if ( this.getLocalLightList().size() > 0 ) {
+			// Local lights on this shape must be applied to the end product
+			// This can be done by duplicating the light controls from this shape
+			pProduct.mLightControls = CSGLightControl.configureLightControls( null
+																				, null
+																				, getLocalLightList()
+																				, true
+																				, getLocalTransform() );
+		}
+		if ( this.mRenderNode != null ) {
+			pProduct.mRenderNode = this.mRenderNode;
+		}
+		// The product is known by the group that produced it
+		pProduct.mFingerprint = CSGFingerprint.hash( this.getFingerprint(), pEnvironment.getFingerprint() );
+		pProduct.mResultCheck = CSGResultCheck.forShape( this );
+		return( pProduct );
+	}
 
 		
 	/////// Implement ConstructiveSolidGeometry
@@ -1251,4 +1725,21 @@ public class CSGShape
 	}
 
 }
+/** Helper class that retains the mesh index resolved for each face mask */
+class CSGMeshIndexTable
+{
+	/** Face masks are single bits (or NONE) out of CSGFaceProperties.Face */
+	protected static final int sMaskLimit = 256;
 
+	/** The manager that resolved the indices */
+	protected CSGMeshManager	mMeshManager;
+	/** The indices, by face mask */
+	protected Integer[]			mIndices;
+	
+	CSGMeshIndexTable(
+		CSGMeshManager		pMeshManager
+	) {
+		mMeshManager = pMeshManager;
+		mIndices = new Integer[ sMaskLimit ];
+	}
+}
@@ -0,0 +1,459 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI.CSGErrorCode;
+
+/** A full regeneration of a CSGGeonode can take far longer than a single frame.  
+ 	regenerateAsync() moves that work off the update thread, but an application that 
+ 	prefers to stay single threaded needs a way to spread the work across frames.
+ 	
+ 	CSGSlicedRegeneration breaks a CSGGeonode regeneration down into steps:
+ 		-- readying the shapes (sorting, matching prior steps, loading from disk)
+ 		-- blending each shape into the product, one shape per step
+ 		-- producing the meshes from the blended product
+ 		-- post processing of the meshes (LOD, tangents, compaction)
+ 		-- swapping the result into the scene
+ 	Every call to advance() runs steps until its time budget is used up, and the state
+ 	carries over to the next call.  A step is never interrupted part way, so the blend of 
+ 	two complex shapes can still overrun the budget.  The budget is best honored by a 
+ 	Geonode built up from many modest shapes.
+ 	
+ 	A Geonode that regenerates within a CSGProcessPool worker waits on the worker in the
+ 	REMOTE phase.  Each step there simply checks on the worker, and advance() returns 
+ 	(incomplete) rather than spending its budget waiting.  Anything that must finish now 
+ 	can block on the worker via awaitWorker() between the calls to advance().
+ 	
+ 	getEstimate() reports the fraction complete and a predicted time remaining, based on
+ 	the face counts of the shapes still to blend and the rate measured over the steps
+ 	already taken.
+ 	
+ 	Until the final step, the prior product remains on display.  Starting another 
+ 	regeneration of the same Geonode abandons this one: the product being worked on 
+ 	belongs to this regeneration alone, the check for being superseded is made before
+ 	every step, and again as the product is published, so an abandoned regeneration
+ 	never shows its product.
+ */
+public class CSGSlicedRegeneration
+{
+	/** Version tracking support */
+	public static final String sCSGSlicedRegenerationRevision="$Rev$";
+	public static final String sCSGSlicedRegenerationDate="$Date$";
+
+	/** The stages of the regeneration */
+	public enum Phase {
+		PREPARE			// Ready the shapes
+	,	REMOTE			// Wait on a CSGProcessPool worker
+	,	BLEND			// Blend the shapes, one per step
+	,	MESH			// Produce the meshes
+	,	PROCESS			// Post process the meshes
+	,	APPLY			// Swap in the result
+	,	COMPLETE		// All done
+	,	FAILED			// Ended in error
+	,	ABANDONED		// Cancelled or superseded
+	}
+	
+	
+	/** The Geonode being regenerated */
+	protected CSGGeonode		mGeonode;
+	/** The environment that applies */
+	protected CSGEnvironment	mEnvironment;
+	/** Where we are in the process */
+	protected volatile Phase	mPhase;
+	/** The shapes to blend, in the order they are blended */
+	protected List<CSGShape>	mShapes;
+	/** Which shape is next */
+	protected volatile int		mShapeIndex;
+	/** Management of the generated meshes */
+	protected CSGMeshManager	mMeshManager;
+	/** Tracking of the incremental steps (if any) */
+	protected long[]			mStepKeys;
+	/** Shapes prior to this index are already accounted for in the starting product */
+	protected int				mResumeIndex;
+	/** Key into the disk cache (0 if unused), and the summary of the definition behind it */
+	protected long				mDiskKey;
+	protected CSGResultCheck	mDiskCheck;
+	/** The meshes were loaded from disk, so there is nothing to blend */
+	protected boolean			mFromDisk;
+	/** The meshes were produced (and processed) by a CSGProcessPool worker */
+	protected boolean			mFromWorker;
+	/** The active CSGProcessPool job (if any), and the manager that receives its meshes */
+	protected volatile Future<Boolean>	mRemoteJob;
+	protected CSGMeshManager	mWorkerManager;
+	/** The product being worked on */
+	protected volatile CSGShape	mActiveProduct;
+	/** The final product */
+	protected CSGShape			mProduct;
+	/** The problem that ended the regeneration */
+	protected CSGConstructionException	mError;
+	/** Total time spent within advance() */
+	protected volatile long		mElapsedNS;
+	/** When the active slice started (0 if no slice is running) */
+	protected volatile long		mSliceStartNS;
+	/** The modeled work (in face units) of each blend, and of the steps that follow */
+	protected long[]			mShapeWork;
+	protected long				mMeshWork;
+	protected long				mProcessWork;
+	/** Overall modeled work, and how much is complete */
+	protected volatile long		mWorkTotal;
+	protected volatile long		mWorkDone;
+	/** Completed work with a measured cost, which drives the ETA */
+	protected volatile long		mMeasuredWork;
+	protected volatile long		mMeasuredNS;
+	
+	
+	/** Constructor based on the Geonode to regenerate (see CSGGeonode.beginRegeneration()) */
+	protected CSGSlicedRegeneration(
+		CSGGeonode		pGeonode
+	,	CSGEnvironment	pEnvironment
+	) {
+		mGeonode = pGeonode;
+		mEnvironment = pEnvironment;
+		mPhase = Phase.PREPARE;
+	}
+	
+	/** Accessors */
+	public CSGGeonode getGeonode() { return mGeonode; }
+	public Phase getPhase() { return mPhase; }
+	public CSGShape getProduct() { return mProduct; }
+	public CSGConstructionException getError() { return mError; }
+	public long getElapsedNS() { return mElapsedNS; }
+	public boolean isDone(
+	) {
+		switch( mPhase ) {
+		case COMPLETE:
+		case FAILED:
+		case ABANDONED:
+			return( true );
+		default:
+			return( false );
+		}
+	}
+	
+	/** How far along are we (0.0 - 1.0)? */
+	public float getProgress(
+	) {
+		switch( mPhase ) {
+		case COMPLETE:
+		case FAILED:
+		case ABANDONED:
+			return( 1.0f );
+		default:
+			return( getEstimate().getFraction() );
+		}
+	}
+	
+	/** What is left to do, and how long is it likely to take? 
+	 	(The ETA is unknown until at least one measurable step has completed)
+	 */
+	public CSGProgressEstimate getEstimate(
+	) {
+		long workDone = mWorkDone;
+		long workTotal = mWorkTotal;
+		long sliceStart = mSliceStartNS;
+		long elapsedNS = mElapsedNS + ((sliceStart == 0) ? 0 : (System.nanoTime() - sliceStart));
+		
+		int pendingShapes = 0;
+		long remainingNS = -1;
+		if ( isDone() ) {
+			workDone = workTotal;
+			remainingNS = 0;
+		} else if ( (mPhase != Phase.PREPARE) && (mPhase != Phase.REMOTE) ) {
+			pendingShapes = (mPhase == Phase.BLEND) ? mShapes.size() - mShapeIndex : 0;
+			long measuredWork = mMeasuredWork;
+			if ( measuredWork > 0 ) {
+				// Project the rate observed so far across the remaining work
+				double nsPerUnit = (double)mMeasuredNS / (double)measuredWork;
+				remainingNS = (long)(nsPerUnit * (workTotal - workDone));
+			}
+		}
+		return( new CSGProgressEstimate( workDone, workTotal, pendingShapes, elapsedNS, remainingNS ) );
+	}
+	
+	/** Work through as many steps as fit within the given budget (nanoseconds).  At least
+	 	one step is always taken, but the slice ends early while waiting on a worker.
+	 	@return - true if the regeneration is done
+	 */
+	public boolean advance(
+		long		pBudgetNS
+	) throws CSGConstructionException {
+		if ( isDone() ) {
+			return( true );
+		}
+		if ( mGeonode.getActiveRegeneration() != this ) {
+			// Superseded by a later regeneration
+			abandon();
+			return( true );
+		}
+		// Time the construction operation
+		long startTimer = System.nanoTime();
+		mSliceStartNS = startTimer;
+		mGeonode.mRegenNS = -1;
+		
+		// Save on churn by leveraging temps
+		int tempDepth = CSGTempVars.getDepth();
+		CSGTempVars tempVars = CSGTempVars.get();
+		try {
+			do {
+				if ( mGeonode.getActiveRegeneration() != this ) {
+					// Superseded while we were working
+					abandon();
+					break;
+				}
+				step( tempVars );
+			} while( !isDone() 
+					&& (mPhase != Phase.REMOTE) 
+					&& ((System.nanoTime() - startTimer) < pBudgetNS) );
+			
+		} catch( CSGConstructionException ex ) {
+			// Record the problem and toss it again
+			fail( ex );
+			throw ex;
+		} catch( Exception ex ) {
+			CSGConstructionException csgEx 
+				= new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "Unexpected regeneration failure"
+												, mGeonode
+												, ex );
+			fail( csgEx );
+			throw csgEx;
+		} finally {
+			tempVars.release();
+			if ( CSGTempVars.isDebug() ) {
+				// Every step is expected to give back whatever temps it took
+				CSGTempVars.checkBalance( tempDepth );
+			}
+			mElapsedNS += System.nanoTime() - startTimer;
+			mSliceStartNS = 0;
+			
+			if ( mPhase == Phase.ABANDONED ) {
+				// The Geonode belongs to whatever superseded us
+			} else if ( !isDone() ) {
+				// A negative value marks work in progress
+				mGeonode.mRegenNS = -1;
+			} else if ( mShapes == null ) {
+				// Nothing was attempted
+				mGeonode.mRegenNS = 0;
+			} else {
+				mGeonode.mRegenNS = mElapsedNS;
+			}
+		}
+		return( isDone() );
+	}
+	
+	/** Block (up to the given time) until the CSGProcessPool worker is done, after which
+	 	the next advance() picks up its result.  An interrupt of the calling thread is
+	 	left in place, so that the next advance() cancels the job.
+	 */
+	public void awaitWorker(
+		long		pWaitMS
+	) {
+		Future<Boolean> aJob = mRemoteJob;
+		if ( aJob != null ) {
+			try {
+				aJob.get( pWaitMS, TimeUnit.MILLISECONDS );
+			} catch( InterruptedException ex ) {
+				Thread.currentThread().interrupt();
+			} catch( Exception ex ) {
+				// Still running, or a failure which advance() reports
+			}
+		}
+	}
+	
+	/** Abandon the regeneration, leaving the prior product in place */
+	public void cancel(
+	) {
+		if ( !isDone() ) {
+			abandon();
+			mGeonode.endRegeneration( this );
+			mGeonode.mRegenNS = 0;
+		}
+	}
+	
+	/** Service routine to take the next step */
+	protected void step(
+		CSGTempVars		pTempVars
+	) throws CSGConstructionException {
+		// Account for the work, and how long it took
+		long stepWork = stepWork();
+		long stepStart = System.nanoTime();
+		takeStep( pTempVars );
+		
+		mWorkDone += stepWork;
+		if ( stepWork > 0 ) {
+			mMeasuredNS += System.nanoTime() - stepStart;
+			mMeasuredWork += stepWork;
+		}
+	}
+	protected void takeStep(
+		CSGTempVars		pTempVars
+	) throws CSGConstructionException {
+		switch( mPhase ) {
+		case PREPARE:
+			if ( !mGeonode.startRegeneration( this, pTempVars ) ) {
+				complete( null );
+			} else if ( mRemoteJob != null ) {
+				mPhase = Phase.REMOTE;
+			} else {
+				estimateWork();
+				mShapeIndex = 0;
+				mPhase = Phase.BLEND;
+			}
+			break;
+			
+		case REMOTE:
+			if ( mGeonode.pollRemotely( this ) ) {
+				// The worker is done (or we fall back to blending locally)
+				estimateWork();
+				mShapeIndex = 0;
+				mPhase = Phase.BLEND;
+			}
+			break;
+			
+		case BLEND:
+			if ( mShapeIndex < mShapes.size() ) {
+				mGeonode.blendShape( this, mShapeIndex, pTempVars );
+				mShapeIndex += 1;
+			}
+			if ( mShapeIndex >= mShapes.size() ) {
+				mPhase = Phase.MESH;
+			}
+			break;
+			
+		case MESH:
+			if ( mGeonode.produceMeshes( this, pTempVars ) ) {
+				mPhase = Phase.PROCESS;
+			} else {
+				complete( null );
+			}
+			break;
+			
+		case PROCESS:
+			mGeonode.processMeshes( this );
+			mPhase = Phase.APPLY;
+			break;
+			
+		case APPLY:
+			// NOTE that the Geonode checks (one last time) that we are still the active
+			//		regeneration as it publishes the product
+			CSGShape aProduct = mGeonode.applyRegeneration( this );
+			if ( aProduct == null ) {
+				abandon();
+			} else {
+				complete( aProduct );
+			}
+			break;
+		}
+	}
+	
+	/** Service routine that models the work of each step, based on face counts */
+	protected void estimateWork(
+	) {
+		int shapeCount = mShapes.size();
+		mShapeWork = new long[ shapeCount ];
+		
+		// The product grows (roughly) by the faces of each shape blended into it
+		long productFaces = 0;
+		for( int i = 0; i < shapeCount; i += 1 ) {
+			long shapeFaces = CSGOperandOptimizer.resolveFaceCount( mShapes.get( i ) );
+			if ( (i >= mResumeIndex) && !mFromDisk && !mFromWorker ) {
+				// A blend compares every face of the shape against the product
+				mShapeWork[ i ] = 1 + productFaces + shapeFaces;
+			}
+			productFaces += shapeFaces;
+		}
+		// Producing and then processing the meshes each touch every face of the product
+		mMeshWork = (mFromDisk || mFromWorker) ? 1 : 1 + productFaces;
+		mProcessWork = (mFromWorker) ? 1 : 1 + productFaces;
+		
+		long totalWork = mMeshWork + mProcessWork + 1;
+		for( long aWork : mShapeWork ) {
+			totalWork += aWork;
+		}
+		mWorkTotal = totalWork;
+	}
+	/** Service routine that selects the modeled work of the next step */
+	protected long stepWork(
+	) {
+		switch( mPhase ) {
+		case BLEND:
+			return( (mShapeIndex < mShapeWork.length) ? mShapeWork[ mShapeIndex ] : 0 );
+		case MESH:
+			return( mMeshWork );
+		case PROCESS:
+			return( mProcessWork );
+		case APPLY:
+			return( 1 );
+		default:
+			return( 0 );
+		}
+	}
+	
+	/** Service routine to wrap up successfully */
+	protected void complete(
+		CSGShape	pProduct
+	) {
+		mProduct = pProduct;
+		mActiveProduct = null;
+		mPhase = Phase.COMPLETE;
+		mGeonode.endRegeneration( this );
+	}
+	/** Service routine to wrap up once superseded, discarding whatever was produced */
+	protected void abandon(
+	) {
+		cancelWorker();
+		mActiveProduct = null;
+		mPhase = Phase.ABANDONED;
+	}
+	/** Service routine to wrap up in error */
+	protected void fail(
+		CSGConstructionException	pError
+	) {
+		if ( mGeonode.getActiveRegeneration() == this ) {
+			// A superseded regeneration has no say in the Geonode's state
+			mGeonode.setError( pError );
+		}
+		cancelWorker();
+		mError = pError;
+		mActiveProduct = null;
+		mPhase = Phase.FAILED;
+		mGeonode.endRegeneration( this );
+	}
+	/** Service routine that stops any CSGProcessPool job still running */
+	protected void cancelWorker(
+	) {
+		Future<Boolean> aJob = mRemoteJob;
+		if ( aJob != null ) {
+			aJob.cancel( true );
+			mRemoteJob = null;
+			mWorkerManager = null;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitor;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.TangentBinormalGenerator;
+
+/** The TangentBinormalGenerator is happy to walk a Node and process every Mesh it finds,
+ 	but that happens on the scene thread, AFTER the regeneration is complete, and for
+ 	a large blended shape it can take longer than the blending itself.
+
+ 	CSGTangentGenerator operates on the Meshes of a CSGMeshManager as part of the
+ 	regeneration, where:
+ 		-- each Mesh is processed independently, in parallel via the CSGWorkerPool
+ 		-- a Mesh whose content matches a Mesh from the prior regeneration simply picks
+ 			up the tangents already computed
+ 		-- optionally (see setNormalMapOnly()), a Mesh whose Material has no NormalMap is 
+ 			skipped.  This is not the default, since a custom shader may well read the 
+ 			tangents without any such parameter.
+ 	A given generator is expected to be retained by its element across regenerations so
+ 	that the prior tangents are available.
+ 	
+ 	The Geometries that are not backed by the manager (the decorations attached by 
+ 	CSGMeshManager.getSpatials(), for example) are covered by generateOthers(), which 
+ 	runs as the scene is updated.
+ */
+public class CSGTangentGenerator
+{
+	/** Version tracking support */
+	public static final String sCSGTangentGeneratorRevision="$Rev$";
+	public static final String sCSGTangentGeneratorDate="$Date$";
+
+	/** The Material parameter that makes tangents interesting */
+	public static final String sNormalMapParam = "NormalMap";
+
+
+	/** The tangent related buffers produced on the prior pass, keyed by mesh content */
+	protected Map<Long,VertexBuffer[]>	mPriorTangents;
+	/** Control flag to skip any Mesh whose Material has no NormalMap */
+	protected boolean					mNormalMapOnly;
+
+
+	/** Null constructor */
+	public CSGTangentGenerator(
+	) {
+		mPriorTangents = new HashMap<Long,VertexBuffer[]>();
+	}
+	
+	/** Accessor to the NormalMap filter control */
+	public boolean isNormalMapOnly() { return mNormalMapOnly; }
+	public void setNormalMapOnly( boolean pFlag ) { mNormalMapOnly = pFlag; }
+
+	/** Produce the tangents for all the meshes in the given manager */
+	public void generate(
+		CSGMeshManager	pMeshManager
+	,	CSGElement		pElement
+	) throws CSGConstructionException {
+		List<Mesh> meshList = new ArrayList<Mesh>( pMeshManager.getMeshCount() + 1 );
+		if ( pMeshManager.getMeshCount() == 0 ) {
+			// The master is the only mesh that will actually be displayed
+			selectMesh( pMeshManager, CSGMeshManager.sMasterMeshIndex, meshList );
+		} else {
+			for( int index = 0; index <= pMeshManager.getMeshCount(); index += 1 ) {
+				selectMesh( pMeshManager, new Integer( index ), meshList );
+			}
+		}
+		// Reuse what we can and generate the rest
+		Map<Long,VertexBuffer[]> currentTangents = new HashMap<Long,VertexBuffer[]>( meshList.size() * 2 );
+		List<Long> keyList = new ArrayList<Long>( meshList.size() );
+		List<Mesh> workList = new ArrayList<Mesh>( meshList.size() );
+		List<Callable<Mesh>> taskList = new ArrayList<Callable<Mesh>>( meshList.size() );
+		for( final Mesh aMesh : meshList ) {
+			Long aKey = new Long( contentHash( aMesh ) );
+			VertexBuffer[] priorBuffers = mPriorTangents.get( aKey );
+			if ( priorBuffers != null ) {
+				// Same content as before, so the same tangents apply
+				for( VertexBuffer aBuffer : priorBuffers ) {
+					aMesh.setBuffer( aBuffer );
+				}
+				currentTangents.put( aKey, priorBuffers );
+			} else {
+				// Generate it now
+				keyList.add( aKey );
+				workList.add( aMesh );
+				taskList.add( new Callable<Mesh>() {
+					public Mesh call() {
+						TangentBinormalGenerator.generate( aMesh );
+						return( aMesh );
+					}
+				});
+			}
+		}
+		CSGWorkerPool.invokeAll( taskList, pElement );
+
+		// Remember what was produced for next time
+		for( int i = 0, j = workList.size(); i < j; i += 1 ) {
+			Mesh aMesh = workList.get( i );
+			VertexBuffer aTangent = aMesh.getBuffer( Type.Tangent );
+			VertexBuffer aBinormal = aMesh.getBuffer( Type.Binormal );
+			if ( aTangent != null ) {
+				currentTangents.put( keyList.get( i )
+									, (aBinormal == null)
+										? new VertexBuffer[] { aTangent }
+										: new VertexBuffer[] { aTangent, aBinormal } );
+			}
+		}
+		// Only the current set is retained, so the cache never grows beyond the active meshes
+		mPriorTangents = currentTangents;
+	}
+	
+	/** Produce the tangents for every Geometry under the given Spatial whose Mesh is NOT 
+	 	held by the given manager (which generate() never sees)
+	 */
+	public void generateOthers(
+		Spatial			pSpatial
+	,	CSGMeshManager	pMeshManager
+	) {
+		final Set<Mesh> managedMeshes = Collections.newSetFromMap( new IdentityHashMap<Mesh,Boolean>() );
+		for( int index = 0; index <= pMeshManager.getMeshCount(); index += 1 ) {
+			Mesh aMesh = pMeshManager.resolveMesh( new Integer( index ) );
+			if ( aMesh != null ) {
+				managedMeshes.add( aMesh );
+			}
+		}
+		pSpatial.depthFirstTraversal( new SceneGraphVisitor() {
+			public void visit(
+				Spatial		pChild
+			) {
+				if ( pChild instanceof Geometry ) {
+					Geometry aGeometry = (Geometry)pChild;
+					Mesh aMesh = aGeometry.getMesh();
+					if ( (aMesh != null) 
+					&& !managedMeshes.contains( aMesh ) 
+					&& isCandidate( aMesh, aGeometry.getMaterial() ) ) {
+						TangentBinormalGenerator.generate( aMesh );
+					}
+				}
+			}
+		});
+	}
+
+	/** Service routine that includes a mesh only if it is worth processing */
+	protected void selectMesh(
+		CSGMeshManager	pMeshManager
+	,	Integer			pMeshIndex
+	,	List<Mesh>		pMeshList
+	) {
+		Mesh aMesh = pMeshManager.resolveMesh( pMeshIndex );
+		Material aMaterial = pMeshManager.resolveMaterial(
+			(pMeshIndex.intValue() < 0) ? CSGMeshManager.sGenericMeshIndex : pMeshIndex );
+		if ( (aMesh != null) && isCandidate( aMesh, aMaterial ) ) {
+			pMeshList.add( aMesh );
+		}
+	}
+	/** Service routine that checks if a mesh is worth processing */
+	protected boolean isCandidate(
+		Mesh		pMesh
+	,	Material	pMaterial
+	) {
+		if ( pMesh.getTriangleCount() == 0 ) {
+			// Nothing to process
+			return( false );
+		}
+		if ( pMesh.getBuffer( Type.Tangent ) != null ) {
+			// Already done
+			return( false );
+		}
+		if ( (pMesh.getBuffer( Type.Position ) == null) || (pMesh.getBuffer( Type.Normal ) == null) ) {
+			// Nothing to work from (like a physics only mesh)
+			return( false );
+		}
+		if ( pMesh.getBuffer( Type.Position ).getFormat() != Format.Float ) {
+			// Compacted (see CSGMeshCompactor), and the generator only reads floats
+			return( false );
+		}
+		if ( mNormalMapOnly 
+		&& ((pMaterial == null) || (pMaterial.getParam( sNormalMapParam ) == null)) ) {
+			// Without a normal map, no one will look at the tangents
+			return( false );
+		}
+		return( true );
+	}
+
+	/** Service routine that produces a hash of the geometric content of a mesh */
+	public static long contentHash(
+		Mesh		pMesh
+	) {
+		return( CSGFingerprint.hash( CSGFingerprint.sBasis, pMesh ) );
+	}
+}
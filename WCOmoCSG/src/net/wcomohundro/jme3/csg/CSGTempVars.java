@@ -35,13 +35,19 @@ package net.wcomohundro.jme3.csg;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 
-import java.util.Stack;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
 
 import net.wcomohundro.jme3.math.Vector3d;
 
 
 /** Variation of jme3 TempVars that includes Vector3d elements.
- 	This is NOT intended for thread level caching, but instances are statically cached.
+ 	Instances are cached per thread, so that parallel regenerations never contend for
+ 	them.  An instance is expected to be released by the same thread that acquired it.
+ 	
+ 	In debug mode, every acquisition is tracked so that an instance released twice, released
+ 	by the wrong thread, or never released at all (see checkBalance()) is reported.
  */
 public class CSGTempVars 
 {
@@ -49,21 +55,68 @@ public class CSGTempVars
 	public static final String sCSGTempVarsRevision="$Rev$";
 	public static final String sCSGTempVarsDate="$Date$";
 
+	/** Upper limit on the idle instances retained by any one thread */
+	protected static final int sPoolLimit = 32;
 	
-	/** Simple static cache */
-	protected static Stack<CSGTempVars> sTempVars = new Stack<CSGTempVars>();
+	/** Per thread cache */
+	protected static final ThreadLocal<CSGTempVarsPool> sTempVars = new ThreadLocal<CSGTempVarsPool>() {
+		@Override
+		protected CSGTempVarsPool initialValue(
+		) {
+			return( new CSGTempVarsPool() );
+		}
+	};
+	/** Track acquisitions for leaks and mismatched release */
+	protected static volatile boolean sDebug = ConstructiveSolidGeometry.DEBUG;
 	
 	/** Accessor */
 	public static CSGTempVars get(
 	) {
-		synchronized( sTempVars ) {
-			if ( sTempVars.isEmpty() ) {
-				return( new CSGTempVars() );
-			} else {
-				return( sTempVars.pop() );
+		CSGTempVarsPool aPool = sTempVars.get();
+		CSGTempVars aVars = aPool.acquire();
+		if ( sDebug ) {
+			aPool.track( aVars );
+		}
+		return( aVars );
+	}
+	
+	/** Debug mode control */
+	public static boolean isDebug() { return sDebug; }
+	public static void setDebug( boolean pFlag ) { sDebug = pFlag; }
+	
+	/** How many instances are currently held by the calling thread */
+	public static int getDepth(
+	) {
+		return( sTempVars.get().mDepth );
+	}
+	/** The deepest the calling thread has ever gone */
+	public static int getMaxDepth(
+	) {
+		return( sTempVars.get().mMaxDepth );
+	}
+	/** Confirm that the calling thread holds no more than it did at the given depth, 
+	 	typically sampled via getDepth() on the way into some unit of work.  In debug mode, 
+	 	anything held beyond that point is reported along with where it was acquired.
+	 	@return - true if balanced
+	 */
+	public static boolean checkBalance(
+		int		pExpectedDepth
+	) {
+		CSGTempVarsPool aPool = sTempVars.get();
+		if ( aPool.mDepth == pExpectedDepth ) {
+			return( true );
+		}
+		if ( sDebug ) {
+			CSGEnvironment.sLogger.log( Level.WARNING
+				, "CSGTempVars imbalance on " + Thread.currentThread().getName() 
+					+ ": expected " + pExpectedDepth + ", holding " + aPool.mDepth );
+			for( Throwable anAcquisition : aPool.mOutstanding.values() ) {
+				CSGEnvironment.sLogger.log( Level.WARNING, "CSGTempVars outstanding", anAcquisition );
 			}
 		}
+		return( false );
 	}
+
 	
 	/** Vectors */
 	public Vector3f		vect1 = new Vector3f();
@@ -90,8 +143,88 @@ public class CSGTempVars
 	/** Release for reuse */
 	public void release(
 	) {
-		synchronized( sTempVars ) {
-			sTempVars.push( this );
+		CSGTempVarsPool aPool = sTempVars.get();
+		if ( sDebug && !aPool.untrack( this ) ) {
+			// Do not reuse something we cannot account for, but keep the depth honest
+			aPool.forget();
+			return;
+		}
+		aPool.restore( this );
+	}
+}
+
+/** Helper class that holds the idle instances of a single thread */
+class CSGTempVarsPool
+{
+	/** The idle instances */
+	protected CSGTempVars[]		mIdle = new CSGTempVars[ CSGTempVars.sPoolLimit ];
+	protected int				mIdleCount;
+	/** Count of instances currently held by this thread */
+	protected int				mDepth;
+	protected int				mMaxDepth;
+	/** In debug mode, where every held instance was acquired */
+	protected Map<CSGTempVars,Throwable>	mOutstanding = new IdentityHashMap<CSGTempVars,Throwable>();
+	
+	/** Pick up an instance */
+	protected CSGTempVars acquire(
+	) {
+		mDepth += 1;
+		if ( mDepth > mMaxDepth ) mMaxDepth = mDepth;
+		
+		if ( mIdleCount > 0 ) {
+			mIdleCount -= 1;
+			CSGTempVars aVars = mIdle[ mIdleCount ];
+			mIdle[ mIdleCount ] = null;
+			return( aVars );
+		} else {
+			return( new CSGTempVars() );
+		}
+	}
+	/** Give an instance back */
+	protected void restore(
+		CSGTempVars		pVars
+	) {
+		if ( mDepth > 0 ) mDepth -= 1;
+		if ( mIdleCount < mIdle.length ) {
+			mIdle[ mIdleCount++ ] = pVars;
+		}
+	}
+	
+	/** Debug support: an instance that could not be untracked is dropped rather than reused.
+	 	If this thread holds more instances than it is tracking, then the instance was one 
+	 	acquired before debug mode was enabled and still counts against the depth.  
+	 	Otherwise (a double release, or an instance from another thread) this thread's 
+	 	depth never included it.
+	 */
+	protected void forget(
+	) {
+		if ( mDepth > mOutstanding.size() ) mDepth -= 1;
+	}
+	
+	/** Debug support: remember where the instance came from */
+	protected void track(
+		CSGTempVars		pVars
+	) {
+		mOutstanding.put( pVars, new Throwable( "acquired by " + Thread.currentThread().getName() ) );
+	}
+	/** Debug support: confirm the instance was acquired by this thread and is not yet released */
+	protected boolean untrack(
+		CSGTempVars		pVars
+	) {
+		if ( mOutstanding.remove( pVars ) != null ) {
+			return( true );
+		}
+		for( int i = 0; i < mIdleCount; i += 1 ) {
+			if ( mIdle[ i ] == pVars ) {
+				CSGEnvironment.sLogger.log( Level.SEVERE
+					, "CSGTempVars released twice", new Throwable() );
+				return( false );
+			}
 		}
+		// Acquired on some other thread (or before debug mode was enabled)
+		CSGEnvironment.sLogger.log( Level.WARNING
+			, "CSGTempVars released without a matching acquisition on " + Thread.currentThread().getName()
+			, new Throwable() );
+		return( false );
 	}
 }
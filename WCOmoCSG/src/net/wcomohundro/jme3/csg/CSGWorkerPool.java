@@ -0,0 +1,181 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGElement;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI.CSGErrorCode;
+
+/** Regeneration is typically driven from a single background thread, but there are a number
+ 	of steps within it that are independent of each other and can make good use of any
+ 	other cores.  CSGWorkerPool provides a single, shared, bounded set of daemon threads
+ 	for such work.
+
+ 	The CSG processing is recursive in nature, so a task running within the pool may well
+ 	want to farm out work of its own.  To avoid starving the pool (every worker waiting on
+ 	tasks that have no worker to run them), the caller of invokeAll() also pitches in and
+ 	runs any task that has not yet been picked up.  That means invokeAll() always makes
+ 	progress, even if every worker is busy.
+ */
+public class CSGWorkerPool
+{
+	/** Version tracking support */
+	public static final String sCSGWorkerPoolRevision="$Rev$";
+	public static final String sCSGWorkerPoolDate="$Date$";
+
+	/** The shared executor, created on demand */
+	protected static ExecutorService	sExecutor;
+	/** How many threads it uses */
+	protected static int				sPoolSize;
+
+
+	/** Accessor to the shared executor */
+	public static synchronized ExecutorService getExecutor(
+	) {
+		if ( sExecutor == null ) {
+			// Leave one core for the caller, who runs tasks as well
+			sPoolSize = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+			ThreadPoolExecutor anExecutor
+				= new ThreadPoolExecutor( sPoolSize, sPoolSize
+										, 30, TimeUnit.SECONDS
+										, new LinkedBlockingQueue<Runnable>()
+										, new CSGWorkerThreadFactory() );
+			anExecutor.allowCoreThreadTimeOut( true );
+			sExecutor = anExecutor;
+		}
+		return( sExecutor );
+	}
+	/** Accessor to the number of worker threads */
+	public static int getPoolSize(
+	) {
+		getExecutor();
+		return( sPoolSize );
+	}
+
+	/** Run all the given tasks, returning their results in the same order as the tasks.
+	 	Any failure is reported as a CSGConstructionException, associated with the
+	 	given element.
+	 */
+	public static <T> List<T> invokeAll(
+		List<? extends Callable<T>>	pTasks
+	,	CSGElement					pElement
+	) throws CSGConstructionException {
+		List<FutureTask<T>> aTaskList = new ArrayList<FutureTask<T>>( pTasks.size() );
+		for( Callable<T> aTask : pTasks ) {
+			aTaskList.add( new FutureTask<T>( aTask ) );
+		}
+		if ( aTaskList.size() > 1 ) {
+			// Let the workers go at everything but the first, which we take on ourselves
+			ExecutorService anExecutor = getExecutor();
+			for( int i = 1, j = aTaskList.size(); i < j; i += 1 ) {
+				anExecutor.execute( aTaskList.get( i ) );
+			}
+		}
+		// Run anything not already started (FutureTask.run() quietly ignores a task
+		// that is running or complete)
+		for( FutureTask<T> aTask : aTaskList ) {
+			aTask.run();
+		}
+		// Collect the results
+		List<T> results = new ArrayList<T>( aTaskList.size() );
+		try {
+			for( FutureTask<T> aTask : aTaskList ) {
+				results.add( aTask.get() );
+			}
+		} catch( InterruptedException ex ) {
+			// Abandon whatever is left
+			for( FutureTask<T> aTask : aTaskList ) {
+				aTask.cancel( true );
+			}
+			throw new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												, "CSGWorkerPool interrupted"
+												, pElement );
+		} catch( ExecutionException ex ) {
+			for( FutureTask<T> aTask : aTaskList ) {
+				aTask.cancel( true );
+			}
+			Throwable aCause = ex.getCause();
+			if ( aCause instanceof CSGConstructionException ) {
+				// Pass along the original problem
+				throw (CSGConstructionException)aCause;
+			}
+			throw new CSGConstructionException( CSGErrorCode.CONSTRUCTION_FAILED
+												, "CSGWorkerPool task failed"
+												, pElement
+												, aCause );
+		}
+		return( results );
+	}
+
+	/** Shut down the pool (it will be restarted if needed again) */
+	public static synchronized void shutdown(
+	) {
+		if ( sExecutor != null ) {
+			sExecutor.shutdownNow();
+			sExecutor = null;
+		}
+	}
+}
+
+/** Helper class that produces named daemon threads, so that an idle pool never holds up
+ 	the application exit
+ */
+class CSGWorkerThreadFactory
+	implements ThreadFactory
+{
+	/** Count of threads produced */
+	protected AtomicInteger		mThreadCount = new AtomicInteger();
+
+	@Override
+	public Thread newThread(
+		Runnable		pRunnable
+	) {
+		Thread aThread = new Thread( pRunnable, "CSGWorker-" + mThreadCount.incrementAndGet() );
+		aThread.setDaemon( true );
+		aThread.setPriority( Thread.NORM_PRIORITY - 1 );
+		aThread.setUncaughtExceptionHandler( new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(
+				Thread		pThread
+			,	Throwable	pError
+			) {
+				CSGEnvironment.sLogger.log( Level.SEVERE, "CSGWorker failure: " + pError, pError );
+			}
+		});
+		return( aThread );
+	}
+}
@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -280,8 +281,11 @@ public interface ConstructiveSolidGeometry
 		 	background thread and then apply scene changes in the jme update thread.
 		 	If you set the defer control flag to 'true', then you must call 
 		 	applySceneChages() after regenerate(), typically on different threads.
+		 	A single regeneration can also ask for deferral via its CSGEnvironment 
+		 	(mDeferSceneChanges), which leaves this flag untouched.
 		 */
 		public void deferSceneChanges( boolean pFlag );
+		public boolean isDeferringSceneChanges();
 		/** applySceneChanges() is multi-thread safe so that .regenerate() can be called
 		 	from a background thread, and applySceneChanges() can be called continuously
 		 	from within Application.update() processing on the JME update thread.
@@ -290,6 +294,17 @@ public interface ConstructiveSolidGeometry
 		 			  changes were found
 		 */
 		public boolean applySceneChanges();
+		
+		/** Regenerate on a background thread, returning a Future that will carry the 
+		 	product and its statistics.  The scene changes are always deferred, so the 
+		 	prior result continues to display until applySceneChanges() is called from the
+		 	jME update thread.  The optional token can be used to abandon the work (as can
+		 	Future.cancel())
+		 */
+		public Future<CSGRegenerationResult> regenerateAsync(
+			CSGEnvironment		pEnvironment
+		,	CSGCancelToken		pCancelToken
+		);
 	}
 
 	/** Version tracking support 
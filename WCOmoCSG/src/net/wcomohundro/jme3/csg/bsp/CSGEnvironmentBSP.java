@@ -38,6 +38,7 @@ import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 
 import net.wcomohundro.jme3.csg.CSGEnvironment;
+import net.wcomohundro.jme3.csg.CSGFingerprint;
 import net.wcomohundro.jme3.csg.math.CSGPolygon;
 import net.wcomohundro.jme3.csg.math.CSGPolygon.CSGPolygonPlaneMode;
 
@@ -169,6 +170,18 @@ public class CSGEnvironmentBSP
 		mPartitionSeedPlane = pPartitionSeedPlane;
 	}
 	
+	/** Include the BSP specific settings in the fingerprint */
+	@Override
+	public long getFingerprint(
+	) {
+		long aHash = super.getFingerprint();
+		aHash = CSGFingerprint.hash( aHash, mBSPLimit );
+		aHash = CSGFingerprint.hash( aHash, mPolygonTriangleOnly );
+		aHash = CSGFingerprint.hash( aHash, mPolygonPlaneMode );
+		aHash = CSGFingerprint.hash( aHash, mPartitionSeedPlane );
+		return( aHash );
+	}
+	
 	@Override
 	public void write(
 		JmeExporter		pExporter
@@ -39,6 +39,8 @@ import net.wcomohundro.jme3.csg.CSGEnvironment;
 import net.wcomohundro.jme3.csg.CSGTempVars;
 import net.wcomohundro.jme3.csg.CSGVersion;
 import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry;
+import net.wcomohundro.jme3.csg.exception.CSGConstructionException;
+import net.wcomohundro.jme3.csg.exception.CSGExceptionI.CSGErrorCode;
 import net.wcomohundro.jme3.csg.math.CSGPlane;
 import net.wcomohundro.jme3.csg.math.CSGPlaneDbl;
 import net.wcomohundro.jme3.csg.math.CSGPlaneFlt;
@@ -697,6 +699,13 @@ public class CSGPartition
 		if ( mCorrupted || pPolygons.isEmpty() ) {
 			return( aCorruptHierarchy );
 		}
+		// Allow an outside monitor to abort long running construction
+		if ( pEnvironment.isCancelled() ) {
+			CSGConstructionException anError
+				= new CSGConstructionException( CSGErrorCode.INTERRUPTED
+												,	"CSGPartition.buildHierarchy - interrupted: " + mLevel );
+			throw anError;
+		}
 		if ( mLevel > pEnvironment.mBSPLimit ) {
 			// This is probably an error in the algorithm, but I have not yet found the true cause.
 			pEnvironment.log( Level.WARNING, "CSGPartition.buildHierarchy - too deep: " + mLevel );
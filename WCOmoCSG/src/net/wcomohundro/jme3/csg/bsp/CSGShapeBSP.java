@@ -38,6 +38,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import net.wcomohundro.jme3.csg.CSGEnvironment;
 import net.wcomohundro.jme3.csg.CSGGeometry;
@@ -411,6 +413,40 @@ public class CSGShapeBSP
 	}
 
 	
+	/** Make an independent copy of a blended product */
+	@Override
+	public CSGShape.CSGShapeProcessor copyProduct(
+		CSGShape.CSGShapeProcessor	pStatisticsSource
+	,	CSGEnvironment				pEnvironment
+	) {
+		// Blending never alters a polygon (inverting produces a new one), so the polygons
+		// themselves can be shared
+		CSGShapeBSP aHandler = new CSGShapeBSP( null, new ArrayList<CSGPolygon>( mPolygons ) );
+		aHandler.mCorruptLevel = this.mCorruptLevel;
+		aHandler.mLostVertices = this.mLostVertices;
+		return( aHandler );
+	}
+	/** Rough estimate of the memory held: the polygons and their vertices */
+	@Override
+	public long estimateMemory(
+	) {
+		long aSize = 0;
+		for( CSGPolygon aPolygon : mPolygons ) {
+			aSize += 96L + (aPolygon.getVertices().size() * 112L);
+		}
+		return( aSize );
+	}
+	
+	/** Generate the polygons in advance of any blend */
+	@Override
+	public void prepareOperand(
+		CSGMeshManager		pMaterialManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentBSP	pEnvironment
+	) {
+		getPolygons( pMaterialManager, 0, pTempVars, pEnvironment );
+	}
+	
 	/** Accessor to the list of polygons */
 	protected List<CSGPolygon> getPolygons(
 		CSGMeshManager		pMaterialManager
@@ -418,12 +454,13 @@ public class CSGShapeBSP
 	,	CSGTempVars			pTempVars
 	,	CSGEnvironmentBSP	pEnvironment
 	) { 
-		if ( mPolygons.isEmpty() && (mShape.getMesh() != null) ) {
+		Mesh aMesh;
+		if ( mPolygons.isEmpty() && ((aMesh = mShape.getMesh()) != null) ) {
 			// Generate the polygons
-			mPolygons = fromMesh( mShape.getMesh()
+			mPolygons = fromMesh( aMesh
 									, mShape.getCSGTransform( pEnvironment )
 									, pMaterialManager
-									, pLevelOfDetail
+									, (pLevelOfDetail == 0) ? pEnvironment.resolveOperandLOD( aMesh ) : pLevelOfDetail
 									, pTempVars
 									, pEnvironment );
 		}
@@ -494,6 +531,24 @@ public class CSGShapeBSP
         return( aShape );
 	}
 
+	/** BSP has no way to confine the partitioning to the neighborhood of the other shape,
+	 	so a carve is a full difference where any mesh may have changed
+	 */
+	@Override
+	public CSGShape carve(
+		CSGShape			pOther
+	,	Set<Integer>		pChangedMeshes
+	,	CSGMeshManager		pMaterialManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentBSP	pEnvironment
+	) {
+		CSGShape aShape = difference( pOther, pMaterialManager, pTempVars, pEnvironment );
+		for( int index = 0; index <= pMaterialManager.getMeshCount(); index += 1 ) {
+			pChangedMeshes.add( new Integer( index ) );
+		}
+		return( aShape );
+	}
+
 	/** Find the intersection with another shape */
 	@Override
 	public CSGShape intersection(
@@ -668,6 +723,34 @@ public class CSGShapeBSP
 			}
 		}
 	}
+	@Override
+	public void updateMeshes(
+		CSGMeshManager		pMeshManager
+	,	Set<Integer>		pMeshIndices
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentBSP	pEnvironment
+	) {	
+		List<CSGPolygon> aPolyList = getPolygons( pMeshManager, 0, pTempVars, pEnvironment );
+		int anEstimateVertexCount = aPolyList.size() * 3;
+		
+		List<Vector3f> aPositionList = new ArrayList<Vector3f>( anEstimateVertexCount );
+		List<Vector3f> aNormalList = new ArrayList<Vector3f>( anEstimateVertexCount );
+		List<Vector2f> aTexCoordList = new ArrayList<Vector2f>( anEstimateVertexCount  );
+		List<Number> anIndexList = new ArrayList<Number>( anEstimateVertexCount );
+		
+		// The master list always reflects every element
+		Mesh aMesh = toMesh( -1, aPolyList, aPositionList, aNormalList, aTexCoordList, anIndexList );
+		pMeshManager.registerMasterMesh( aMesh, this.mShape.getName() );
+		
+		// Only the given sub elements are rebuilt
+		for( Integer anIndex : new TreeSet<Integer>( pMeshIndices ) ) {
+			if ( (anIndex.intValue() >= 0) && (anIndex.intValue() <= pMeshManager.getMeshCount()) ) {
+				aPositionList.clear(); aNormalList.clear(); aTexCoordList.clear(); anIndexList.clear();
+				aMesh = toMesh( anIndex.intValue(), aPolyList, aPositionList, aNormalList, aTexCoordList, anIndexList );
+				pMeshManager.registerMesh( aMesh, anIndex );
+			}
+		}
+	}
 		
 	protected Mesh toMesh(
 		int					pMeshIndex
@@ -38,6 +38,7 @@ import com.jme3.export.OutputCapsule;
 import com.jme3.math.FastMath;
 
 import net.wcomohundro.jme3.csg.CSGEnvironment;
+import net.wcomohundro.jme3.csg.CSGFingerprint;
 import net.wcomohundro.jme3.csg.bsp.CSGShapeBSP;
 
 
@@ -108,6 +109,13 @@ public class CSGEnvironmentIOB
 		mRemoveUnsplitFace = REMOVE_UNSPLIT_FACE;
 	}
 	
+	/** Include the IOB specific settings in the fingerprint */
+	@Override
+	public long getFingerprint(
+	) {
+		return( CSGFingerprint.hash( super.getFingerprint(), mRemoveUnsplitFace ) );
+	}
+	
 	/** Support the persistence of this Environment */
 	@Override
 	public void write(
@@ -632,9 +632,7 @@ outer:	while( deadmanSwitch-- > 0 ) {
 			// Match each face in the other solid
 			for( CSGFace otherFace : pOtherSolid.getFaces() ) {
 				// Allow an outside monitor to abort long running construction
-				if ( Thread.interrupted() ) {
-					// NOTE use of .interrupted() (which clears the interrupted status) versus
-					//		currentThread.isInterrupted()  (which leaves the interrupted status alone)
+				if ( pEnvironment.isCancelled() ) {
 					CSGConstructionException anError
 						= new CSGConstructionException( CSGErrorCode.INTERRUPTED
 														,	"CSGFace.rayTraceClassify - interrupted" );
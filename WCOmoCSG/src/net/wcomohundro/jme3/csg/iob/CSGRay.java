@@ -130,6 +130,8 @@ public class CSGRay
 	protected Vector3d	mOrigin;
 	/** The direction */
 	protected Vector3d 	mDirection;
+	/** State of the perturbation generator (0 until first needed) */
+	protected long		mPerturbSeed;
 	
 	/** Constructor based on a direction and origin */
 	public CSGRay(
@@ -541,12 +543,38 @@ to find the exact point of intersection, which you also might need for your prog
     }
 
 
-	/** Randomly alter the direction of this line */
+	/** Randomly alter the direction of this line 
+	 	The 'random' values come from a generator seeded by the ray itself, so the same
+	 	geometry is always perturbed the same way (reproducible results) and there is no
+	 	generator shared across threads.
+	 */
 	public void perturbDirection(
 	) {
-		mDirection.x += 1e-5*Math.random();			
-		mDirection.y += 1e-5*Math.random();
-		mDirection.z += 1e-5*Math.random();
+		if ( mPerturbSeed == 0 ) {
+			// Seed from the ray as it stands
+			mPerturbSeed = seedBits( seedBits( 17, mOrigin ), mDirection );
+		}
+		mDirection.x += 1e-5*nextPerturbation();			
+		mDirection.y += 1e-5*nextPerturbation();
+		mDirection.z += 1e-5*nextPerturbation();
+	}
+	/** Service routine to produce the next value (0.0 - 1.0) via a SplitMix64 step */
+	protected double nextPerturbation(
+	) {
+		long aValue = (mPerturbSeed += 0x9E3779B97F4A7C15L);
+		aValue = (aValue ^ (aValue >>> 30)) * 0xBF58476D1CE4E5B9L;
+		aValue = (aValue ^ (aValue >>> 27)) * 0x94D049BB133111EBL;
+		aValue = aValue ^ (aValue >>> 31);
+		return( (aValue >>> 11) * 0x1.0p-53 );
+	}
+	protected static long seedBits(
+		long		pSeed
+	,	Vector3d	pVector
+	) {
+		pSeed = pSeed * 31 + Double.doubleToLongBits( pVector.x );
+		pSeed = pSeed * 31 + Double.doubleToLongBits( pVector.y );
+		pSeed = pSeed * 31 + Double.doubleToLongBits( pVector.z );
+		return( pSeed );
 	}
 
 	/** OVERRIDE for debug report */
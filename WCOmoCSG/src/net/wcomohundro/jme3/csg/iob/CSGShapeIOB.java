@@ -37,6 +37,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 
 import com.jme3.math.Transform;
@@ -287,6 +289,38 @@ public class CSGShapeIOB
 	}
 
 	
+	/** Make an independent copy of a blended product */
+	@Override
+	public CSGShape.CSGShapeProcessor copyProduct(
+		CSGShape.CSGShapeProcessor	pStatisticsSource
+	,	CSGEnvironment				pEnvironment
+	) {
+		// Classification alters the status of a face, so every face must be copied
+		List<CSGFace> faceList = new ArrayList<CSGFace>( mFaces.size() );
+		for( CSGFace aFace : mFaces ) {
+			faceList.add( aFace.clone( false, pEnvironment ) );
+		}
+		CSGStatsIOB useStatistics = (pStatisticsSource instanceof CSGShapeIOB)
+									? ((CSGShapeIOB)pStatisticsSource).mStatistics : mStatistics;
+		return( new CSGShapeIOB( null, faceList, useStatistics ) );
+	}
+	/** Rough estimate of the memory held: a face with its plane and three vertices */
+	@Override
+	public long estimateMemory(
+	) {
+		return( mFaces.size() * 480L );
+	}
+	
+	/** Generate the faces in advance of any blend */
+	@Override
+	public void prepareOperand(
+		CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentIOB	pEnvironment
+	) {
+		getFaces( pMeshManager, 0, pTempVars, pEnvironment );
+	}
+	
 	/** Accessor to the list of faces */
 	protected List<CSGFace> getFaces(
 		CSGMeshManager		pMeshManager
@@ -300,7 +334,7 @@ public class CSGShapeIOB
 			mFaces = fromMesh( aMesh
 								, mShape.getCSGTransform( pEnvironment )
 								, pMeshManager
-								, pLevelOfDetail
+								, (pLevelOfDetail == 0) ? pEnvironment.resolveOperandLOD( aMesh ) : pLevelOfDetail
 								, pTempVars
 								, pEnvironment );
 		}
@@ -369,6 +403,73 @@ public class CSGShapeIOB
 		return( aShape );
 	}
 
+	/** Carve a shape out of this one, where only the faces that fall within the bounds of
+	 	the other shape are split and classified.  Every face beyond those bounds lies outside 
+	 	the other shape by definition, so it is carried into the product untouched.
+	 	Splitting and classification alter the faces they work on, so the near faces are
+	 	copies, leaving this product (which may well be retained, see CSGProductState) 
+	 	exactly as it was.
+	 	NOTE that classifying the faces of the other shape relies on the closest face along
+	 		 a ray, which may well be far away, so that pass runs against every face.
+	 */
+	@Override
+	public CSGShape carve(
+		CSGShape			pOther
+	,	Set<Integer>		pChangedMeshes
+	,	CSGMeshManager		pMeshManager
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentIOB	pEnvironment
+	)  throws CSGConstructionException {
+		CSGShapeIOB otherIOB = (CSGShapeIOB)pOther.getHandler( pEnvironment, this );
+		List<CSGFace> otherFaceList 
+			= otherIOB.getFaces( pMeshManager, 0, pTempVars, pEnvironment );
+		CSGSolid otherSolid = new CSGSolid( otherFaceList, mStatistics );
+		CSGBounds otherBound = otherSolid.getBounds();
+		
+		// Sort out the faces that could possibly be affected
+		List<CSGFace> thisFaceList 
+			= this.getFaces( pMeshManager, 0, pTempVars, pEnvironment );
+		List<CSGFace> nearFaces = new ArrayList<CSGFace>();
+		List<CSGFace> farFaces = new ArrayList<CSGFace>( thisFaceList.size() );
+		for( CSGFace aFace : thisFaceList ) {
+			if ( aFace.getBound().overlap( otherBound, pEnvironment ) ) {
+				nearFaces.add( aFace.clone( false, pEnvironment ) );
+				pChangedMeshes.add( new Integer( aFace.getMeshIndex() ) );
+			} else {
+				farFaces.add( aFace );
+			}
+		}
+		CSGSolid nearSolid = new CSGSolid( nearFaces, mStatistics );
+		
+		// Split the faces so that neither of them intercepts each other
+		nearSolid.splitFaces( otherSolid, pTempVars, pEnvironment );
+		otherSolid.splitFaces( nearSolid, pTempVars, pEnvironment );
+		
+		// Classify the faces as being inside or outside the other solid
+		nearSolid.classifyFaces( otherSolid, pTempVars, pEnvironment );
+		List<CSGFace> wholeFaces = new ArrayList<CSGFace>( nearSolid.getFaces().size() + farFaces.size() );
+		wholeFaces.addAll( nearSolid.getFaces() );
+		wholeFaces.addAll( farFaces );
+		otherSolid.classifyFaces( new CSGSolid( wholeFaces, mStatistics ), pTempVars, pEnvironment );
+		otherSolid = otherSolid.invertFaces( CSGFace.CSGFaceStatus.INSIDE, pEnvironment );
+		
+		// Select faces that fit with the desired status, where the far faces are all keepers
+		List<CSGFace> newFaceList = new ArrayList<CSGFace>( wholeFaces.size() + otherSolid.getFaces().size() );
+		newFaceList.addAll( farFaces );
+		filterFaces( newFaceList, nearSolid.getFaces(), CSGFaceStatus.OUTSIDE, CSGFaceStatus.OPPOSITE );
+		filterFaces( newFaceList, otherSolid.getFaces(), CSGFaceStatus.INSIDE, CSGFaceStatus.INSIDE );
+		for( CSGFace aFace : otherSolid.getFaces() ) {
+			pChangedMeshes.add( new Integer( aFace.getMeshIndex() ) );
+		}
+		CSGShapeIOB aHandler = new CSGShapeIOB( null, newFaceList, this.mStatistics );
+		CSGShape aShape = new CSGShape( aHandler
+										, this.mShape.getName()
+										, this.mShape.getOrder()
+										, this.mShape.getError()
+										, pOther.getError() );
+		return( aShape );
+	}
+
 	/** Find the intersection with another shape */
 	@Override
 	public CSGShape intersection(
@@ -629,6 +730,34 @@ public class CSGShapeIOB
 			}
 		}
 	}
+	@Override
+	public void updateMeshes(
+		CSGMeshManager		pMeshManager
+	,	Set<Integer>		pMeshIndices
+	,	CSGTempVars			pTempVars
+	,	CSGEnvironmentIOB	pEnvironment
+	) {
+		List<CSGFace> aFaceList = getFaces( pMeshManager, 0, pTempVars, pEnvironment );
+		int anEstimateVertexCount = aFaceList.size() * 3;
+		
+		List<Vector3f> aPositionList = new ArrayList<Vector3f>( anEstimateVertexCount );
+		List<Vector3f> aNormalList = new ArrayList<Vector3f>( anEstimateVertexCount );
+		List<Vector2f> aTexCoordList = new ArrayList<Vector2f>( anEstimateVertexCount  );
+		List<Number> anIndexList = new ArrayList<Number>( anEstimateVertexCount );
+		
+		// The master list always reflects every element
+		Mesh aMesh = toMesh( -1, aFaceList, aPositionList, aNormalList, aTexCoordList, anIndexList );
+		pMeshManager.registerMasterMesh( aMesh, this.mShape.getName() );
+		
+		// Only the given sub elements are rebuilt
+		for( Integer anIndex : new TreeSet<Integer>( pMeshIndices ) ) {
+			if ( (anIndex.intValue() >= 0) && (anIndex.intValue() <= pMeshManager.getMeshCount()) ) {
+				aPositionList.clear(); aNormalList.clear(); aTexCoordList.clear(); anIndexList.clear();
+				aMesh = toMesh( anIndex.intValue(), aFaceList, aPositionList, aNormalList, aTexCoordList, anIndexList );
+				pMeshManager.registerMesh( aMesh, anIndex );
+			}
+		}
+	}
 		
 	protected Mesh toMesh(
 		int					pMeshIndex
@@ -234,9 +234,7 @@ loop1:	for( int i = 0, j = sizeLimit; i < (j = mFaces.size()); i += 1 ) {
 				throw anError;
 			}
 			// Allow an outside monitor to abort long running construction
-			if ( Thread.interrupted() ) {
-				// NOTE use of .interrupted() (which clears the interrupted status) versus
-				//		currentThread.isInterrupted()  (which leaves the interrupted status alone)
+			if ( pEnvironment.isCancelled() ) {
 				CSGConstructionException anError
 					= new CSGConstructionException( CSGErrorCode.INTERRUPTED
 													,	"CSGSolid.splitFaces - interrupted: " + j );
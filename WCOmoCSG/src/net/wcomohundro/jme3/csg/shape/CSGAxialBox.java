@@ -635,6 +635,15 @@ public class CSGAxialBox
         tc.updateData( aBuffer );
     }
  
+	/** Accessor to the face mask that applies to the given surface */
+    @Override
+	public int getFaceMask(
+		int					pFaceIndex
+	) {
+		// Determine the face, which we know is in the sFaces order, with 2 triangles 
+    	// per face
+    	return( sFaces[ pFaceIndex / 2 ].getMask() );
+	}
 	/** Accessor to the mesh name that applies to the given surface */
     @Override
 	public String getMeshName(
@@ -664,12 +673,10 @@ public class CSGAxialBox
 	public PhysicsControl getPhysics(
 		int					pFaceIndex
 	) {
-		// Subclasses must override if they support custom material per surface
-		// Determine the face, which we know is in the order
-    	//	Front/Back/Left/Right/Top/Bottom, with 2 triangles per face, which matches
-    	//  the bits in Face
-    	int faceMask = 1 << (pFaceIndex / 2);
-    	PhysicsControl aPhysics = resolveFacePhysics( faceMask );
+		// Determine the face, which we know is in the sFaces order, with 2 triangles 
+    	// per face (just like the name and material)
+    	Face aFace = sFaces[ pFaceIndex / 2 ];
+    	PhysicsControl aPhysics = resolveFacePhysics( aFace.getMask() );
 		return( aPhysics );
 	}
 
@@ -250,6 +250,16 @@ public class CSGBox
         tc.updateData( aBuffer );
     }
     
+	/** Accessor to the face mask that applies to the given surface */
+    @Override
+	public int getFaceMask(
+		int					pFaceIndex
+	) {
+		// Determine the face, which we know is in the order
+    	//	Front/Back/Left/Right/Top/Bottom, with 2 triangles per face, which matches
+    	//  the bits in Face
+    	return( 1 << (pFaceIndex / 2) );
+	}
 	/** Accessor to the mesh name that applies to the given surface */
     @Override
 	public String getMeshName(
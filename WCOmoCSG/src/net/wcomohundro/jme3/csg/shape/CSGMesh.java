@@ -48,6 +48,7 @@ import net.wcomohundro.jme3.csg.CSGMeshManager;
 import net.wcomohundro.jme3.csg.CSGShape;
 import net.wcomohundro.jme3.csg.CSGVersion;
 import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry;
+import net.wcomohundro.jme3.csg.shape.CSGFaceProperties.Face;
 
 /** Constructive Solid Geometry (CSG)
  
@@ -190,6 +191,18 @@ public abstract class CSGMesh
     	List<ColorRGBA>	pColorList
     );
     
+	/** FOR CSGShape PROCESSING: Accessor to the face mask that applies to the given surface.
+	 	Every surface that shares a mask MUST resolve to the same name/material/physics, which
+	 	allows CSGShape to resolve the mesh index once per mask rather than once per triangle.
+	 	Subclasses that override getMeshName/getMaterial/getPhysics must override this as well.
+	 */
+	public int getFaceMask(
+		int					pFaceIndex
+	) {
+		// By default, every surface is treated the same
+		return( Face.NONE.getMask() );
+	}
+	
 	/** FOR CSGShape PROCESSING: Accessor to the mesh name that applies to the given surface */
 	public String getMeshName(
 		int					pFaceIndex
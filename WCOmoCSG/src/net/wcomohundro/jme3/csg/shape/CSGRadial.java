@@ -41,7 +41,7 @@ import com.jme3.util.BufferUtils;
 import com.jme3.util.TempVars;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.nio.FloatBuffer;
@@ -114,9 +114,12 @@ public abstract class CSGRadial
 	public static final String sCSGRadialDate="$Date$";
 	
 	/** Cache of radial coordinates based on a radial count and starting angle.
-	 	The key is a simple blend of the count and an integer representation of the angle 
+	 	The key is a simple blend of the count and an integer representation of the angle.
+	 	Lookups run without locking.  Two threads may build the same list at the same time,
+	 	but they produce identical content, so whichever lands in the cache last is fine.
 	 */
-	protected static Map<Integer,WeakReference<CSGRadialCoord[]>> sRadialCoordCache = new HashMap( 17 );
+	protected static Map<Integer,WeakReference<CSGRadialCoord[]>> sRadialCoordCache 
+		= new ConcurrentHashMap<Integer,WeakReference<CSGRadialCoord[]>>( 17 );
 	protected static CSGRadialCoord[] getRadialCoordinates(
 		int		pRadialSamples
 	,	float	pFirstRadial
@@ -126,9 +129,8 @@ public abstract class CSGRadial
 		Integer coordKey = new Integer( pRadialSamples + (aHash << 16) );
 		WeakReference<CSGRadialCoord[]> aReference = sRadialCoordCache.get( coordKey );
 		CSGRadialCoord[] coordList = (aReference == null) ? null : aReference.get();
-		if ( coordList == null ) synchronized( sRadialCoordCache ) {
+		if ( coordList == null ) {
 			// Not in the cache, so create it now 
-			// (and it is not worth the effort to check the cache again once synchronized)
 	        float inverseRadialSamples = 1.0f / pRadialSamples;
 			coordList = new CSGRadialCoord[ pRadialSamples + 1 ];
 			
@@ -146,7 +148,7 @@ public abstract class CSGRadial
 	        //		once a list is in the cache, we are likely to use it again, and that
 	        //		the overhead of a few extra Map.Entry is not worth the effort to 
 	        //		monitor the reference queue or to run a harvester thread.
-			sRadialCoordCache.put( coordKey, new WeakReference( coordList ) );
+			sRadialCoordCache.put( coordKey, new WeakReference<CSGRadialCoord[]>( coordList ) );
 		}
 		return( coordList );
 	}
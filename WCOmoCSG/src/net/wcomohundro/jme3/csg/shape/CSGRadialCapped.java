@@ -164,6 +164,20 @@ public abstract class CSGRadialCapped
     public TextureMode getTextureMode() { return mTextureMode; }
     public void setTextureMode( TextureMode pTextureMode ) { mTextureMode = pTextureMode; }
 
+	/** Accessor to the face mask that applies to the given surface */
+    @Override
+	public int getFaceMask(
+		int					pFaceIndex
+	) {
+    	if ( mFaceProperties != null ) {
+			// Determine the face
+	    	return( whichFace( pFaceIndex ).getMask() );
+    	} else {
+    		// No custom properties, so every face is the same
+    		return( Face.NONE.getMask() );
+    	}
+	}
+
 	/** Accessor to the material that applies to the given surface */
     @Override
 	public String getMeshName(
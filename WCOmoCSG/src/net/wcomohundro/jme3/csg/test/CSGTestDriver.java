@@ -91,6 +91,7 @@ public class CSGTestDriver
         ,	new CSGTestDriverAppItem( "Animation", CSGTestJ.class )
         ,	new CSGTestDriverAppItem( "Progressive (mouse/cheese)", CSGTestM.class )
         ,	new CSGTestDriverAppItem( "Progressive (+/- cylinder)", CSGTestL.class )
+        ,	new CSGTestDriverAppItem( "Shortcuts (cache/incremental/carve/chunks/history)", CSGTestP.class )
         };
         CSGTestDriverBase.main( appChoices, "CSGTestDriver" );
 	    
@@ -107,5 +108,6 @@ public class CSGTestDriver
 	    //app = new CSGTestK();			// 2D Surface test
 	    //app = new CSGTestL();			// Progressive add/subtract cylinder from prior
 	    //app = new CGGTestM();			// Progressive spherical mouse eating cube of cheese
+	    //app = new CSGTestP();			// Cache/incremental/carve/chunk/history checks
 	}
 }
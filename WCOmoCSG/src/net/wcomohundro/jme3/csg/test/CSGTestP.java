@@ -0,0 +1,335 @@
+/** Copyright (c) 2015, WCOmohundro
+	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	1. 	Redistributions of source code must retain the above copyright notice, this list of conditions 
+		and the following disclaimer.
+
+	2. 	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+		and the following disclaimer in the documentation and/or other materials provided with the distribution.
+	
+	3. 	Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+		or promote products derived from this software without specific prior written permission.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+	PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+	ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT 
+	LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+	INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN 
+	IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+package net.wcomohundro.jme3.csg.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jme3.app.DebugKeysAppState;
+import com.jme3.app.FlyCamAppState;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.StatsAppState;
+import com.jme3.light.AmbientLight;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+
+import net.wcomohundro.jme3.csg.CSGChunkedGeonode;
+import net.wcomohundro.jme3.csg.CSGGeonode;
+import net.wcomohundro.jme3.csg.CSGProductHistory;
+import net.wcomohundro.jme3.csg.CSGResultCache;
+import net.wcomohundro.jme3.csg.CSGShape;
+import net.wcomohundro.jme3.csg.ConstructiveSolidGeometry.CSGOperator;
+import net.wcomohundro.jme3.csg.shape.*;
+
+/** Test of the shortcuts that avoid blending everything from scratch: the result cache,
+ 	incremental regeneration, carving, chunking and the product history.  Every check 
+ 	compares the shortcut with the same definition built the long way, and the outcome 
+ 	is posted to the display (and the console).
+ */
+public class CSGTestP 
+	extends CSGTestSceneBase
+{
+	public static void main(
+		String[] 	pArgs
+	) {
+	    SimpleApplication app = new CSGTestP();		    
+	    app.start();
+	}
+
+	/** Common materials */
+	protected Material		mMaterial;
+	protected Material		mOtherMaterial;
+	/** Outcome of every check */
+	protected StringBuilder	mReport;
+	
+	public CSGTestP(
+	) {
+		super( new StatsAppState(), new FlyCamAppState(), new DebugKeysAppState() );
+	}
+
+    @Override
+    protected void commonApplicationInit(
+    ) {
+		super.commonApplicationInit();    
+		
+        mMaterial = assetManager.loadMaterial( "Textures/CobbleStone/CobbleStone.xml" );
+        mOtherMaterial = assetManager.loadMaterial( "Textures/CobbleStone/Pebbles.xml" );
+        mReport = new StringBuilder( 512 );
+        
+        testResultCache( -12 );
+        testIncremental( -6 );
+        testCarve( 0 );
+        testHistory( 6 );
+        testChunks( 16 );
+        System.out.println( mReport.toString() );
+        
+		this.mPostText.push( "QWASDZ to move, <ESC> to exit" );
+		this.mPostText.push( mReport.toString() );
+		this.mRefreshText = true;
+
+		rootNode.addLight( new AmbientLight( ColorRGBA.LightGray ) );
+    }
+    
+    /** A repeated blend comes from the cache, but not when the mesh registrations differ */
+    protected void testResultCache(
+    	float		pX
+    ) {
+    	// The cache is opt-in
+    	long priorLimit = CSGResultCache.getMemoryLimit();
+    	CSGResultCache.setMemoryLimit( 16L * 1024L * 1024L );
+    	CSGResultCache.clear();
+    	try {
+	    	CSGGeonode firstNode = buildCheese( "CacheFirst", mMaterial );
+	    	
+	    	long hitCount = CSGResultCache.getHitCount();
+	    	CSGGeonode sameNode = buildCheese( "CacheSame", mMaterial );
+	    	report( "Cache hit on a repeated blend"
+	    			, (CSGResultCache.getHitCount() > hitCount) 
+	    			&& (sameNode.getTriangleCount() == firstNode.getTriangleCount()) );
+	    	
+	    	// A different material for the geonode registers a different master mesh, so
+	    	// the cached product (which carries the mesh indices) does not apply
+	    	hitCount = CSGResultCache.getHitCount();
+	    	CSGGeonode otherNode = buildCheese( "CacheOther", mOtherMaterial );
+	    	report( "Cache miss on a registration mismatch"
+	    			, (CSGResultCache.getHitCount() == hitCount) 
+	    			&& (otherNode.getTriangleCount() == firstNode.getTriangleCount()) );
+	    	
+	    	place( firstNode, pX );
+    	} finally {
+    		CSGResultCache.setMemoryLimit( priorLimit );
+    		CSGResultCache.clear();
+    	}
+    }
+    
+    /** Resuming after the edit of a MERGE shape matches a full regeneration */
+    protected void testIncremental(
+    	float		pX
+    ) {
+    	CSGGeonode incremental = new CSGGeonode( "Incremental" );
+    	incremental.setMaterial( mMaterial );
+    	incremental.setIncrementalRegeneration( true );
+    	loadMerges( incremental, new Vector3f( 0, 1.5f, 0 ) );
+    	incremental.regenerate();
+    	int originalCount = incremental.getTriangleCount();
+    	
+    	// Only the last MERGE changes, so the blend resumes from the first MERGE
+    	loadMerges( incremental, new Vector3f( 0, -1.5f, 0 ) );
+    	incremental.regenerate();
+    	
+    	CSGGeonode full = new CSGGeonode( "Full" );
+    	full.setMaterial( mMaterial );
+    	loadMerges( full, new Vector3f( 0, -1.5f, 0 ) );
+    	full.regenerate();
+    	report( "Incremental edit of a MERGE matches a full regeneration"
+    			, incremental.getTriangleCount() == full.getTriangleCount() );
+    	
+    	// And back again, resuming from the very same retained step
+    	loadMerges( incremental, new Vector3f( 0, 1.5f, 0 ) );
+    	incremental.regenerate();
+    	report( "Incremental edit back to the original matches the original"
+    			, incremental.getTriangleCount() == originalCount );
+    	
+    	place( incremental, pX );
+    }
+    
+    /** A carve matches the full regeneration of the same definition */
+    protected void testCarve(
+    	float		pX
+    ) {
+    	CSGGeonode carved = buildBox( "Carved" );
+    	carved.carveShape( buildCutter( 0.8f, 0.5f, 0.5f ), null );
+    	int carvedCount = carved.getTriangleCount();
+    	
+    	CSGGeonode full = buildBox( "Regenerated" );
+    	full.subtractShape( buildCutter( 0.8f, 0.5f, 0.5f ) );
+    	full.regenerate();
+    	report( "Carve matches a full regeneration"
+    			, carvedCount == full.getTriangleCount() );
+    	
+    	// The cutter is part of the definition once carved
+    	carved.regenerate();
+    	report( "Carved definition regenerates to the same product"
+    			, carvedCount == carved.getTriangleCount() );
+    	
+    	place( carved, pX );
+    }
+    
+    /** Undo/redo across carves restores every state, and no later carve alters a state */
+    protected void testHistory(
+    	float		pX
+    ) {
+    	CSGGeonode aGeonode = buildBox( "History" );
+    	CSGProductHistory aHistory = new CSGProductHistory( aGeonode );
+    	aHistory.record();
+    	int originalCount = aGeonode.getTriangleCount();
+    	
+    	aGeonode.carveShape( buildCutter( 0.8f, 0.5f, 0.5f ), null );
+    	aHistory.record();
+    	int firstCount = aGeonode.getTriangleCount();
+    	
+    	aGeonode.carveShape( buildCutter( -0.8f, 0.5f, -0.5f ), null );
+    	aHistory.record();
+    	int secondCount = aGeonode.getTriangleCount();
+    	
+    	boolean isMatch = true;
+    	aHistory.undo();
+    	isMatch &= (aGeonode.getTriangleCount() == firstCount);
+    	aHistory.undo();
+    	isMatch &= (aGeonode.getTriangleCount() == originalCount);
+    	aHistory.redo();
+    	isMatch &= (aGeonode.getTriangleCount() == firstCount);
+    	aHistory.redo();
+    	isMatch &= (aGeonode.getTriangleCount() == secondCount);
+    	report( "Undo/redo after carving restores every state", isMatch );
+    	
+    	// Carve from a restored state, then return to it
+    	aHistory.undo();
+    	aHistory.undo();
+    	aGeonode.carveShape( buildCutter( 0, -0.5f, 0.8f ), null );
+    	aHistory.record();
+    	aHistory.undo();
+    	report( "Carving a restored state leaves the state alone"
+    			, aGeonode.getTriangleCount() == originalCount );
+    	
+    	place( aGeonode, pX );
+    }
+    
+    /** An edit of a chunked geonode only rebuilds the cells it touches */
+    protected void testChunks(
+    	float		pX
+    ) {
+    	CSGChunkedGeonode aChunked = new CSGChunkedGeonode( "Chunked" );
+    	aChunked.setMaterial( mMaterial );
+    	aChunked.setChunkSize( new Vector3f( 2, 2, 2 ) );
+    	aChunked.addShape( new CSGShape( "Slab", new CSGBox( 4, 0.5f, 1 ) ) );
+    	aChunked.regenerate();
+    	Map<Spatial,Spatial> priorMasters = captureMasters( aChunked );
+    	
+    	// A small cutter well within a single cell
+    	CSGShape aCutter = new CSGShape( "Cutter", new CSGSphere( 16, 16, 0.2f ) );
+    	aCutter.move( 3, 0.25f, 0.5f );
+    	aChunked.subtractShape( aCutter );
+    	aChunked.regenerate();
+    	
+    	int rebuiltCount = 0;
+    	for( Map.Entry<Spatial,Spatial> anEntry : captureMasters( aChunked ).entrySet() ) {
+    		if ( priorMasters.get( anEntry.getKey() ) != anEntry.getValue() ) {
+    			rebuiltCount += 1;
+    		}
+    	}
+    	report( "Chunk edit rebuilt " + rebuiltCount + " of " + aChunked.getChunkCount() + " cells"
+    			, rebuiltCount == 1 );
+    	
+    	place( aChunked, pX );
+    }
+    
+    /** Service routine to build a regenerated box with a spherical bite */
+    protected CSGGeonode buildCheese(
+    	String		pName
+    ,	Material	pMaterial
+    ) {
+    	CSGGeonode aGeonode = new CSGGeonode( pName );
+    	aGeonode.setMaterial( pMaterial );
+    	aGeonode.addShape( new CSGShape( "Box", new CSGBox( 1, 1, 1 ) ) );
+    	
+    	CSGShape aSphere = new CSGShape( "Sphere", new CSGSphere( 16, 16, 0.6f ) );
+    	aSphere.move( 0.5f, 0.5f, 0.5f );
+    	aGeonode.subtractShape( aSphere );
+    	aGeonode.regenerate();
+    	return( aGeonode );
+    }
+    /** Service routine to build a regenerated box, ready for carving */
+    protected CSGGeonode buildBox(
+    	String		pName
+    ) {
+    	CSGGeonode aGeonode = new CSGGeonode( pName );
+    	aGeonode.setMaterial( mMaterial );
+    	aGeonode.addShape( new CSGShape( "Box", new CSGBox( 1, 1, 1 ) ) );
+    	aGeonode.regenerate();
+    	return( aGeonode );
+    }
+    /** Service routine to build a small spherical cutter */
+    protected CSGShape buildCutter(
+    	float		pX
+    ,	float		pY
+    ,	float		pZ
+    ) {
+    	CSGShape aCutter = new CSGShape( "Cutter", new CSGSphere( 16, 16, 0.4f ) );
+    	aCutter.move( pX, pY, pZ );
+    	return( aCutter );
+    }
+    /** Service routine to (re)load the shapes of the incremental test, where the cylinder 
+     	is the only thing that moves
+     */
+    protected void loadMerges(
+    	CSGGeonode	pGeonode
+    ,	Vector3f	pCylinderAt
+    ) {
+    	pGeonode.removeAllShapes();
+    	pGeonode.addShape( new CSGShape( "Box", new CSGBox( 1, 1, 1 ) ) );
+    	
+    	CSGShape aSphere = new CSGShape( "Sphere", new CSGSphere( 16, 16, 0.75f ) );
+    	aSphere.move( 1.5f, 0, 0 );
+    	pGeonode.addShape( aSphere, CSGOperator.MERGE );
+    	
+    	CSGShape aCylinder = new CSGShape( "Cylinder", new CSGCylinder( 16, 16, 0.5f, 1 ) );
+    	aCylinder.setLocalTranslation( pCylinderAt );
+    	pGeonode.addShape( aCylinder, CSGOperator.MERGE );
+    	
+    	CSGShape aNotch = new CSGShape( "Notch", new CSGBox( 0.3f, 0.3f, 0.3f ) );
+    	aNotch.move( 0, 0, 1 );
+    	pGeonode.subtractShape( aNotch );
+    }
+    /** Service routine to capture the master Geometry of every cell */
+    protected Map<Spatial,Spatial> captureMasters(
+    	CSGChunkedGeonode	pChunked
+    ) {
+    	Map<Spatial,Spatial> aMap = new HashMap<Spatial,Spatial>();
+    	for( Spatial aChild : pChunked.getChildren() ) {
+    		if ( aChild instanceof CSGGeonode ) {
+    			aMap.put( aChild, ((CSGGeonode)aChild).getMasterGeometry() );
+    		}
+    	}
+    	return( aMap );
+    }
+    /** Service routine to display an item */
+    protected void place(
+    	Spatial		pItem
+    ,	float		pX
+    ) {
+    	pItem.move( pX, 0, 0 );
+    	rootNode.attachChild( pItem );
+    }
+    /** Service routine to record the outcome of a check */
+    protected void report(
+    	String		pCheck
+    ,	boolean		pPassed
+    ) {
+    	mReport.append( pPassed ? "ok - " : "FAILED - " ).append( pCheck ).append( "\n" );
+    }
+}